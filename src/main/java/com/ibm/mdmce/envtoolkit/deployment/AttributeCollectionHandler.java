@@ -52,7 +52,7 @@ public class AttributeCollectionHandler extends BasicEntityHandler {
 						Spec.Attribute attr = spec.getAttributes().get(sAttr);
 						if (attr == null) {
 							bValid = false;
-							EnvironmentHandler.logger.warning(". . . WARNING (" + attrCol.getName() + "): Unable to find attribute - " + sSpecName + "/" + sAttr);
+							reportWarning(". . . WARNING (" + attrCol.getName() + "): Unable to find attribute - " + sSpecName + "/" + sAttr);
 						}
 					}
 				}
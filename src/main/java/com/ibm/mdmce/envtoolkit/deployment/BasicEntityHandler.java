@@ -7,8 +7,11 @@ package com.ibm.mdmce.envtoolkit.deployment;
 import com.ibm.mdmce.envtoolkit.deployment.model.*;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,22 +26,41 @@ public abstract class BasicEntityHandler {
 
     private static final Pattern NAMING_CHAR_WHITELIST = Pattern.compile("[^a-zA-Z0-9_.]");
 
+    // Number of entities (per thread of the pool) whose XML may be generated ahead of being written out
+    private static final int ENTITIES_IN_FLIGHT_PER_THREAD = 4;
+
     protected String csvFilePath;
     protected String xmlFilePath;
     protected BasicEntity entity;
     protected String version;
     protected boolean federated = true;
+    protected BuildContext context;
 
     protected List<String> alFileListXML;
 
     protected List<String> alOrderedEntityNames;
+    private Set<String> hsEntityNames; // the same names as alOrderedEntityNames, to check for duplicates in constant time
+    private final ThreadLocal<List<String>> tlGeneratedFilesXML = new ThreadLocal<>(); // files generated by the entity being output on this thread
+    private static final ThreadLocal<Map<String, MessageDigest>> tlFileDigests = new ThreadLocal<>(); // digests of the files written by the entity being signed on this thread
+
+    private final Set<String> hsInputFiles = Collections.synchronizedSet(new LinkedHashSet<>()); // files read while loading
+    private final Set<String> hsOutputInputFiles = Collections.synchronizedSet(new LinkedHashSet<>()); // files read while outputting
+    private final Set<String> hsInputDirectories = Collections.synchronizedSet(new LinkedHashSet<>()); // directories whose files are all read while loading
+    private volatile boolean bOutputting = false;
+    private Set<String> hsTypesRead; // types of entity read while outputting (only recorded for incremental builds)
+    private String sOutputEntityType; // type of entity being output (for example Spec), as recorded in the entity manifest
+    private int iOutputEntityCount = 0; // entities written by the last output
+    private final Set<String> hsUnchangedFiles = new LinkedHashSet<>(); // files of entities left out of a delta package
+    private final Set<String> hsChangedFiles = new HashSet<>(); // files of entities written into a delta package
 
     /**
      * Construct a new handler.
      */
     protected BasicEntityHandler() {
+        context = BuildContext.current();
         alFileListXML = new ArrayList<>();
         alOrderedEntityNames = new ArrayList<>();
+        hsEntityNames = new HashSet<>();
         //out = EnvironmentHandler.out;
         //err = EnvironmentHandler.err;
     }
@@ -88,26 +110,74 @@ public abstract class BasicEntityHandler {
     protected void initialize(String sInputFilePath, String sEncoding, TemplateParameters tp) {
         sInputFilePath = sInputFilePath + File.separator + csvFilePath;
         EnvironmentHandler.logger.info("Reading input from: " + sInputFilePath);
-        try {
-            // Read in the entities first...
-            CSVParser readerCSV = new CSVParser(sInputFilePath, sEncoding, entity.getColumnCount());
-            List<String> aTokens = readerCSV.splitLine(); // throw away the first line...
-            aTokens = readerCSV.splitLine();
-            if (aTokens == null || aTokens.isEmpty())
-                federated = false;
-            while (aTokens != null && !aTokens.isEmpty()) {
-                List<List<String>> alReplacedTokens = replaceTemplateParameters(aTokens, tp, entity.getIndexOfColumn(ACG.COUNTRY_SPECIFIC));
-                addLineToCache(alReplacedTokens);
-                aTokens = readerCSV.splitLine();
-            }
+        File fInput = new File(sInputFilePath);
+        addInputFile(fInput);
+        InputSnapshot snapshot = context.getInputSnapshot();
+        InputSnapshot.Entry parsed = (snapshot == null) ? null : snapshot.lookup(fInput, entity.getClass().getName(), entity.getColumnCount());
+        if (parsed != null && parsed.isReplayed()) {
+            replayParsedLines(parsed, tp);
+            return;
+        }
+        // Read in the entities first...
+        try (CSVParser readerCSV = new CSVParser(sInputFilePath, sEncoding, entity.getColumnCount())) {
+            readerCSV.setStringPool(context.getStringPool());
+            List<String> aHeader = readerCSV.splitLine(); // the first line is the header...
+            if (aHeader != null)
+                bindHeader(aHeader);
+            if (parsed != null)
+                parsed.setHeader(aHeader);
+            int iCountrySpecific = entity.getIndexOfColumn(ACG.COUNTRY_SPECIFIC);
+            federated = false;
+            readerCSV.rows()
+                    .map(aTokens -> replaceTemplateParameters(aTokens, tp, iCountrySpecific))
+                    .forEachOrdered(alReplacedTokens -> {
+                        if (parsed != null)
+                            parsed.addLine(alReplacedTokens);
+                        addLineToCache(alReplacedTokens);
+                        federated = true;
+                    });
+            if (parsed != null)
+                snapshot.record(parsed);
         } catch (FileNotFoundException errNoFile) {
             EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
             federated = false;
-        } catch (IOException errIO) {
+        } catch (IOException | UncheckedIOException errIO) {
             EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
         }
     }
 
+    /**
+     * Add the lines of a CSV file read from the snapshot of parsed input files (see {@link InputSnapshot}) to the
+     * cache, just as if they had been parsed from the file (including warning about any lines that could not have their
+     * template parameters applied).
+     * @param parsed the parsed lines of the file
+     * @param tp the template parameters applied to the lines
+     */
+    private void replayParsedLines(InputSnapshot.Entry parsed, TemplateParameters tp) {
+        EnvironmentHandler.logger.fine(". . . Using parsed lines from the snapshot (the file has not changed).");
+        if (parsed.getHeader() != null)
+            bindHeader(parsed.getHeader());
+        int iCountrySpecific = entity.getIndexOfColumn(ACG.COUNTRY_SPECIFIC);
+        federated = false;
+        for (List<List<String>> alReplacedTokens : parsed.getLines()) {
+            if (tp.getTopLevelVarname().equals("") && (iCountrySpecific == -1 || CSVParser.checkBoolean(alReplacedTokens.get(0).get(iCountrySpecific))))
+                EnvironmentHandler.logger.warning(". . . WARNING: No template variables have been defined - skipping object.");
+            addLineToCache(alReplacedTokens);
+            federated = true;
+        }
+    }
+
+    /**
+     * Bind the columns of the entity type this handler processes to the provided CSV header line, so that each field is
+     * read from the position the header gives it.
+     * @param aHeader the header line of the CSV file
+     */
+    protected void bindHeader(List<String> aHeader) {
+        List<String> alUnbound = entity.bindColumns(aHeader);
+        if (!alUnbound.isEmpty())
+            EnvironmentHandler.logger.fine(". . . Header of " + csvFilePath + " does not name column(s) " + alUnbound + " - reading all columns by position.");
+    }
+
     /**
      * Add the provided line, with its tokens already replaced, to the global cache.
      * @param alReplacedTokens the line of input, with tokens already replaced
@@ -126,7 +196,7 @@ public abstract class BasicEntityHandler {
      * @param oObject the entity
      */
     public void addToCache(String sName, BasicEntity oObject) {
-        EnvironmentHandler.addEntityToCache(sName, oObject);
+        context.addEntity(sName, oObject.getClass().getName(), oObject);
         addEntityName(sName);
     }
 
@@ -137,7 +207,7 @@ public abstract class BasicEntityHandler {
      * @param oEntity the entity to cache
      */
     public void addToCacheWithType(String sName, String sEntityType, BasicEntity oEntity) {
-        EnvironmentHandler.addEntityToCacheWithType(sName, sEntityType, oEntity);
+        context.addEntity(sName, sEntityType, oEntity);
         addEntityName(sName);
     }
 
@@ -176,6 +246,57 @@ public abstract class BasicEntityHandler {
         return EnvironmentHandler.getEntityFromCache(sName, sClassName, bFailIfNotFound, bWarnIfNotFound, sQualifier);
     }
 
+    /**
+     * Retrieve the specified entity from the global cache.
+     * @param sName of the entity
+     * @param type class of the entity
+     * @param <T> the type of the entity
+     * @return T
+     */
+    public static <T extends BasicEntity> T getFromCache(String sName, Class<T> type) {
+        return getFromCache(sName, type, true, false);
+    }
+
+    /**
+     * Retrieve the specified entity from the global cache.
+     * @param sName of the entity
+     * @param type class of the entity
+     * @param bFailIfNotFound if true, fail if not found
+     * @param bWarnIfNotFound if true, warn if not found
+     * @param <T> the type of the entity
+     * @return T
+     */
+    public static <T extends BasicEntity> T getFromCache(String sName, Class<T> type, boolean bFailIfNotFound, boolean bWarnIfNotFound) {
+        return getFromCache(sName, type, bFailIfNotFound, bWarnIfNotFound, null);
+    }
+
+    /**
+     * Retrieve the specified entity from the global cache.
+     * @param sName of the entity
+     * @param type class of the entity
+     * @param bFailIfNotFound if true, fail if not found
+     * @param bWarnIfNotFound if true, warn if not found
+     * @param sQualifier (optional) the unique identity of the object requesting this one from the cache
+     * @param <T> the type of the entity
+     * @return T
+     */
+    public static <T extends BasicEntity> T getFromCache(String sName, Class<T> type, boolean bFailIfNotFound, boolean bWarnIfNotFound, String sQualifier) {
+        return EnvironmentHandler.getEntityFromCache(sName, type, bFailIfNotFound, bWarnIfNotFound, sQualifier);
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class in the global cache that reference the named entity in the
+     * specified way (through the cache's references index, rather than by name).
+     * @param referenceType the kind of reference
+     * @param sName the name of the referenced entity
+     * @param type class of the referencing entities
+     * @param <T> the type of the referencing entities
+     * @return {@code List<T>}
+     */
+    public static <T extends BasicEntity> List<T> findReferencingInCache(ReferenceType referenceType, String sName, Class<T> type) {
+        return EnvironmentHandler.getEntityCache().findReferencing(referenceType, sName, type);
+    }
+
     /**
      * Indicates whether the specified entity exists in the global cache.
      * @param sObjectName of the entity
@@ -204,12 +325,26 @@ public abstract class BasicEntityHandler {
         return bExists;
     }
 
+    /**
+     * Report a warning about the entity being validated: while the environment is being validated the warning is
+     * collected against the entity (see {@link EnvironmentValidator}), otherwise it is logged directly.
+     * @param sMessage the warning
+     */
+    protected static void reportWarning(String sMessage) {
+        if (!EnvironmentValidator.report(ValidationResult.Severity.WARNING, sMessage))
+            EnvironmentHandler.logger.warning(sMessage);
+    }
+
     /**
      * Add the specified XML filename as one that is generated.
      * @param sFilename of the XML file
      */
     public void addGeneratedFileXML(String sFilename) {
-        alFileListXML.add(sFilename);
+        List<String> alGenerated = tlGeneratedFilesXML.get();
+        if (alGenerated != null)
+            alGenerated.add(sFilename);
+        else
+            alFileListXML.add(sFilename);
     }
 
     /**
@@ -220,12 +355,83 @@ public abstract class BasicEntityHandler {
         return alFileListXML;
     }
 
+    /**
+     * Replace the list of generated XML files with those generated by a previous build, for an incremental build that
+     * does not need to regenerate them.
+     * @param alFiles the XML files previously generated, in the order they were generated
+     */
+    public void restoreGeneratedFilesXML(List<String> alFiles) {
+        alFileListXML.clear();
+        alFileListXML.addAll(alFiles);
+    }
+
+    /**
+     * Record the provided file as one read by this handler, so that an incremental build can tell whether it has
+     * changed: files read while loading affect the entities of the handler, and files read while outputting affect
+     * only its output.
+     * @param file the file read (whether or not it exists)
+     */
+    public void addInputFile(File file) {
+        if (bOutputting)
+            hsOutputInputFiles.add(file.getPath());
+        else
+            hsInputFiles.add(file.getPath());
+    }
+
+    /**
+     * Record the provided directory as one all of whose files are read by this handler while loading, so that files
+     * added to it are noticed as well.
+     * @param directory the directory read
+     */
+    public void addInputDirectory(File directory) {
+        hsInputDirectories.add(directory.getPath());
+    }
+
+    /**
+     * Retrieve the directories all of whose files are read by this handler while loading its entities.
+     * @return {@code List<String>}
+     */
+    public List<String> getInputDirectories() {
+        synchronized (hsInputDirectories) {
+            return new ArrayList<>(hsInputDirectories);
+        }
+    }
+
+    /**
+     * Retrieve the files read by this handler while loading its entities.
+     * @return {@code List<String>}
+     */
+    public List<String> getInputFiles() {
+        synchronized (hsInputFiles) {
+            return new ArrayList<>(hsInputFiles);
+        }
+    }
+
+    /**
+     * Retrieve the files read by this handler while outputting its entities.
+     * @return {@code List<String>}
+     */
+    public List<String> getOutputInputFiles() {
+        synchronized (hsOutputInputFiles) {
+            return new ArrayList<>(hsOutputInputFiles);
+        }
+    }
+
+    /**
+     * Retrieve the types (class names) of entity read from the cache while outputting the entities of this handler
+     * (only recorded for incremental builds: see {@link BuildContext#isIncremental()}).
+     * @return {@code Set<String>}
+     */
+    public Set<String> getTypesRead() {
+        return (hsTypesRead == null) ? Collections.<String>emptySet() : Collections.unmodifiableSet(hsTypesRead);
+    }
+
     /**
      * Add the specified entity name to the list of entities handled.
      * @param sName of the entity
      */
     public void addEntityName(String sName) {
-        if (!alOrderedEntityNames.contains(sName))
+        if (hsEntityNames.add(sName))
             alOrderedEntityNames.add(sName);
     }
 
@@ -392,9 +598,7 @@ public abstract class BasicEntityHandler {
 
         boolean bValid = true;
 
-        List<String> aEntityNames = getOrderedEntityNames();
-        for (String sEntityName : aEntityNames) {
-            BasicEntity oEntity = getFromCache(sEntityName, sClassName);
+        for (BasicEntity oEntity : getEntities(sClassName).values()) {
             bValid = validate(oEntity) && bValid;
         }
 
@@ -402,6 +606,19 @@ public abstract class BasicEntityHandler {
 
     }
 
+    /**
+     * Retrieve all of the entities handled by this handler, by name, in the order they were handled.
+     * @param sClassName the type of entity handled
+     * @return {@code Map<String, BasicEntity>}
+     */
+    public Map<String, BasicEntity> getEntities(String sClassName) {
+        Map<String, BasicEntity> hmEntities = new LinkedHashMap<>();
+        for (String sEntityName : getOrderedEntityNames()) {
+            hmEntities.put(sEntityName, getFromCache(sEntityName, sClassName));
+        }
+        return hmEntities;
+    }
+
     /**
      * Output the entities of the specified type.
      * @param sCompanyCode the company code of the environment
@@ -423,10 +640,13 @@ public abstract class BasicEntityHandler {
             } else {
                 outFile.write("<" + entity.getRootElement() + ">\n");
             }
-            for (String sEntityName : aEntityNames) {
-                BasicEntity oEntity = getFromCache(sEntityName, sClassName);
-                EnvironmentHandler.logger.finer(". . . outputting XML for " + oEntity.getUniqueId());
-                oEntity.outputEntityXML(this, outFile, sOutputDir, sCompanyCode);
+            if (ForkJoinTask.inForkJoinPool()) {
+                outputEntitiesXMLConcurrently(aEntityNames, sClassName, outFile, sOutputDir, sCompanyCode);
+            } else {
+                for (String sEntityName : aEntityNames) {
+                    BasicEntity oEntity = getFromCache(sEntityName, sClassName);
+                    writeEntityXML(generateEntityXML(sEntityName, oEntity, sOutputDir, sCompanyCode), outFile);
+                }
             }
             outFile.write("</" + entity.getRootElement() + ">\n");
         } else if (sOutputType.equals("CSV")) {
@@ -440,42 +660,223 @@ public abstract class BasicEntityHandler {
     }
 
     /**
-     * Create a new writer for the file at the specified location, creating its directory location if needed.
-     * @param sFilePath the path to the file into which to create the writer
-     * @return Writer
+     * Output the XML of the specified entities by generating the XML of each entity (including any files of its own
+     * that it writes) on the pool this is running in, while writing them out in order. Only a limited number of
+     * entities are generated ahead of those being written out.
+     * @param aEntityNames the names of the entities to output, in order
+     * @param sClassName the type of entities to output
+     * @param outFile the file into which to write the XML
+     * @param sOutputDir the directory into which the XML is being generated
+     * @param sCompanyCode the company code of the environment
+     * @throws IOException on any error writing
      */
-    public static Writer getNewWriter(String sFilePath) {
-        OutputStreamWriter osw = null;
+    private void outputEntitiesXMLConcurrently(List<String> aEntityNames, String sClassName, Writer outFile, String sOutputDir, String sCompanyCode) throws IOException {
+
+        int iMaxInFlight = ENTITIES_IN_FLIGHT_PER_THREAD * ForkJoinTask.getPool().getParallelism();
+        Deque<ForkJoinTask<GeneratedEntityXML>> entitiesInFlight = new ArrayDeque<>();
+        Iterator<String> itEntityNames = aEntityNames.iterator();
+
         try {
-            String sDirectoryPath = sFilePath.substring(0, sFilePath.lastIndexOf(File.separator));
-            File fPath = new File(sDirectoryPath);
-            fPath.mkdirs();
-            osw = new OutputStreamWriter(new FileOutputStream(sFilePath, false), StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            EnvironmentHandler.logger.severe("ERROR: Unable to get new writer: " + e.getMessage());
+            while (itEntityNames.hasNext() || !entitiesInFlight.isEmpty()) {
+                while (itEntityNames.hasNext() && entitiesInFlight.size() < iMaxInFlight) {
+                    String sEntityName = itEntityNames.next();
+                    BasicEntity oEntity = getFromCache(sEntityName, sClassName);
+                    entitiesInFlight.add(ForkJoinTask.adapt(() -> generateEntityXML(sEntityName, oEntity, sOutputDir, sCompanyCode)).fork());
+                }
+                writeEntityXML(entitiesInFlight.poll().join(), outFile);
+            }
+        } catch (RuntimeException err) {
+            for (ForkJoinTask<GeneratedEntityXML> task : entitiesInFlight) {
+                task.cancel(true);
+            }
+            for (Throwable cause = err.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+            }
+            throw err;
         }
-        return osw;
+
     }
 
     /**
-     * Output the environment file for the specified parameters.
+     * Generate the XML of a single entity (and any files of its own that it writes), along with its signature for the
+     * entity manifest (see {@link EntityManifest}) if the build signs its entities. The files of its own are hashed as
+     * they are written (see {@link #getNewWriter(String)}), rather than read back in again.
+     */
+    private GeneratedEntityXML generateEntityXML(String sEntityName, BasicEntity oEntity, String sOutputDir, String sCompanyCode) throws IOException {
+        GeneratedEntityXML generated = new GeneratedEntityXML(sEntityName);
+        BuildContext previous = BuildContext.attach(context);
+        List<String> alPreviousFiles = tlGeneratedFilesXML.get();
+        tlGeneratedFilesXML.set(generated.files);
+        Map<String, MessageDigest> hmPreviousDigests = tlFileDigests.get();
+        if (sOutputEntityType != null && context.isSigningEntities())
+            generated.fileDigests = new HashMap<>(2);
+        tlFileDigests.set(generated.fileDigests);
+        Set<String> hsPreviousTypesRead = (hsTypesRead == null) ? null : context.getEntityCache().recordTypesRead(hsTypesRead);
+        try {
+            EnvironmentHandler.logger.finer(". . . outputting XML for " + oEntity.getUniqueId());
+            oEntity.outputEntityXML(this, generated.xml, sOutputDir, sCompanyCode);
+            if (generated.fileDigests != null) {
+                List<String> alNames = new ArrayList<>();
+                List<String> alHashes = new ArrayList<>();
+                for (String sFile : generated.files) {
+                    File file = new File(sFile);
+                    MessageDigest digest = generated.fileDigests.get(sFile);
+                    alNames.add(file.getName());
+                    alHashes.add((digest != null) ? BuildManifest.toHex(digest.digest()) : (file.isFile() ? BuildManifest.hash(file) : ""));
+                }
+                generated.contentFiles.addAll(getContentFiles(oEntity));
+                for (File file : generated.contentFiles) {
+                    alNames.add(file.getName());
+                    alHashes.add(context.hashContentFile(file));
+                }
+                generated.signature = EntityManifest.signature(generated.xml, alNames, alHashes);
+            }
+        } finally {
+            if (hsTypesRead != null)
+                context.getEntityCache().recordTypesRead(hsPreviousTypesRead);
+            tlFileDigests.set(hmPreviousDigests);
+            tlGeneratedFilesXML.set(alPreviousFiles);
+            BuildContext.attach(previous);
+        }
+        return generated;
+    }
+
+    /**
+     * Write out the XML generated for a single entity, and record it in the entity manifest of the build. When packaging
+     * a delta (see {@link BuildContext#getDeltaBaseline()}), an entity whose signature is the same as in the baseline is
+     * left out instead, along with the files it generated.
+     */
+    private void writeEntityXML(GeneratedEntityXML generated, Writer outFile) throws IOException {
+        if (sOutputEntityType != null) {
+            context.getEntityManifest().add(sOutputEntityType, generated.name, (generated.signature == null) ? "" : generated.signature);
+            EntityManifest baseline = context.getDeltaBaseline();
+            if (baseline != null) {
+                List<String> alFiles = new ArrayList<>(generated.files);
+                for (File file : generated.contentFiles) {
+                    alFiles.add(file.getPath());
+                }
+                if (generated.signature.equals(baseline.getSignature(sOutputEntityType, generated.name))) {
+                    EnvironmentHandler.logger.finer(". . . unchanged since the baseline: " + generated.name);
+                    hsUnchangedFiles.addAll(alFiles);
+                    return;
+                }
+                hsChangedFiles.addAll(alFiles);
+            }
+        }
+        generated.xml.writeTo(outFile);
+        alFileListXML.addAll(generated.files);
+        iOutputEntityCount++;
+    }
+
+    /**
+     * Retrieve any content files that the XML of the provided entity refers to (for example its data file), which are
+     * part of its output as far as packaging is concerned. By default there are none.
+     * @param oEntity the entity
+     * @return {@code List<File>}
+     */
+    protected List<File> getContentFiles(BasicEntity oEntity) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Retrieve the number of entities written by the last output of this handler (excluding any left out of a delta
+     * package because they are unchanged).
+     * @return int
+     */
+    public int getOutputEntityCount() {
+        return iOutputEntityCount;
+    }
+
+    /**
+     * Retrieve the files (generated or content files) of the entities left out of the last output because they are
+     * unchanged since the baseline of a delta package, and that no entity written into it also uses.
+     * @return {@code List<String>}
+     */
+    public List<String> getUnchangedFiles() {
+        List<String> alUnchanged = new ArrayList<>(hsUnchangedFiles);
+        alUnchanged.removeAll(hsChangedFiles);
+        return alUnchanged;
+    }
+
+    /**
+     * The XML generated for a single entity, any files of its own that it generated, and any content files it refers
+     * to.
+     */
+    private static class GeneratedEntityXML {
+        private final String name;
+        private final XMLWriter xml = new XMLWriter();
+        private final List<String> files = new ArrayList<>(1);
+        private final List<File> contentFiles = new ArrayList<>(0);
+        private Map<String, MessageDigest> fileDigests; // digests of the files of its own, by path (only when signing)
+        private String signature;
+        private GeneratedEntityXML(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Create a new (buffered, UTF-8) writer for the file at the specified location, creating its directory location if
+     * needed. The writer must be closed once everything has been written, to flush it out into the file.
+     * @param sFilePath the path to the file into which to create the writer
+     * @return XMLWriter
+     * @throws IOException if the file cannot be created
+     */
+    public static XMLWriter getNewWriter(String sFilePath) throws IOException {
+        String sDirectoryPath = sFilePath.substring(0, sFilePath.lastIndexOf(File.separator));
+        File fPath = new File(sDirectoryPath);
+        fPath.mkdirs();
+        OutputStream out = new FileOutputStream(sFilePath, false);
+        Map<String, MessageDigest> hmDigests = tlFileDigests.get();
+        if (hmDigests != null) {
+            MessageDigest digest = BuildManifest.newDigest();
+            hmDigests.put(sFilePath, digest);
+            out = new DigestOutputStream(out, digest);
+        }
+        return new XMLWriter(out);
+    }
+
+    /**
+     * Output the environment file for the specified parameters (replacing the list of generated XML files with those
+     * generated by this output, and the entities of this type recorded in the entity manifest of the build).
      * @param sCompanyCode the company code for the environment
      * @param sClassName the type of entities to output
      * @param sOutputFilePath the location of the file into which to output the entities
      * @param sOutputType the type of output ({@literal XML} or {@literal CSV})
+     * @return boolean - false if the file (or any file generated for one of its entities) could not be written
      */
-    public void outputEnvFile(String sCompanyCode, String sClassName, String sOutputFilePath, String sOutputType) {
+    public boolean outputEnvFile(String sCompanyCode, String sClassName, String sOutputFilePath, String sOutputType) {
 
-        try {
-            Writer writer = getNewWriter(sOutputFilePath);
+        EntityCache cache = context.getEntityCache();
+        Set<String> hsPreviousTypesRead = null;
+        if (context.isIncremental()) {
+            hsTypesRead = ConcurrentHashMap.newKeySet();
+            hsPreviousTypesRead = cache.recordTypesRead(hsTypesRead);
+        }
+        bOutputting = true;
+        alFileListXML.clear();
+        hsOutputInputFiles.clear();
+        sOutputEntityType = sClassName.substring(sClassName.lastIndexOf('.') + 1);
+        context.getEntityManifest().clear(sOutputEntityType);
+        iOutputEntityCount = 0;
+        hsUnchangedFiles.clear();
+        hsChangedFiles.clear();
+
+        try (Writer writer = getNewWriter(sOutputFilePath)) {
             EnvironmentHandler.logger.fine("Outputting " + sOutputType + " to : " + sOutputFilePath);
             outputEntities(sCompanyCode, sClassName, writer, sOutputFilePath, sOutputType);
-            writer.flush();
             addGeneratedFileXML(sOutputFilePath);
+            return true;
         } catch (FileNotFoundException errNoFile) {
             EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
+            return false;
         } catch (IOException errIO) {
             EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+            return false;
+        } finally {
+            bOutputting = false;
+            if (hsTypesRead != null)
+                cache.recordTypesRead(hsPreviousTypesRead);
         }
 
     }
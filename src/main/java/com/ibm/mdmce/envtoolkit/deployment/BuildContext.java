@@ -0,0 +1,501 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import com.ibm.mdmce.envtoolkit.deployment.model.BasicEntity;
+import com.ibm.mdmce.envtoolkit.deployment.model.CompanyAttribute;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.zip.Deflater;
+
+/**
+ * All of the state of a single build of an environment: its entity cache, locales, entity handlers, encoding, string
+ * pool and the definitions (columns and their binding to the CSV headers) of each type of entity. Each
+ * {@link EnvironmentHandler} has its own context, so several environments can be built concurrently (on separate
+ * threads) within the same JVM.
+ * <br>
+ * While a build is running, its context is attached to the thread running it (see {@link #attach(BuildContext)}), and
+ * the static helpers of the {@link EnvironmentHandler}, {@link BasicEntityHandler} and the model classes (for example
+ * the {@code getInstance()} definitions of each entity) all resolve to the context attached to the current thread.
+ * Any work for the build that is handed to another thread must attach the context on that thread as well. If no
+ * context is attached, a single shared default context is used.
+ */
+public class BuildContext {
+
+    private static final BuildContext DEFAULT = new BuildContext(null);
+    private static final ThreadLocal<BuildContext> CURRENT = new ThreadLocal<>();
+
+    private final String encoding;
+    private final EntityCache entityCache = new EntityCache();
+    private final List<String> alAllLocales = new ArrayList<>();
+    private final Set<String> hsAllLocales = new HashSet<>();
+    private final Map<String, BasicEntityHandler> hmEntityHandlers = new ConcurrentHashMap<>();
+    private final StringPool stringPool = new StringPool();
+    private final Map<Class<?>, BasicEntity> hmDefinitions = new HashMap<>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean incremental = false;
+    private boolean exitOnFailure = true;
+    private Level logLevel = null;
+    private Set<String> selectedTypes = null;
+    private final EntityManifest entityManifest = new EntityManifest();
+    private EntityManifest deltaBaseline = null;
+    private boolean recordEntities = false;
+    private final Map<String, BuildManifest.FileState> hmContentFiles = new ConcurrentHashMap<>();
+    private ImportWavePlanner importWavePlanner = null;
+    private boolean useInputSnapshot = false;
+    private InputSnapshot inputSnapshot = null;
+    private boolean linkContent = false;
+    private ContentStager contentStager = null;
+    private String packagePath = null;
+    private int packageThreads = 0;
+    private int packageLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Construct a new (empty) context for a build.
+     * @param sEncoding the encoding used within the input files of the build
+     */
+    public BuildContext(String sEncoding) {
+        this.encoding = sEncoding;
+    }
+
+    /**
+     * Retrieve the context attached to the current thread (or the default context, if none is attached).
+     * @return BuildContext
+     */
+    public static BuildContext current() {
+        BuildContext context = CURRENT.get();
+        return (context == null) ? DEFAULT : context;
+    }
+
+    /**
+     * Attach the provided context to the current thread.
+     * @param context the context to attach (or null to detach any context)
+     * @return BuildContext - the context that was previously attached (possibly null), to re-attach once done
+     */
+    public static BuildContext attach(BuildContext context) {
+        BuildContext previous = CURRENT.get();
+        if (context == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(context);
+        return previous;
+    }
+
+    /**
+     * Retrieve the encoding used within the input files of the build.
+     * @return String
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Retrieve the maximum number of threads the build may use to do its work concurrently.
+     * @return int
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the maximum number of threads the build may use to do its work concurrently (by default, the number of
+     * available processors).
+     * @param iThreads the maximum number of threads (1 to do all of the work on the thread running the build)
+     */
+    public void setThreads(int iThreads) {
+        this.threads = Math.max(1, iThreads);
+    }
+
+    /**
+     * Indicates whether the build only regenerates the outputs whose inputs have changed since the previous build into
+     * the same output directory (see {@link IncrementalBuild}).
+     * @return boolean
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Set whether the build only regenerates the outputs whose inputs have changed since the previous build into the
+     * same output directory (by default, all outputs are regenerated). This must be set before the environment is
+     * read in, so that what each entity handler reads and writes is recorded as it is loaded.
+     * @param bIncremental true to build incrementally
+     */
+    public void setIncremental(boolean bIncremental) {
+        this.incremental = bIncremental;
+    }
+
+    /**
+     * Retrieve the record of every entity output by the build (see {@link EntityManifest}).
+     * @return EntityManifest
+     */
+    public EntityManifest getEntityManifest() {
+        return entityManifest;
+    }
+
+    /**
+     * Retrieve the entities of the previous build against which this build is packaged as a delta.
+     * @return EntityManifest - or null if this build outputs every entity
+     */
+    public EntityManifest getDeltaBaseline() {
+        return deltaBaseline;
+    }
+
+    /**
+     * Package this build as a delta against a previous build (by default every entity is output): only entities that
+     * are new or whose output differs from the provided previous build are output, and only types of entity with such
+     * entities are listed in the ImportEnvControl.xml.
+     * @param baseline the entities output by the previous build (or null to output every entity)
+     */
+    public void setDeltaBaseline(EntityManifest baseline) {
+        this.deltaBaseline = baseline;
+    }
+
+    /**
+     * Indicates whether the entity manifest of the build is kept in its output directory, so that a later build can be
+     * packaged as a delta against it, even if this build is neither incremental nor a delta.
+     * @return boolean
+     */
+    public boolean isRecordEntities() {
+        return recordEntities;
+    }
+
+    /**
+     * Set whether to keep the entity manifest of the build in its output directory (by default only incremental and
+     * delta builds keep one, as they need it themselves).
+     * @param bRecordEntities true to keep the entity manifest
+     */
+    public void setRecordEntities(boolean bRecordEntities) {
+        this.recordEntities = bRecordEntities;
+    }
+
+    /**
+     * Indicates whether each entity output is signed, for its entity manifest: only when the manifest is to be kept,
+     * the build is incremental (which carries the signatures of the entities it does not regenerate over from the
+     * previous build), or the build is a delta (which compares the signatures with those of its baseline).
+     * @return boolean
+     */
+    public boolean isSigningEntities() {
+        return recordEntities || incremental || deltaBaseline != null;
+    }
+
+    /**
+     * Calculate the hash of the contents of a content file referred to by the entities output (see
+     * {@link EntityManifest}), hashing each file only once per build however many entities refer to it (unless it
+     * changes).
+     * @param file the content file
+     * @return String - or an empty string if there is no such file
+     * @throws IOException on any error reading the file
+     */
+    public String hashContentFile(File file) throws IOException {
+        BuildManifest.FileState previous = hmContentFiles.get(file.getPath());
+        BuildManifest.FileState state = BuildManifest.FileState.ofInput(file, previous);
+        if (state != previous)
+            hmContentFiles.put(file.getPath(), state);
+        return state.getHash();
+    }
+
+    /**
+     * Indicates whether the parsed input files are kept in a snapshot in the output directory, from which the next
+     * build into the same directory reads any of them that have not changed (see {@link InputSnapshot}).
+     * @return boolean
+     */
+    public boolean isUseInputSnapshot() {
+        return useInputSnapshot;
+    }
+
+    /**
+     * Set whether to keep the parsed input files in a snapshot in the output directory, and read any that have not
+     * changed from the snapshot left by the previous build, rather than always parsing every input file (by default).
+     * A snapshot is only worth keeping when the output directory is kept from one build to the next, as it records
+     * every line of every input file.
+     * @param bUseInputSnapshot true to keep a snapshot of the parsed input files
+     */
+    public void setUseInputSnapshot(boolean bUseInputSnapshot) {
+        this.useInputSnapshot = bUseInputSnapshot;
+    }
+
+    /**
+     * Retrieve the snapshot of parsed input files being used while the environment is read in.
+     * @return InputSnapshot - or null if the input files are not being read through a snapshot
+     */
+    public InputSnapshot getInputSnapshot() {
+        return inputSnapshot;
+    }
+
+    /**
+     * Set the snapshot of parsed input files to use while the environment is read in.
+     * @param snapshot the snapshot (or null to parse every input file)
+     */
+    public void setInputSnapshot(InputSnapshot snapshot) {
+        this.inputSnapshot = snapshot;
+    }
+
+    /**
+     * Indicates whether the data files of the content handlers are hard-linked into the output directory (wherever
+     * possible) rather than copied (see {@link ContentStager}).
+     * @return boolean
+     */
+    public boolean isLinkContent() {
+        return linkContent;
+    }
+
+    /**
+     * Set whether to hard-link the data files of the content handlers into the output directory (wherever possible)
+     * rather than copy them (by default). A linked file shares its content with the input file.
+     * @param bLinkContent true to hard-link the data files
+     */
+    public void setLinkContent(boolean bLinkContent) {
+        this.linkContent = bLinkContent;
+    }
+
+    /**
+     * Retrieve the stager of the data files of the content handlers being used while the environment is read in.
+     * @return ContentStager - or null if the environment is not being read in
+     */
+    public ContentStager getContentStager() {
+        return contentStager;
+    }
+
+    /**
+     * Set the stager of the data files of the content handlers to use while the environment is read in.
+     * @param stager the stager (or null once the environment has been read in)
+     */
+    public void setContentStager(ContentStager stager) {
+        this.contentStager = stager;
+    }
+
+    /**
+     * Retrieve the location of the ZIP file into which the build is packaged (see {@link DeploymentPackage}).
+     * @return String - or null if the build is not packaged
+     */
+    public String getPackagePath() {
+        return packagePath;
+    }
+
+    /**
+     * Set the location of the ZIP file into which to package the build, once its files have been output (by default
+     * the build is not packaged). If the location is an existing directory, the ZIP is written into it with its
+     * default name (see {@link DeploymentPackage#getDefaultName(String, String, Date)}).
+     * @param sPackagePath the location of the ZIP file (or null to not package the build)
+     */
+    public void setPackagePath(String sPackagePath) {
+        this.packagePath = sPackagePath;
+    }
+
+    /**
+     * Retrieve the number of threads on which to compress the package of the build (see {@link ParallelZipWriter}).
+     * @return int - the number of threads of the build itself (see {@link #getThreads()}), unless set otherwise
+     */
+    public int getPackageThreads() {
+        return (packageThreads > 0) ? packageThreads : threads;
+    }
+
+    /**
+     * Set the number of threads on which to compress the package of the build.
+     * @param iThreads the number of threads (or 0 to use the number of threads of the build itself)
+     */
+    public void setPackageThreads(int iThreads) {
+        this.packageThreads = Math.max(0, iThreads);
+    }
+
+    /**
+     * Retrieve the compression level of the package of the build.
+     * @return int - 0-9, or {@link Deflater#DEFAULT_COMPRESSION} (by default)
+     */
+    public int getPackageLevel() {
+        return packageLevel;
+    }
+
+    /**
+     * Set the compression level of the package of the build, from 0 (no compression) to 9 (best compression).
+     * @param iLevel the compression level (or {@link Deflater#DEFAULT_COMPRESSION})
+     * @throws IllegalArgumentException if the level is not a valid compression level
+     */
+    public void setPackageLevel(int iLevel) {
+        this.packageLevel = ParallelZipWriter.checkLevel(iLevel);
+    }
+
+    /**
+     * Retrieve the planner of the import waves of the build (see {@link #setPlanImportWaves(boolean)}).
+     * @return ImportWavePlanner - or null if no import waves are planned
+     */
+    public ImportWavePlanner getImportWavePlanner() {
+        return importWavePlanner;
+    }
+
+    /**
+     * Set whether to plan the import of the build as waves of types of entity that can be imported concurrently (by
+     * default only the sequential ImportEnvControl.xml is output). This must be set before the environment is
+     * validated, so that the references of each entity are recorded as it is validated.
+     * @param bPlanImportWaves true to plan import waves
+     */
+    public void setPlanImportWaves(boolean bPlanImportWaves) {
+        this.importWavePlanner = bPlanImportWaves ? new ImportWavePlanner() : null;
+    }
+
+    /**
+     * Retrieve the types of entity selected to be built (see {@link #setSelectedTypes(Collection)}).
+     * @return {@code Set<String>} - or null if every type of entity is built
+     */
+    public Set<String> getSelectedTypes() {
+        return selectedTypes;
+    }
+
+    /**
+     * Select the types of entity to build (by default every type). Only the handlers of those types, and of the types
+     * they depend on or refer to, are loaded, and only the selected types are validated and output.
+     * @param hsTypes the types of entity to build (for example Spec), or null to build every type
+     */
+    public void setSelectedTypes(Collection<String> hsTypes) {
+        this.selectedTypes = (hsTypes == null) ? null : Collections.unmodifiableSet(new LinkedHashSet<>(hsTypes));
+    }
+
+    /**
+     * Indicates whether a required entity that cannot be found outside of validation ends the JVM (as it always has
+     * from the command line), rather than failing only this build.
+     * @return boolean
+     */
+    public boolean isExitOnFailure() {
+        return exitOnFailure;
+    }
+
+    /**
+     * Set whether a required entity that cannot be found outside of validation ends the JVM (by default), or instead
+     * throws an {@link IllegalStateException} to the caller of the build (for builds run within a longer-lived JVM).
+     * @param bExitOnFailure false to throw rather than exit
+     */
+    public void setExitOnFailure(boolean bExitOnFailure) {
+        this.exitOnFailure = bExitOnFailure;
+    }
+
+    /**
+     * Set the level of the messages to log for this build (by default, whatever the logger itself is set to log). Only
+     * applies once {@link #installLogFilter()} has been called.
+     * @param level the lowest level of message to log (or null for no restriction)
+     */
+    public void setLogLevel(Level level) {
+        this.logLevel = level;
+    }
+
+    /**
+     * Indicates whether a message of the provided level should be logged for this build.
+     * @param level the level of the message
+     * @return boolean
+     */
+    public boolean isLoggable(Level level) {
+        return logLevel == null || level.intValue() >= logLevel.intValue();
+    }
+
+    /**
+     * Filter the messages logged by {@link EnvironmentHandler#logger} by the log level of the build attached to the
+     * thread logging them, so that builds running concurrently in the same JVM can each log at their own level.
+     */
+    public static void installLogFilter() {
+        EnvironmentHandler.logger.setFilter(record -> current().isLoggable(record.getLevel()));
+    }
+
+    /**
+     * Retrieve the cache of all entities read by the build.
+     * @return EntityCache
+     */
+    public EntityCache getEntityCache() {
+        return entityCache;
+    }
+
+    /**
+     * Retrieve the pool through which values are canonicalized while loading the CSV files of the build.
+     * @return StringPool
+     */
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Add the provided entity into the cache, under the specified type, registering it as a locale if it is a
+     * company attribute for a locale.
+     * @param sName the key by which to refer to the entity
+     * @param sEntityType the type (class name) of the entity
+     * @param oEntity the entity to cache
+     */
+    public void addEntity(String sName, String sEntityType, BasicEntity oEntity) {
+        entityCache.put(sEntityType, sName, oEntity);
+        if (sEntityType.equals(CompanyAttribute.class.getName())) {
+            if (sName.indexOf("_") > 0 && hsAllLocales.add(sName))
+                alAllLocales.add(sName);
+        }
+    }
+
+    /**
+     * Remove all of the entities cached under the specified type (for example to read them in again), including the
+     * locales if they are company attributes.
+     * @param sEntityType the type (class name) of the entities
+     */
+    public void removeEntities(String sEntityType) {
+        entityCache.removeAll(sEntityType);
+        if (sEntityType.equals(CompanyAttribute.class.getName())) {
+            alAllLocales.clear();
+            hsAllLocales.clear();
+        }
+    }
+
+    /**
+     * Retrieve the list of locales defined for the environment (complete once the company attributes have been loaded).
+     * @return {@code List<String>}
+     */
+    public List<String> getAllLocales() {
+        return alAllLocales;
+    }
+
+    /**
+     * Register the handler for a given type of entity.
+     * @param sHandlerName type of entity
+     * @param handler the handler
+     */
+    public void putHandler(String sHandlerName, BasicEntityHandler handler) {
+        hmEntityHandlers.put(sHandlerName, handler);
+    }
+
+    /**
+     * Retrieve the handler for a given type of entity.
+     * @param sHandlerName type of entity
+     * @return BasicEntityHandler
+     */
+    public BasicEntityHandler getHandler(String sHandlerName) {
+        return hmEntityHandlers.get(sHandlerName);
+    }
+
+    /**
+     * Retrieve the definition (columns and type information) of the specified type of entity for this build,
+     * creating it the first time it is requested.
+     * @param type the class of entity
+     * @param factory to create the definition
+     * @param <T> the type of entity
+     * @return T
+     */
+    public synchronized <T extends BasicEntity> T getDefinition(Class<T> type, Supplier<T> factory) {
+        BasicEntity definition = hmDefinitions.get(type);
+        if (definition == null) {
+            definition = factory.get();
+            hmDefinitions.put(type, definition);
+        }
+        return type.cast(definition);
+    }
+
+    /**
+     * Remove the definition of the specified type of entity, so that it is created again (for example for the current
+     * locales) the next time it is requested.
+     * @param type the class of entity
+     */
+    public synchronized void removeDefinition(Class<?> type) {
+        hmDefinitions.remove(type);
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Record of a build, kept in its output directory so that the next build into the same directory can tell what has
+ * changed (see {@link IncrementalBuild}). For each entity handler it records:
+ * <ul>
+ *   <li>the files it read while loading (CSV, documentation and data files) and while outputting (for example
+ *   parameter files), each with its size, modification time and content hash,</li>
+ *   <li>the types of entity it added to the cache while loading and read from the cache while outputting, and</li>
+ *   <li>the files it output, in the order they were generated, each with its size and modification time.</li>
+ * </ul>
+ * The manifest is a tab-separated text file, one fact per line, with the file path last on each line.
+ */
+public class BuildManifest {
+
+    public static final String FILENAME = ".envtoolkit-manifest";
+
+    private static final String FORMAT_VERSION = "1";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String fingerprint;
+    private final Map<String, HandlerState> hmHandlers = new LinkedHashMap<>();
+
+    /**
+     * Construct a new (empty) manifest.
+     * @param sFingerprint hash of the settings of the build (anything that affects all of its outputs)
+     */
+    public BuildManifest(String sFingerprint) {
+        this.fingerprint = sFingerprint;
+    }
+
+    /**
+     * Retrieve the hash of the settings of the build.
+     * @return String
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Retrieve the recorded state of the specified handler.
+     * @param sHandlerName type of entity handled by the handler
+     * @return HandlerState - or null if the handler was not recorded
+     */
+    public HandlerState getHandler(String sHandlerName) {
+        return hmHandlers.get(sHandlerName);
+    }
+
+    /**
+     * Retrieve the recorded state of the specified handler, adding it if it was not yet recorded.
+     * @param sHandlerName type of entity handled by the handler
+     * @return HandlerState
+     */
+    public HandlerState addHandler(String sHandlerName) {
+        return hmHandlers.computeIfAbsent(sHandlerName, k -> new HandlerState());
+    }
+
+    /**
+     * Retrieve the names of all of the handlers recorded.
+     * @return {@code Set<String>}
+     */
+    public Set<String> getHandlerNames() {
+        return Collections.unmodifiableSet(hmHandlers.keySet());
+    }
+
+    /**
+     * Read the manifest left in the specified directory by a previous build.
+     * @param sDirectory the output directory of the build
+     * @return BuildManifest - or null if there is no (readable) manifest
+     */
+    public static BuildManifest read(String sDirectory) {
+
+        File fManifest = new File(sDirectory, FILENAME);
+        if (!fManifest.isFile())
+            return null;
+
+        try (BufferedReader reader = Files.newBufferedReader(fManifest.toPath(), StandardCharsets.UTF_8)) {
+
+            String sLine = reader.readLine();
+            if (sLine == null || !sLine.equals("version\t" + FORMAT_VERSION))
+                return null;
+            sLine = reader.readLine();
+            if (sLine == null || !sLine.startsWith("fingerprint\t"))
+                return null;
+            BuildManifest manifest = new BuildManifest(sLine.substring(sLine.indexOf('\t') + 1));
+
+            while ((sLine = reader.readLine()) != null) {
+                String[] aTokens = sLine.split("\t", -1);
+                HandlerState state = manifest.addHandler(aTokens[1]);
+                switch (aTokens[0]) {
+                    case "handler":
+                        break;
+                    case "writes":
+                        state.hsTypesWritten.addAll(splitTypes(aTokens[2]));
+                        break;
+                    case "reads":
+                        state.hsTypesRead.addAll(splitTypes(aTokens[2]));
+                        break;
+                    case "input":
+                        state.hmInputs.put(aTokens[5], new FileState(Long.parseLong(aTokens[2]), Long.parseLong(aTokens[3]), aTokens[4]));
+                        break;
+                    case "output-input":
+                        state.hmOutputInputs.put(aTokens[5], new FileState(Long.parseLong(aTokens[2]), Long.parseLong(aTokens[3]), aTokens[4]));
+                        break;
+                    case "output":
+                        state.hmOutputs.put(aTokens[4], new FileState(Long.parseLong(aTokens[2]), Long.parseLong(aTokens[3]), ""));
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            return manifest;
+
+        } catch (IOException | RuntimeException err) {
+            EnvironmentHandler.logger.warning(". . . WARNING: Unable to read build manifest " + fManifest.getPath() + " - " + err);
+            return null;
+        }
+
+    }
+
+    /**
+     * Write the manifest into the specified directory, replacing any previous manifest once it has been completely
+     * written.
+     * @param sDirectory the output directory of the build
+     * @throws IOException on any error writing
+     */
+    public void write(String sDirectory) throws IOException {
+
+        File fManifest = new File(sDirectory, FILENAME);
+        File fTemp = new File(sDirectory, FILENAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(fTemp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("version\t" + FORMAT_VERSION + "\n");
+            writer.write("fingerprint\t" + fingerprint + "\n");
+            for (Map.Entry<String, HandlerState> entry : hmHandlers.entrySet()) {
+                String sName = entry.getKey();
+                HandlerState state = entry.getValue();
+                writer.write("handler\t" + sName + "\n");
+                writer.write("writes\t" + sName + "\t" + String.join(",", new TreeSet<>(state.hsTypesWritten)) + "\n");
+                writer.write("reads\t" + sName + "\t" + String.join(",", new TreeSet<>(state.hsTypesRead)) + "\n");
+                for (Map.Entry<String, FileState> input : new TreeMap<>(state.hmInputs).entrySet()) {
+                    FileState file = input.getValue();
+                    writer.write("input\t" + sName + "\t" + file.size + "\t" + file.modified + "\t" + file.hash + "\t" + input.getKey() + "\n");
+                }
+                for (Map.Entry<String, FileState> input : new TreeMap<>(state.hmOutputInputs).entrySet()) {
+                    FileState file = input.getValue();
+                    writer.write("output-input\t" + sName + "\t" + file.size + "\t" + file.modified + "\t" + file.hash + "\t" + input.getKey() + "\n");
+                }
+                for (Map.Entry<String, FileState> output : state.hmOutputs.entrySet()) {
+                    FileState file = output.getValue();
+                    writer.write("output\t" + sName + "\t" + file.size + "\t" + file.modified + "\t" + output.getKey() + "\n");
+                }
+            }
+        }
+        Files.move(fTemp.toPath(), fManifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    private static List<String> splitTypes(String sTypes) {
+        return sTypes.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(sTypes.split(","));
+    }
+
+    /**
+     * Calculate the SHA-256 hash of the provided values.
+     * @param aValues the values to hash
+     * @return String - the hash, in hexadecimal
+     */
+    public static String hash(String... aValues) {
+        MessageDigest digest = newDigest();
+        for (String sValue : aValues) {
+            digest.update((sValue == null ? "" : sValue).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Calculate the SHA-256 hash of the contents of the provided file.
+     * @param file the file to hash
+     * @return String - the hash, in hexadecimal
+     * @throws IOException on any error reading the file
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] aBuffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(file)) {
+            int iRead;
+            while ((iRead = in.read(aBuffer)) != -1) {
+                digest.update(aBuffer, 0, iRead);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException errAlgorithm) {
+            throw new IllegalStateException("SHA-256 is not available", errAlgorithm);
+        }
+    }
+
+    static String toHex(byte[] aBytes) {
+        StringBuilder sb = new StringBuilder(aBytes.length * 2);
+        for (byte b : aBytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Everything recorded for a single entity handler.
+     */
+    public static class HandlerState {
+
+        private final Map<String, FileState> hmInputs = new HashMap<>();
+        private final Map<String, FileState> hmOutputInputs = new HashMap<>();
+        private final Set<String> hsTypesWritten = new HashSet<>();
+        private final Set<String> hsTypesRead = new HashSet<>();
+        private final Map<String, FileState> hmOutputs = new LinkedHashMap<>();
+
+        /**
+         * Retrieve the files read while loading the handler, by path.
+         * @return {@code Map<String, FileState>}
+         */
+        public Map<String, FileState> getInputs() {
+            return hmInputs;
+        }
+
+        /**
+         * Retrieve the files read while outputting the entities of the handler, by path.
+         * @return {@code Map<String, FileState>}
+         */
+        public Map<String, FileState> getOutputInputs() {
+            return hmOutputInputs;
+        }
+
+        /**
+         * Retrieve the types (class names) of entity added to the cache while loading the handler.
+         * @return {@code Set<String>}
+         */
+        public Set<String> getTypesWritten() {
+            return hsTypesWritten;
+        }
+
+        /**
+         * Retrieve the types (class names) of entity read from the cache while outputting the entities of the handler.
+         * @return {@code Set<String>}
+         */
+        public Set<String> getTypesRead() {
+            return hsTypesRead;
+        }
+
+        /**
+         * Retrieve the files output by the handler, by path, in the order they were generated (empty if the handler
+         * was not output).
+         * @return {@code Map<String, FileState>}
+         */
+        public Map<String, FileState> getOutputs() {
+            return hmOutputs;
+        }
+
+    }
+
+    /**
+     * The state of a single file: its size, modification time and (for input files) the hash of its contents.
+     */
+    public static class FileState {
+
+        private static final FileState MISSING = new FileState(-1, 0, "");
+
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+        private FileState(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+
+        /**
+         * Retrieve the current state of the provided input file, including the hash of its contents. If the file has
+         * the same size and modification time as its previously recorded state, the hash previously recorded is
+         * reused rather than reading the file again.
+         * @param file the file
+         * @param previous the previously recorded state of the file (or null if none)
+         * @return FileState
+         * @throws IOException on any error reading the file
+         */
+        public static FileState ofInput(File file, FileState previous) throws IOException {
+            if (!file.isFile())
+                return MISSING;
+            long lSize = file.length();
+            long lModified = file.lastModified();
+            if (previous != null && previous.size == lSize && previous.modified == lModified && !previous.hash.isEmpty())
+                return previous;
+            return new FileState(lSize, lModified, hash(file));
+        }
+
+        /**
+         * Retrieve the current state of the provided output file (its size and modification time only).
+         * @param file the file
+         * @return FileState
+         */
+        public static FileState ofOutput(File file) {
+            if (!file.isFile())
+                return MISSING;
+            return new FileState(file.length(), file.lastModified(), "");
+        }
+
+        /**
+         * Retrieve the hash of the contents of the file (empty for an output file, or a file that does not exist).
+         * @return String
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Indicates whether the file exists.
+         * @return boolean
+         */
+        public boolean exists() {
+            return size >= 0;
+        }
+
+        /**
+         * Indicates whether the file has the same contents as when the provided state was recorded: for input files the
+         * hash of their contents is compared, for output files their size and modification time.
+         * @param other the state to compare with
+         * @return boolean
+         */
+        public boolean sameAs(FileState other) {
+            if (other == null)
+                return false;
+            if (!hash.isEmpty() || !other.hash.isEmpty())
+                return hash.equals(other.hash) && size == other.size;
+            return size == other.size && modified == other.modified;
+        }
+
+    }
+
+}
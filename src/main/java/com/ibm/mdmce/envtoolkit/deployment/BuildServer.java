@@ -0,0 +1,490 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.zip.Deflater;
+
+/**
+ * Runs builds on request, within a single long-running JVM, so that each build after the first runs on code that has
+ * already been loaded and compiled rather than starting from a cold JVM. The server only listens on the loopback
+ * interface, and accepts the following requests:
+ * <ul>
+ *   <li>{@code POST /build} - run a build, described by a JSON object with the members {@code companyCode},
+ *   {@code inputPath} and {@code outputPath} (required), and {@code version}, {@code documentationPath},
+ *   {@code encoding}, {@code logLevel}, {@code threads}, {@code incremental}, {@code only}, {@code delta},
+ *   {@code waves}, {@code entityManifest}, {@code snapshot}, {@code linkContent}, {@code package}, {@code packageThreads} and
+ *   {@code packageLevel} (optional, with the same defaults as the command line, {@code only} being an array of the types of entity to build, {@code delta}
+ *   the output directory of a previous build against which to package a delta, {@code waves} whether to plan import
+ *   waves, {@code entityManifest} whether to keep the entity manifest of a build that is neither incremental nor a
+ *   delta, {@code snapshot} whether to keep a snapshot of the parsed input files and read unchanged files from it,
+ *   {@code linkContent} whether to hard-link the data files of the content handlers rather than copy them,
+ *   {@code package} the ZIP file into which to package the build, and {@code packageThreads} and
+ *   {@code packageLevel} the number of threads on which to compress it and its compression level). The response gives the outcome of the build, how long each of its
+ *   phases took, every failure found while validating it and any import waves planned, as JSON.</li>
+ *   <li>{@code GET /status} - the number of builds run and currently running.</li>
+ *   <li>{@code POST /shutdown} - stop the server once any running builds have completed.</li>
+ * </ul>
+ * Requests must be addressed to {@code localhost} (or the loopback address) and must not come from a web page of
+ * another origin, and {@code POST} requests must have a {@code Content-Type} of {@code application/json}, so that a
+ * web page open in a browser on the same machine cannot run builds or stop the server.
+ * <br>
+ * Builds are independent of each other (each has its own {@link BuildContext}), so several can run at the same time,
+ * up to a limit, as long as they output into different directories. A required entity that cannot be found fails only
+ * the build that needed it rather than ending the server (see {@link BuildContext#setExitOnFailure(boolean)}), and
+ * each build logs at its own level (see {@link BuildContext#installLogFilter()}).
+ */
+public class BuildServer {
+
+    public static final int DEFAULT_PORT = 8760;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_FORBIDDEN = 403;
+    private static final int HTTP_BAD_METHOD = 405;
+    private static final int HTTP_CONFLICT = 409;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int HTTP_UNSUPPORTED_TYPE = 415;
+
+    private static final Set<String> LOOPBACK_HOSTS = new HashSet<>(Arrays.asList("localhost", "127.0.0.1", "[::1]"));
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final int iConcurrentBuilds;
+    private final Semaphore semBuilds;
+    private final Set<String> hsActiveOutputPaths = new HashSet<>();
+    private final AtomicInteger iBuildCount = new AtomicInteger();
+    private final AtomicInteger iRunningCount = new AtomicInteger();
+    private final CountDownLatch latchStopped = new CountDownLatch(1);
+    private volatile boolean bStopping = false;
+
+    /**
+     * Construct a new build server, listening on the loopback interface.
+     * @param iPort the port on which to listen (0 to choose any free port)
+     * @param iConcurrentBuilds the maximum number of builds to run at the same time (any further requests wait)
+     * @throws IOException on any error opening the port
+     */
+    public BuildServer(int iPort, int iConcurrentBuilds) throws IOException {
+        this.iConcurrentBuilds = Math.max(1, iConcurrentBuilds);
+        this.semBuilds = new Semaphore(this.iConcurrentBuilds, true);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), iPort), 0);
+        server.setExecutor(executor);
+        server.createContext("/build", this::handleBuild);
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/shutdown", this::handleShutdown);
+    }
+
+    /**
+     * Start accepting requests.
+     */
+    public void start() {
+        server.start();
+        EnvironmentHandler.logger.info("Build server listening on http://" + server.getAddress().getHostString() + ":" + getPort() + "/build");
+    }
+
+    /**
+     * Stop accepting requests, waiting for any running builds to complete.
+     */
+    public void stop() {
+        bStopping = true;
+        semBuilds.acquireUninterruptibly(iConcurrentBuilds);
+        server.stop(0);
+        semBuilds.release(iConcurrentBuilds);
+        executor.shutdown();
+        EnvironmentHandler.logger.info("Build server stopped after " + iBuildCount.get() + " build(s).");
+        latchStopped.countDown();
+    }
+
+    /**
+     * Wait until the server has been stopped (by a shutdown request).
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitStop() throws InterruptedException {
+        latchStopped.await();
+    }
+
+    /**
+     * Retrieve the port on which the server is listening.
+     * @return int
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleBuild(HttpExchange exchange) throws IOException {
+
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, HTTP_BAD_METHOD, error("REJECTED", "Builds must be requested with POST"));
+            return;
+        }
+        if (!checkRequester(exchange, true))
+            return;
+
+        if (bStopping) {
+            respond(exchange, HTTP_UNAVAILABLE, error("REJECTED", "The build server is stopping"));
+            return;
+        }
+
+        BuildRequest request;
+        try {
+            request = new BuildRequest(Json.parseObject(readBody(exchange)));
+        } catch (IllegalArgumentException errRequest) {
+            respond(exchange, HTTP_BAD_REQUEST, error("REJECTED", "Invalid build request - " + errRequest.getMessage()));
+            return;
+        }
+
+        synchronized (hsActiveOutputPaths) {
+            if (!hsActiveOutputPaths.add(request.getOutputKey())) {
+                respond(exchange, HTTP_CONFLICT, error("REJECTED", "A build into " + request.outputPath + " is already running"));
+                return;
+            }
+        }
+        try {
+            semBuilds.acquireUninterruptibly();
+            iRunningCount.incrementAndGet();
+            try {
+                build(exchange, request);
+            } finally {
+                iRunningCount.decrementAndGet();
+                semBuilds.release();
+            }
+        } finally {
+            synchronized (hsActiveOutputPaths) {
+                hsActiveOutputPaths.remove(request.getOutputKey());
+            }
+        }
+
+    }
+
+    /**
+     * Run the requested build, and respond with its outcome.
+     * @param exchange the request
+     * @param request the settings of the build
+     * @throws IOException on any error responding to the request
+     */
+    private void build(HttpExchange exchange, BuildRequest request) throws IOException {
+
+        int iBuild = iBuildCount.incrementAndGet();
+        BuildContext context = new BuildContext(request.encoding);
+        context.setThreads(request.threads);
+        context.setIncremental(request.incremental);
+        context.setSelectedTypes(request.selectedTypes);
+        context.setDeltaBaseline(request.deltaBaseline);
+        context.setRecordEntities(request.entityManifest);
+        context.setPlanImportWaves(request.waves);
+        context.setUseInputSnapshot(request.snapshot);
+        context.setLinkContent(request.linkContent);
+        context.setPackagePath(request.packagePath);
+        context.setPackageThreads(request.packageThreads);
+        context.setPackageLevel(request.packageLevel);
+        context.setLogLevel(request.logLevel);
+        context.setExitOnFailure(false);
+
+        long lStart = System.nanoTime();
+        long lLoaded = lStart;
+        long lValidated = lStart;
+        long lOutput = lStart;
+        ValidationResult result = null;
+        String sStatus;
+        String sError = null;
+        BuildContext previous = BuildContext.attach(context);
+        try {
+            EnvironmentHandler.logger.info("Build #" + iBuild + " of " + request.companyCode + " from " + request.inputPath + " into " + request.outputPath);
+            EnvironmentHandler eh = new EnvironmentHandler(request.companyCode, request.version, request.inputPath, request.outputPath, request.documentationPath, context);
+            lLoaded = System.nanoTime();
+            result = eh.validateEnvironmentFiles();
+            lValidated = System.nanoTime();
+            if (result.hasErrors()) {
+                EnvironmentHandler.logger.severe(". . . Not writing output due to failed dependencies (see above).");
+                sStatus = "INVALID";
+            } else if (eh.outputEnvironmentFiles()) {
+                sStatus = "OK";
+            } else {
+                sStatus = "FAILED";
+                sError = "Unable to write the output" + ((context.getPackagePath() != null) ? " or its package" : "") + " (see the log)";
+            }
+            lOutput = System.nanoTime();
+        } catch (RuntimeException err) {
+            EnvironmentHandler.logger.log(Level.SEVERE, "Error: Build #" + iBuild + " failed - " + err, err);
+            sStatus = "FAILED";
+            sError = err.toString();
+        } finally {
+            BuildContext.attach(previous);
+        }
+        long lEnd = System.nanoTime();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"status\":").append(Json.quote(sStatus));
+        sb.append(",\"build\":").append(iBuild);
+        if (sError != null)
+            sb.append(",\"error\":").append(Json.quote(sError));
+        sb.append(",\"timings\":{");
+        sb.append("\"loadMs\":").append(toMillis(lStart, Math.max(lStart, lLoaded)));
+        sb.append(",\"validateMs\":").append(toMillis(lLoaded, Math.max(lLoaded, lValidated)));
+        sb.append(",\"outputMs\":").append(toMillis(lValidated, Math.max(lValidated, lOutput)));
+        sb.append(",\"totalMs\":").append(toMillis(lStart, lEnd));
+        sb.append('}');
+        if (result != null)
+            sb.append(",\"validation\":").append(toJson(result));
+        if ("OK".equals(sStatus) && context.getImportWavePlanner() != null)
+            sb.append(",\"importWaves\":").append(toJson(context.getImportWavePlanner()));
+        sb.append('}');
+        respond(exchange, sError == null ? HTTP_OK : HTTP_SERVER_ERROR, sb.toString());
+
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        if (!checkRequester(exchange, false))
+            return;
+        respond(exchange, HTTP_OK, "{\"status\":\"RUNNING\",\"builds\":" + iBuildCount.get() + ",\"running\":" + iRunningCount.get() + "}");
+    }
+
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, HTTP_BAD_METHOD, error("REJECTED", "Shutdown must be requested with POST"));
+            return;
+        }
+        if (!checkRequester(exchange, true))
+            return;
+        respond(exchange, HTTP_OK, "{\"status\":\"STOPPING\"}");
+        Thread thread = new Thread(this::stop, "BuildServer-shutdown");
+        thread.start();
+    }
+
+    private static String toJson(ImportWavePlanner planner) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"waves\":[");
+        String sSeparator = "";
+        for (List<String> alWave : planner.getWaves()) {
+            sb.append(sSeparator).append(Json.quoteAll(alWave));
+            sSeparator = ",";
+        }
+        sb.append("],\"criticalPath\":").append(Json.quoteAll(planner.getCriticalTypes()));
+        sb.append(",\"longestEntityChain\":[");
+        sSeparator = "";
+        for (String sReference : planner.getCriticalEntities()) {
+            String[] aReference = sReference.split("\t", 2);
+            sb.append(sSeparator).append("{\"type\":").append(Json.quote(aReference[0])).append(",\"entity\":").append(Json.quote(aReference[1])).append('}');
+            sSeparator = ",";
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static String toJson(ValidationResult result) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"entities\":").append(result.getEntityCount());
+        sb.append(",\"errors\":").append(result.getFailures(ValidationResult.Severity.ERROR).size());
+        sb.append(",\"warnings\":").append(result.getFailures(ValidationResult.Severity.WARNING).size());
+        sb.append(",\"valid\":").append(result.isValid());
+        sb.append(",\"failures\":[");
+        String sSeparator = "";
+        for (ValidationResult.Failure failure : result.getFailures()) {
+            sb.append(sSeparator);
+            sb.append("{\"severity\":").append(Json.quote(failure.getSeverity().name()));
+            sb.append(",\"type\":").append(Json.quote(failure.getEntityType()));
+            sb.append(",\"entity\":").append(Json.quote(failure.getEntityName()));
+            sb.append(",\"message\":").append(Json.quote(failure.getMessage().trim()));
+            sb.append('}');
+            sSeparator = ",";
+        }
+        sb.append("],\"invalidEntities\":{");
+        sSeparator = "";
+        for (Map.Entry<String, List<String>> entry : result.getInvalidEntities().entrySet()) {
+            sb.append(sSeparator).append(Json.quote(entry.getKey())).append(':').append(Json.quoteAll(entry.getValue()));
+            sSeparator = ",";
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /**
+     * Check that the request comes from a client on this machine, rather than from a web page open in a browser on it:
+     * the request must be addressed to the loopback interface by name or address (so that a page on another site
+     * cannot reach the server through a DNS name rebound to the loopback address), must not come from a page of
+     * another origin, and (for requests that change anything) must be JSON, which a page of another origin cannot send
+     * without the browser first asking the server for permission. The request is rejected if it fails any of these.
+     * @param exchange the request
+     * @param bPost whether the request changes anything (and so must be JSON)
+     * @return boolean - false if the request has been rejected
+     * @throws IOException on any error responding to the request
+     */
+    private static boolean checkRequester(HttpExchange exchange, boolean bPost) throws IOException {
+        String sHost = exchange.getRequestHeaders().getFirst("Host");
+        if (sHost == null || !isLoopback(sHost)) {
+            respond(exchange, HTTP_FORBIDDEN, error("REJECTED", "Requests must be addressed to localhost"));
+            return false;
+        }
+        String sOrigin = exchange.getRequestHeaders().getFirst("Origin");
+        if (sOrigin != null && !(sOrigin.startsWith("http://") && isLoopback(sOrigin.substring("http://".length())))) {
+            respond(exchange, HTTP_FORBIDDEN, error("REJECTED", "Requests from other origins are not accepted"));
+            return false;
+        }
+        String sContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (bPost && (sContentType == null || !sContentType.split(";", 2)[0].trim().equalsIgnoreCase("application/json"))) {
+            respond(exchange, HTTP_UNSUPPORTED_TYPE, error("REJECTED", "Requests must have a Content-Type of application/json"));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether the provided host (with an optional port) names the loopback interface.
+     */
+    private static boolean isLoopback(String sHostAndPort) {
+        int iPort = sHostAndPort.lastIndexOf(':');
+        String sHost = (iPort > sHostAndPort.lastIndexOf(']')) ? sHostAndPort.substring(0, iPort) : sHostAndPort;
+        return LOOPBACK_HOSTS.contains(sHost.toLowerCase(Locale.ROOT));
+    }
+
+    private static String error(String sStatus, String sMessage) {
+        return "{\"status\":" + Json.quote(sStatus) + ",\"error\":" + Json.quote(sMessage) + "}";
+    }
+
+    private static long toMillis(long lFrom, long lTo) {
+        return TimeUnit.NANOSECONDS.toMillis(lTo - lFrom);
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] aBuffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int iRead;
+            while ((iRead = in.read(aBuffer)) != -1) {
+                baos.write(aBuffer, 0, iRead);
+            }
+        }
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void respond(HttpExchange exchange, int iStatus, String sBody) throws IOException {
+        byte[] aBody = (sBody + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(iStatus, aBody.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(aBody);
+        }
+    }
+
+    /**
+     * The settings of a requested build, with the same defaults as the command line.
+     */
+    private static class BuildRequest {
+
+        private final String companyCode;
+        private final String inputPath;
+        private final String outputPath;
+        private final String version;
+        private final String documentationPath;
+        private final String encoding;
+        private final Level logLevel;
+        private final int threads;
+        private final boolean incremental;
+        private final boolean waves;
+        private final boolean entityManifest;
+        private final boolean snapshot;
+        private final boolean linkContent;
+        private final String packagePath;
+        private final int packageThreads;
+        private final int packageLevel;
+        private final Set<String> selectedTypes;
+        private final EntityManifest deltaBaseline;
+
+        private BuildRequest(Map<String, Object> hmRequest) {
+            companyCode = getString(hmRequest, "companyCode", null);
+            inputPath = getString(hmRequest, "inputPath", null);
+            outputPath = getString(hmRequest, "outputPath", null);
+            if (!new File(inputPath).isDirectory())
+                throw new IllegalArgumentException("inputPath " + inputPath + " is not a directory");
+            version = getString(hmRequest, "version", "");
+            documentationPath = getString(hmRequest, "documentationPath", "");
+            encoding = getString(hmRequest, "encoding", "ISO-8859-1");
+            logLevel = Level.parse(getString(hmRequest, "logLevel", Level.ALL.toString()));
+            Object oThreads = hmRequest.get("threads");
+            if (oThreads != null && !(oThreads instanceof Number))
+                throw new IllegalArgumentException("threads must be a number");
+            threads = (oThreads == null) ? Runtime.getRuntime().availableProcessors() : Math.max(1, ((Number) oThreads).intValue());
+            incremental = getBoolean(hmRequest, "incremental", false);
+            waves = getBoolean(hmRequest, "waves", false);
+            entityManifest = getBoolean(hmRequest, "entityManifest", false);
+            snapshot = getBoolean(hmRequest, "snapshot", false);
+            linkContent = getBoolean(hmRequest, "linkContent", false);
+            String sPackage = getString(hmRequest, "package", "");
+            packagePath = sPackage.isEmpty() ? null : sPackage;
+            packageThreads = getInt(hmRequest, "packageThreads", 0);
+            packageLevel = ParallelZipWriter.checkLevel(getInt(hmRequest, "packageLevel", Deflater.DEFAULT_COMPRESSION));
+            Object oOnly = hmRequest.get("only");
+            if (oOnly == null) {
+                selectedTypes = null;
+            } else if (oOnly instanceof List) {
+                List<String> alOnly = new ArrayList<>();
+                for (Object oType : (List<?>) oOnly) {
+                    if (!(oType instanceof String))
+                        throw new IllegalArgumentException("only must be an array of strings");
+                    alOnly.add((String) oType);
+                }
+                selectedTypes = EnvironmentHandler.parseEntityTypes(String.join(",", alOnly));
+            } else {
+                throw new IllegalArgumentException("only must be an array of strings");
+            }
+            String sDelta = getString(hmRequest, "delta", "");
+            try {
+                deltaBaseline = sDelta.isEmpty() ? null : EnvironmentHandler.readDeltaBaseline(sDelta, outputPath, incremental);
+            } catch (IOException errIO) {
+                throw new IllegalArgumentException("Unable to read delta baseline - " + errIO.getMessage());
+            }
+        }
+
+        private String getOutputKey() {
+            return new File(outputPath).getAbsoluteFile().toPath().normalize().toString();
+        }
+
+        private static int getInt(Map<String, Object> hmRequest, String sName, int iDefault) {
+            Object oValue = hmRequest.get(sName);
+            if (oValue == null)
+                return iDefault;
+            if (!(oValue instanceof Number))
+                throw new IllegalArgumentException(sName + " must be a number");
+            return ((Number) oValue).intValue();
+        }
+
+        private static boolean getBoolean(Map<String, Object> hmRequest, String sName, boolean bDefault) {
+            Object oValue = hmRequest.get(sName);
+            if (oValue == null)
+                return bDefault;
+            if (!(oValue instanceof Boolean))
+                throw new IllegalArgumentException(sName + " must be true or false");
+            return (Boolean) oValue;
+        }
+
+        private static String getString(Map<String, Object> hmRequest, String sName, String sDefault) {
+            Object oValue = hmRequest.get(sName);
+            if (oValue == null) {
+                if (sDefault == null)
+                    throw new IllegalArgumentException(sName + " is required");
+                return sDefault;
+            }
+            if (!(oValue instanceof String))
+                throw new IllegalArgumentException(sName + " must be a string");
+            return (String) oValue;
+        }
+
+    }
+
+}
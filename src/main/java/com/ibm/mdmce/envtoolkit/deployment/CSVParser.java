@@ -5,9 +5,18 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment;
 
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utility class for parsing CSV files that can have embedded complexity allowed by tools like Microsoft Excel.
@@ -17,13 +26,45 @@ import java.util.List;
  *     <li>double quotes within a cell (escaped by a secondary double quote)</li>
  *     <li>newlines within a cell (escaped by a double quote)</li>
  * </ul>
+ * Files of at least {@link #MAPPED_READ_THRESHOLD} bytes are decoded directly from memory-mapped windows of the file
+ * (see {@link MappedFileReader}) rather than through an input stream, and files of at least
+ * {@link #PARALLEL_PARSE_THRESHOLD} bytes are parsed in chunks on multiple threads (see {@link ParallelCSVReader}),
+ * while still returning their rows in order.
+ * <br>
+ * Rows can be retrieved one at a time through {@link #splitLine()}, or lazily as a stream through {@link #rows()}. The
+ * parser should be closed once it is no longer needed (for example, using try-with-resources).
  */
-public class CSVParser {
+public class CSVParser implements Closeable {
+
+    /**
+     * Size (in bytes) from which input files are read through memory-mapping rather than through an input stream.
+     */
+    public static final long MAPPED_READ_THRESHOLD = 16L * 1024 * 1024;
+
+    /**
+     * Size (in bytes) from which input files are split into chunks that are parsed in parallel.
+     */
+    public static final long PARALLEL_PARSE_THRESHOLD = 64L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
 
     private int expectedColumnCount;
-    private String sReadTokenCSV;
-    private String sLineCSV;
-    private BufferedReader readerCSV;
+    private Reader readerCSV;
+    private ParallelCSVReader parallelReader;
+    private StringPool stringPool;
+
+    // Raw characters read from the underlying reader, re-used for the life of the parser
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int bufferPos;
+    private int bufferLen;
+    private boolean skipLineFeed;
+
+    // The current physical line being tokenized (without its line terminator), re-used between lines
+    private char[] line = new char[256];
+    private int lineLength;
+
+    // Accumulates the content of quoted cells, re-used between cells
+    private final StringBuilder cell = new StringBuilder(200);
 
     private CSVParser() {
         expectedColumnCount = -1;
@@ -37,8 +78,7 @@ public class CSVParser {
      * @throws IOException if the file cannot be accessed or read
      */
     public CSVParser(String sInputFilePath, String sEncoding) throws FileNotFoundException, IOException {
-        this();
-        readerCSV = new BufferedReader(new InputStreamReader(new FileInputStream(sInputFilePath), sEncoding));
+        this(new File(sInputFilePath), sEncoding);
     }
 
     /**
@@ -48,8 +88,7 @@ public class CSVParser {
      * @throws IOException if the file cannot be accessed or read
      */
     public CSVParser(File inputFile, String sEncoding) throws IOException {
-        this();
-        readerCSV = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), sEncoding));
+        this(inputFile, sEncoding, -1);
     }
 
     /**
@@ -61,104 +100,269 @@ public class CSVParser {
      * @throws IOException if the file cannot be accessed or read
      */
     public CSVParser(String sInputFilePath, String sEncoding, int expectedColumnCount) throws FileNotFoundException, IOException {
-        this(sInputFilePath, sEncoding);
+        this(new File(sInputFilePath), sEncoding, expectedColumnCount);
+    }
+
+    /**
+     * Construct a new parser using the provided parameters.
+     * @param inputFile the input file to parse
+     * @param sEncoding the encoding of the input file
+     * @param expectedColumnCount the expected number of columns per row of data
+     * @throws IOException if the file cannot be accessed or read
+     */
+    public CSVParser(File inputFile, String sEncoding, int expectedColumnCount) throws IOException {
+        this(inputFile, sEncoding, expectedColumnCount, PARALLEL_PARSE_THRESHOLD, ParallelCSVReader.CHUNK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Construct a new parser using the provided parameters, splitting files of at least the specified size into chunks
+     * that are parsed in parallel on the provided pool.
+     * @param inputFile the input file to parse
+     * @param sEncoding the encoding of the input file
+     * @param expectedColumnCount the expected number of columns per row of data
+     * @param parallelThreshold size (in bytes) from which to parse the file in parallel (see {@link #PARALLEL_PARSE_THRESHOLD})
+     * @param chunkSize size (in bytes) of the ranges into which to cut a file parsed in parallel
+     * @param pool the pool on which to parse a file in parallel (only used if its parallelism is more than 1)
+     * @throws IOException if the file cannot be accessed or read
+     */
+    CSVParser(File inputFile, String sEncoding, int expectedColumnCount, long parallelThreshold, long chunkSize, ForkJoinPool pool) throws IOException {
+        this();
+        this.expectedColumnCount = expectedColumnCount;
+        if (inputFile.isFile() && inputFile.length() >= parallelThreshold) {
+            Charset charset = getCharset(sEncoding);
+            if (pool.getParallelism() > 1 && ParallelCSVReader.supportsEncoding(charset)) {
+                parallelReader = new ParallelCSVReader(inputFile, charset, expectedColumnCount, pool, chunkSize);
+                return;
+            }
+        }
+        readerCSV = openReader(inputFile, sEncoding);
+    }
+
+    /**
+     * Construct a new parser over the provided reader (used to parse each chunk of a file parsed in parallel).
+     * @param reader the reader from which to parse
+     * @param expectedColumnCount the expected number of columns per row of data
+     */
+    CSVParser(Reader reader, int expectedColumnCount) {
+        this();
         this.expectedColumnCount = expectedColumnCount;
+        readerCSV = reader;
+    }
+
+    /**
+     * Canonicalize the values parsed from the file through the provided pool, so that values repeated within (and
+     * across) files are only held once in memory.
+     * @param stringPool the pool through which to canonicalize values (or null to not pool values)
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+        if (parallelReader != null)
+            parallelReader.setStringPool(stringPool);
+    }
+
+    private static Charset getCharset(String sEncoding) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName(sEncoding);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException errCharset) {
+            throw new UnsupportedEncodingException(sEncoding);
+        }
+    }
+
+    /**
+     * Open a reader over the provided file, memory-mapping the file if it is at least {@link #MAPPED_READ_THRESHOLD}
+     * bytes in size.
+     * @param inputFile the input file to read
+     * @param sEncoding the encoding of the input file
+     * @return Reader
+     * @throws IOException if the file cannot be accessed or read, or the encoding is not supported
+     */
+    private static Reader openReader(File inputFile, String sEncoding) throws IOException {
+        if (inputFile.isFile() && inputFile.length() >= MAPPED_READ_THRESHOLD)
+            return new MappedFileReader(inputFile, getCharset(sEncoding));
+        return new InputStreamReader(new FileInputStream(inputFile), sEncoding);
     }
 
     /**
-     * Returns the next non-empty, non-blank line, or null if the end of the stream has been reached.
-     * @return String
+     * Refill the character buffer from the underlying reader.
+     * @return boolean - true if any characters were read, false if the end of the stream has been reached
      * @throws IOException on any error reading
      */
-    private String nextLine() throws IOException {
+    private boolean fillBuffer() throws IOException {
+        bufferPos = 0;
+        bufferLen = readerCSV.read(buffer, 0, buffer.length);
+        if (bufferLen < 0) {
+            bufferLen = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append the specified range of the character buffer to the current physical line.
+     * @param start the position in the buffer from which to copy
+     * @param length the number of characters to copy
+     */
+    private void appendToLine(int start, int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(buffer, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Read the next physical line (terminated by any of {@literal \n}, {@literal \r} or {@literal \r\n}) into the
+     * line buffer.
+     * @return boolean - true if a line was read, false if the end of the stream has been reached
+     * @throws IOException on any error reading
+     */
+    private boolean nextPhysicalLine() throws IOException {
+        lineLength = 0;
+        boolean bRead = false;
+        while (true) {
+            if (bufferPos == bufferLen && !fillBuffer())
+                return bRead;
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[bufferPos] == '\n') {
+                    bufferPos++;
+                    continue;
+                }
+            }
+            bRead = true;
+            int start = bufferPos;
+            while (bufferPos < bufferLen) {
+                char c = buffer[bufferPos];
+                if (c == '\n' || c == '\r') {
+                    appendToLine(start, bufferPos - start);
+                    bufferPos++;
+                    skipLineFeed = (c == '\r');
+                    return true;
+                }
+                bufferPos++;
+            }
+            appendToLine(start, bufferPos - start);
+        }
+    }
+
+    /**
+     * Indicates whether the current physical line should be skipped: it is blank, a comment (starts with {@literal #})
+     * or contains nothing but commas and empty quoted cells.
+     * @return boolean
+     */
+    private boolean isSkippableLine() {
+        if (lineLength > 0 && line[0] == '#')
+            return true;
+        boolean bBlank = true;
+        boolean bOnlyEmptyCells = true;
+        int iQuotes = 0;
+        for (int i = 0; i < lineLength; i++) {
+            char c = line[i];
+            if (c > ' ')
+                bBlank = false;
+            if (c == '"')
+                iQuotes++;
+            else if (c != ',')
+                bOnlyEmptyCells = false;
+        }
+        return bBlank || (bOnlyEmptyCells && iQuotes % 2 == 0);
+    }
+
+    /**
+     * Moves to the next non-empty, non-blank line.
+     * @return boolean - true if there is such a line, false if the end of the stream has been reached
+     * @throws IOException on any error reading
+     */
+    private boolean nextLine() throws IOException {
         do {
-            sLineCSV = readerCSV.readLine();
-            if (sLineCSV == null)
-                return null;
-        } while (sLineCSV.trim().equals("") || sLineCSV.startsWith("#") || sLineCSV.replace(",", "").replace("\"\"", "").equals(""));
-        return sLineCSV;
+            if (!nextPhysicalLine())
+                return false;
+        } while (isSkippableLine());
+        return true;
     }
 
     /**
-     * Locates the index of the next comma (as this could be more than a line away given in-cell newlines).
+     * Reads the cell starting at the provided position and adds it to the provided list, continuing onto subsequent
+     * lines for quoted cells that contain newlines.
      * @param p current position from which to scan
-     * @return int
+     * @param al the list of values to which to add the cell
+     * @return int - the position of the comma that ends the cell (or the end of the line)
      * @throws IOException on any error reading
      */
-    private int findNextComma(int p) throws IOException {
+    private int readCell(int p, List<String> al) throws IOException {
 
-        int i;
-        sReadTokenCSV = "";
-        char c = sLineCSV.charAt(p);
+        char c = line[p];
 
         // empty field
         if (c == ',') {
-            sReadTokenCSV = "";
+            al.add("");
             return p;
         }
 
         // not escape char
         if (c != '"') {
-            i = sLineCSV.indexOf(',', p);
-            if (i == -1)
-                i = sLineCSV.length();
-            sReadTokenCSV = sLineCSV.substring(p, i);
+            int i = p;
+            while (i < lineLength && line[i] != ',')
+                i++;
+            al.add(toValue(line, p, i - p));
             return i;
         }
 
         // start with "
         p++;
 
-        StringBuilder sb = new StringBuilder(200);
+        cell.setLength(0);
         while (true) {
-            c = readNextChar(p);
-            p++;
 
-            // not a "
-            if (c != '"') {
-                sb.append(c);
+            // newline within the cell -> keep it and continue from the next line
+            if (p == lineLength) {
+                if (!nextPhysicalLine())
+                    throw new IOException("CSV parsing: went overboard");
+                cell.append('\n');
+                p = 0;
                 continue;
             }
 
+            // not a " -> take everything up to the next "
+            if (line[p] != '"') {
+                int start = p;
+                while (p < lineLength && line[p] != '"')
+                    p++;
+                cell.append(line, start, p - start);
+                continue;
+            }
+            p++;
+
             // ", last char -> ok
-            if (p == sLineCSV.length()) {
-                sReadTokenCSV = sb.toString();
+            if (p == lineLength) {
+                al.add(toValue(cell));
                 return p;
             }
 
-            c = readNextChar(p);
+            c = line[p];
             p++;
 
             // "" -> just print one
             if (c == '"') {
-                sb.append('"');
+                cell.append('"');
                 continue;
             }
 
             // ", -> return
             if (c == ',') {
-                sReadTokenCSV = sb.toString();
+                al.add(toValue(cell));
                 return p - 1;
             }
 
         }
     }
 
-    /**
-     * Read the next character.
-     * @param p the position from which to start scanning
-     * @return char
-     * @throws IOException on any error reading
-     */
-    private char readNextChar(int p) throws IOException {
+    private String toValue(char[] chars, int offset, int length) {
+        return (stringPool == null) ? new String(chars, offset, length) : stringPool.canonicalize(chars, offset, length);
+    }
 
-        if (p == sLineCSV.length()) {
-            String newLine = readerCSV.readLine();
-            if (newLine == null)
-                throw new IOException("CSV parsing: went overboard");
-            sLineCSV += "\n" + newLine;
-        }
-        return sLineCSV.charAt(p);
+    private String toValue(CharSequence cs) {
+        return (stringPool == null) ? cs.toString() : stringPool.canonicalize(cs);
     }
 
     /**
@@ -168,22 +372,22 @@ public class CSVParser {
      */
     public List<String> splitLine() throws IOException {
 
-        List<String> al = new ArrayList<>();
-        sLineCSV = nextLine();
+        if (parallelReader != null)
+            return parallelReader.nextRow();
 
-        if (sLineCSV == null)
+        if (!nextLine())
             return null;
 
+        List<String> al = new ArrayList<>(Math.max(expectedColumnCount, 10));
         int pos = 0;
 
-        while (pos < sLineCSV.length()) {
-            pos = findNextComma(pos);
-            al.add(sReadTokenCSV);
+        while (pos < lineLength) {
+            pos = readCell(pos, al);
             pos++;
         }
 
         // If the CSV string ends with a ',', we need an empty token at the end...
-        if (sLineCSV.length() > 0 && sLineCSV.charAt(sLineCSV.length() - 1) == ',') {
+        if (lineLength > 0 && line[lineLength - 1] == ',') {
             al.add("");
         }
 
@@ -196,6 +400,61 @@ public class CSVParser {
 
     }
 
+    /**
+     * Retrieve all remaining lines as a lazy stream of rows (each a list of values, one per column), in the order they
+     * appear in the file. Closing the stream closes this parser. Any error reading is thrown from the stream as an
+     * {@link UncheckedIOException} wrapping the original {@link IOException}.
+     * <br>
+     * The stream is sequential; it can be made parallel (which reads the rows in batches and hands each batch to a
+     * separate thread), but as the rows are still read sequentially this is only worthwhile when the processing of
+     * each row is expensive.
+     * @return {@code Stream<List<String>>}
+     */
+    public Stream<List<String>> rows() {
+        return StreamSupport.stream(spliterator(), false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException errIO) {
+                throw new UncheckedIOException(errIO.getMessage(), errIO);
+            }
+        });
+    }
+
+    /**
+     * Retrieve all remaining lines as an (ordered) spliterator of rows.
+     * @return {@code Spliterator<List<String>>}
+     * @see #rows()
+     */
+    public Spliterator<List<String>> spliterator() {
+        return new Spliterators.AbstractSpliterator<List<String>>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super List<String>> action) {
+                List<String> aTokens;
+                try {
+                    aTokens = splitLine();
+                } catch (IOException errIO) {
+                    throw new UncheckedIOException(errIO.getMessage(), errIO);
+                }
+                if (aTokens == null)
+                    return false;
+                action.accept(aTokens);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Stop parsing and release the input file.
+     * @throws IOException on any error closing the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (parallelReader != null)
+            parallelReader.close();
+        if (readerCSV != null)
+            readerCSV.close();
+    }
+
     /**
      * Attempts to translate the provided string into a boolean, where any of the following (case-insensitive) are
      * considered to be "true" and anything else is considered to be "false": {@literal yes}, {@literal true},
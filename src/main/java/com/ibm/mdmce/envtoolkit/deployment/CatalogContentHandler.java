@@ -25,6 +25,5 @@ public class CatalogContentHandler extends ContainerContentHandler {
 				tp,
 				sOutputPath + File.separator + "CATALOG_CONTENT",
 				sEncoding);
-		initialize(sInputFilePath, sEncoding, tp);
 	}
 }
@@ -48,17 +48,17 @@ public class CatalogHandler extends BasicEntityHandler {
 				bValid = validateExists(sHierarchyName, Hierarchy.class.getName(), ctg.getName()) && bValid;
 		}
 		
-		Spec spec = (Spec) getFromCache(ctg.getSpecName(), Spec.class.getName(), false, false);
+		Spec spec = getFromCache(ctg.getSpecName(), Spec.class, false, false);
 		if (spec != null) {
 			
 			String sDisplayAttr = ctg.getDisplayAttribute().replace(ctg.getSpecName() + "/", "");
 			Spec.Attribute attr = spec.getAttributes().get(sDisplayAttr);
 			bValid = (attr != null) && bValid;
 			if (attr == null) {
-				EnvironmentHandler.logger.warning("WARNING (" + ctg.getName() + "): Unable to find attribute - " + ctg.getSpecName() + "/" + sDisplayAttr);
+				reportWarning("WARNING (" + ctg.getName() + "): Unable to find attribute - " + ctg.getSpecName() + "/" + sDisplayAttr);
 				bValid = false;
 			} else if (!attr.isIndexed()) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + ctg.getName() + "): Display attribute (" + ctg.getSpecName() + "/" + sDisplayAttr + ") is not indexed.");
+				reportWarning(". . . WARNING (" + ctg.getName() + "): Display attribute (" + ctg.getSpecName() + "/" + sDisplayAttr + ") is not indexed.");
 				bValid = false;
 			}
 
@@ -74,26 +74,26 @@ public class CatalogHandler extends BasicEntityHandler {
 				attr = spec.getAttributes().get(sLinkAttrPathWoSpec);
 				bValid = (attr != null) && bValid;
 				if (attr == null)
-					EnvironmentHandler.logger.warning("WARNING (" + ctg.getName() + "): Unable to find link attribute - " + ctg.getSpecName() + "/" + sLinkAttrPathWoSpec);
+					reportWarning("WARNING (" + ctg.getName() + "): Unable to find link attribute - " + ctg.getSpecName() + "/" + sLinkAttrPathWoSpec);
 				bValid = validateExists(sDestinationCtg, Catalog.class.getName(), ctg.getName()) && bValid;
 				//RS20210217: if we have a target attribute, check it exists 
 				String sDestAttr = (String)ctg.getLinkSpecPathToDestinationAttribute().get(sLinkAttrPath);
 				if (sDestAttr != null){
 					if (sDestAttr.equals("")){
-						EnvironmentHandler.logger.warning("WARNING (" + ctg.getName() + "): Empty target link attribute - " + sDestAttr);
+						reportWarning("WARNING (" + ctg.getName() + "): Empty target link attribute - " + sDestAttr);
 					}else{
 						String sDestSpecName = sDestAttr.split("/")[0];
 						bValid = validateExists(sDestSpecName, Spec.class.getName(), ctg.getName()) && bValid;
-						Spec specDestSpec = (Spec) getFromCache(sDestSpecName, Spec.class.getName(), false, false);
+						Spec specDestSpec = getFromCache(sDestSpecName, Spec.class, false, false);
 						if( specDestSpec != null ){
 							String sDestAttrPath = sDestAttr.substring((sDestSpecName + "/").length());
 							Spec.Attribute attrDestAttr = specDestSpec.getAttributes().get(sDestAttrPath);
 							bValid = (attrDestAttr != null) && bValid;
 							if (attrDestAttr == null){
-								EnvironmentHandler.logger.warning("WARNING (" + ctg.getName() + "): Unable to find target link attribute - " + sDestSpecName + "/" + sDestAttrPath);
+								reportWarning("WARNING (" + ctg.getName() + "): Unable to find target link attribute - " + sDestSpecName + "/" + sDestAttrPath);
 							}else{//check the target attribute is valid for link: indexed
 								if (! attrDestAttr.isIndexed())
-									EnvironmentHandler.logger.warning("WARNING (" + ctg.getName() + "): Target link attribute is not indexed - " + sDestSpecName + "/" + sDestAttrPath);
+									reportWarning("WARNING (" + ctg.getName() + "): Target link attribute is not indexed - " + sDestSpecName + "/" + sDestAttrPath);
 								bValid = (attrDestAttr.isIndexed()) && bValid;
 							}
 						}
@@ -118,7 +118,7 @@ public class CatalogHandler extends BasicEntityHandler {
 			Map<String, List<String>> attrColMap = entry.getValue();
 			bValid = validateExists(sHierarchyName, Hierarchy.class.getName(), ctg.getName()) && bValid;
 			if ( !(ctg.getPrimaryHierarchy().equals(sHierarchyName) || ctg.getSecondaryHierarchies().contains(sHierarchyName)) ) {
-				EnvironmentHandler.logger.warning("WARNING (" + ctg.getName() + "): Location hierarchy (" + sHierarchyName + ") not associated as a primary or secondary hierarchy to the catalogue (" + ctg.getName() + ")");
+				reportWarning("WARNING (" + ctg.getName() + "): Location hierarchy (" + sHierarchyName + ") not associated as a primary or secondary hierarchy to the catalogue (" + ctg.getName() + ")");
 				bValid = false;
 			}
 			for (Map.Entry<String, List<String>> specEntry : attrColMap.entrySet()) {
@@ -9,13 +9,13 @@ import com.ibm.mdmce.envtoolkit.deployment.model.ContainerContent;
 import com.ibm.mdmce.envtoolkit.deployment.model.TemplateParameters;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Writer;
-import java.io.FileOutputStream;
-import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Marshals information from the CatalogContents.csv and HierarchyContents.csv and handles transformation to relevant XML and CSV file(s).
@@ -56,37 +56,38 @@ public abstract class ContainerContentHandler extends BasicEntityHandler {
 
 	/**
 	 * {@inheritDoc}
+	 * Each data file is staged into the output directory by the stager of the build (see {@link ContentStager}), which
+	 * copies it in the background.
 	 */
 	@Override
 	protected <T extends BasicEntity> void addLineToCache(List<List<String>> alReplacedTokens) {
-		try {
-			for (List<String> aReplacedTokens : alReplacedTokens) {
-				ContainerContent instance = entity.createInstance(aReplacedTokens);
-				File fDataFile = new File(relativePath + File.separator + instance.getDataFilePath().replace("/", File.separator));
-				if (fDataFile.isFile()) {
-					FileInputStream srcFileStream = new FileInputStream(fDataFile.getAbsolutePath());
-					FileChannel srcChannel = srcFileStream.getChannel();
-					String sOutputFileName = instance.getDataFilePath().substring(instance.getDataFilePath().lastIndexOf("/") + 1);
-					instance.setFilename(sOutputFileName);
-					String sOutputFilePath = outputPath + File.separator + sOutputFileName;
-					File fDirs = new File(sOutputFilePath.substring(0, sOutputFilePath.lastIndexOf(File.separator)) + File.separator);
-					fDirs.mkdirs();
-					File fDst = new File(sOutputFilePath);
-					fDst.createNewFile();
-					FileOutputStream dstFileStream = new FileOutputStream(fDst);
-					FileChannel dstChannel = dstFileStream.getChannel();
-					dstChannel.transferFrom(srcChannel, 0, srcChannel.size());
-					srcChannel.close();
-					dstChannel.close();
-					srcFileStream.close();
-					dstFileStream.close();
-				} else {
-					EnvironmentHandler.logger.warning(". . . WARNING: Data file - " + relativePath + File.separator + instance.getDataFilePath() + " - not found.");
-				}
-				addToCacheWithType(instance.getUniqueId(), ContainerContent.class.getName(), instance);
+		ContentStager stager = context.getContentStager();
+		for (List<String> aReplacedTokens : alReplacedTokens) {
+			ContainerContent instance = entity.createInstance(aReplacedTokens);
+			File fDataFile = new File(relativePath + File.separator + instance.getDataFilePath().replace("/", File.separator));
+			addInputFile(fDataFile);
+			if (fDataFile.isFile()) {
+				String sOutputFileName = instance.getDataFilePath().substring(instance.getDataFilePath().lastIndexOf("/") + 1);
+				instance.setFilename(sOutputFileName);
+				File fDst = new File(outputPath + File.separator + sOutputFileName);
+				if (stager != null)
+					stager.stage(fDataFile, fDst);
+				else
+					copyDataFile(fDataFile, fDst);
+			} else {
+				EnvironmentHandler.logger.warning(". . . WARNING: Data file - " + relativePath + File.separator + instance.getDataFilePath() + " - not found.");
 			}
-		} catch (FileNotFoundException errNoFile) {
-			EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
+			addToCacheWithType(instance.getUniqueId(), ContainerContent.class.getName(), instance);
+		}
+	}
+
+	/**
+	 * Copy a data file into the output directory straight away, for a handler read in outside of a build.
+	 */
+	private static void copyDataFile(File fDataFile, File fDst) {
+		try {
+			Files.createDirectories(fDst.getAbsoluteFile().toPath().getParent());
+			Files.copy(fDataFile.toPath(), fDst.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
 		} catch (IOException errIO) {
 			EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
 		}
@@ -103,12 +104,24 @@ public abstract class ContainerContentHandler extends BasicEntityHandler {
 		return bValid;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The data file transferred into the output directory.
+	 */
+	@Override
+	protected List<File> getContentFiles(BasicEntity oEntity) {
+		ContainerContent containerData = (ContainerContent) oEntity;
+		if (containerData.getFilename() == null)
+			return Collections.emptyList();
+		return Collections.singletonList(new File(outputPath + File.separator + containerData.getFilename()));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public boolean validateEntities(String sClassName) {
-		return super.validateEntities(ContainerContent.class.getName());
+	public Map<String, BasicEntity> getEntities(String sClassName) {
+		return super.getEntities(ContainerContent.class.getName());
 	}
 
 	/**
@@ -0,0 +1,282 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stages the data files referenced by the content handlers (see {@link ContainerContentHandler}) into the output
+ * directory: each file is transferred exactly once, on a pool of a limited number of threads, while the rest of the
+ * environment continues to be read in. A file staged into the same place more than once is only transferred once, and
+ * (as before) the last file staged into any one place is the one left there.
+ * <br>
+ * Each file is either copied (with {@link Files#copy(Path, Path, CopyOption...)}, which leaves the copying to the
+ * operating system wherever it can) or, if requested, hard-linked into the output directory, falling back to a copy
+ * wherever a link cannot be made (for example into another file system). A linked file shares its content with the
+ * input file, so should never be edited in place.
+ * <br>
+ * A record of what was staged is kept in the output directory, so that the next build into the same directory can
+ * leave a file in place rather than transfer it again: whenever the staged file has the same size and modification
+ * time as when it was staged, and the input file has the same size and either the same modification time or (if it
+ * has only been touched) the same content hash. The record is kept up to date as files are staged (so that it still
+ * covers every file when only some of the content handlers are read in again), and is a tab-separated text file, one
+ * file per line, with the path of the staged file last on each line.
+ */
+public class ContentStager {
+
+    public static final String FILENAME = ".envtoolkit-staged";
+
+    private static final String FORMAT_VERSION = "1";
+
+    private final ForkJoinPool pool;
+    private final boolean link;
+    private final Map<String, Staged> hmRecord;
+    private final Map<String, String> hmSources = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> hmTransfers = new HashMap<>();
+    private final AtomicInteger iCopied = new AtomicInteger();
+    private final AtomicInteger iLinked = new AtomicInteger();
+    private final AtomicInteger iUnchanged = new AtomicInteger();
+    private volatile boolean bChanged = false;
+
+    private ContentStager(int iThreads, boolean bLink, Map<String, Staged> hmRecord) {
+        this.pool = new ForkJoinPool(Math.max(1, iThreads));
+        this.link = bLink;
+        this.hmRecord = hmRecord;
+    }
+
+    /**
+     * Open a new stager, reading the record left in the provided directory by a previous build (if any).
+     * @param sDirectory the output directory of the build
+     * @param iThreads the number of threads on which to transfer files
+     * @param bLink true to hard-link the files into the output directory (wherever possible) rather than copy them
+     * @return ContentStager
+     */
+    public static ContentStager open(String sDirectory, int iThreads, boolean bLink) {
+
+        Map<String, Staged> hmPrevious = new ConcurrentHashMap<>();
+        File fRecord = new File(sDirectory, FILENAME);
+        if (fRecord.isFile()) {
+            try (BufferedReader reader = Files.newBufferedReader(fRecord.toPath(), StandardCharsets.UTF_8)) {
+                String sLine = reader.readLine();
+                if (sLine != null && sLine.equals("version\t" + FORMAT_VERSION)) {
+                    while ((sLine = reader.readLine()) != null) {
+                        String[] aTokens = sLine.split("\t", 7);
+                        if (aTokens.length == 7 && aTokens[0].equals("staged"))
+                            hmPrevious.put(aTokens[6], new Staged(aTokens[5], Long.parseLong(aTokens[1]), Long.parseLong(aTokens[2]), Long.parseLong(aTokens[3]), Long.parseLong(aTokens[4])));
+                    }
+                }
+            } catch (IOException | RuntimeException err) {
+                EnvironmentHandler.logger.warning(". . . WARNING: Unable to read staged content record " + fRecord.getPath() + " - " + err);
+                hmPrevious.clear();
+            }
+        }
+        return new ContentStager(iThreads, bLink, hmPrevious);
+
+    }
+
+    /**
+     * Stage the provided file into the provided place in the output directory: transferring it on the pool, after any
+     * other file already being staged into the same place.
+     * @param fSource the file to stage
+     * @param fTarget the place into which to stage it
+     */
+    public synchronized void stage(File fSource, File fTarget) {
+        String sTarget = fTarget.getPath();
+        String sSource = fSource.getPath();
+        if (sSource.equals(hmSources.put(sTarget, sSource)))
+            return;
+        CompletableFuture<Void> previous = hmTransfers.get(sTarget);
+        Runnable transfer = () -> transfer(fSource, fTarget);
+        hmTransfers.put(sTarget, (previous == null) ? CompletableFuture.runAsync(transfer, pool) : previous.thenRunAsync(transfer, pool));
+    }
+
+    /**
+     * Wait for every file to be staged, and stop the pool.
+     */
+    public void finish() {
+        List<CompletableFuture<Void>> alTransfers;
+        synchronized (this) {
+            alTransfers = new ArrayList<>(hmTransfers.values());
+        }
+        try {
+            CompletableFuture.allOf(alTransfers.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException err) {
+            EnvironmentHandler.logger.severe("Error: Unable to stage content files - " + err.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Retrieve the number of files copied into the output directory.
+     * @return int
+     */
+    public int getCopiedCount() {
+        return iCopied.get();
+    }
+
+    /**
+     * Retrieve the number of files hard-linked into the output directory.
+     * @return int
+     */
+    public int getLinkedCount() {
+        return iLinked.get();
+    }
+
+    /**
+     * Retrieve the number of files left in place, as they were unchanged since they were staged by a previous build.
+     * @return int
+     */
+    public int getUnchangedCount() {
+        return iUnchanged.get();
+    }
+
+    /**
+     * Indicates whether the record of what was staged differs from that of the previous build.
+     * @return boolean
+     */
+    public boolean isChanged() {
+        return bChanged;
+    }
+
+    /**
+     * Write the record of what was staged into the provided directory, for the next build (leaving out any file that
+     * is no longer there), replacing any previous record once it has been completely written.
+     * @param sDirectory the output directory of the build
+     * @throws IOException on any error writing
+     */
+    public void write(String sDirectory) throws IOException {
+
+        File fRecord = new File(sDirectory, FILENAME);
+        File fTemp = new File(sDirectory, FILENAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(fTemp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("version\t" + FORMAT_VERSION + "\n");
+            for (Map.Entry<String, Staged> entry : new TreeMap<>(hmRecord).entrySet()) {
+                if (!new File(entry.getKey()).isFile())
+                    continue;
+                Staged staged = entry.getValue();
+                writer.write("staged\t" + staged.sourceSize + "\t" + staged.sourceModified + "\t" + staged.targetSize + "\t" + staged.targetModified + "\t" + staged.source + "\t" + entry.getKey() + "\n");
+            }
+        }
+        Files.move(fTemp.toPath(), fRecord.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    /**
+     * Transfer a single file into the output directory, unless it is unchanged since it was staged by the previous
+     * build (or, when linking, is already linked).
+     */
+    private void transfer(File fSource, File fTarget) {
+
+        try {
+            Path source = fSource.toPath();
+            Path target = fTarget.getAbsoluteFile().toPath();
+            Staged previous = hmRecord.get(fTarget.getPath());
+            boolean bLinked = Files.exists(target) && Files.isSameFile(source, target);
+            if (link ? bLinked : !bLinked && isUnchanged(fSource, fTarget, previous)) {
+                record(fTarget, new Staged(fSource.getPath(), fSource.length(), fSource.lastModified(), fTarget.length(), fTarget.lastModified()));
+                iUnchanged.incrementAndGet();
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            if (link && createLink(source, target)) {
+                iLinked.incrementAndGet();
+            } else if (link && isUnchanged(fSource, fTarget, previous)) {
+                // A copy left by a previous build, which still cannot be replaced by a link
+                record(fTarget, new Staged(fSource.getPath(), fSource.length(), fSource.lastModified(), fTarget.length(), fTarget.lastModified()));
+                iUnchanged.incrementAndGet();
+            } else {
+                // Replacing a link left by a previous build, which would otherwise be left as it is
+                if (bLinked)
+                    Files.delete(target);
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                iCopied.incrementAndGet();
+            }
+            record(fTarget, new Staged(fSource.getPath(), fSource.length(), fSource.lastModified(), fTarget.length(), fTarget.lastModified()));
+        } catch (IOException | UncheckedIOException | InvalidPathException errIO) {
+            if (hmRecord.remove(fTarget.getPath()) != null)
+                bChanged = true;
+            EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+        }
+
+    }
+
+    private void record(File fTarget, Staged staged) {
+        if (!staged.equals(hmRecord.put(fTarget.getPath(), staged)))
+            bChanged = true;
+    }
+
+    private static boolean isUnchanged(File fSource, File fTarget, Staged previous) throws IOException {
+        if (previous == null || !previous.source.equals(fSource.getPath()))
+            return false;
+        if (!fTarget.isFile() || fTarget.length() != previous.targetSize || fTarget.lastModified() != previous.targetModified)
+            return false;
+        if (fSource.length() != previous.sourceSize)
+            return false;
+        // The staged file is as it was left, so it still has the content the input file had when it was staged
+        return fSource.lastModified() == previous.sourceModified || BuildManifest.hash(fSource).equals(BuildManifest.hash(fTarget));
+    }
+
+    /**
+     * Hard-link the provided file into the output directory, replacing anything already there only once the link has
+     * been made (alongside it).
+     * @return boolean - false if the link could not be made, and the file must be copied instead
+     */
+    private static boolean createLink(Path source, Path target) throws IOException {
+        Path link = target.resolveSibling(target.getFileName() + ".link");
+        try {
+            Files.deleteIfExists(link);
+            Files.createLink(link, source);
+        } catch (UnsupportedOperationException | FileSystemException errLink) {
+            return false;
+        }
+        Files.move(link, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    /**
+     * The state of a staged file (and of the input file it was staged from) when it was staged.
+     */
+    private static class Staged {
+
+        private final String source;
+        private final long sourceSize;
+        private final long sourceModified;
+        private final long targetSize;
+        private final long targetModified;
+
+        private Staged(String sSource, long lSourceSize, long lSourceModified, long lTargetSize, long lTargetModified) {
+            this.source = sSource;
+            this.sourceSize = lSourceSize;
+            this.sourceModified = lSourceModified;
+            this.targetSize = lTargetSize;
+            this.targetModified = lTargetModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Staged))
+                return false;
+            Staged other = (Staged) o;
+            return source.equals(other.source) && sourceSize == other.sourceSize && sourceModified == other.sourceModified
+                    && targetSize == other.targetSize && targetModified == other.targetModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, sourceSize, sourceModified, targetSize, targetModified);
+        }
+
+    }
+
+}
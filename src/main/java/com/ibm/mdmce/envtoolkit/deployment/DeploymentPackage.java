@@ -0,0 +1,220 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * The ZIP file deployed to an MDM-CE environment, written directly from the files of a build: the generated XML files
+ * at the root of the ZIP, and every file of the input (the {@literal loadToEnv/FILES} directory that holds the
+ * Deployment directory) under {@literal DOCSTORE/FILES/}. Each file is read once, straight into the ZIP, rather than
+ * first being copied into a temporary tree that is then zipped.
+ * <br>
+ * The same files are left out as by the Ant build: anything within a {@literal .git} directory, and the files
+ * directly within any {@literal data} directory (whose content is packaged through the content handlers instead), as
+ * well as the files the toolkit keeps in the output directory for later builds (see {@link BuildManifest},
+ * {@link EntityManifest}, {@link InputSnapshot} and {@link ContentStager}). The entries are compressed on several threads at once (see
+ * {@link ParallelZipWriter}), into a temporary file alongside the ZIP, which only replaces any previous ZIP once it is
+ * complete.
+ * <br>
+ * The same content is often packaged more than once (for example the content files copied into
+ * {@literal CATALOG_CONTENT} or {@literal HIERARCHY_CONTENT} are also packaged from the input, and many generated files
+ * are identical), so the content of every file is hashed (SHA-256, see {@link BuildManifest#hash(File)}) and only
+ * compressed for the first file with that content. As each file still needs an entry of its own in the ZIP, every
+ * later file with the same content is written as a copy of the first one's compressed data. Only files of the same
+ * size as another file need to be hashed at all.
+ */
+public class DeploymentPackage {
+
+    /**
+     * The directory within the ZIP into which the input files are packaged.
+     */
+    public static final String DOCSTORE_PREFIX = "DOCSTORE/FILES/";
+
+    private static final Set<String> EXCLUDED_FILES = new HashSet<>(Arrays.asList(BuildManifest.FILENAME, EntityManifest.FILENAME, InputSnapshot.FILENAME, ContentStager.FILENAME));
+
+    private final File fPackage;
+    private final Map<String, File> hmEntries = new LinkedHashMap<>();
+    private final Set<Path> hsSkipped = new HashSet<>();
+    private int iDuplicates = 0;
+    private long lDuplicateBytes = 0;
+
+    /**
+     * Construct a new (empty) package.
+     * @param sPackagePath the location of the ZIP file to write
+     */
+    public DeploymentPackage(String sPackagePath) {
+        this.fPackage = new File(sPackagePath).getAbsoluteFile();
+        hsSkipped.add(toPath(fPackage));
+        hsSkipped.add(toPath(getTempFile()));
+    }
+
+    /**
+     * Build the default name of the ZIP file for an environment, as used by the Ant build:
+     * {@literal <companycode>_<version>_<yyyyMMdd>.zip}.
+     * @param sCompanyCode the company code of the environment
+     * @param sVersion the software version of the environment
+     * @param dDate the date of the build
+     * @return String
+     */
+    public static String getDefaultName(String sCompanyCode, String sVersion, Date dDate) {
+        return sCompanyCode + "_" + sVersion + "_" + new SimpleDateFormat("yyyyMMdd").format(dDate) + ".zip";
+    }
+
+    /**
+     * Leave the provided directory (and everything within it) out of any other tree added to the package, for example
+     * an output directory within the input directory.
+     * @param fDirectory the directory to leave out
+     */
+    public void skip(File fDirectory) {
+        hsSkipped.add(toPath(fDirectory));
+    }
+
+    /**
+     * Add every file within the provided directory to the package, under the provided prefix (with the same relative
+     * path as within the directory), apart from those left out of every package.
+     * @param sPrefix the directory within the ZIP (empty for the root, otherwise ending with {@literal /})
+     * @param fDirectory the directory to add
+     */
+    public void addTree(String sPrefix, File fDirectory) {
+        addTree(sPrefix, fDirectory, false);
+    }
+
+    private void addTree(String sPrefix, File fDirectory, boolean bData) {
+        File[] aFiles = fDirectory.listFiles();
+        if (aFiles == null)
+            return;
+        Arrays.sort(aFiles);
+        for (File file : aFiles) {
+            String sName = file.getName();
+            try {
+                if (hsSkipped.contains(toPath(file)) || sName.equals(".git"))
+                    continue;
+            } catch (InvalidPathException errPath) {
+                EnvironmentHandler.logger.warning(". . . WARNING: Unable to package a file whose name cannot be read: " + file.getPath());
+                continue;
+            }
+            if (file.isDirectory()) {
+                hmEntries.put(sPrefix + sName + "/", file);
+                addTree(sPrefix + sName + "/", file, sName.equals("data"));
+            } else if (file.isFile() && !bData && !EXCLUDED_FILES.contains(sName)) {
+                hmEntries.put(sPrefix + sName, file);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the number of entries (files and directories) added to the package.
+     * @return int
+     */
+    public int getEntryCount() {
+        return hmEntries.size();
+    }
+
+    /**
+     * Retrieve the number of files written as copies of an earlier file with the same content (see
+     * {@link #write(int, int)}).
+     * @return int
+     */
+    public int getDuplicateCount() {
+        return iDuplicates;
+    }
+
+    /**
+     * Retrieve the total (uncompressed) size of the files written as copies of an earlier file with the same content,
+     * which therefore did not need to be read or compressed again.
+     * @return long
+     */
+    public long getDuplicateBytes() {
+        return lDuplicateBytes;
+    }
+
+    /**
+     * Write the package: every entry added to it, in the order they were added, each directly from its file (or as a
+     * copy of the first file with the same content).
+     * @param iThreads the number of threads on which to compress the entries
+     * @param iLevel the compression level (0-9, or {@link java.util.zip.Deflater#DEFAULT_COMPRESSION})
+     * @throws IOException on any error reading a file or writing the ZIP
+     */
+    public void write(int iThreads, int iLevel) throws IOException {
+
+        File fParent = fPackage.getParentFile();
+        if (fParent != null)
+            fParent.mkdirs();
+        File fTemp = getTempFile();
+        Map<String, String> hmOriginals = findDuplicates();
+        iDuplicates = 0;
+        lDuplicateBytes = 0;
+        try (ParallelZipWriter out = new ParallelZipWriter(fTemp, iThreads, iLevel)) {
+            for (Map.Entry<String, File> entry : hmEntries.entrySet()) {
+                String sName = entry.getKey();
+                File file = entry.getValue();
+                String sOriginal = hmOriginals.get(sName);
+                if (sName.endsWith("/")) {
+                    out.addDirectory(sName, file.lastModified());
+                } else if (sOriginal != null) {
+                    out.addCopy(sName, file.lastModified(), sOriginal);
+                    iDuplicates++;
+                    lDuplicateBytes += file.length();
+                } else {
+                    out.addFile(sName, file);
+                }
+            }
+            out.finish();
+        } catch (IOException | RuntimeException err) {
+            if (!fTemp.delete())
+                EnvironmentHandler.logger.warning(". . . WARNING: Unable to remove the incomplete package: " + fTemp.getPath());
+            throw err;
+        }
+        Files.move(fTemp.toPath(), fPackage.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    /**
+     * Find the files with the same content as an earlier file: first grouping the files by size, and then hashing the
+     * files of each group with more than one file.
+     * @return {@code Map<String, String>} - the name of the first file with the same content, keyed by the name of each
+     *         later file
+     * @throws IOException on any error reading a file
+     */
+    private Map<String, String> findDuplicates() throws IOException {
+
+        Map<Long, List<String>> hmBySize = new HashMap<>();
+        for (Map.Entry<String, File> entry : hmEntries.entrySet()) {
+            if (!entry.getKey().endsWith("/"))
+                hmBySize.computeIfAbsent(entry.getValue().length(), k -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        Map<String, String> hmOriginals = new HashMap<>();
+        for (List<String> alSameSize : hmBySize.values()) {
+            if (alSameSize.size() < 2)
+                continue;
+            Map<String, String> hmFirstByHash = new HashMap<>();
+            for (String sName : alSameSize) {
+                String sFirst = hmFirstByHash.putIfAbsent(BuildManifest.hash(hmEntries.get(sName)), sName);
+                if (sFirst != null)
+                    hmOriginals.put(sName, sFirst);
+            }
+        }
+        return hmOriginals;
+
+    }
+
+    private File getTempFile() {
+        return new File(fPackage.getPath() + ".tmp");
+    }
+
+    private static Path toPath(File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+}
@@ -63,6 +63,7 @@ public class DocumentHandler extends BasicEntityHandler {
 	 * @param alDocs the list of documents to which to append
 	 */
 	private void getDocumentsForAllFilesInDir(File directory, List<Script> alDocs) {
+		addInputDirectory(directory);
 		File[] filesAndDirs = directory.listFiles();
 		if (filesAndDirs == null) {
 			EnvironmentHandler.logger.warning("WARNING: Specified documentation directory not found: " + directory.getPath());
@@ -72,6 +73,7 @@ public class DocumentHandler extends BasicEntityHandler {
 					if (file.isDirectory()) {
 						getDocumentsForAllFilesInDir(file, alDocs);
 					} else {
+						addInputFile(file);
 						String sDocPath = file.getPath();
 						sDocPath = sDocPath.substring(sDocPath.indexOf("documentation")).replace(File.separatorChar, '/');
 						Script doc = new Script(sDocPath);
@@ -107,7 +109,7 @@ public class DocumentHandler extends BasicEntityHandler {
 		
 		File fileDoc = new File(inputDirectory + doc.getPathLocal());
 		if (!fileDoc.exists()) {
-			EnvironmentHandler.logger.warning("WARNING (" + doc.getName() + "): Could not find specified document - " + inputDirectory + doc.getPathLocal());
+			reportWarning("WARNING (" + doc.getName() + "): Could not find specified document - " + inputDirectory + doc.getPathLocal());
 			bValid = false;
 		}
 		
@@ -115,6 +117,15 @@ public class DocumentHandler extends BasicEntityHandler {
 		
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The document itself.
+	 */
+	@Override
+	protected List<File> getContentFiles(BasicEntity oEntity) {
+		return Collections.singletonList(new File(inputDirectory + ((Script) oEntity).getPathLocal()));
+	}
+
 	/**
 	 * Retrieve the input directory used for the documents.
 	 * @return String
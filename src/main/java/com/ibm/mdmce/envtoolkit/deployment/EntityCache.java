@@ -0,0 +1,442 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import com.ibm.mdmce.envtoolkit.deployment.model.BasicEntity;
+import com.ibm.mdmce.envtoolkit.deployment.model.ReferenceType;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Cache of all of the entities that have been read, partitioned by the type of entity. Each type has its own map of
+ * entities by name (in the order they were added), so an entity is found by its type and name without building any
+ * combined key.
+ * <br>
+ * An entity is normally cached under its own class, but can be cached under another type as well (for example,
+ * organizations are also cached as hierarchies). The typed methods only return entities that are instances of the
+ * requested class, so such entities can only be found through {@link #get(String, String)}.
+ * <br>
+ * Entities are also indexed by the other entities they reference (their container, spec, ACG, workflow and
+ * hierarchies: see {@link BasicEntity#getReferences(ReferenceType)}), so that all of the entities referencing a given
+ * entity can be found without searching through the whole cache. The index is refreshed each time an entity is added,
+ * so entities built up over several rows are indexed by their references as of the last row. (The references are
+ * worked out before the lock is taken, so only the index itself is updated under the lock.) This is how, for example,
+ * the step views of a workflow are found.
+ * <br>
+ * The cache can be read and added to from several threads at once (entity handlers are loaded concurrently: see
+ * {@link HandlerLoadScheduler}). The collections it returns are copies, taken while holding the lock, so can be
+ * iterated while other threads continue to add entities (but do not reflect anything added after they were taken).
+ * <br>
+ * For incremental builds (see {@link IncrementalBuild}), the types of entity read from and added to the cache can be
+ * recorded, per thread, into sets supplied by the caller.
+ *
+ * @see EnvironmentHandler
+ */
+public class EntityCache {
+
+    /**
+     * Type recorded as read whenever entities of any class are found through the references index.
+     */
+    public static final String ANY_TYPE = "*";
+
+    private final Map<String, Map<String, BasicEntity>> hmPartitions = new HashMap<>();
+
+    private final Map<ReferenceType, Map<String, Set<BasicEntity>>> hmIndexes = new EnumMap<>(ReferenceType.class);
+    private final Map<BasicEntity, List<Set<BasicEntity>>> hmIndexedUnder = new IdentityHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<Set<String>> tlTypesRead = new ThreadLocal<>();
+    private final ThreadLocal<Set<String>> tlTypesWritten = new ThreadLocal<>();
+
+    /**
+     * Record the types (class names) of entity read from the cache on the current thread into the provided set.
+     * @param hsTypes the set into which to record the types read (or null to stop recording)
+     * @return {@code Set<String>} - the set into which types read were previously being recorded (possibly null), to
+     *         restore once done
+     */
+    public Set<String> recordTypesRead(Set<String> hsTypes) {
+        return swap(tlTypesRead, hsTypes);
+    }
+
+    /**
+     * Record the types (class names) under which entities are added to the cache on the current thread into the
+     * provided set.
+     * @param hsTypes the set into which to record the types added to (or null to stop recording)
+     * @return {@code Set<String>} - the set into which types added to were previously being recorded (possibly null),
+     *         to restore once done
+     */
+    public Set<String> recordTypesWritten(Set<String> hsTypes) {
+        return swap(tlTypesWritten, hsTypes);
+    }
+
+    private static Set<String> swap(ThreadLocal<Set<String>> tlTypes, Set<String> hsTypes) {
+        Set<String> hsPrevious = tlTypes.get();
+        if (hsTypes == null)
+            tlTypes.remove();
+        else
+            tlTypes.set(hsTypes);
+        return hsPrevious;
+    }
+
+    private static void record(ThreadLocal<Set<String>> tlTypes, String sEntityType) {
+        Set<String> hsTypes = tlTypes.get();
+        if (hsTypes != null)
+            hsTypes.add(sEntityType);
+    }
+
+    /**
+     * Add the provided entity to the cache, under its own class.
+     * @param sName the name by which to refer to the entity
+     * @param oEntity the entity to cache
+     */
+    public void put(String sName, BasicEntity oEntity) {
+        put(oEntity.getClass().getName(), sName, oEntity);
+    }
+
+    /**
+     * Add the provided entity to the cache, under the specified type.
+     * @param sEntityType the type (class name) under which to cache the entity
+     * @param sName the name by which to refer to the entity
+     * @param oEntity the entity to cache
+     */
+    public void put(String sEntityType, String sName, BasicEntity oEntity) {
+        record(tlTypesWritten, sEntityType);
+        Map<ReferenceType, List<String>> hmReferences = getReferences(oEntity);
+        lock.writeLock().lock();
+        try {
+            Map<String, BasicEntity> hmPartition = hmPartitions.get(sEntityType);
+            if (hmPartition == null) {
+                hmPartition = new LinkedHashMap<>();
+                hmPartitions.put(sEntityType, hmPartition);
+            }
+            BasicEntity oReplaced = hmPartition.put(sName, oEntity);
+            if (oReplaced != null && oReplaced != oEntity)
+                unindex(oReplaced);
+            index(oEntity, hmReferences);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve each of the kinds of reference the provided entity makes (leaving out those it does not make), before
+     * taking the lock to index it.
+     */
+    private static Map<ReferenceType, List<String>> getReferences(BasicEntity oEntity) {
+        Map<ReferenceType, List<String>> hmReferences = new EnumMap<>(ReferenceType.class);
+        for (ReferenceType type : ReferenceType.values()) {
+            List<String> alNames = oEntity.getReferences(type);
+            if (!alNames.isEmpty())
+                hmReferences.put(type, alNames);
+        }
+        return hmReferences;
+    }
+
+    /**
+     * (Re-)index the provided entity by each of the entities it references.
+     * @param oEntity the entity to index
+     * @param hmReferences the names of the entities it references, by kind of reference
+     */
+    private void index(BasicEntity oEntity, Map<ReferenceType, List<String>> hmReferences) {
+        unindex(oEntity);
+        if (hmReferences.isEmpty())
+            return;
+        List<Set<BasicEntity>> alIndexedUnder = new ArrayList<>();
+        for (Map.Entry<ReferenceType, List<String>> entry : hmReferences.entrySet()) {
+            Map<String, Set<BasicEntity>> hmIndex = hmIndexes.get(entry.getKey());
+            if (hmIndex == null) {
+                hmIndex = new HashMap<>();
+                hmIndexes.put(entry.getKey(), hmIndex);
+            }
+            for (String sName : entry.getValue()) {
+                Set<BasicEntity> hsReferencing = hmIndex.get(sName);
+                if (hsReferencing == null) {
+                    hsReferencing = new LinkedHashSet<>();
+                    hmIndex.put(sName, hsReferencing);
+                }
+                if (hsReferencing.add(oEntity))
+                    alIndexedUnder.add(hsReferencing);
+            }
+        }
+        if (!alIndexedUnder.isEmpty())
+            hmIndexedUnder.put(oEntity, alIndexedUnder);
+    }
+
+    private void unindex(BasicEntity oEntity) {
+        List<Set<BasicEntity>> alIndexedUnder = hmIndexedUnder.remove(oEntity);
+        if (alIndexedUnder != null) {
+            for (Set<BasicEntity> hsReferencing : alIndexedUnder) {
+                hsReferencing.remove(oEntity);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the specified entity from the cache.
+     * @param sEntityType the type (class name) under which the entity was cached
+     * @param sName the name of the entity
+     * @return BasicEntity - or null if there is no such entity
+     */
+    public BasicEntity get(String sEntityType, String sName) {
+        record(tlTypesRead, sEntityType);
+        lock.readLock().lock();
+        try {
+            Map<String, BasicEntity> hmPartition = hmPartitions.get(sEntityType);
+            return (hmPartition == null) ? null : hmPartition.get(sName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve the specified entity from the cache.
+     * @param type the class of the entity
+     * @param sName the name of the entity
+     * @param <T> the type of the entity
+     * @return T - or null if there is no such entity (of that class)
+     */
+    public <T extends BasicEntity> T get(Class<T> type, String sName) {
+        BasicEntity oEntity = get(type.getName(), sName);
+        return type.isInstance(oEntity) ? type.cast(oEntity) : null;
+    }
+
+    /**
+     * Indicates whether the specified entity exists in the cache.
+     * @param sEntityType the type (class name) under which the entity was cached
+     * @param sName the name of the entity
+     * @return boolean
+     */
+    public boolean contains(String sEntityType, String sName) {
+        return get(sEntityType, sName) != null;
+    }
+
+    /**
+     * Retrieve all of the entities cached under the specified type, in the order they were added.
+     * @param sEntityType the type (class name) under which the entities were cached
+     * @return {@code Collection<BasicEntity>}
+     */
+    public Collection<BasicEntity> getAll(String sEntityType) {
+        record(tlTypesRead, sEntityType);
+        lock.readLock().lock();
+        try {
+            Map<String, BasicEntity> hmPartition = hmPartitions.get(sEntityType);
+            return (hmPartition == null) ? Collections.<BasicEntity>emptyList() : new ArrayList<>(hmPartition.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class, in the order they were added.
+     * @param type the class of the entities
+     * @param <T> the type of the entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> getAll(Class<T> type) {
+        List<T> alEntities = new ArrayList<>();
+        for (BasicEntity oEntity : getAll(type.getName())) {
+            if (type.isInstance(oEntity))
+                alEntities.add(type.cast(oEntity));
+        }
+        return alEntities;
+    }
+
+    /**
+     * Retrieve all of the entities that reference the named entity in the specified way, in the order they were first
+     * indexed.
+     * @param type the kind of reference
+     * @param sName the name of the referenced entity
+     * @return {@code Collection<BasicEntity>}
+     */
+    public Collection<BasicEntity> findReferencing(ReferenceType type, String sName) {
+        record(tlTypesRead, ANY_TYPE);
+        return lookupReferencing(type, sName);
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class that reference the named entity in the specified way.
+     * @param type the kind of reference
+     * @param sName the name of the referenced entity
+     * @param entityType the class of the referencing entities to retrieve
+     * @param <T> the type of the referencing entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> findReferencing(ReferenceType type, String sName, Class<T> entityType) {
+        record(tlTypesRead, entityType.getName());
+        List<T> alEntities = new ArrayList<>();
+        for (BasicEntity oEntity : lookupReferencing(type, sName)) {
+            if (entityType.isInstance(oEntity))
+                alEntities.add(entityType.cast(oEntity));
+        }
+        return alEntities;
+    }
+
+    private List<BasicEntity> lookupReferencing(ReferenceType type, String sName) {
+        lock.readLock().lock();
+        try {
+            Map<String, Set<BasicEntity>> hmIndex = hmIndexes.get(type);
+            Set<BasicEntity> hsReferencing = (hmIndex == null) ? null : hmIndex.get(sName);
+            return (hsReferencing == null) ? Collections.<BasicEntity>emptyList() : new ArrayList<>(hsReferencing);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class that belong to (or operate on) the named container.
+     * @param sContainerName the name of the catalog, hierarchy or other container
+     * @param entityType the class of the entities to retrieve
+     * @param <T> the type of the entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> findByContainer(String sContainerName, Class<T> entityType) {
+        return findReferencing(ReferenceType.CONTAINER, sContainerName, entityType);
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class that are defined by the named spec.
+     * @param sSpecName the name of the spec
+     * @param entityType the class of the entities to retrieve
+     * @param <T> the type of the entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> findBySpec(String sSpecName, Class<T> entityType) {
+        return findReferencing(ReferenceType.SPEC, sSpecName, entityType);
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class that are secured by the named access control group.
+     * @param sAcgName the name of the access control group
+     * @param entityType the class of the entities to retrieve
+     * @param <T> the type of the entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> findByAcg(String sAcgName, Class<T> entityType) {
+        return findReferencing(ReferenceType.ACG, sAcgName, entityType);
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class that use (or belong to) the named workflow.
+     * @param sWorkflowName the name of the workflow
+     * @param entityType the class of the entities to retrieve
+     * @param <T> the type of the entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> findByWorkflow(String sWorkflowName, Class<T> entityType) {
+        return findReferencing(ReferenceType.WORKFLOW, sWorkflowName, entityType);
+    }
+
+    /**
+     * Retrieve all of the entities of the specified class that use the named hierarchy.
+     * @param sHierarchyName the name of the hierarchy
+     * @param entityType the class of the entities to retrieve
+     * @param <T> the type of the entities
+     * @return {@code List<T>}
+     */
+    public <T extends BasicEntity> List<T> findByHierarchy(String sHierarchyName, Class<T> entityType) {
+        return findReferencing(ReferenceType.HIERARCHY, sHierarchyName, entityType);
+    }
+
+    /**
+     * Retrieve the types (class names) of entity that have been cached.
+     * @return {@code Set<String>}
+     */
+    public Set<String> getTypes() {
+        lock.readLock().lock();
+        try {
+            return Collections.unmodifiableSet(new HashSet<>(hmPartitions.keySet()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve the total number of entries in the cache (an entity cached under several types is counted once for
+     * each type).
+     * @return int
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            int iSize = 0;
+            for (Map<String, BasicEntity> hmPartition : hmPartitions.values()) {
+                iSize += hmPartition.size();
+            }
+            return iSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve the number of entities cached under the specified type.
+     * @param sEntityType the type (class name) under which the entities were cached
+     * @return int
+     */
+    public int size(String sEntityType) {
+        lock.readLock().lock();
+        try {
+            Map<String, BasicEntity> hmPartition = hmPartitions.get(sEntityType);
+            return (hmPartition == null) ? 0 : hmPartition.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Retrieve the number of entities cached under each type, by type (class name).
+     * @return {@code Map<String, Integer>}
+     */
+    public Map<String, Integer> getSizes() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> hmSizes = new TreeMap<>();
+            for (Map.Entry<String, Map<String, BasicEntity>> entry : hmPartitions.entrySet()) {
+                hmSizes.put(entry.getKey(), entry.getValue().size());
+            }
+            return hmSizes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all of the entities cached under the specified type (for example to read them in again). Entities that
+     * are also cached under other types are no longer found through the references index, so those other types should
+     * be removed as well.
+     * @param sEntityType the type (class name) under which the entities were cached
+     */
+    public void removeAll(String sEntityType) {
+        lock.writeLock().lock();
+        try {
+            Map<String, BasicEntity> hmPartition = hmPartitions.remove(sEntityType);
+            if (hmPartition != null) {
+                for (BasicEntity oEntity : hmPartition.values()) {
+                    unindex(oEntity);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all entities from the cache.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            hmPartitions.clear();
+            hmIndexes.clear();
+            hmIndexedUnder.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Record of every entity output by a build, kept in its output directory so that a later build can be packaged as a
+ * delta against it (see {@link BuildContext#setDeltaBaseline(EntityManifest)}). Each entity is recorded with a
+ * signature: the hash of the XML generated for it, of any files of its own that it generated (for example each spec's
+ * own XML file), and of any content files its XML refers to (for example data or script files). Two builds generate
+ * the same output for an entity exactly when its signature is the same.
+ * <br>
+ * Entities are only signed when the build needs their signatures (see {@link BuildContext#isSigningEntities()}), and
+ * the manifest is only kept in the output directory of such builds.
+ * <br>
+ * The manifest is a tab-separated text file, one entity per line, with the name of the entity last on each line.
+ */
+public class EntityManifest {
+
+    public static final String FILENAME = ".envtoolkit-entities";
+
+    private static final String FORMAT_VERSION = "1";
+
+    private final Map<String, Map<String, String>> hmSignatures = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieve the types of entity recorded.
+     * @return {@code Set<String>}
+     */
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(hmSignatures.keySet());
+    }
+
+    /**
+     * Retrieve the signatures of all of the entities of the specified type.
+     * @param sEntityType the type of entity (for example Spec)
+     * @return {@code Map<String, String>} - signature by name of entity, in the order they were output
+     */
+    public Map<String, String> getSignatures(String sEntityType) {
+        Map<String, String> hmType = hmSignatures.get(sEntityType);
+        if (hmType == null)
+            return Collections.emptyMap();
+        synchronized (hmType) {
+            return new LinkedHashMap<>(hmType);
+        }
+    }
+
+    /**
+     * Retrieve the signature of the specified entity.
+     * @param sEntityType the type of entity (for example Spec)
+     * @param sEntityName the name of the entity
+     * @return String - or null if the entity is not recorded
+     */
+    public String getSignature(String sEntityType, String sEntityName) {
+        Map<String, String> hmType = hmSignatures.get(sEntityType);
+        if (hmType == null)
+            return null;
+        synchronized (hmType) {
+            return hmType.get(sEntityName);
+        }
+    }
+
+    /**
+     * Record the signature of an entity.
+     * @param sEntityType the type of entity (for example Spec)
+     * @param sEntityName the name of the entity
+     * @param sSignature the signature of the entity's output
+     */
+    public void add(String sEntityType, String sEntityName, String sSignature) {
+        Map<String, String> hmType = hmSignatures.computeIfAbsent(sEntityType, k -> new LinkedHashMap<>());
+        synchronized (hmType) {
+            hmType.put(sEntityName, sSignature);
+        }
+    }
+
+    /**
+     * Record the signatures of all of the entities of the specified type, replacing any recorded before.
+     * @param sEntityType the type of entity (for example Spec)
+     * @param hmTypeSignatures signature by name of entity
+     */
+    public void putAll(String sEntityType, Map<String, String> hmTypeSignatures) {
+        Map<String, String> hmType = new LinkedHashMap<>(hmTypeSignatures);
+        hmSignatures.put(sEntityType, hmType);
+    }
+
+    /**
+     * Forget all of the entities of the specified type (before they are output again).
+     * @param sEntityType the type of entity (for example Spec)
+     */
+    public void clear(String sEntityType) {
+        hmSignatures.remove(sEntityType);
+    }
+
+    /**
+     * Calculate the signature of an entity's output.
+     * @param xml the XML generated for the entity
+     * @param alFileNames the names of the files the entity generated, and of the content files its XML refers to (in
+     *                    order)
+     * @param alFileHashes the hashes of the contents of those files (in the same order)
+     * @return String
+     */
+    public static String signature(XMLWriter xml, List<String> alFileNames, List<String> alFileHashes) {
+        MessageDigest digest = BuildManifest.newDigest();
+        xml.digestTo(digest);
+        digest.update((byte) 0);
+        for (int i = 0; i < alFileNames.size(); i++) {
+            digest.update(alFileNames.get(i).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(alFileHashes.get(i).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return BuildManifest.toHex(digest.digest());
+    }
+
+    /**
+     * Remove any manifest left in the provided directory by a previous build (which would no longer match the entities
+     * output into it).
+     * @param sDirectory the output directory of the build
+     * @throws IOException on any error removing the manifest
+     */
+    public static void remove(String sDirectory) throws IOException {
+        Files.deleteIfExists(new File(sDirectory, FILENAME).toPath());
+    }
+
+    /**
+     * Read the manifest left by a previous build.
+     * @param sPath the output directory of the build, or the manifest file itself
+     * @return EntityManifest
+     * @throws IOException if there is no (readable) manifest
+     */
+    public static EntityManifest read(String sPath) throws IOException {
+
+        File fManifest = new File(sPath);
+        if (fManifest.isDirectory())
+            fManifest = new File(fManifest, FILENAME);
+
+        try (BufferedReader reader = Files.newBufferedReader(fManifest.toPath(), StandardCharsets.UTF_8)) {
+            String sLine = reader.readLine();
+            if (sLine == null || !sLine.equals("version\t" + FORMAT_VERSION))
+                throw new IOException("Unrecognised entity manifest: " + fManifest.getPath());
+            EntityManifest manifest = new EntityManifest();
+            while ((sLine = reader.readLine()) != null) {
+                String[] aTokens = sLine.split("\t", 4);
+                if (aTokens.length != 4 || !aTokens[0].equals("entity"))
+                    throw new IOException("Unrecognised line in entity manifest " + fManifest.getPath() + ": " + sLine);
+                manifest.add(aTokens[1], aTokens[3], aTokens[2]);
+            }
+            return manifest;
+        }
+
+    }
+
+    /**
+     * Write the manifest into the specified directory, replacing any previous manifest once it has been completely
+     * written.
+     * @param sDirectory the output directory of the build
+     * @param alEntityTypes the types of entity to write, in order
+     * @throws IOException on any error writing
+     */
+    public void write(String sDirectory, List<String> alEntityTypes) throws IOException {
+
+        File fManifest = new File(sDirectory, FILENAME);
+        File fTemp = new File(sDirectory, FILENAME + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(fTemp.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("version\t" + FORMAT_VERSION + "\n");
+            for (String sEntityType : alEntityTypes) {
+                for (Map.Entry<String, String> entry : getSignatures(sEntityType).entrySet()) {
+                    writer.write("entity\t" + sEntityType + "\t" + entry.getValue() + "\t" + entry.getKey() + "\n");
+                }
+            }
+        }
+        Files.move(fTemp.toPath(), fManifest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+}
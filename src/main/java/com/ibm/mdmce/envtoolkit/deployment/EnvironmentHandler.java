@@ -5,13 +5,16 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment;
 
 import com.ibm.mdmce.envtoolkit.deployment.model.BasicEntity;
-import com.ibm.mdmce.envtoolkit.deployment.model.CompanyAttribute;
 import com.ibm.mdmce.envtoolkit.deployment.model.TemplateParameters;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.*;
 import java.text.SimpleDateFormat;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.*;
+import java.util.zip.Deflater;
 
 /**
  * The primary execution thread through which all of the entity handlers are invoked, the only requirements to utilise
@@ -32,17 +35,15 @@ public class EnvironmentHandler {
     private String version;
     private String inputPath;
     private String outputPath;
-    private static String _ENCODING;
+    private String documentationPath;
+    private BuildContext context;
     private TemplateParameters templateParameters;
+    private HandlerLoadScheduler handlerLoads;
+    private final Map<String, Set<String>> hmValidationTypesRead = new HashMap<>();
 
     //public static PrintWriter out;
     //public static PrintWriter err;
 
-    private static Map<String, BasicEntity> hmFullEntityCache = new HashMap<>();
-    private static List<String> alAllLocales = new ArrayList<>();
-
-    private static Map<String, BasicEntityHandler> hmEntityHandlers = new HashMap<>();
-
     public static Logger logger;
     private static void initLogger(Level lvl){
         System.setProperty("java.util.logging.SimpleFormatter.format", "%4$s: %5$s%n");
@@ -92,45 +93,90 @@ public class EnvironmentHandler {
             "HierarchyMapping"
     };
 
+    /**
+     * Load all of the entity handlers (and thereby all of the entities), loading handlers that do not depend on each
+     * other concurrently. The types of entity listed after each handler are those whose handlers must be loaded before
+     * it: because it looks up their entities while loading, or adds entities of its own to them. The references listed
+     * afterwards are the other types of entity each handler's entities refer to, so that when only some types of
+     * entity are selected (see {@link BuildContext#getSelectedTypes()}) only the handlers they need are loaded.
+     * @param sDocumentationFilePath (optional) directory containing Doxygen documentation
+     */
     protected void initEntities(String sDocumentationFilePath) {
-        hmEntityHandlers.put("CompanyAttribute", new CompanyAttributeHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Script", new DocumentHandler(inputPath, sDocumentationFilePath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("DataSource", new DataSourceHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Distribution", new DistributionHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("ACG", new AccessControlGroupHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Spec", new SpecHandler(inputPath, version, templateParameters, companyCode, _ENCODING));
-        hmEntityHandlers.put("Lookup", new LookupTableHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("LookupTableContent", new LookupTableDataHandler(inputPath, version, templateParameters, outputPath, _ENCODING));
-        hmEntityHandlers.put("AttrCollection", new AttributeCollectionHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Hierarchy", new HierarchyHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Organization", new OrganizationHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("OrganizationContent", new OrganizationContentHandler(inputPath, version, templateParameters, outputPath, _ENCODING));
-        hmEntityHandlers.put("Catalog", new CatalogHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("CatalogView", new CatalogViewHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("HierarchyView", new HierarchyViewHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Role", new RoleHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("RoleToACG", new RoleMappingHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("AccessPriv", new AccessPrivilegeHandler(inputPath, version, templateParameters, companyCode, _ENCODING));
-        hmEntityHandlers.put("User", new UserHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Setting", new SettingHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Workflow", new WorkflowHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("WorkflowStepView", new WorkflowStepViewHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("ColArea", new CollaborationAreaHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("WebService", new WebServiceHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Selection", new SelectionHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("SearchTemplate", new SearchTemplateHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("SpecMap", new SpecMapHandler(inputPath, version, templateParameters, companyCode, _ENCODING));
-        hmEntityHandlers.put("Export", new ExportHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Import", new ImportFeedHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("Report", new ReportHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("UDL", new UserDefinedLogHandler(inputPath, version, templateParameters, _ENCODING));
-        hmEntityHandlers.put("CatalogContent", new CatalogContentHandler(inputPath, version, templateParameters, outputPath, _ENCODING));
-        hmEntityHandlers.put("HierarchyContent", new HierarchyContentHandler(inputPath, version, templateParameters, outputPath, _ENCODING));
-        hmEntityHandlers.put("HierarchyMapping", new HierarchyMappingHandler(inputPath, version, templateParameters, _ENCODING));
-    }
-
-    /**
-     * Construct a new environment archive.
+        HandlerLoadScheduler scheduler = new HandlerLoadScheduler(context);
+        scheduler.add("CompanyAttribute", () -> new CompanyAttributeHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Script", () -> new DocumentHandler(inputPath, sDocumentationFilePath, version, templateParameters, context.getEncoding()));
+        scheduler.add("DataSource", () -> new DataSourceHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Distribution", () -> new DistributionHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("ACG", () -> new AccessControlGroupHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Spec", () -> new SpecHandler(inputPath, version, templateParameters, companyCode, context.getEncoding()), "CompanyAttribute");
+        scheduler.add("Lookup", () -> new LookupTableHandler(inputPath, version, templateParameters, context.getEncoding()), "Spec");
+        scheduler.add("LookupTableContent", () -> new LookupTableDataHandler(inputPath, version, templateParameters, outputPath, context.getEncoding()));
+        scheduler.add("AttrCollection", () -> new AttributeCollectionHandler(inputPath, version, templateParameters, context.getEncoding()), "Spec");
+        scheduler.add("Hierarchy", () -> new HierarchyHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Organization", () -> new OrganizationHandler(inputPath, version, templateParameters, context.getEncoding()), "Hierarchy");
+        scheduler.add("OrganizationContent", () -> new OrganizationContentHandler(inputPath, version, templateParameters, outputPath, context.getEncoding()));
+        scheduler.add("Catalog", () -> new CatalogHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("CatalogView", () -> new CatalogViewHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("HierarchyView", () -> new HierarchyViewHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Role", () -> new RoleHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("RoleToACG", () -> new RoleMappingHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("AccessPriv", () -> new AccessPrivilegeHandler(inputPath, version, templateParameters, companyCode, context.getEncoding()));
+        scheduler.add("User", () -> new UserHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Setting", () -> new SettingHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Workflow", () -> new WorkflowHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("WorkflowStepView", () -> new WorkflowStepViewHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("ColArea", () -> new CollaborationAreaHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("WebService", () -> new WebServiceHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("Selection", () -> new SelectionHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("SearchTemplate", () -> new SearchTemplateHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("SpecMap", () -> new SpecMapHandler(inputPath, version, templateParameters, companyCode, context.getEncoding()));
+        scheduler.add("Export", () -> new ExportHandler(inputPath, version, templateParameters, context.getEncoding()), "Script", "SpecMap");
+        scheduler.add("Import", () -> new ImportFeedHandler(inputPath, version, templateParameters, context.getEncoding()), "Script", "SpecMap", "Export");
+        scheduler.add("Report", () -> new ReportHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("UDL", () -> new UserDefinedLogHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.add("CatalogContent", () -> new CatalogContentHandler(inputPath, version, templateParameters, outputPath, context.getEncoding()), "OrganizationContent");
+        scheduler.add("HierarchyContent", () -> new HierarchyContentHandler(inputPath, version, templateParameters, outputPath, context.getEncoding()), "CatalogContent");
+        scheduler.add("HierarchyMapping", () -> new HierarchyMappingHandler(inputPath, version, templateParameters, context.getEncoding()));
+        scheduler.addReferences("Script", "Spec", "Hierarchy", "Catalog");
+        scheduler.addReferences("Spec", "Lookup");
+        scheduler.addReferences("LookupTableContent", "Lookup");
+        scheduler.addReferences("Hierarchy", "Script", "ACG", "Spec", "AttrCollection");
+        scheduler.addReferences("Organization", "Script", "ACG", "Spec", "AttrCollection");
+        scheduler.addReferences("Catalog", "Script", "ACG", "Spec", "AttrCollection", "Hierarchy");
+        scheduler.addReferences("CatalogView", "Catalog", "Hierarchy", "AttrCollection");
+        scheduler.addReferences("HierarchyView", "Catalog", "Hierarchy", "AttrCollection");
+        scheduler.addReferences("Role", "RoleToACG");
+        scheduler.addReferences("RoleToACG", "ACG", "Role");
+        scheduler.addReferences("AccessPriv", "AttrCollection", "Hierarchy", "Catalog", "Role");
+        scheduler.addReferences("User", "Role");
+        scheduler.addReferences("Setting", "User");
+        scheduler.addReferences("Workflow", "Script", "ACG", "AttrCollection", "Role", "User", "WorkflowStepView");
+        scheduler.addReferences("WorkflowStepView", "Catalog", "Hierarchy", "AttrCollection");
+        scheduler.addReferences("ColArea", "ACG", "Hierarchy", "Catalog", "Role", "User", "Workflow");
+        scheduler.addReferences("WebService", "Script");
+        scheduler.addReferences("Selection", "ACG", "Hierarchy", "Catalog");
+        scheduler.addReferences("SearchTemplate", "AttrCollection", "Hierarchy", "Catalog", "Workflow", "ColArea");
+        scheduler.addReferences("SpecMap", "Spec");
+        scheduler.addReferences("Export", "Distribution", "Spec", "Lookup", "Hierarchy", "Catalog", "User", "Selection");
+        scheduler.addReferences("Import", "DataSource", "ACG", "Spec", "Lookup", "Hierarchy", "Catalog", "User", "Workflow", "ColArea");
+        scheduler.addReferences("Report", "Script", "Distribution");
+        scheduler.addReferences("UDL", "Hierarchy", "Catalog");
+        scheduler.addReferences("HierarchyMapping", "Hierarchy");
+        scheduler.addReferences("OrganizationContent", "Organization");
+        scheduler.addReferences("CatalogContent", "Catalog");
+        scheduler.addReferences("HierarchyContent", "Hierarchy");
+        if (context.getSelectedTypes() == null) {
+            scheduler.loadAll(context.getThreads());
+        } else {
+            Set<String> hsClosure = scheduler.getClosure(context.getSelectedTypes());
+            EnvironmentHandler.logger.info("Building only " + context.getSelectedTypes() + " - reading entities of: " + hsClosure);
+            scheduler.load(hsClosure, context.getThreads());
+        }
+        handlerLoads = scheduler;
+    }
+
+    /**
+     * Construct a new environment archive, using its own (new) build context.
      * @param sCmpCode the company code for the environment
      * @param sVersion the software version for the environment
      * @param sInputPath the directory containing the input CSV files
@@ -139,12 +185,44 @@ public class EnvironmentHandler {
      * @param sEncoding the encoding used within the files
      */
     public EnvironmentHandler(String sCmpCode, String sVersion, String sInputPath, String sOutputPath, String sDocumentationFilePath, String sEncoding) {
+        this(sCmpCode, sVersion, sInputPath, sOutputPath, sDocumentationFilePath, new BuildContext(sEncoding));
+    }
+
+    /**
+     * Construct a new environment archive within the provided build context.
+     * @param sCmpCode the company code for the environment
+     * @param sVersion the software version for the environment
+     * @param sInputPath the directory containing the input CSV files
+     * @param sOutputPath the directory into which to write the generated XML files
+     * @param sDocumentationFilePath (optional) directory containing Doxygen documentation
+     * @param context the (new) context in which to build, including the encoding used within the files
+     */
+    public EnvironmentHandler(String sCmpCode, String sVersion, String sInputPath, String sOutputPath, String sDocumentationFilePath, BuildContext context) {
 
         companyCode = sCmpCode;
         version = sVersion;
         inputPath = sInputPath;
         outputPath = sOutputPath;
-        _ENCODING = sEncoding;
+        documentationPath = sDocumentationFilePath;
+        this.context = context;
+
+        BuildContext previous = BuildContext.attach(context);
+        try {
+            marshal(sDocumentationFilePath);
+        } finally {
+            BuildContext.attach(previous);
+        }
+
+    }
+
+    /**
+     * Read in the template parameters and all of the entities.
+     * @param sDocumentationFilePath (optional) directory containing Doxygen documentation
+     */
+    private void marshal(String sDocumentationFilePath) {
+
+        String sEncoding = context.getEncoding();
+        StringPool stringPool = context.getStringPool();
 
         //try {
         //    out = new PrintWriter(new OutputStreamWriter(System.out, sEncoding), true);
@@ -172,63 +250,558 @@ public class EnvironmentHandler {
         }
 
         EnvironmentHandler.logger.info("Marshalling data...");
-        initEntities(sDocumentationFilePath);
+        InputSnapshot snapshot = context.isUseInputSnapshot() ? openInputSnapshot() : null;
+        context.setInputSnapshot(snapshot);
+        try {
+            loadStagingContent(() -> initEntities(sDocumentationFilePath));
+        } finally {
+            context.setInputSnapshot(null);
+        }
+        if (snapshot != null)
+            writeInputSnapshot(snapshot);
+
+        EnvironmentHandler.logger.info("Pooled " + stringPool.getSize() + " distinct values (" + stringPool.getRepeats() + " repeats), saving approximately " + (stringPool.getBytesSaved() / 1024) + " KB.");
+        stringPool.clear();
 
     }
 
     /**
-     * Output the generated XML files.
+     * Read in entity handlers while the data files of any content handlers among them are staged into the output
+     * directory (see {@link ContentStager}), waiting for every data file to be staged, and then recording what was
+     * staged in the output directory for the next build.
+     * @param load the reading in of the entity handlers
      */
-    public void outputEnvironmentFiles() {
+    private void loadStagingContent(Runnable load) {
+
+        ContentStager stager = ContentStager.open(outputPath, context.getThreads(), context.isLinkContent());
+        context.setContentStager(stager);
+        try {
+            load.run();
+        } finally {
+            context.setContentStager(null);
+            stager.finish();
+        }
 
+        int iStaged = stager.getCopiedCount() + stager.getLinkedCount() + stager.getUnchangedCount();
+        if (iStaged > 0)
+            EnvironmentHandler.logger.info("Staged " + iStaged + " content data files (" + stager.getCopiedCount() + " copied, " + stager.getLinkedCount() + " linked, " + stager.getUnchangedCount() + " unchanged since the previous build).");
+        if (!stager.isChanged())
+            return;
+        try {
+            new File(outputPath).mkdirs();
+            stager.write(outputPath);
+        } catch (IOException errIO) {
+            EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+        }
+
+    }
+
+    /**
+     * Open the snapshot of parsed input files left in the output directory by the previous build (see
+     * {@link InputSnapshot}).
+     * @return InputSnapshot - or null if the settings of the build cannot be read
+     */
+    private InputSnapshot openInputSnapshot() {
+        try {
+            String sKey = InputSnapshot.getKey(context.getEncoding(), new File(inputPath + File.separator + "TemplateParameters.csv"));
+            return InputSnapshot.open(outputPath, sKey, context.getStringPool());
+        } catch (IOException errIO) {
+            EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot of parsed input files into the output directory, for the next build, if any input files were
+     * parsed rather than read from the previous snapshot.
+     * @param snapshot the snapshot used while reading in the environment
+     */
+    private void writeInputSnapshot(InputSnapshot snapshot) {
+        EnvironmentHandler.logger.info("Read " + snapshot.getReplayedCount() + " unchanged input files from the parsed input snapshot.");
+        if (!snapshot.isChanged())
+            return;
+        try {
+            new File(outputPath).mkdirs();
+            snapshot.write(outputPath);
+        } catch (IOException errIO) {
+            EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+        }
+    }
+
+    /**
+     * Output the generated XML files. The files of each type of entity are output concurrently (see
+     * {@link BuildContext#getThreads()}), with the entities of each type also generated concurrently, while the
+     * ImportEnvControl.xml that drives their import still lists them in the order they must be imported. For an
+     * incremental build (see {@link BuildContext#isIncremental()}) only the files affected by changes since the
+     * previous build into the same output directory are regenerated, and the manifest of the build is updated. For a
+     * delta package (see {@link BuildContext#getDeltaBaseline()}) only the entities that are new or have changed since
+     * the baseline are output. When the build signs its entities (see {@link BuildContext#isSigningEntities()}), every
+     * entity output is recorded in the entity manifest left in the output directory (see {@link EntityManifest}), so
+     * that later builds can be packaged as deltas against this one. When import waves
+     * are planned (see {@link BuildContext#getImportWavePlanner()}), an ImportEnvControl file is also output for each
+     * wave, along with the ImportWaves.xml that lists them. Finally, if the build is to be packaged (see
+     * {@link BuildContext#getPackagePath()}), the output directory and input files are written into its ZIP file.
+     * @return boolean - false if the output (or its package) could not be written
+     */
+    public boolean outputEnvironmentFiles() {
+
+        BuildContext previous = BuildContext.attach(context);
         try {
 
             Date dToday = new Date();
             SimpleDateFormat formatCreationDate = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy");
 
-            Writer outFile = BasicEntityHandler.getNewWriter(outputPath + File.separator + "ImportEnvControl.xml");
-            outFile.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-            outFile.write("<ImportList CreatedDate=\"" + formatCreationDate.format(dToday) + "\" name=\"\" version=\"" + version + "\">\n");
+            List<String> alFederatedEntities = new ArrayList<>();
+            for (String sEntityName : getSelectedEntityOrder()) {
+                if (getHandler(sEntityName).hasFederatedInfo())
+                    alFederatedEntities.add(sEntityName);
+            }
+            IncrementalBuild incremental = null;
+            List<String> alOutputEntities = alFederatedEntities;
+            if (context.isIncremental()) {
+                incremental = new IncrementalBuild(context, handlerLoads, outputPath, getBuildFingerprint());
+                alOutputEntities = incremental.selectOutputs(alFederatedEntities);
+            }
+            if (!outputEnvFiles(alOutputEntities)) {
+                // Leave the output as it is (without recording it as complete), rather than package an incomplete build
+                EnvironmentHandler.logger.severe("Error: Unable to write the XML files of every type of entity - the build is incomplete.");
+                return false;
+            }
+            List<String> alImportEntities = alFederatedEntities;
+            if (context.getDeltaBaseline() != null)
+                alImportEntities = packageDelta(alFederatedEntities, context.getDeltaBaseline());
 
-            for (String sEntityName : ENTITY_ORDER) {
+            String sCreatedDate = formatCreationDate.format(dToday);
+            writeImportEnvControl("ImportEnvControl.xml", alImportEntities, sCreatedDate);
+            if (context.getImportWavePlanner() != null)
+                writeImportWaves(context.getImportWavePlanner(), alImportEntities, sCreatedDate);
 
-                BasicEntityHandler beh = getHandler(sEntityName);
-                if (beh.hasFederatedInfo()) {
-                    EnvironmentHandler.logger.info("Writing ImportEnv file for entity " + sEntityName);
-                    beh.outputEnvFile(companyCode, MODEL_PKG_NAME + "." + sEntityName, outputPath + File.separator + beh.getXmlFilePath(), "XML");
-                    outFile.write(beh.getImportEnvXML(outputPath + File.separator).replace("\\", "/"));
-                }
+            if (context.isSigningEntities())
+                context.getEntityManifest().write(outputPath, alFederatedEntities);
+            else
+                EntityManifest.remove(outputPath);
 
-            }
+            if (incremental != null)
+                incremental.complete();
 
-            outFile.write("</ImportList>\n");
-            outFile.flush();
+            if (context.getPackagePath() != null)
+                writePackage(context.getPackagePath(), dToday);
+            return true;
 
         } catch (FileNotFoundException errNoFile) {
             EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
+            return false;
         } catch (IOException errIO) {
             EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+            return false;
+        } finally {
+            BuildContext.attach(previous);
         }
 
     }
 
     /**
-     * Validate the provided CSV files are referentially-integral.
+     * Write an ImportEnvControl file listing the XML files of the provided types of entity, in the order they are to be
+     * imported.
+     * @param sFilename the name of the file to write (within the output directory)
+     * @param alEntityNames the types of entity to import (in order)
+     * @param sCreatedDate the date of the build
+     * @throws IOException on any error writing the file
      */
-    public void validateEnvironmentFiles() {
+    private void writeImportEnvControl(String sFilename, List<String> alEntityNames, String sCreatedDate) throws IOException {
+
+        try (Writer outFile = BasicEntityHandler.getNewWriter(outputPath + File.separator + sFilename)) {
+            outFile.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            outFile.write("<ImportList CreatedDate=\"" + sCreatedDate + "\" name=\"\" version=\"" + version + "\">\n");
+
+            for (String sEntityName : alEntityNames) {
+                BasicEntityHandler beh = getHandler(sEntityName);
+                outFile.write(beh.getImportEnvXML(outputPath + File.separator).replace("\\", "/"));
+            }
 
-        for (String sEntityName : ENTITY_ORDER) {
+            outFile.write("</ImportList>\n");
+        }
+
+    }
 
+    /**
+     * Plan the import of the provided types of entity as waves (see {@link ImportWavePlanner}), and write an
+     * ImportEnvControl file for each wave along with the ImportWaves.xml listing the waves (in the order they must be
+     * imported) and the critical path through them. Any files of waves from a previous build into the same output
+     * directory are removed first.
+     * @param planner the planner holding the references recorded while validating
+     * @param alEntityNames the types of entity to import (in the order of the ImportEnvControl.xml)
+     * @param sCreatedDate the date of the build
+     * @throws IOException on any error writing the files
+     */
+    private void writeImportWaves(ImportWavePlanner planner, List<String> alEntityNames, String sCreatedDate) throws IOException {
+
+        File[] aPrevious = new File(outputPath).listFiles((dir, name) -> name.matches("ImportEnvControl_wave[0-9]+\\.xml"));
+        if (aPrevious != null) {
+            for (File fPrevious : aPrevious) {
+                if (!fPrevious.delete())
+                    EnvironmentHandler.logger.warning(". . . WARNING: Unable to remove the previous import wave: " + fPrevious.getPath());
+            }
+        }
+
+        planner.plan(alEntityNames, handlerLoads::getDeclaredTypes, context.getEntityManifest(), context.getDeltaBaseline());
+        List<List<String>> alWaves = planner.getWaves();
+        List<String> alCriticalEntities = planner.getCriticalEntities();
+
+        List<String> alChain = new ArrayList<>();
+        try (Writer outFile = BasicEntityHandler.getNewWriter(outputPath + File.separator + "ImportWaves.xml")) {
+            outFile.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            outFile.write("<ImportWaves CreatedDate=\"" + sCreatedDate + "\" version=\"" + version + "\" waves=\"" + alWaves.size() + "\" longestEntityChain=\"" + alCriticalEntities.size() + "\">\n");
+            for (int i = 0; i < alWaves.size(); i++) {
+                String sFilename = "ImportEnvControl_wave" + (i + 1) + ".xml";
+                writeImportEnvControl(sFilename, alWaves.get(i), sCreatedDate);
+                outFile.write("  <Wave number=\"" + (i + 1) + "\" file=\"" + sFilename + "\">\n");
+                for (String sEntityName : alWaves.get(i)) {
+                    outFile.write("    <Entity>" + sEntityName + "</Entity>\n");
+                }
+                outFile.write("  </Wave>\n");
+            }
+            outFile.write("  <CriticalPath>\n");
+            for (String sEntityName : planner.getCriticalTypes()) {
+                outFile.write("    <Entity>" + sEntityName + "</Entity>\n");
+            }
+            outFile.write("  </CriticalPath>\n");
+            outFile.write("  <LongestEntityChain>\n");
+            for (String sReference : alCriticalEntities) {
+                String[] aReference = sReference.split("\t", 2);
+                outFile.write("    <Entity type=\"" + aReference[0] + "\">" + BasicEntityHandler.escapeForXML(aReference[1]) + "</Entity>\n");
+                alChain.add(aReference[1] + " [" + aReference[0] + "]");
+            }
+            outFile.write("  </LongestEntityChain>\n");
+            outFile.write("</ImportWaves>\n");
+        }
+
+        EnvironmentHandler.logger.info("Planned " + alWaves.size() + " import waves for " + alEntityNames.size() + " types of entity - critical path: " + String.join(" -> ", planner.getCriticalTypes()));
+        for (int i = 0; i < alWaves.size(); i++) {
+            EnvironmentHandler.logger.info(" . . . wave " + (i + 1) + ": " + alWaves.get(i));
+        }
+        EnvironmentHandler.logger.info("Longest chain of " + alChain.size() + " dependent entities: " + String.join(" -> ", alChain));
+
+    }
+
+    /**
+     * Package the build into a ZIP file for deployment (see {@link DeploymentPackage}): everything in the output
+     * directory, along with all of the input files (the directory holding the input directory) under the docstore.
+     * @param sPackagePath the location of the ZIP file (or an existing directory in which to write it under its default
+     *                     name)
+     * @param dToday the date of the build
+     * @throws IOException on any error reading a file or writing the ZIP
+     */
+    private void writePackage(String sPackagePath, Date dToday) throws IOException {
+
+        if (new File(sPackagePath).isDirectory())
+            sPackagePath = sPackagePath + File.separator + DeploymentPackage.getDefaultName(companyCode, version, dToday);
+        File fInputFiles = new File(inputPath).getAbsoluteFile().getParentFile();
+
+        DeploymentPackage deployment = new DeploymentPackage(sPackagePath);
+        deployment.skip(new File(outputPath));
+        deployment.addTree("", new File(outputPath));
+        if (fInputFiles != null)
+            deployment.addTree(DeploymentPackage.DOCSTORE_PREFIX, fInputFiles);
+        deployment.write(context.getPackageThreads(), context.getPackageLevel());
+        EnvironmentHandler.logger.info("Packaged " + deployment.getEntryCount() + " files and directories into: " + sPackagePath);
+        if (deployment.getDuplicateCount() > 0)
+            EnvironmentHandler.logger.info(" . . . " + deployment.getDuplicateCount() + " file(s) with the same content as an earlier file, saving approximately " + (deployment.getDuplicateBytes() / 1024) + " KB from being compressed again.");
+
+    }
+
+    /**
+     * Reduce the output of the provided types of entity to a delta package against the provided baseline: the files
+     * of the entities left out because they are unchanged are removed from the output directory (as are all of the
+     * files of types of entity without any changes), and entities of the baseline that no longer exist are reported
+     * (as a delta package cannot remove them).
+     * @param alEntityNames the types of entity output (in order)
+     * @param baseline the entities of the previous build
+     * @return {@code List<String>} - the types of entity with new or changed entities (in the same order)
+     */
+    private List<String> packageDelta(List<String> alEntityNames, EntityManifest baseline) {
+
+        List<String> alChanged = new ArrayList<>();
+        Path pathOutput = new File(outputPath).getAbsoluteFile().toPath().normalize();
+        int iChangedEntities = 0;
+        for (String sEntityName : alEntityNames) {
             BasicEntityHandler beh = getHandler(sEntityName);
-            EnvironmentHandler.logger.info("Validating " + sEntityName + "s ...");
-            beh.validateEntities(MODEL_PKG_NAME + "." + sEntityName);
+            List<String> alUnused = new ArrayList<>(beh.getUnchangedFiles());
+            int iEntities = beh.getOutputEntityCount();
+            if (iEntities == 0) {
+                EnvironmentHandler.logger.info("No changes to entity " + sEntityName + " since the baseline.");
+                alUnused.addAll(beh.getGeneratedFilesXML());
+            } else {
+                EnvironmentHandler.logger.info("Packaging " + iEntities + " of " + context.getEntityManifest().getSignatures(sEntityName).size() + " entities of " + sEntityName + " that are new or changed since the baseline.");
+                alChanged.add(sEntityName);
+                iChangedEntities += iEntities;
+            }
+            for (String sUnused : alUnused) {
+                Path pathUnused = new File(sUnused).getAbsoluteFile().toPath().normalize();
+                if (pathUnused.startsWith(pathOutput) && pathUnused.toFile().delete()) {
+                    EnvironmentHandler.logger.finer(" . . . Removed unchanged file: " + sUnused);
+                    // ... along with any directories it leaves empty
+                    for (Path pathDir = pathUnused.getParent(); !pathDir.equals(pathOutput) && pathDir.toFile().delete(); pathDir = pathDir.getParent()) {
+                        EnvironmentHandler.logger.finer(" . . . Removed empty directory: " + pathDir);
+                    }
+                }
+            }
+        }
+
+        for (String sEntityType : baseline.getTypes()) {
+            Set<String> hsRemoved = new LinkedHashSet<>(baseline.getSignatures(sEntityType).keySet());
+            hsRemoved.removeAll(context.getEntityManifest().getSignatures(sEntityType).keySet());
+            for (String sRemoved : hsRemoved) {
+                EnvironmentHandler.logger.warning(". . . WARNING: " + sRemoved + " [" + sEntityType + "] is in the baseline but no longer output - it will not be removed by the delta package.");
+            }
+        }
+
+        EnvironmentHandler.logger.info("Delta package contains " + iChangedEntities + " new or changed entities of " + alChanged.size() + " types.");
+        return alChanged;
+
+    }
+
+    /**
+     * Calculate the fingerprint of the settings of this build: anything that affects all of its outputs, so that an
+     * incremental build regenerates everything if any of them change.
+     * @return String
+     * @throws IOException on any error reading the template parameters
+     */
+    String getBuildFingerprint() throws IOException {
+        File fTemplateParameters = new File(inputPath + File.separator + "TemplateParameters.csv");
+        String sTemplateParameters = fTemplateParameters.isFile() ? BuildManifest.hash(fTemplateParameters) : "";
+        if (context.getSelectedTypes() == null)
+            return BuildManifest.hash(companyCode, version, inputPath, outputPath, documentationPath, context.getEncoding(), sTemplateParameters);
+        String sSelectedTypes = String.join(",", new TreeSet<>(context.getSelectedTypes()));
+        return BuildManifest.hash(companyCode, version, inputPath, outputPath, documentationPath, context.getEncoding(), sTemplateParameters, sSelectedTypes);
+    }
+
+    /**
+     * Output the XML file(s) of each of the specified types of entity, on a pool of threads if more than one thread is
+     * to be used.
+     * @param alEntityNames the types of entity to output
+     * @return boolean - false if the file of any type of entity could not be written (every type is still output)
+     */
+    private boolean outputEnvFiles(List<String> alEntityNames) {
 
+        boolean bOutput = true;
+        if (context.getThreads() <= 1) {
+            for (String sEntityName : alEntityNames) {
+                EnvironmentHandler.logger.info("Writing ImportEnv file for entity " + sEntityName);
+                BasicEntityHandler beh = getHandler(sEntityName);
+                bOutput &= beh.outputEnvFile(companyCode, MODEL_PKG_NAME + "." + sEntityName, outputPath + File.separator + beh.getXmlFilePath(), "XML");
+            }
+            return bOutput;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(context.getThreads());
+        try {
+            List<ForkJoinTask<Boolean>> alOutputs = new ArrayList<>();
+            for (String sEntityName : alEntityNames) {
+                EnvironmentHandler.logger.info("Writing ImportEnv file for entity " + sEntityName);
+                BasicEntityHandler beh = getHandler(sEntityName);
+                alOutputs.add(pool.submit(() -> {
+                    BuildContext previous = BuildContext.attach(context);
+                    try {
+                        return beh.outputEnvFile(companyCode, MODEL_PKG_NAME + "." + sEntityName, outputPath + File.separator + beh.getXmlFilePath(), "XML");
+                    } finally {
+                        BuildContext.attach(previous);
+                    }
+                }));
+            }
+            for (ForkJoinTask<Boolean> output : alOutputs) {
+                bOutput &= output.join();
+            }
+            return bOutput;
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+    /**
+     * Validate the provided CSV files are referentially-integral, validating the entities concurrently (see
+     * {@link BuildContext#getThreads()}).
+     * @return ValidationResult - all of the failures found, rather than ending the build at the first missing entity
+     */
+    public ValidationResult validateEnvironmentFiles() {
+        return validateEnvironmentFiles(getSelectedEntityOrder());
+    }
+
+    /**
+     * Validate the entities of the specified types are referentially-integral (in the order in which all types are
+     * validated), validating the entities concurrently (see {@link BuildContext#getThreads()}).
+     * @param hsEntityTypes the types of entity to validate (any whose handlers were not loaded are ignored)
+     * @return ValidationResult - all of the failures found for those types of entity
+     */
+    public ValidationResult validateEnvironmentFiles(Collection<String> hsEntityTypes) {
+
+        BuildContext previous = BuildContext.attach(context);
+        try {
+            List<String> alEntityTypes = new ArrayList<>(Arrays.asList(ENTITY_ORDER));
+            alEntityTypes.retainAll(hsEntityTypes);
+            alEntityTypes.retainAll(getHandlerNames());
+            EnvironmentValidator validator = new EnvironmentValidator(context);
+            ValidationResult result = validator.validate(alEntityTypes);
+            hmValidationTypesRead.keySet().removeAll(alEntityTypes);
+            hmValidationTypesRead.putAll(validator.getTypesRead());
+            return result;
+        } finally {
+            BuildContext.attach(previous);
+        }
+
+    }
+
+    /**
+     * Re-read the specified entity handlers into this build (for example because their input files have changed),
+     * along with every handler that depends on them and every handler that adds entities to the same types as they do
+     * (so that each of those types is read in again in full, with their definitions created again for the current
+     * locales), leaving all other entities as they are. Only possible
+     * for an incremental build (see {@link BuildContext#isIncremental()}), which records what each handler adds.
+     * @param hsHandlerNames the types of entity whose handlers to re-read
+     * @return {@code List<String>} - the types of entity whose handlers were re-read, in the order they were loaded
+     */
+    public List<String> reloadHandlers(Collection<String> hsHandlerNames) {
+
+        if (!context.isIncremental())
+            throw new IllegalStateException("Entity handlers can only be re-read by an incremental build");
+
+        List<String> alHandlerNames = handlerLoads.getLoadedOrder();
+        Set<String> hsReload = new HashSet<>(hsHandlerNames);
+        Deque<String> dqPending = new ArrayDeque<>(hsHandlerNames);
+        while (!dqPending.isEmpty()) {
+            String sHandlerName = dqPending.pop();
+            List<String> alRelated = new ArrayList<>(handlerLoads.getDependents(sHandlerName));
+            for (String sOtherName : alHandlerNames) {
+                if (!Collections.disjoint(handlerLoads.getTypesWritten(sHandlerName), handlerLoads.getTypesWritten(sOtherName)))
+                    alRelated.add(sOtherName);
+            }
+            alRelated.retainAll(alHandlerNames);
+            for (String sRelated : alRelated) {
+                if (hsReload.add(sRelated))
+                    dqPending.push(sRelated);
+            }
+        }
+
+        BuildContext previous = BuildContext.attach(context);
+        try {
+            Set<String> hsTypesWritten = new HashSet<>();
+            for (String sHandlerName : hsReload) {
+                hsTypesWritten.addAll(handlerLoads.getTypesWritten(sHandlerName));
+            }
+            for (String sEntityType : hsTypesWritten) {
+                context.removeEntities(sEntityType);
+            }
+            for (String sHandlerName : hsReload) {
+                context.removeDefinition(context.getHandler(sHandlerName).entity.getClass());
+            }
+            loadStagingContent(() -> handlerLoads.load(hsReload, context.getThreads()));
+            context.getStringPool().clear();
+        } finally {
+            BuildContext.attach(previous);
         }
 
+        List<String> alReloaded = new ArrayList<>(alHandlerNames);
+        alReloaded.retainAll(hsReload);
+        return alReloaded;
+
+    }
+
+    /**
+     * Retrieve the types of entity that need to be validated again once the specified handlers have been re-read:
+     * those handlers' own types, and any type whose validation read entities of the types they add to.
+     * @param alReloaded the types of entity whose handlers were re-read
+     * @return {@code Set<String>}
+     */
+    public Set<String> getTypesToRevalidate(Collection<String> alReloaded) {
+        Set<String> hsTypesWritten = new HashSet<>();
+        for (String sHandlerName : alReloaded) {
+            hsTypesWritten.addAll(handlerLoads.getTypesWritten(sHandlerName));
+        }
+        Set<String> hsRevalidate = new LinkedHashSet<>(alReloaded);
+        for (Map.Entry<String, Set<String>> entry : hmValidationTypesRead.entrySet()) {
+            Set<String> hsTypesRead = entry.getValue();
+            if (!Collections.disjoint(hsTypesRead, hsTypesWritten) || (hsTypesRead.contains(EntityCache.ANY_TYPE) && !hsTypesWritten.isEmpty()))
+                hsRevalidate.add(entry.getKey());
+        }
+        return hsRevalidate;
     }
 
     /**
-     * Add the provided entity into the global cache.
+     * Retrieve the types of entity whose handlers were loaded by this build, in the order they are loaded.
+     * @return {@code List<String>}
+     */
+    public List<String> getHandlerNames() {
+        return handlerLoads.getLoadedOrder();
+    }
+
+    /**
+     * Retrieve the types of entity selected to be built (see {@link BuildContext#getSelectedTypes()}), in the order
+     * in which they are validated and imported.
+     * @return {@code List<String>}
+     */
+    private List<String> getSelectedEntityOrder() {
+        List<String> alEntityTypes = new ArrayList<>(Arrays.asList(ENTITY_ORDER));
+        if (context.getSelectedTypes() != null)
+            alEntityTypes.retainAll(context.getSelectedTypes());
+        return alEntityTypes;
+    }
+
+    /**
+     * Retrieve every type of entity that can be built, in the order in which they are validated and imported.
+     * @return {@code List<String>}
+     */
+    public static List<String> getEntityTypes() {
+        return Collections.unmodifiableList(Arrays.asList(ENTITY_ORDER));
+    }
+
+    /**
+     * Parse a comma-separated list of types of entity to build (see {@link BuildContext#setSelectedTypes(Collection)}).
+     * @param sTypes the types of entity, for example Spec,Catalog
+     * @return {@code Set<String>}
+     * @throws IllegalArgumentException if any of the types is not a type of entity that can be built
+     */
+    public static Set<String> parseEntityTypes(String sTypes) {
+        Set<String> hsTypes = new LinkedHashSet<>();
+        for (String sType : sTypes.split(",")) {
+            String sTrimmed = sType.trim();
+            if (sTrimmed.isEmpty())
+                continue;
+            if (!Arrays.asList(ENTITY_ORDER).contains(sTrimmed))
+                throw new IllegalArgumentException("Unknown type of entity: " + sTrimmed + " (expected one of " + String.join(",", ENTITY_ORDER) + ")");
+            hsTypes.add(sTrimmed);
+        }
+        if (hsTypes.isEmpty())
+            throw new IllegalArgumentException("No types of entity selected");
+        return hsTypes;
+    }
+
+    /**
+     * Retrieve the directory containing the input CSV files.
+     * @return String
+     */
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    /**
+     * Retrieve the context in which this environment is built.
+     * @return BuildContext
+     */
+    public BuildContext getContext() {
+        return context;
+    }
+
+    /**
+     * Retrieve the schedule through which the entity handlers of this environment were loaded.
+     * @return HandlerLoadScheduler
+     */
+    HandlerLoadScheduler getHandlerLoads() {
+        return handlerLoads;
+    }
+
+    /**
+     * Add the provided entity into the cache of the current build.
      * @param sName the key by which to refer to the entity
      * @param oEntity the entity to cache
      */
@@ -238,21 +811,17 @@ public class EnvironmentHandler {
     }
 
     /**
-     * Add the provided entity into the global cache.
+     * Add the provided entity into the cache of the current build.
      * @param sName the key by which to refer to the entity
      * @param sEntityType the type (class name) of the entity
      * @param oEntity the entity to cache
      */
     public static void addEntityToCacheWithType(String sName, String sEntityType, BasicEntity oEntity) {
-        hmFullEntityCache.put(sEntityType + "|" + sName, oEntity);
-        if (sEntityType.equals(CompanyAttribute.class.getName())) {
-            if (sName.indexOf("_") > 0 && !alAllLocales.contains(sName))
-                alAllLocales.add(sName);
-        }
+        BuildContext.current().addEntity(sName, sEntityType, oEntity);
     }
 
     /**
-     * Retrieve the specified entity from the global cache.
+     * Retrieve the specified entity from the cache of the current build.
      * @param sName of the entity to retrieve
      * @param sEntityType type (class name) of the entity
      * @param bFailIfNotFound if true, will fail if not found
@@ -264,7 +833,7 @@ public class EnvironmentHandler {
     }
 
     /**
-     * Retrieve the specified entity from the global cache.
+     * Retrieve the specified entity from the cache of the current build.
      * @param sName of the entity to retrieve
      * @param sEntityType type (class name) of the entity
      * @param bFailIfNotFound if true, will fail if not found
@@ -273,27 +842,69 @@ public class EnvironmentHandler {
      * @return BasicEntity
      */
     public static BasicEntity getEntityFromCache(String sName, String sEntityType, boolean bFailIfNotFound, boolean bWarnIfNotFound, String sQualifier) {
+        BasicEntity oEntity = getEntityCache().get(sEntityType, sName);
+        if (oEntity == null)
+            reportNotFound(sName, sEntityType, bFailIfNotFound, bWarnIfNotFound, sQualifier);
+        else
+            EnvironmentValidator.recordReference(oEntity, sName);
+        return oEntity;
+    }
 
-        BasicEntity oEntity = hmFullEntityCache.get(sEntityType + "|" + sName);
+    /**
+     * Retrieve the specified entity from the cache of the current build.
+     * @param sName of the entity to retrieve
+     * @param type class of the entity
+     * @param bFailIfNotFound if true, will fail if not found
+     * @param bWarnIfNotFound if true, will warn if not found
+     * @param sQualifier (optional) designation of the other object attempting to find this one in the cache
+     * @param <T> the type of the entity
+     * @return T
+     */
+    public static <T extends BasicEntity> T getEntityFromCache(String sName, Class<T> type, boolean bFailIfNotFound, boolean bWarnIfNotFound, String sQualifier) {
+        T oEntity = getEntityCache().get(type, sName);
+        if (oEntity == null)
+            reportNotFound(sName, type.getName(), bFailIfNotFound, bWarnIfNotFound, sQualifier);
+        else
+            EnvironmentValidator.recordReference(oEntity, sName);
+        return oEntity;
+    }
 
-        if (oEntity == null) {
-            if (bFailIfNotFound) {
-                if (sQualifier != null)
-                    EnvironmentHandler.logger.severe(". . . ERROR (" + sQualifier + "): " + sName + " [" + sEntityType + "] not found!");
-                else
-                    EnvironmentHandler.logger.severe(". . . ERROR: " + sName + " [" + sEntityType + "] not found!");
+    /**
+     * Report that the specified entity could not be found in the cache of the current build. While the environment is
+     * being validated this is collected against the entity being validated; otherwise the build exits if the entity is
+     * required.
+     */
+    private static void reportNotFound(String sName, String sEntityType, boolean bFailIfNotFound, boolean bWarnIfNotFound, String sQualifier) {
+        if (bFailIfNotFound) {
+            String sMessage;
+            if (sQualifier != null)
+                sMessage = ". . . ERROR (" + sQualifier + "): " + sName + " [" + sEntityType + "] not found!";
+            else
+                sMessage = ". . . ERROR: " + sName + " [" + sEntityType + "] not found!";
+            if (!EnvironmentValidator.report(ValidationResult.Severity.ERROR, sMessage)) {
+                EnvironmentHandler.logger.severe(sMessage);
+                if (!BuildContext.current().isExitOnFailure())
+                    throw new IllegalStateException(sMessage);
                 EnvironmentHandler.logger.severe(". . . Build will now exit due to failed dependencies (see above).");
                 System.exit(1);
-            } else if (bWarnIfNotFound) {
-                if (sQualifier != null)
-                    EnvironmentHandler.logger.warning(". . . WARNING (" + sQualifier + "): " + sName + " [" + sEntityType + "] not found!");
-                else
-                    EnvironmentHandler.logger.warning(". . . WARNING: " + sName + " [" + sEntityType + "] not found!");
             }
+        } else if (bWarnIfNotFound) {
+            String sMessage;
+            if (sQualifier != null)
+                sMessage = ". . . WARNING (" + sQualifier + "): " + sName + " [" + sEntityType + "] not found!";
+            else
+                sMessage = ". . . WARNING: " + sName + " [" + sEntityType + "] not found!";
+            if (!EnvironmentValidator.report(ValidationResult.Severity.WARNING, sMessage))
+                EnvironmentHandler.logger.warning(sMessage);
         }
+    }
 
-        return oEntity;
-
+    /**
+     * Retrieve the cache of entities of the current build.
+     * @return EntityCache
+     */
+    public static EntityCache getEntityCache() {
+        return BuildContext.current().getEntityCache();
     }
 
     /**
@@ -301,24 +912,37 @@ public class EnvironmentHandler {
      * @return {@code List<String>}
      */
     public static List<String> getAllLocales() {
-        return alAllLocales;
+        return BuildContext.current().getAllLocales();
+    }
+
+    /**
+     * Retrieve the pool through which values are canonicalized while loading the CSV files of the current build.
+     * @return StringPool
+     */
+    public static StringPool getStringPool() {
+        return BuildContext.current().getStringPool();
     }
 
     /**
      * Print the usage of the main method.
      */
     public static void printUsage() {
-        EnvironmentHandler.logger.info("Usage: EnvironmentHandler <companycode> <inputPath> <outputPath> [<version> <documentationPath> <encoding> <logLevel>]");
+        EnvironmentHandler.logger.info("Usage: EnvironmentHandler [--incremental | --watch | --delta <previousOutputPath>] [--only <type>,<type>...] [--waves] [--entity-manifest] [--snapshot] [--link-content] [--package <zipPath> [--package-threads <n>] [--package-level <0-9>]] <companycode> <inputPath> <outputPath> [<version> <documentationPath> <encoding> <logLevel> <threads>]");
+        EnvironmentHandler.logger.info("   or: EnvironmentHandler --server [<port> [<concurrentBuilds>]]");
     }
 
     /**
-     * Print the contents of the global cache.
+     * Print the contents of the cache of the current build.
      */
     public static void outputEnvCache() {
 
+        EntityCache entityCache = getEntityCache();
         EnvironmentHandler.logger.info("===== CACHE CONTENTS =====");
-        for (String sCacheKey : hmFullEntityCache.keySet()) {
-            EnvironmentHandler.logger.info(sCacheKey + ": " + hmFullEntityCache.get(sCacheKey));
+        for (String sEntityType : entityCache.getTypes()) {
+            EnvironmentHandler.logger.info(sEntityType + " (" + entityCache.size(sEntityType) + "):");
+            for (BasicEntity oEntity : entityCache.getAll(sEntityType)) {
+                EnvironmentHandler.logger.info(" . . . " + oEntity.getUniqueId() + ": " + oEntity);
+            }
         }
 
     }
@@ -329,12 +953,45 @@ public class EnvironmentHandler {
      * @return BasicEntityHandler
      */
     public static BasicEntityHandler getHandler(String sHandlerName) {
-        return hmEntityHandlers.get(sHandlerName);
+        return BuildContext.current().getHandler(sHandlerName);
+    }
+
+    /**
+     * Read the entities of the previous build against which to package a delta (see
+     * {@link BuildContext#setDeltaBaseline(EntityManifest)}).
+     * @param sBaselinePath the output directory of the previous build (or its entity manifest)
+     * @param sOutputPath the directory into which the delta package is to be output
+     * @param bIncremental whether the build is incremental
+     * @return EntityManifest
+     * @throws IOException if the entity manifest of the previous build cannot be read
+     * @throws IllegalArgumentException if the delta package cannot be built with the provided settings
+     */
+    public static EntityManifest readDeltaBaseline(String sBaselinePath, String sOutputPath, boolean bIncremental) throws IOException {
+        if (bIncremental)
+            throw new IllegalArgumentException("a delta package cannot be built incrementally");
+        File fBaseline = new File(sBaselinePath).getAbsoluteFile();
+        Path pathBaselineDir = (fBaseline.isDirectory() ? fBaseline : fBaseline.getParentFile()).toPath().normalize();
+        if (pathBaselineDir.equals(new File(sOutputPath).getAbsoluteFile().toPath().normalize()))
+            throw new IllegalArgumentException("a delta package must be output into a different directory than its baseline");
+        if (fBaseline.isDirectory() && !new File(fBaseline, EntityManifest.FILENAME).isFile())
+            throw new IOException("no entity manifest in " + fBaseline.getPath() + " - the baseline must be built with --entity-manifest (or incrementally)");
+        return EntityManifest.read(sBaselinePath);
     }
 
     /**
      * Run the generation.
-     * @param args list of arguments: company code, input file directory, output file directory, version, documentation path, encoding
+     * @param args list of arguments: company code, input file directory, output file directory, version, documentation path, encoding, log level, threads
+     *             (optionally preceded by {@literal --incremental} to only regenerate the outputs affected by changes since the previous build,
+     *             or {@literal --watch} to keep rebuilding the environment as its input files change: see {@link EnvironmentWatcher});
+     *             or {@literal --delta} followed by the output directory of a previous build, to output only the entities that are new or have changed since it;
+     *             and optionally {@literal --only} followed by a comma-separated list of the types of entity to build;
+     *             and optionally {@literal --entity-manifest} to keep the entity manifest of a build that is neither incremental nor a delta, so that a later build can be packaged as a delta against it: see {@link EntityManifest};
+     *             and optionally {@literal --snapshot} to keep a snapshot of the parsed input files in the output directory, and read unchanged files from the snapshot of the previous build rather than parsing them: see {@link InputSnapshot};
+     *             and optionally {@literal --link-content} to hard-link the data files of the content handlers into the output directory rather than copy them: see {@link ContentStager};
+     *             and optionally {@literal --waves} to also plan the import as waves of types of entity that can be imported concurrently: see {@link ImportWavePlanner};
+     *             and optionally {@literal --package} followed by the location of a ZIP file (or a directory in which to create it), to package the build for deployment: see {@link DeploymentPackage}
+     *             (optionally with {@literal --package-threads} followed by the number of threads on which to compress it, and {@literal --package-level} followed by its compression level);
+     *             or {@literal --server} followed by an optional port and maximum number of concurrent builds, to run builds on request: see {@link BuildServer}
      */
     public static void main(String[] args) {
 
@@ -348,6 +1005,75 @@ public class EnvironmentHandler {
         String sDocumentationPath = "";
         String sEncoding = "ISO-8859-1";
         String sLogLevel = Level.ALL.toString();
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        boolean bIncremental = false;
+        boolean bWatch = false;
+        boolean bServer = false;
+        boolean bWaves = false;
+        boolean bSnapshot = false;
+        boolean bLinkContent = false;
+        boolean bRecordEntities = false;
+        String sOnly = null;
+        String sDeltaBaseline = null;
+        String sPackagePath = null;
+        String sPackageThreads = null;
+        String sPackageLevel = null;
+        List<String> alArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--only") && i + 1 < args.length)
+                sOnly = args[++i];
+            else if (arg.startsWith("--only="))
+                sOnly = arg.substring("--only=".length());
+            else if (arg.equals("--delta") && i + 1 < args.length)
+                sDeltaBaseline = args[++i];
+            else if (arg.startsWith("--delta="))
+                sDeltaBaseline = arg.substring("--delta=".length());
+            else if (arg.equals("--package") && i + 1 < args.length)
+                sPackagePath = args[++i];
+            else if (arg.startsWith("--package="))
+                sPackagePath = arg.substring("--package=".length());
+            else if (arg.equals("--package-threads") && i + 1 < args.length)
+                sPackageThreads = args[++i];
+            else if (arg.startsWith("--package-threads="))
+                sPackageThreads = arg.substring("--package-threads=".length());
+            else if (arg.equals("--package-level") && i + 1 < args.length)
+                sPackageLevel = args[++i];
+            else if (arg.startsWith("--package-level="))
+                sPackageLevel = arg.substring("--package-level=".length());
+            else if (arg.equals("--incremental"))
+                bIncremental = true;
+            else if (arg.equals("--watch"))
+                bWatch = true;
+            else if (arg.equals("--server"))
+                bServer = true;
+            else if (arg.equals("--waves"))
+                bWaves = true;
+            else if (arg.equals("--snapshot"))
+                bSnapshot = true;
+            else if (arg.equals("--link-content"))
+                bLinkContent = true;
+            else if (arg.equals("--entity-manifest"))
+                bRecordEntities = true;
+            else
+                alArgs.add(arg);
+        }
+        args = alArgs.toArray(new String[0]);
+        if (bServer) {
+            initLogger(Level.ALL);
+            BuildContext.installLogFilter();
+            try {
+                BuildServer server = new BuildServer(args.length > 0 ? Integer.parseInt(args[0]) : BuildServer.DEFAULT_PORT, args.length > 1 ? Integer.parseInt(args[1]) : 1);
+                server.start();
+                server.awaitStop();
+            } catch (IOException errIO) {
+                EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+                System.exit(1);
+            } catch (InterruptedException errInterrupt) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
         if (args.length >= 3) {
             sCmpCode = args[0];
             sInputFilePath = args[1];
@@ -360,14 +1086,83 @@ public class EnvironmentHandler {
                 sEncoding = args[5];
             if (args.length > 6)
                 sLogLevel = args[6];
+            if (args.length > 7)
+                iThreads = Integer.parseInt(args[7]);
         } else {
             printUsage();
             System.exit(1);
         }
         initLogger(Level.parse(sLogLevel));
-        EnvironmentHandler eh = new EnvironmentHandler(sCmpCode, sVersion, sInputFilePath, sOutputFilePath, sDocumentationPath, sEncoding);
-        eh.validateEnvironmentFiles();
-        eh.outputEnvironmentFiles();
+        Set<String> hsSelectedTypes = null;
+        if (sOnly != null) {
+            try {
+                hsSelectedTypes = parseEntityTypes(sOnly);
+            } catch (IllegalArgumentException errTypes) {
+                EnvironmentHandler.logger.severe("Error: " + errTypes.getMessage());
+                printUsage();
+                System.exit(1);
+            }
+        }
+        int iPackageThreads = 0;
+        int iPackageLevel = Deflater.DEFAULT_COMPRESSION;
+        try {
+            if (sPackageThreads != null)
+                iPackageThreads = Integer.parseInt(sPackageThreads);
+            if (sPackageLevel != null)
+                iPackageLevel = ParallelZipWriter.checkLevel(Integer.parseInt(sPackageLevel));
+        } catch (IllegalArgumentException errPackage) {
+            EnvironmentHandler.logger.severe("Error: Invalid package settings - " + errPackage.getMessage());
+            printUsage();
+            System.exit(1);
+        }
+        EntityManifest deltaBaseline = null;
+        if (sDeltaBaseline != null) {
+            try {
+                deltaBaseline = readDeltaBaseline(sDeltaBaseline, sOutputFilePath, bIncremental || bWatch);
+            } catch (IOException | IllegalArgumentException errBaseline) {
+                EnvironmentHandler.logger.severe("Error: Unable to use delta baseline - " + errBaseline.getMessage());
+                printUsage();
+                System.exit(1);
+            }
+        }
+        if (bWatch) {
+            try {
+                EnvironmentWatcher watcher = new EnvironmentWatcher(sCmpCode, sVersion, sInputFilePath, sOutputFilePath, sDocumentationPath, sEncoding, iThreads);
+                watcher.setSelectedTypes(hsSelectedTypes);
+                watcher.setPlanImportWaves(bWaves);
+                watcher.setUseInputSnapshot(bSnapshot);
+                watcher.setLinkContent(bLinkContent);
+                watcher.setPackagePath(sPackagePath);
+                watcher.setPackageCompression(iPackageThreads, iPackageLevel);
+                watcher.run();
+            } catch (IOException errIO) {
+                EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        BuildContext context = new BuildContext(sEncoding);
+        context.setThreads(iThreads);
+        context.setIncremental(bIncremental);
+        context.setSelectedTypes(hsSelectedTypes);
+        context.setDeltaBaseline(deltaBaseline);
+        context.setRecordEntities(bRecordEntities);
+        context.setPlanImportWaves(bWaves);
+        context.setUseInputSnapshot(bSnapshot);
+        context.setLinkContent(bLinkContent);
+        context.setPackagePath(sPackagePath);
+        context.setPackageThreads(iPackageThreads);
+        context.setPackageLevel(iPackageLevel);
+        EnvironmentHandler eh = new EnvironmentHandler(sCmpCode, sVersion, sInputFilePath, sOutputFilePath, sDocumentationPath, context);
+        ValidationResult result = eh.validateEnvironmentFiles();
+        if (result.hasErrors()) {
+            EnvironmentHandler.logger.severe(". . . Build will now exit due to failed dependencies (see above).");
+            System.exit(1);
+        }
+        if (!eh.outputEnvironmentFiles()) {
+            EnvironmentHandler.logger.severe(". . . Build failed writing its output (see above).");
+            System.exit(1);
+        }
 
     }
 
@@ -0,0 +1,220 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import com.ibm.mdmce.envtoolkit.deployment.model.BasicEntity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Validates all of the entities of an environment, spreading the validation of the individual entities (of all types)
+ * across a ForkJoinPool. Validation only reads from the entity cache, so entities can be validated in any order.
+ * <br>
+ * Rather than being logged (or ending the build) as they are found, the failures found while validating each entity
+ * are collected against that entity. Once every entity has been validated they are logged and gathered into a
+ * {@link ValidationResult} in the same order as a sequential validation, so the outcome does not depend on the number
+ * of threads used.
+ * <br>
+ * For incremental builds (see {@link BuildContext#isIncremental()}), the types of entity read from the cache while
+ * validating each type of entity are recorded, so that only the types affected by a change need to be validated again.
+ * When import waves are planned (see {@link BuildContext#getImportWavePlanner()}), the entities found in the cache
+ * while validating each entity are recorded as its references.
+ *
+ * @see EnvironmentHandler#validateEnvironmentFiles()
+ */
+public class EnvironmentValidator {
+
+    // Number of entities below which validations are no longer split between threads
+    private static final int SPLIT_THRESHOLD = 16;
+
+    private static final ThreadLocal<Validation> CURRENT = new ThreadLocal<>();
+
+    private final BuildContext context;
+    private final Map<String, Set<String>> hmTypesRead = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a new validator for the provided build.
+     * @param context the build whose entities to validate
+     */
+    public EnvironmentValidator(BuildContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Report a failure against the entity currently being validated on this thread.
+     * @param severity the severity of the failure
+     * @param sMessage the description of the failure
+     * @return boolean - true if the failure was recorded, or false if no entity is being validated on this thread (in
+     *         which case the caller should report the failure itself)
+     */
+    static boolean report(ValidationResult.Severity severity, String sMessage) {
+        Validation validation = CURRENT.get();
+        if (validation == null)
+            return false;
+        validation.alFailures.add(new ValidationResult.Failure(severity, validation.sEntityType, validation.sEntityName, sMessage));
+        return true;
+    }
+
+    /**
+     * Record a reference to the provided entity (found in the cache) by the entity currently being validated on this
+     * thread, if references are being recorded.
+     * @param oReferenced the entity found
+     * @param sName the name by which it was found
+     */
+    static void recordReference(BasicEntity oReferenced, String sName) {
+        Validation validation = CURRENT.get();
+        if (validation != null && validation.hsReferences != null)
+            validation.hsReferences.add(ImportWavePlanner.toReference(oReferenced.getClass().getSimpleName(), sName));
+    }
+
+    /**
+     * Validate all of the entities of the specified types.
+     * @param alEntityTypes the types of entity to validate (in the order in which to report them)
+     * @return ValidationResult
+     */
+    public ValidationResult validate(List<String> alEntityTypes) {
+
+        List<Validation> alValidations = new ArrayList<>();
+        for (String sEntityType : alEntityTypes) {
+            BasicEntityHandler beh = context.getHandler(sEntityType);
+            Map<String, BasicEntity> hmEntities = beh.getEntities(EnvironmentHandler.MODEL_PKG_NAME + "." + sEntityType);
+            for (Map.Entry<String, BasicEntity> entry : hmEntities.entrySet()) {
+                alValidations.add(new Validation(beh, sEntityType, entry.getKey(), entry.getValue()));
+            }
+        }
+
+        Validation[] aValidations = alValidations.toArray(new Validation[0]);
+        int iThreads = context.getThreads();
+        if (iThreads <= 1 || aValidations.length <= SPLIT_THRESHOLD) {
+            for (Validation validation : aValidations) {
+                validation.run();
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(iThreads);
+            try {
+                pool.invoke(new ValidateRange(aValidations, 0, aValidations.length));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        ValidationResult result = new ValidationResult();
+        ImportWavePlanner planner = context.getImportWavePlanner();
+        int iNext = 0;
+        for (String sEntityType : alEntityTypes) {
+            EnvironmentHandler.logger.info("Validating " + sEntityType + "s ...");
+            Map<String, Set<String>> hmReferences = (planner == null) ? null : new HashMap<>();
+            while (iNext < aValidations.length && aValidations[iNext].sEntityType.equals(sEntityType)) {
+                Validation validation = aValidations[iNext++];
+                if (hmReferences != null)
+                    hmReferences.put(validation.sEntityName, validation.hsReferences);
+                for (ValidationResult.Failure failure : validation.alFailures) {
+                    if (failure.getSeverity() == ValidationResult.Severity.ERROR)
+                        EnvironmentHandler.logger.severe(failure.getMessage());
+                    else
+                        EnvironmentHandler.logger.warning(failure.getMessage());
+                    result.addFailure(failure);
+                }
+                result.addEntity(sEntityType, validation.sEntityName, validation.bValid);
+            }
+            if (planner != null)
+                planner.setReferences(sEntityType, hmReferences);
+        }
+
+        EnvironmentHandler.logger.info("Validated " + result.getEntityCount() + " entities: "
+                + result.getFailures(ValidationResult.Severity.ERROR).size() + " error(s), "
+                + result.getFailures(ValidationResult.Severity.WARNING).size() + " warning(s).");
+        return result;
+
+    }
+
+    /**
+     * Retrieve the types (class names) of entity read from the cache while validating each type of entity (only
+     * recorded for incremental builds).
+     * @return {@code Map<String, Set<String>>} - keyed by the type of entity validated
+     */
+    public Map<String, Set<String>> getTypesRead() {
+        return hmTypesRead;
+    }
+
+    /**
+     * The validation of a single entity, and the failures found while validating it.
+     */
+    private class Validation {
+
+        private final BasicEntityHandler handler;
+        private final String sEntityType;
+        private final String sEntityName;
+        private final BasicEntity oEntity;
+        private final List<ValidationResult.Failure> alFailures = new ArrayList<>(0);
+        private final Set<String> hsReferences;
+        private boolean bValid;
+
+        private Validation(BasicEntityHandler handler, String sEntityType, String sEntityName, BasicEntity oEntity) {
+            this.handler = handler;
+            this.sEntityType = sEntityType;
+            this.sEntityName = sEntityName;
+            this.oEntity = oEntity;
+            this.hsReferences = (context.getImportWavePlanner() == null) ? null : new LinkedHashSet<>();
+        }
+
+        private void run() {
+            BuildContext previous = BuildContext.attach(context);
+            CURRENT.set(this);
+            Set<String> hsTypesRead = context.isIncremental() ? hmTypesRead.computeIfAbsent(sEntityType, k -> ConcurrentHashMap.newKeySet()) : null;
+            Set<String> hsPreviousTypesRead = (hsTypesRead == null) ? null : context.getEntityCache().recordTypesRead(hsTypesRead);
+            try {
+                bValid = handler.validate(oEntity);
+            } catch (RuntimeException err) {
+                // Most likely a consequence of a required entity not being found (already reported)
+                bValid = false;
+                if (alFailures.stream().noneMatch(f -> f.getSeverity() == ValidationResult.Severity.ERROR))
+                    alFailures.add(new ValidationResult.Failure(ValidationResult.Severity.ERROR, sEntityType, sEntityName, ". . . ERROR (" + sEntityName + "): Unable to validate - " + err));
+            } finally {
+                if (hsTypesRead != null)
+                    context.getEntityCache().recordTypesRead(hsPreviousTypesRead);
+                CURRENT.remove();
+                BuildContext.attach(previous);
+            }
+        }
+
+    }
+
+    /**
+     * Validates a range of entities, splitting the range between threads until it is small enough to validate
+     * directly.
+     */
+    private static class ValidateRange extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Validation[] aValidations;
+        private final int iStart;
+        private final int iEnd;
+
+        private ValidateRange(Validation[] aValidations, int iStart, int iEnd) {
+            this.aValidations = aValidations;
+            this.iStart = iStart;
+            this.iEnd = iEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (iEnd - iStart <= SPLIT_THRESHOLD) {
+                for (int i = iStart; i < iEnd; i++) {
+                    aValidations[i].run();
+                }
+            } else {
+                int iMid = (iStart + iEnd) >>> 1;
+                invokeAll(new ValidateRange(aValidations, iStart, iMid), new ValidateRange(aValidations, iMid, iEnd));
+            }
+        }
+
+    }
+
+}
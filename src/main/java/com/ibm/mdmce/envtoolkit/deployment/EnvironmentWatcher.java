@@ -0,0 +1,299 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps an environment in memory and rebuilds it each time its input files change, rather than reading in the whole
+ * environment again for every build. The environment is first built in full (as an incremental build: see
+ * {@link IncrementalBuild}), and the directories of all of the files it read are then watched for changes:
+ * <ul>
+ *   <li>when a file read while loading changes (a Deployment CSV, documentation or data file), only the handlers that
+ *   read it (and those that depend on them) are read in again: see {@link EnvironmentHandler#reloadHandlers(Collection)},</li>
+ *   <li>only the types of entity whose validation could be affected are validated again (along with any that still
+ *   have errors), and</li>
+ *   <li>only the output files affected by the change are rewritten (which also picks up changes to files read only
+ *   while outputting, such as parameter files).</li>
+ * </ul>
+ * A change to the template parameters (or too many changes for the file system to report individually) builds the
+ * whole environment again. Changes made within a short period of each other are handled together.
+ */
+public class EnvironmentWatcher {
+
+    // How long to wait for further changes before rebuilding
+    private static final long QUIET_PERIOD_MS = 50;
+
+    private final String companyCode;
+    private final String version;
+    private final String inputPath;
+    private final String outputPath;
+    private final String documentationPath;
+    private final String encoding;
+    private final int threads;
+    private Set<String> selectedTypes = null;
+    private boolean planImportWaves = false;
+    private boolean useInputSnapshot = false;
+    private boolean linkContent = false;
+    private String packagePath = null;
+    private int packageThreads = 0;
+    private int packageLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private EnvironmentHandler environment;
+    private WatchService watchService;
+    private final Set<Path> hsWatchedDirectories = new HashSet<>();
+    private final Set<String> hsTypesWithErrors = new HashSet<>();
+
+    /**
+     * Construct a new watcher for the environment with the provided parameters.
+     * @param sCmpCode the company code for the environment
+     * @param sVersion the software version for the environment
+     * @param sInputPath the directory containing the input CSV files
+     * @param sOutputPath the directory into which to write the generated XML files
+     * @param sDocumentationFilePath (optional) directory containing Doxygen documentation
+     * @param sEncoding the encoding used within the files
+     * @param iThreads the maximum number of threads each build may use
+     */
+    public EnvironmentWatcher(String sCmpCode, String sVersion, String sInputPath, String sOutputPath, String sDocumentationFilePath, String sEncoding, int iThreads) {
+        this.companyCode = sCmpCode;
+        this.version = sVersion;
+        this.inputPath = sInputPath;
+        this.outputPath = sOutputPath;
+        this.documentationPath = sDocumentationFilePath;
+        this.encoding = sEncoding;
+        this.threads = iThreads;
+    }
+
+    /**
+     * Select the types of entity to build (by default every type): see {@link BuildContext#setSelectedTypes(Collection)}.
+     * @param hsTypes the types of entity to build, or null to build every type
+     */
+    public void setSelectedTypes(Collection<String> hsTypes) {
+        this.selectedTypes = (hsTypes == null) ? null : new LinkedHashSet<>(hsTypes);
+    }
+
+    /**
+     * Set whether to plan import waves with each build: see {@link BuildContext#setPlanImportWaves(boolean)}.
+     * @param bPlanImportWaves true to plan import waves
+     */
+    public void setPlanImportWaves(boolean bPlanImportWaves) {
+        this.planImportWaves = bPlanImportWaves;
+    }
+
+    /**
+     * Set whether each full build reads unchanged input files from the snapshot of the previous build: see
+     * {@link BuildContext#setUseInputSnapshot(boolean)}.
+     * @param bUseInputSnapshot true to keep a snapshot of the parsed input files
+     */
+    public void setUseInputSnapshot(boolean bUseInputSnapshot) {
+        this.useInputSnapshot = bUseInputSnapshot;
+    }
+
+    /**
+     * Set whether each build hard-links the data files of the content handlers into the output directory: see
+     * {@link BuildContext#setLinkContent(boolean)}.
+     * @param bLinkContent true to hard-link the data files (wherever possible) rather than copy them
+     */
+    public void setLinkContent(boolean bLinkContent) {
+        this.linkContent = bLinkContent;
+    }
+
+    /**
+     * Set the location of the ZIP file into which to package each build: see
+     * {@link BuildContext#setPackagePath(String)}.
+     * @param sPackagePath the location of the ZIP file (or null to not package the builds)
+     */
+    public void setPackagePath(String sPackagePath) {
+        this.packagePath = sPackagePath;
+    }
+
+    /**
+     * Set how to compress the package of each build: see {@link BuildContext#setPackageThreads(int)} and
+     * {@link BuildContext#setPackageLevel(int)}.
+     * @param iThreads the number of threads on which to compress (or 0 to use the number of threads of the build)
+     * @param iLevel the compression level
+     */
+    public void setPackageCompression(int iThreads, int iLevel) {
+        this.packageThreads = iThreads;
+        this.packageLevel = iLevel;
+    }
+
+    /**
+     * Build the environment, and then keep rebuilding it as its input files change (until the thread is interrupted).
+     * @throws IOException on any error watching the input files
+     */
+    public void run() throws IOException {
+
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+
+            watchService = ws;
+            buildAll();
+
+            Path pathTemplateParameters = toPath(inputPath + File.separator + "TemplateParameters.csv");
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> hsChanged = new LinkedHashSet<>();
+                boolean bOverflow = collectChanges(ws.take(), hsChanged);
+                WatchKey key;
+                while ((key = ws.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) != null) {
+                    bOverflow = collectChanges(key, hsChanged) || bOverflow;
+                }
+                if (bOverflow || hsChanged.contains(pathTemplateParameters)) {
+                    EnvironmentHandler.logger.info("Rebuilding the whole environment...");
+                    buildAll();
+                } else {
+                    rebuild(hsChanged);
+                }
+            }
+
+        } catch (InterruptedException errInterrupt) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    /**
+     * Read in, validate and output the whole environment.
+     * @throws IOException on any error watching the input files
+     */
+    private void buildAll() throws IOException {
+        long lStart = System.nanoTime();
+        BuildContext context = new BuildContext(encoding);
+        context.setThreads(threads);
+        context.setIncremental(true);
+        context.setSelectedTypes(selectedTypes);
+        context.setPlanImportWaves(planImportWaves);
+        context.setUseInputSnapshot(useInputSnapshot);
+        context.setLinkContent(linkContent);
+        context.setPackagePath(packagePath);
+        context.setPackageThreads(packageThreads);
+        context.setPackageLevel(packageLevel);
+        environment = new EnvironmentHandler(companyCode, version, inputPath, outputPath, documentationPath, context);
+        validateAndOutput(environment.getHandlerNames());
+        watchInputs();
+        EnvironmentHandler.logger.info("Built environment in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lStart) + " ms - watching for changes...");
+    }
+
+    /**
+     * Rebuild the parts of the environment affected by the provided changed files.
+     * @param hsChanged the files that have changed (been modified, added or removed)
+     * @throws IOException on any error watching the input files
+     */
+    private void rebuild(Set<Path> hsChanged) throws IOException {
+
+        Set<String> hsReload = new LinkedHashSet<>();
+        boolean bOutputAffected = false;
+        for (String sHandlerName : environment.getHandlerNames()) {
+            BasicEntityHandler beh = environment.getContext().getHandler(sHandlerName);
+            Set<Path> hsInputFiles = toPaths(beh.getInputFiles());
+            Set<Path> hsInputDirectories = toPaths(beh.getInputDirectories());
+            Set<Path> hsOutputInputFiles = toPaths(beh.getOutputInputFiles());
+            for (Path pathChanged : hsChanged) {
+                if (hsInputFiles.contains(pathChanged) || hsInputDirectories.contains(pathChanged.getParent()))
+                    hsReload.add(sHandlerName);
+                else if (hsOutputInputFiles.contains(pathChanged))
+                    bOutputAffected = true;
+            }
+        }
+        if (hsReload.isEmpty() && !bOutputAffected) {
+            EnvironmentHandler.logger.fine(". . . Ignoring changes to files not read by the build: " + hsChanged);
+            return;
+        }
+
+        long lStart = System.nanoTime();
+        EnvironmentHandler.logger.info("Changed: " + hsChanged);
+        List<String> alReloaded = hsReload.isEmpty() ? Collections.<String>emptyList() : environment.reloadHandlers(hsReload);
+        if (!alReloaded.isEmpty())
+            EnvironmentHandler.logger.info("Re-read entities of: " + alReloaded);
+        validateAndOutput(environment.getTypesToRevalidate(alReloaded));
+        watchInputs();
+        EnvironmentHandler.logger.info("Rebuilt environment in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lStart) + " ms - watching for changes...");
+
+    }
+
+    /**
+     * Validate the specified types of entity (and any that previously had errors) and, if there are no errors, output
+     * the files affected since the previous output.
+     * @param hsEntityTypes the types of entity to validate
+     */
+    private void validateAndOutput(Collection<String> hsEntityTypes) {
+        Set<String> hsValidate = new HashSet<>(hsEntityTypes);
+        hsValidate.addAll(hsTypesWithErrors);
+        ValidationResult result = environment.validateEnvironmentFiles(hsValidate);
+        hsTypesWithErrors.removeAll(hsValidate);
+        for (ValidationResult.Failure failure : result.getFailures(ValidationResult.Severity.ERROR)) {
+            hsTypesWithErrors.add(failure.getEntityType());
+        }
+        if (hsTypesWithErrors.isEmpty()) {
+            if (!environment.outputEnvironmentFiles())
+                EnvironmentHandler.logger.severe(". . . Unable to write the output (see above) - will try again on the next change.");
+        } else
+            EnvironmentHandler.logger.severe(". . . Not writing output due to failed dependencies (see above) in: " + hsTypesWithErrors);
+    }
+
+    /**
+     * Watch the directories of all of the files read by the environment (and its input directory), including any
+     * directories that did not exist when last watched.
+     * @throws IOException on any error watching a directory
+     */
+    private void watchInputs() throws IOException {
+        Set<Path> hsDirectories = new LinkedHashSet<>();
+        hsDirectories.add(toPath(inputPath));
+        for (String sHandlerName : environment.getHandlerNames()) {
+            BasicEntityHandler beh = environment.getContext().getHandler(sHandlerName);
+            for (Path pathFile : toPaths(beh.getInputFiles())) {
+                hsDirectories.add(pathFile.getParent());
+            }
+            for (Path pathFile : toPaths(beh.getOutputInputFiles())) {
+                hsDirectories.add(pathFile.getParent());
+            }
+            hsDirectories.addAll(toPaths(beh.getInputDirectories()));
+        }
+        for (Path pathDirectory : hsDirectories) {
+            if (pathDirectory != null && Files.isDirectory(pathDirectory) && hsWatchedDirectories.add(pathDirectory)) {
+                pathDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                EnvironmentHandler.logger.fine(". . . Watching for changes in: " + pathDirectory);
+            }
+        }
+    }
+
+    /**
+     * Add the files reported as changed by the provided key to the provided set, and reset the key so that further
+     * changes are reported.
+     * @param key the key reporting changes to a directory
+     * @param hsChanged the set of changed files into which to add the changes
+     * @return boolean - true if changes were lost (so the whole environment needs to be rebuilt)
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> hsChanged) {
+        boolean bOverflow = false;
+        Path pathDirectory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                bOverflow = true;
+            else
+                hsChanged.add(pathDirectory.resolve((Path) event.context()));
+        }
+        if (!key.reset())
+            hsWatchedDirectories.remove(pathDirectory);
+        return bOverflow;
+    }
+
+    private static Path toPath(String sPath) {
+        return Paths.get(sPath).toAbsolutePath().normalize();
+    }
+
+    private static Set<Path> toPaths(List<String> alPaths) {
+        Set<Path> hsPaths = new HashSet<>();
+        for (String sPath : alPaths) {
+            hsPaths.add(toPath(sPath));
+        }
+        return hsPaths;
+    }
+
+}
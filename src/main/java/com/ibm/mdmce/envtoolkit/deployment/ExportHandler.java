@@ -39,7 +39,7 @@ public class ExportHandler extends BasicEntityHandler {
 			if (instance.getSpecMap().equals("")) {
 				// auto-generate a dummy spec mapping...
 				instance.setSpecMap(instance.getContainerName() + " to " + instance.getDestinationSpec());
-				SpecMap specMap = (SpecMap) getFromCache(instance.getSpecMap(), SpecMap.class.getName(), false, false);
+				SpecMap specMap = getFromCache(instance.getSpecMap(), SpecMap.class, false, false);
 				if (specMap == null) {
 					EnvironmentHandler.logger.finer(" . . . generating default spec map: " + instance.getSpecMap());
 					specMap = new SpecMap(instance.getSpecMap(), "CATALOG_MKT_MAP", instance.getContainerName(), instance.getDestinationSpec());
@@ -47,7 +47,7 @@ public class ExportHandler extends BasicEntityHandler {
 				}
 			}
 			if (!instance.getParamsPath().equals("")) {
-				Script docParams = (Script) getFromCache(instance.getParamsName(), Script.class.getName(), false, false);
+				Script docParams = getFromCache(instance.getParamsName(), Script.class, false, false);
 				if (docParams == null) {
 					EnvironmentHandler.logger.info(" . . . generating default parameters: " + instance.getParamsPath());
 					docParams = new Script("INPUT_PARAM",
@@ -70,7 +70,7 @@ public class ExportHandler extends BasicEntityHandler {
 		boolean bValid = true;
 		
 		Export export = (Export) oEntity;
-		Catalog ctg = (Catalog) BasicEntityHandler.getFromCache(export.getContainerName(), Catalog.class.getName(), false, false);
+		Catalog ctg = BasicEntityHandler.getFromCache(export.getContainerName(), Catalog.class, false, false);
 		if (ctg == null)
 			bValid = validateExists(export.getContainerName(), Lookup.class.getName(), export.getName()) && bValid;
 		
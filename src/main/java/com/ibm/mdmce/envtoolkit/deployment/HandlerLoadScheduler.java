@@ -0,0 +1,313 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Loads the entity handlers of a build (each handler reads its CSV file(s) into the entity cache as it is constructed)
+ * according to the dependencies between them, loading handlers that do not depend on each other concurrently on a
+ * bounded pool of threads.
+ * <br>
+ * Each handler declares the handlers that must be loaded before it: those whose entities it looks up while loading
+ * (for example attribute collections need their specs, and specs need the locales of the company attributes), and
+ * those whose entities it adds to (for example imports and exports add generated spec maps and parameter scripts). As
+ * long as these are declared, no two handlers ever write into the same part of the cache at the same time and every
+ * lookup made while loading finds the same entities as a sequential load would, so the resulting cache is the same as
+ * loading each handler in turn in the order they were added.
+ * <br>
+ * Each handler is registered (see {@link BuildContext#putHandler(String, BasicEntityHandler)}) once it has been
+ * loaded, before any of the handlers that depend on it are started. For incremental builds, the types of entity each
+ * handler adds to the cache while it is loaded are recorded as well (see {@link #getTypesWritten(String)}).
+ * <br>
+ * Each handler can also declare the types of entity its entities refer to (and so need to be validated and output),
+ * but that need not be loaded before it. Together with its dependencies these give the handlers that need to be loaded
+ * to build only some types of entity (see {@link #getClosure(Collection)}): only the handlers that are actually loaded
+ * are ever constructed.
+ *
+ * @see EnvironmentHandler
+ */
+public class HandlerLoadScheduler {
+
+    private final BuildContext context;
+    private final Map<String, Supplier<? extends BasicEntityHandler>> hmLoaders = new LinkedHashMap<>();
+    private final Map<String, List<String>> hmDependencies = new HashMap<>();
+    private final Map<String, List<String>> hmReferences = new HashMap<>();
+    private final Set<String> hsLoaded = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<String>> hmTypesWritten = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a new (empty) schedule for loading the handlers of the provided build.
+     * @param context the build into which to load the handlers
+     */
+    public HandlerLoadScheduler(BuildContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Add a handler to the schedule.
+     * @param sHandlerName type of entity handled by the handler
+     * @param loader to construct (and thereby load) the handler
+     * @param aDependencies the types of entity whose handlers must be loaded before this one
+     */
+    public void add(String sHandlerName, Supplier<? extends BasicEntityHandler> loader, String... aDependencies) {
+        if (hmLoaders.containsKey(sHandlerName))
+            throw new IllegalArgumentException("Handler already scheduled: " + sHandlerName);
+        hmLoaders.put(sHandlerName, loader);
+        hmDependencies.put(sHandlerName, Arrays.asList(aDependencies));
+    }
+
+    /**
+     * Declare the types of entity that the entities of a scheduled handler refer to, beyond those it depends on.
+     * @param sHandlerName type of entity handled by the handler
+     * @param aReferences the types of entity whose handlers must also be loaded to validate and output this one
+     */
+    public void addReferences(String sHandlerName, String... aReferences) {
+        if (!hmLoaders.containsKey(sHandlerName))
+            throw new IllegalArgumentException("Handler not scheduled: " + sHandlerName);
+        hmReferences.put(sHandlerName, Arrays.asList(aReferences));
+    }
+
+    /**
+     * Retrieve the handlers that need to be loaded to build the specified types of entity: the handlers themselves,
+     * and (transitively) every handler they depend on or refer to.
+     * @param hsHandlerNames the types of entity to build
+     * @return {@code Set<String>} - in the order the handlers would be loaded one at a time
+     */
+    public Set<String> getClosure(Collection<String> hsHandlerNames) {
+        Set<String> hsClosure = new HashSet<>();
+        Deque<String> dqPending = new ArrayDeque<>(hsHandlerNames);
+        while (!dqPending.isEmpty()) {
+            String sHandlerName = dqPending.pop();
+            if (!hmLoaders.containsKey(sHandlerName))
+                throw new IllegalArgumentException("Handler not scheduled: " + sHandlerName);
+            if (hsClosure.add(sHandlerName)) {
+                dqPending.addAll(hmDependencies.get(sHandlerName));
+                dqPending.addAll(hmReferences.getOrDefault(sHandlerName, Collections.<String>emptyList()));
+            }
+        }
+        Set<String> hsOrdered = new LinkedHashSet<>(getLoadOrder());
+        hsOrdered.retainAll(hsClosure);
+        return hsOrdered;
+    }
+
+    /**
+     * Load all of the scheduled handlers, returning once they have all been loaded.
+     * @param iThreads the maximum number of handlers to load at the same time (1 to load each handler in turn on the
+     *                 current thread)
+     */
+    public void loadAll(int iThreads) {
+        load(hmLoaders.keySet(), iThreads);
+    }
+
+    /**
+     * Load (or re-load) the specified handlers, returning once they have all been loaded. Any handlers they depend on
+     * that are not included must already have been loaded.
+     * @param hsHandlerNames the handlers to load
+     * @param iThreads the maximum number of handlers to load at the same time (1 to load each handler in turn on the
+     *                 current thread)
+     */
+    public void load(Collection<String> hsHandlerNames, int iThreads) {
+
+        List<String> alOrder = getLoadOrder();
+        alOrder.retainAll(hsHandlerNames);
+        if (iThreads <= 1 || alOrder.size() <= 1) {
+            for (String sHandlerName : alOrder) {
+                context.putHandler(sHandlerName, load(sHandlerName));
+            }
+            return;
+        }
+
+        // Count the handlers each one is waiting on, and the handlers waiting on each one
+        Map<String, Integer> hmWaitingOn = new HashMap<>();
+        Map<String, List<String>> hmDependents = new HashMap<>();
+        Set<String> hsLoading = new HashSet<>(alOrder);
+        for (String sHandlerName : alOrder) {
+            int iWaitingOn = 0;
+            for (String sDependency : hmDependencies.get(sHandlerName)) {
+                if (hsLoading.contains(sDependency)) {
+                    hmDependents.computeIfAbsent(sDependency, k -> new ArrayList<>()).add(sHandlerName);
+                    iWaitingOn++;
+                }
+            }
+            hmWaitingOn.put(sHandlerName, iWaitingOn);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(iThreads, alOrder.size()));
+        CompletionService<Loaded> loads = new ExecutorCompletionService<>(pool);
+        try {
+
+            int iRunning = 0;
+            for (String sHandlerName : alOrder) {
+                if (hmWaitingOn.get(sHandlerName) == 0) {
+                    submit(loads, sHandlerName);
+                    iRunning++;
+                }
+            }
+
+            while (iRunning > 0) {
+                Loaded loaded = loads.take().get();
+                iRunning--;
+                context.putHandler(loaded.name, loaded.handler);
+                EnvironmentHandler.logger.fine("Loaded " + loaded.name + " handler.");
+                for (String sDependent : hmDependents.getOrDefault(loaded.name, Collections.<String>emptyList())) {
+                    int iWaitingOn = hmWaitingOn.get(sDependent) - 1;
+                    hmWaitingOn.put(sDependent, iWaitingOn);
+                    if (iWaitingOn == 0) {
+                        submit(loads, sDependent);
+                        iRunning++;
+                    }
+                }
+            }
+
+        } catch (InterruptedException errInterrupt) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading entity handlers", errInterrupt);
+        } catch (ExecutionException errExec) {
+            Throwable cause = errExec.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+
+    }
+
+    /**
+     * Retrieve the handlers that must be loaded before the specified one.
+     * @param sHandlerName type of entity handled by the handler
+     * @return {@code List<String>}
+     */
+    public List<String> getDependencies(String sHandlerName) {
+        return hmDependencies.getOrDefault(sHandlerName, Collections.<String>emptyList());
+    }
+
+    /**
+     * Retrieve the handlers that must be loaded after the specified one (those that directly depend on it).
+     * @param sHandlerName type of entity handled by the handler
+     * @return {@code List<String>}
+     */
+    public List<String> getDependents(String sHandlerName) {
+        List<String> alDependents = new ArrayList<>();
+        for (String sDependent : hmLoaders.keySet()) {
+            if (hmDependencies.get(sDependent).contains(sHandlerName))
+                alDependents.add(sDependent);
+        }
+        return alDependents;
+    }
+
+    /**
+     * Retrieve the types of entity that the entities of the specified handler are declared to refer to (beyond those
+     * it depends on).
+     * @param sHandlerName type of entity handled by the handler
+     * @return {@code List<String>}
+     */
+    public List<String> getReferences(String sHandlerName) {
+        return hmReferences.getOrDefault(sHandlerName, Collections.<String>emptyList());
+    }
+
+    /**
+     * Retrieve every type of entity that the entities of the specified handler are declared to rely on: those it
+     * depends on to be loaded (see {@link #getDependencies(String)}) followed by those it refers to (see
+     * {@link #getReferences(String)}).
+     * @param sHandlerName type of entity handled by the handler
+     * @return {@code List<String>}
+     */
+    public List<String> getDeclaredTypes(String sHandlerName) {
+        Set<String> hsTypes = new LinkedHashSet<>(getDependencies(sHandlerName));
+        hsTypes.addAll(getReferences(sHandlerName));
+        return new ArrayList<>(hsTypes);
+    }
+
+    /**
+     * Retrieve the types (class names) of entity that the specified handler added to the cache while it was loaded
+     * (only recorded for incremental builds: see {@link BuildContext#isIncremental()}).
+     * @param sHandlerName type of entity handled by the handler
+     * @return {@code Set<String>}
+     */
+    public Set<String> getTypesWritten(String sHandlerName) {
+        return hmTypesWritten.getOrDefault(sHandlerName, Collections.<String>emptySet());
+    }
+
+    /**
+     * Retrieve the handlers that have been loaded, in the order they would be loaded one at a time.
+     * @return {@code List<String>}
+     */
+    public List<String> getLoadedOrder() {
+        List<String> alOrder = getLoadOrder();
+        alOrder.retainAll(hsLoaded);
+        return alOrder;
+    }
+
+    /**
+     * Retrieve the order in which the handlers would be loaded one at a time: the order in which they were added,
+     * except that each handler is moved after any of its dependencies that were added after it.
+     * @return {@code List<String>}
+     */
+    public List<String> getLoadOrder() {
+        List<String> alOrder = new ArrayList<>(hmLoaders.size());
+        Set<String> hsVisited = new HashSet<>();
+        for (String sHandlerName : hmLoaders.keySet()) {
+            visit(sHandlerName, alOrder, hsVisited, new LinkedHashSet<>());
+        }
+        return alOrder;
+    }
+
+    private void visit(String sHandlerName, List<String> alOrder, Set<String> hsVisited, Set<String> hsPath) {
+        if (hsVisited.contains(sHandlerName))
+            return;
+        if (!hsPath.add(sHandlerName))
+            throw new IllegalArgumentException("Cyclic handler dependencies: " + String.join(" -> ", hsPath) + " -> " + sHandlerName);
+        for (String sDependency : hmDependencies.get(sHandlerName)) {
+            if (!hmLoaders.containsKey(sDependency))
+                throw new IllegalArgumentException("Handler " + sHandlerName + " depends on unscheduled handler: " + sDependency);
+            visit(sDependency, alOrder, hsVisited, hsPath);
+        }
+        hsPath.remove(sHandlerName);
+        hsVisited.add(sHandlerName);
+        alOrder.add(sHandlerName);
+    }
+
+    private void submit(CompletionService<Loaded> loads, String sHandlerName) {
+        loads.submit(() -> {
+            BuildContext previous = BuildContext.attach(context);
+            try {
+                return new Loaded(sHandlerName, load(sHandlerName));
+            } finally {
+                BuildContext.attach(previous);
+            }
+        });
+    }
+
+    private BasicEntityHandler load(String sHandlerName) {
+        hsLoaded.add(sHandlerName);
+        if (!context.isIncremental())
+            return hmLoaders.get(sHandlerName).get();
+        Set<String> hsTypesWritten = new HashSet<>();
+        EntityCache cache = context.getEntityCache();
+        Set<String> hsPrevious = cache.recordTypesWritten(hsTypesWritten);
+        try {
+            return hmLoaders.get(sHandlerName).get();
+        } finally {
+            cache.recordTypesWritten(hsPrevious);
+            hmTypesWritten.put(sHandlerName, hsTypesWritten);
+        }
+    }
+
+    private static class Loaded {
+        private final String name;
+        private final BasicEntityHandler handler;
+        private Loaded(String name, BasicEntityHandler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+    }
+
+}
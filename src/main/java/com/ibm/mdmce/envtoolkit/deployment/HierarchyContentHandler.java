@@ -25,6 +25,5 @@ public class HierarchyContentHandler extends ContainerContentHandler {
 				tp,
 				sOutputPath + File.separator + "HIERARCHY_CONTENT",
 				sEncoding);
-		initialize(sInputFilePath, sEncoding, tp);
 	}
 }
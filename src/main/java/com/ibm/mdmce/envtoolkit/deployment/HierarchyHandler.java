@@ -42,25 +42,25 @@ public class HierarchyHandler extends BasicEntityHandler {
 		if (!hierarchy.getUserDefinedCoreAttrGroup().equals(""))
 			bValid = validateExists(hierarchy.getUserDefinedCoreAttrGroup(), AttrCollection.class.getName(), hierarchy.getName()) && bValid;
 				
-		Spec spec = (Spec) getFromCache(hierarchy.getSpecName(), Spec.class.getName(), false, false);
+		Spec spec = getFromCache(hierarchy.getSpecName(), Spec.class, false, false);
 		if (spec != null) {
 			
 			String sDisplayAttr = hierarchy.getDisplayAttribute().replace(hierarchy.getSpecName() + "/", "");
 			Spec.Attribute attr = spec.getAttributes().get(sDisplayAttr);
 			bValid = (attr != null) && bValid;
 			if (attr == null) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + hierarchy.getName() + "): Unable to find attribute - " + hierarchy.getSpecName() + "/" + sDisplayAttr);
+				reportWarning(". . . WARNING (" + hierarchy.getName() + "): Unable to find attribute - " + hierarchy.getSpecName() + "/" + sDisplayAttr);
 			} else if (!attr.isIndexed()) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + hierarchy.getName() + "): Display attribute (" + hierarchy.getSpecName() + "/" + sDisplayAttr + ") is not indexed.");
+				reportWarning(". . . WARNING (" + hierarchy.getName() + "): Display attribute (" + hierarchy.getSpecName() + "/" + sDisplayAttr + ") is not indexed.");
 			}
 			
 			String sPathAttr = hierarchy.getPathAttribute().replace(hierarchy.getSpecName() + "/", "");
 			attr = spec.getAttributes().get(sPathAttr);
 			bValid = (attr != null) && bValid;
 			if (attr == null) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + hierarchy.getName() + "): Unable to find attribute - " + hierarchy.getSpecName() + "/" + sPathAttr);
+				reportWarning(". . . WARNING (" + hierarchy.getName() + "): Unable to find attribute - " + hierarchy.getSpecName() + "/" + sPathAttr);
 			} else if (!attr.isIndexed() || attr.getMin() != 1) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + hierarchy.getName() + "): Path attribute (" + hierarchy.getSpecName() + "/" + sDisplayAttr + ") is not indexed or not set as mandatory (minimum occurrence of 1).");
+				reportWarning(". . . WARNING (" + hierarchy.getName() + "): Path attribute (" + hierarchy.getSpecName() + "/" + sDisplayAttr + ") is not indexed or not set as mandatory (minimum occurrence of 1).");
 			}
 			
 		}
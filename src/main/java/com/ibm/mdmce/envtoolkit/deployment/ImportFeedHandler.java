@@ -41,7 +41,7 @@ public class ImportFeedHandler extends BasicEntityHandler {
 			if (instance.getType().equals("ITM") && instance.getSpecMap().equals("")) {
 				// auto-generate a dummy spec mapping...
 				instance.setSpecMap(instance.getFileSpec() + " to " + instance.getCatalog());
-				SpecMap specMap = (SpecMap) getFromCache(instance.getSpecMap(), SpecMap.class.getName(), false, false);
+				SpecMap specMap = getFromCache(instance.getSpecMap(), SpecMap.class, false, false);
 				if (specMap == null) {
 					EnvironmentHandler.logger.finer(" . . . generating default spec map: " + instance.getSpecMap());
 					specMap = new SpecMap(instance.getSpecMap(), "FILE_CATALOG_MAP", instance.getFileSpec(), instance.getCatalog());
@@ -50,7 +50,7 @@ public class ImportFeedHandler extends BasicEntityHandler {
 				}
 			}
 			if (!instance.getParamsPath().equals("")) {
-				Script docParams = (Script) getFromCache(instance.getParamsPath(), Script.class.getName(), false, false);
+				Script docParams = getFromCache(instance.getParamsPath(), Script.class, false, false);
 				if (docParams == null) {
 					EnvironmentHandler.logger.info(" . . . generating default parameters: " + instance.getParamsPath());
 					docParams = new Script("INPUT_PARAM", instance.getParamsName(), instance.getInputSpec(), "/params/None", instance.getParamsPath());
@@ -76,7 +76,7 @@ public class ImportFeedHandler extends BasicEntityHandler {
 			sScriptPath += "ctr/";
 		
 		if (!feed.getType().equals("IMG")) {
-			Catalog ctg = (Catalog) getFromCache(feed.getCatalog(), Catalog.class.getName(), false, false);
+			Catalog ctg = getFromCache(feed.getCatalog(), Catalog.class, false, false);
 			if (ctg == null && !feed.getType().equals("CTR") && !feed.isCollaborationArea())
 				bValid = validateExists(feed.getCatalog(), Lookup.class.getName(), feed.getName()) && bValid;
 			if (feed.getType().equals("CTR") || !feed.getHierarchy().equals(""))
@@ -96,14 +96,14 @@ public class ImportFeedHandler extends BasicEntityHandler {
 		
 		if (feed.isCollaborationArea()) {
 			bValid = validateExists(feed.getCatalog(), ColArea.class.getName(), feed.getName()) && bValid;
-			ColArea colArea = (ColArea) getFromCache(feed.getCatalog(), ColArea.class.getName(), false, false);
+			ColArea colArea = getFromCache(feed.getCatalog(), ColArea.class, false, false);
 			if (colArea != null) {
-				Workflow wfl = (Workflow) getFromCache(colArea.getWorkflow(), Workflow.class.getName());
+				Workflow wfl = getFromCache(colArea.getWorkflow(), Workflow.class);
 				if (wfl != null) {
 					Workflow.WorkflowStep wflStep = wfl.getSteps().get(feed.getWorkflowStep());
 					bValid = (wflStep != null) && bValid;
 					if (wflStep == null)
-					EnvironmentHandler.logger.warning("WARNING (" + feed.getName() + "): Workflow step does not exist - " + feed.getWorkflowStep());
+					reportWarning("WARNING (" + feed.getName() + "): Workflow step does not exist - " + feed.getWorkflowStep());
 				}
 			}
 		}
@@ -0,0 +1,166 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Plans the import of an environment as waves of types of entity that can be imported concurrently, rather than one
+ * type after another in the order of the ImportEnvControl.xml.
+ * <br>
+ * The plan is built from a dependency graph between the individual entities: the references each entity was found to
+ * make to other entities while it was validated (see {@link EnvironmentValidator}). A type of entity depends on every
+ * type imported before it that any of its entities refers to, and on every type imported before it that its handler
+ * depends on or declares it refers to (see {@link HandlerLoadScheduler#getDeclaredTypes(String)}), so that references
+ * that are only resolved while loading or outputting are still honoured. References to types imported later are ignored, as the sequential
+ * import already tolerates them. Each type is then placed in the wave after the last wave of any type it depends on,
+ * so that all of the types within a wave can be imported at the same time once the previous waves have completed.
+ * <br>
+ * The critical path is the longest chain of dependencies: between types, the number of waves that must be imported
+ * one after another; and between entities, the longest chain of entities that each refer to the next.
+ */
+public class ImportWavePlanner {
+
+    private final Map<String, Map<String, Set<String>>> hmReferences = new ConcurrentHashMap<>();
+
+    private List<List<String>> alWaves = Collections.emptyList();
+    private List<String> alCriticalTypes = Collections.emptyList();
+    private List<String> alCriticalEntities = Collections.emptyList();
+
+    /**
+     * Record the references made by the entities of the specified type, replacing any recorded before (when the type
+     * is validated again).
+     * @param sEntityType the type of entity (for example Catalog)
+     * @param hmTypeReferences the references of each entity (by name), each as the type and name of the entity referred
+     *                         to (see {@link #toReference(String, String)})
+     */
+    public void setReferences(String sEntityType, Map<String, Set<String>> hmTypeReferences) {
+        hmReferences.put(sEntityType, hmTypeReferences);
+    }
+
+    /**
+     * Build the reference to an entity, as recorded against the entities that refer to it.
+     * @param sEntityType the type of entity referred to (for example Spec)
+     * @param sName the name of the entity referred to
+     * @return String
+     */
+    public static String toReference(String sEntityType, String sName) {
+        return sEntityType + "\t" + sName;
+    }
+
+    /**
+     * Plan the import of the provided types of entity into waves.
+     * @param alImportTypes the types of entity to import, in the order of the ImportEnvControl.xml
+     * @param declaredReferences the types of entity each type of entity is declared to depend on or refer to
+     * @param manifest the entities being imported of each type (see {@link BuildContext#getEntityManifest()})
+     * @param baseline (optional) the entities of a previous build, whose unchanged entities are not being imported (see
+     *                 {@link BuildContext#getDeltaBaseline()})
+     */
+    public void plan(List<String> alImportTypes, Function<String, List<String>> declaredReferences, EntityManifest manifest, EntityManifest baseline) {
+
+        Map<String, Integer> hmTypeOrder = new HashMap<>();
+        for (String sEntityType : alImportTypes) {
+            hmTypeOrder.put(sEntityType, hmTypeOrder.size());
+        }
+
+        // Waves of types: each type goes into the wave after the latest of the types it depends on
+        Map<String, Integer> hmTypeWave = new HashMap<>();
+        Map<String, String> hmTypePredecessor = new HashMap<>();
+        List<List<String>> alPlanned = new ArrayList<>();
+        String sLastType = null;
+        for (String sEntityType : alImportTypes) {
+            Set<String> hsDependencies = new LinkedHashSet<>(declaredReferences.apply(sEntityType));
+            for (Set<String> hsEntityReferences : getReferences(sEntityType).values()) {
+                for (String sReference : hsEntityReferences) {
+                    hsDependencies.add(sReference.substring(0, sReference.indexOf('\t')));
+                }
+            }
+            int iWave = 0;
+            for (String sDependency : hsDependencies) {
+                Integer iOrder = hmTypeOrder.get(sDependency);
+                if (iOrder != null && iOrder < hmTypeOrder.get(sEntityType) && hmTypeWave.get(sDependency) + 1 > iWave) {
+                    iWave = hmTypeWave.get(sDependency) + 1;
+                    hmTypePredecessor.put(sEntityType, sDependency);
+                }
+            }
+            hmTypeWave.put(sEntityType, iWave);
+            if (iWave == alPlanned.size())
+                alPlanned.add(new ArrayList<>());
+            alPlanned.get(iWave).add(sEntityType);
+            if (sLastType == null || iWave > hmTypeWave.get(sLastType))
+                sLastType = sEntityType;
+        }
+        alWaves = alPlanned;
+        alCriticalTypes = getChain(sLastType, hmTypePredecessor);
+
+        // Chains of entities: each entity is one further along than the longest chain of those it refers to
+        Map<String, Integer> hmEntityDepth = new HashMap<>();
+        Map<String, String> hmEntityPredecessor = new HashMap<>();
+        String sLastEntity = null;
+        for (String sEntityType : alImportTypes) {
+            Map<String, Set<String>> hmTypeReferences = getReferences(sEntityType);
+            for (Map.Entry<String, String> entry : manifest.getSignatures(sEntityType).entrySet()) {
+                String sEntityName = entry.getKey();
+                if (baseline != null && entry.getValue().equals(baseline.getSignature(sEntityType, sEntityName)))
+                    continue;
+                String sEntity = toReference(sEntityType, sEntityName);
+                int iDepth = 1;
+                for (String sReference : hmTypeReferences.getOrDefault(sEntityName, Collections.emptySet())) {
+                    Integer iOrder = hmTypeOrder.get(sReference.substring(0, sReference.indexOf('\t')));
+                    Integer iReferenceDepth = hmEntityDepth.get(sReference);
+                    if (iOrder != null && iOrder < hmTypeOrder.get(sEntityType) && iReferenceDepth != null && iReferenceDepth + 1 > iDepth) {
+                        iDepth = iReferenceDepth + 1;
+                        hmEntityPredecessor.put(sEntity, sReference);
+                    }
+                }
+                hmEntityDepth.put(sEntity, iDepth);
+                if (sLastEntity == null || iDepth > hmEntityDepth.get(sLastEntity))
+                    sLastEntity = sEntity;
+            }
+        }
+        alCriticalEntities = getChain(sLastEntity, hmEntityPredecessor);
+
+    }
+
+    /**
+     * Retrieve the waves planned by {@link #plan(List, Function, EntityManifest, EntityManifest)}.
+     * @return {@code List<List<String>>} - the types of entity in each wave (in the order of the ImportEnvControl.xml)
+     */
+    public List<List<String>> getWaves() {
+        return alWaves;
+    }
+
+    /**
+     * Retrieve the critical path between the types of entity planned: one type from each wave, each depending on the
+     * type before it.
+     * @return {@code List<String>}
+     */
+    public List<String> getCriticalTypes() {
+        return alCriticalTypes;
+    }
+
+    /**
+     * Retrieve the longest chain of the entities planned that each refer to the entity before them.
+     * @return {@code List<String>} - each entity as the type and name of the entity (see {@link #toReference(String, String)})
+     */
+    public List<String> getCriticalEntities() {
+        return alCriticalEntities;
+    }
+
+    private Map<String, Set<String>> getReferences(String sEntityType) {
+        return hmReferences.getOrDefault(sEntityType, Collections.emptyMap());
+    }
+
+    private static List<String> getChain(String sLast, Map<String, String> hmPredecessors) {
+        LinkedList<String> alChain = new LinkedList<>();
+        for (String sNode = sLast; sNode != null; sNode = hmPredecessors.get(sNode)) {
+            alChain.addFirst(sNode);
+        }
+        return alChain;
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Decides which outputs of a build need to be regenerated, by comparing what the build has read against the
+ * {@link BuildManifest} left in the output directory by the previous build. All of the input files are still read
+ * (and all of the entities validated), but only the XML of the types of entity affected by a change is written out
+ * again. The output of a type of entity is regenerated if:
+ * <ul>
+ *   <li>any of the files its handler read (while loading or outputting) have changed, been added or been removed,</li>
+ *   <li>any handler it depends on while loading (see {@link HandlerLoadScheduler}) has itself changed,</li>
+ *   <li>it read any type of entity from the cache (while outputting) that a changed handler added to, or</li>
+ *   <li>any of the files it output previously are missing or have been modified since.</li>
+ * </ul>
+ * Changes to the settings of the build (company code, version, paths, encoding, template parameters or selected types
+ * of entity) regenerate everything. Files are only re-hashed when their size or modification time has changed.
+ *
+ * @see BuildContext#isIncremental()
+ */
+public class IncrementalBuild {
+
+    private final BuildContext context;
+    private final HandlerLoadScheduler loads;
+    private final String outputPath;
+    private final BuildManifest previous; // as left by the previous build, if it had the same settings
+    private final BuildManifest current;
+    private final EntityManifest previousEntities; // as left by the previous build, if it had the same settings
+    private final Set<String> hsRegenerated = new LinkedHashSet<>();
+
+    /**
+     * Construct a new incremental build, reading the manifest of the previous build (if any) from the output
+     * directory.
+     * @param context the build
+     * @param loads the handlers that were loaded for the build (and what each one added to the cache)
+     * @param sOutputPath the directory into which the files are output
+     * @param sFingerprint hash of the settings of the build
+     */
+    public IncrementalBuild(BuildContext context, HandlerLoadScheduler loads, String sOutputPath, String sFingerprint) {
+        this.context = context;
+        this.loads = loads;
+        this.outputPath = sOutputPath;
+        this.current = new BuildManifest(sFingerprint);
+        BuildManifest manifest = BuildManifest.read(sOutputPath);
+        if (manifest == null) {
+            EnvironmentHandler.logger.info("No previous build manifest found - generating all outputs.");
+        } else if (!manifest.getFingerprint().equals(sFingerprint)) {
+            EnvironmentHandler.logger.info("Build settings have changed since the previous build - generating all outputs.");
+            manifest = null;
+        }
+        EntityManifest entities = null;
+        if (manifest != null) {
+            try {
+                entities = EntityManifest.read(sOutputPath);
+            } catch (IOException errIO) {
+                EnvironmentHandler.logger.info("No previous entity manifest found - generating all outputs.");
+                manifest = null;
+            }
+        }
+        this.previous = manifest;
+        this.previousEntities = entities;
+    }
+
+    /**
+     * Select which of the provided types of entity need their output regenerated. The generated files of those that do
+     * not are restored from the previous build (so that they are still listed in the ImportEnvControl.xml), as are
+     * their entities in the entity manifest of the build.
+     * @param alEntityNames the types of entity to output (in order)
+     * @return {@code List<String>} - the types of entity whose output needs to be regenerated (in the same order)
+     * @throws IOException on any error reading the input files
+     */
+    public List<String> selectOutputs(List<String> alEntityNames) throws IOException {
+
+        // Work out which handlers have loaded different entities than the previous build...
+        Set<String> hsChangedLoads = new HashSet<>();
+        Set<String> hsChangedTypes = new HashSet<>();
+        for (String sHandlerName : loads.getLoadedOrder()) {
+            BasicEntityHandler beh = context.getHandler(sHandlerName);
+            BuildManifest.HandlerState before = (previous == null) ? null : previous.getHandler(sHandlerName);
+            BuildManifest.HandlerState now = current.addHandler(sHandlerName);
+            Map<String, BuildManifest.FileState> hmBefore = (before == null) ? Collections.<String, BuildManifest.FileState>emptyMap() : before.getInputs();
+            for (String sInputFile : beh.getInputFiles()) {
+                now.getInputs().put(sInputFile, BuildManifest.FileState.ofInput(new File(sInputFile), hmBefore.get(sInputFile)));
+            }
+            now.getTypesWritten().addAll(loads.getTypesWritten(sHandlerName));
+
+            boolean bChanged = (before == null) || !sameFiles(before.getInputs(), now.getInputs());
+            for (String sDependency : loads.getDependencies(sHandlerName)) {
+                bChanged = bChanged || hsChangedLoads.contains(sDependency);
+            }
+            if (bChanged) {
+                EnvironmentHandler.logger.fine(". . . Inputs of " + sHandlerName + " have changed.");
+                hsChangedLoads.add(sHandlerName);
+                hsChangedTypes.addAll(now.getTypesWritten());
+                if (before != null)
+                    hsChangedTypes.addAll(before.getTypesWritten());
+            }
+        }
+
+        // ... and then which outputs are affected by those changes
+        List<String> alSelected = new ArrayList<>();
+        for (String sEntityName : alEntityNames) {
+            BuildManifest.HandlerState before = (previous == null) ? null : previous.getHandler(sEntityName);
+            if (needsRegenerating(sEntityName, before, hsChangedLoads, hsChangedTypes)) {
+                alSelected.add(sEntityName);
+                hsRegenerated.add(sEntityName);
+            } else {
+                EnvironmentHandler.logger.info("ImportEnv file for entity " + sEntityName + " is up to date.");
+                BuildManifest.HandlerState now = current.addHandler(sEntityName);
+                now.getTypesRead().addAll(before.getTypesRead());
+                now.getOutputInputs().putAll(before.getOutputInputs());
+                now.getOutputs().putAll(before.getOutputs());
+                context.getHandler(sEntityName).restoreGeneratedFilesXML(new ArrayList<>(before.getOutputs().keySet()));
+                context.getEntityManifest().putAll(sEntityName, previousEntities.getSignatures(sEntityName));
+            }
+        }
+        EnvironmentHandler.logger.info("Regenerating " + alSelected.size() + " of " + alEntityNames.size() + " ImportEnv files.");
+        return alSelected;
+
+    }
+
+    private boolean needsRegenerating(String sEntityName, BuildManifest.HandlerState before, Set<String> hsChangedLoads, Set<String> hsChangedTypes) throws IOException {
+
+        if (before == null || before.getOutputs().isEmpty() || hsChangedLoads.contains(sEntityName))
+            return true;
+
+        for (String sType : before.getTypesRead()) {
+            if (hsChangedTypes.contains(sType) || (sType.equals(EntityCache.ANY_TYPE) && !hsChangedTypes.isEmpty()))
+                return true;
+        }
+
+        for (Map.Entry<String, BuildManifest.FileState> entry : before.getOutputInputs().entrySet()) {
+            if (!BuildManifest.FileState.ofInput(new File(entry.getKey()), entry.getValue()).sameAs(entry.getValue()))
+                return true;
+        }
+
+        for (Map.Entry<String, BuildManifest.FileState> entry : before.getOutputs().entrySet()) {
+            if (!BuildManifest.FileState.ofOutput(new File(entry.getKey())).sameAs(entry.getValue()))
+                return true;
+        }
+
+        return false;
+
+    }
+
+    private static boolean sameFiles(Map<String, BuildManifest.FileState> hmBefore, Map<String, BuildManifest.FileState> hmNow) {
+        if (!hmBefore.keySet().equals(hmNow.keySet()))
+            return false;
+        for (Map.Entry<String, BuildManifest.FileState> entry : hmNow.entrySet()) {
+            if (!entry.getValue().sameAs(hmBefore.get(entry.getKey())))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record what was regenerated into the manifest, remove any files output (into the output directory) by the
+     * previous build that are no longer output, as long as the previous build had the same settings, and write the
+     * manifest into the output directory. A type of entity whose main XML file could not be
+     * written is recorded without any outputs, so that it is regenerated by the next build.
+     * @throws IOException on any error reading the input files or writing the manifest
+     */
+    public void complete() throws IOException {
+
+        Set<String> hsOutputs = new HashSet<>();
+        for (String sEntityName : hsRegenerated) {
+            BasicEntityHandler beh = context.getHandler(sEntityName);
+            BuildManifest.HandlerState before = (previous == null) ? null : previous.getHandler(sEntityName);
+            BuildManifest.HandlerState now = current.addHandler(sEntityName);
+            now.getTypesRead().addAll(beh.getTypesRead());
+            for (String sInputFile : beh.getOutputInputFiles()) {
+                BuildManifest.FileState stateBefore = (before == null) ? null : before.getOutputInputs().get(sInputFile);
+                now.getOutputInputs().put(sInputFile, BuildManifest.FileState.ofInput(new File(sInputFile), stateBefore));
+            }
+            List<String> alGenerated = beh.getGeneratedFilesXML();
+            hsOutputs.addAll(alGenerated);
+            if (alGenerated.contains(outputPath + File.separator + beh.getXmlFilePath())) {
+                for (String sGenerated : alGenerated) {
+                    now.getOutputs().put(sGenerated, BuildManifest.FileState.ofOutput(new File(sGenerated)));
+                }
+            }
+        }
+
+        // Only with the same settings is the previous build known to have output the same types of entity into the
+        // same directory (for example, not only some of the types of entity)
+        if (previous != null) {
+            for (String sHandlerName : current.getHandlerNames()) {
+                hsOutputs.addAll(current.getHandler(sHandlerName).getOutputs().keySet());
+            }
+            Path pathOutput = new File(outputPath).getAbsoluteFile().toPath().normalize();
+            for (String sHandlerName : previous.getHandlerNames()) {
+                for (String sPrevious : previous.getHandler(sHandlerName).getOutputs().keySet()) {
+                    Path pathPrevious = new File(sPrevious).getAbsoluteFile().toPath().normalize();
+                    if (!hsOutputs.contains(sPrevious) && pathPrevious.startsWith(pathOutput) && pathPrevious.toFile().delete())
+                        EnvironmentHandler.logger.info(" . . . Removed file no longer generated: " + sPrevious);
+                }
+            }
+        }
+
+        current.write(outputPath);
+
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary snapshot of the parsed input CSV files of a build, kept in its output directory so that the next build into
+ * the same directory does not need to parse them (and apply the template parameters to them) again. For each CSV file
+ * read by an entity handler (see {@link BasicEntityHandler#initialize(String, String, TemplateParameters)}), the
+ * snapshot holds its header and every one of its lines with the template parameters already applied, exactly as they
+ * are added to the cache. Those lines are replayed into the handler rather than re-parsed whenever the hash of the CSV
+ * file is the same as when the snapshot was written, so that the entities (and any files they copy while loading) are
+ * built in exactly the same way; any file whose hash differs is parsed again. The whole snapshot is ignored if it was
+ * written by a different version of the format, for a different encoding or with different template parameters.
+ * <br>
+ * The snapshot is read into memory in one go, rather than memory-mapped, so that the build that read it can replace it
+ * on any platform (a file cannot be replaced on Windows while it is still mapped, and a mapping is only released once it
+ * has been garbage-collected). All of the distinct values of the snapshot are held once, in a table at its start, and
+ * each file's lines refer to the values in that table, so only the table and the directory of files are decoded
+ * up-front: the lines of each file are only decoded if they are used.
+ * <br>
+ * Keeping a snapshot is optional (see {@link BuildContext#isUseInputSnapshot()}), as it is only worth recording every
+ * line of every file when the output directory is kept from one build to the next.
+ */
+public class InputSnapshot {
+
+    public static final String FILENAME = ".envtoolkit-snapshot";
+
+    private static final int MAGIC = 0x45544b53; // ETKS
+    private static final int FORMAT_VERSION = 1;
+
+    private final String key;
+    private final ByteBuffer buffer;
+    private final String[] aValues;
+    private final Map<String, Entry> hmPrevious = new LinkedHashMap<>();
+    private final Map<String, Entry> hmRecorded = new ConcurrentHashMap<>();
+    private final Set<String> hsReplayed = ConcurrentHashMap.newKeySet();
+
+    private InputSnapshot(String sKey, ByteBuffer buffer, String[] aValues) {
+        this.key = sKey;
+        this.buffer = buffer;
+        this.aValues = aValues;
+    }
+
+    /**
+     * Open the snapshot left in the provided directory by a previous build.
+     * @param sDirectory the output directory of the build
+     * @param sKey the key of the build's settings that affect how every file is parsed (see {@link #getKey(String, File)})
+     * @param stringPool the pool through which to share the values read from the snapshot
+     * @return InputSnapshot - empty if there is no usable snapshot, in which case every file will be parsed
+     */
+    public static InputSnapshot open(String sDirectory, String sKey, StringPool stringPool) {
+        File fSnapshot = new File(sDirectory, FILENAME);
+        if (!fSnapshot.isFile())
+            return new InputSnapshot(sKey, null, new String[0]);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(fSnapshot.toPath()));
+            Cursor cursor = new Cursor(buffer, 0);
+            if (cursor.readInt() != MAGIC || cursor.readInt() != FORMAT_VERSION || !sKey.equals(cursor.readString())) {
+                EnvironmentHandler.logger.info("Parsed input snapshot is out of date - reading all input files.");
+                return new InputSnapshot(sKey, null, new String[0]);
+            }
+            String[] aValues = new String[cursor.readCount()];
+            for (int i = 0; i < aValues.length; i++) {
+                aValues[i] = stringPool.canonicalize(cursor.readString());
+            }
+            InputSnapshot snapshot = new InputSnapshot(sKey, buffer, aValues);
+            int iEntries = cursor.readCount();
+            for (int i = 0; i < iEntries; i++) {
+                Entry entry = new Entry(aValues[cursor.readCount()], aValues[cursor.readCount()], aValues[cursor.readCount()], cursor.readCount());
+                entry.offset = cursor.readInt();
+                snapshot.hmPrevious.put(entry.path, entry);
+            }
+            int iBodies = cursor.position;
+            for (Entry entry : snapshot.hmPrevious.values()) {
+                entry.offset += iBodies;
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException err) {
+            EnvironmentHandler.logger.warning(". . . WARNING: Unable to read the parsed input snapshot (" + err + ") - reading all input files.");
+            return new InputSnapshot(sKey, null, new String[0]);
+        }
+    }
+
+    /**
+     * Calculate the key of a build's settings that affect how every file is parsed.
+     * @param sEncoding the encoding of the input files
+     * @param fTemplateParameters the template parameters applied to the input files
+     * @return String
+     * @throws IOException on any error reading the template parameters
+     */
+    public static String getKey(String sEncoding, File fTemplateParameters) throws IOException {
+        return BuildManifest.hash(sEncoding, fTemplateParameters.isFile() ? BuildManifest.hash(fTemplateParameters) : "");
+    }
+
+    /**
+     * Look up the provided CSV file in the snapshot.
+     * @param fInput the CSV file to be read
+     * @param sEntityType the type (class name) of entity the file is read into
+     * @param iColumns the number of columns expected in the file
+     * @return Entry - with the parsed lines of the file if they are in the snapshot and the file has not changed since,
+     *         or otherwise an empty entry into which to record the lines as they are parsed; or null if the file cannot
+     *         be read
+     */
+    public Entry lookup(File fInput, String sEntityType, int iColumns) {
+        String sPath = fInput.getAbsoluteFile().toPath().normalize().toString();
+        String sHash;
+        try {
+            sHash = BuildManifest.hash(fInput);
+        } catch (IOException errIO) {
+            return null;
+        }
+        Entry previous = hmPrevious.get(sPath);
+        if (previous != null && previous.hash.equals(sHash) && previous.entityType.equals(sEntityType) && previous.columns == iColumns) {
+            Entry replayed = new Entry(sPath, sHash, sEntityType, iColumns);
+            readBody(previous.offset, replayed);
+            replayed.replayed = true;
+            hmRecorded.put(sPath, replayed);
+            hsReplayed.add(sPath);
+            return replayed;
+        }
+        return new Entry(sPath, sHash, sEntityType, iColumns);
+    }
+
+    /**
+     * Record the lines parsed from a CSV file (into the entry returned by {@link #lookup(File, String, int)}), to be
+     * written into the snapshot.
+     * @param entry the parsed file
+     */
+    public void record(Entry entry) {
+        hmRecorded.put(entry.path, entry);
+    }
+
+    /**
+     * Retrieve the number of files whose lines were replayed from the snapshot rather than parsed.
+     * @return int
+     */
+    public int getReplayedCount() {
+        return hsReplayed.size();
+    }
+
+    /**
+     * Indicates whether the snapshot needs to be written again: because any file was parsed rather than replayed.
+     * @return boolean
+     */
+    public boolean isChanged() {
+        return buffer == null || hsReplayed.size() < hmRecorded.size();
+    }
+
+    /**
+     * Write the snapshot into the provided directory, replacing any previous snapshot once it has been completely
+     * written. Files that were not read by this build (for example, because only some types of entity were built) are
+     * kept from the previous snapshot.
+     * @param sDirectory the output directory of the build
+     * @throws IOException on any error writing
+     */
+    public void write(String sDirectory) throws IOException {
+
+        Map<String, Entry> hmEntries = new LinkedHashMap<>();
+        for (Entry previous : hmPrevious.values()) {
+            if (!hmRecorded.containsKey(previous.path)) {
+                Entry kept = new Entry(previous.path, previous.hash, previous.entityType, previous.columns);
+                readBody(previous.offset, kept);
+                hmEntries.put(kept.path, kept);
+            }
+        }
+        hmEntries.putAll(new TreeMap<>(hmRecorded));
+
+        Map<String, Integer> hmValueIndex = new LinkedHashMap<>();
+        ByteArrayOutputStream bodies = new ByteArrayOutputStream();
+        DataOutputStream outBodies = new DataOutputStream(bodies);
+        Map<Entry, Integer> hmOffsets = new IdentityHashMap<>();
+        for (Entry entry : hmEntries.values()) {
+            hmOffsets.put(entry, outBodies.size());
+            writeValues(outBodies, entry.header, hmValueIndex);
+            writeCount(outBodies, entry.lines.size());
+            for (List<List<String>> alReplacedTokens : entry.lines) {
+                writeCount(outBodies, alReplacedTokens.size());
+                for (List<String> aReplacedTokens : alReplacedTokens) {
+                    writeValues(outBodies, aReplacedTokens, hmValueIndex);
+                }
+            }
+        }
+        for (Entry entry : hmEntries.values()) {
+            indexOf(entry.path, hmValueIndex);
+            indexOf(entry.hash, hmValueIndex);
+            indexOf(entry.entityType, hmValueIndex);
+        }
+
+        File fSnapshot = new File(sDirectory, FILENAME);
+        File fTemp = new File(sDirectory, FILENAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fTemp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, key);
+            writeCount(out, hmValueIndex.size());
+            for (String sValue : hmValueIndex.keySet()) {
+                writeString(out, sValue);
+            }
+            writeCount(out, hmEntries.size());
+            for (Entry entry : hmEntries.values()) {
+                writeCount(out, hmValueIndex.get(entry.path));
+                writeCount(out, hmValueIndex.get(entry.hash));
+                writeCount(out, hmValueIndex.get(entry.entityType));
+                writeCount(out, entry.columns);
+                out.writeInt(hmOffsets.get(entry));
+            }
+            bodies.writeTo(out);
+        }
+        Files.move(fTemp.toPath(), fSnapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    }
+
+    private void readBody(int iOffset, Entry entry) {
+        Cursor cursor = new Cursor(buffer, iOffset);
+        entry.header = readValues(cursor);
+        int iLines = cursor.readCount();
+        for (int i = 0; i < iLines; i++) {
+            int iReplaced = cursor.readCount();
+            List<List<String>> alReplacedTokens = new ArrayList<>(iReplaced);
+            for (int j = 0; j < iReplaced; j++) {
+                alReplacedTokens.add(readValues(cursor));
+            }
+            entry.lines.add(alReplacedTokens);
+        }
+    }
+
+    private List<String> readValues(Cursor cursor) {
+        int iCount = cursor.readCount();
+        if (iCount == 0)
+            return null;
+        List<String> alValues = new ArrayList<>(iCount - 1);
+        for (int i = 1; i < iCount; i++) {
+            int iIndex = cursor.readCount();
+            alValues.add(iIndex == 0 ? null : aValues[iIndex - 1]);
+        }
+        return alValues;
+    }
+
+    // Lists are written with their size + 1 (so that 0 is a null list), and values with their index + 1 (so that 0 is null)
+    private static void writeValues(DataOutputStream out, List<String> alValues, Map<String, Integer> hmValueIndex) throws IOException {
+        if (alValues == null) {
+            writeCount(out, 0);
+            return;
+        }
+        writeCount(out, alValues.size() + 1);
+        for (String sValue : alValues) {
+            writeCount(out, sValue == null ? 0 : indexOf(sValue, hmValueIndex) + 1);
+        }
+    }
+
+    private static int indexOf(String sValue, Map<String, Integer> hmValueIndex) {
+        Integer iIndex = hmValueIndex.get(sValue);
+        if (iIndex == null) {
+            iIndex = hmValueIndex.size();
+            hmValueIndex.put(sValue, iIndex);
+        }
+        return iIndex;
+    }
+
+    private static void writeString(DataOutputStream out, String sValue) throws IOException {
+        byte[] aBytes = sValue.getBytes(StandardCharsets.UTF_8);
+        writeCount(out, aBytes.length);
+        out.write(aBytes);
+    }
+
+    // Counts and indexes are written in 7-bit groups, so that small numbers take a single byte
+    private static void writeCount(DataOutputStream out, int iCount) throws IOException {
+        while ((iCount & ~0x7f) != 0) {
+            out.writeByte((iCount & 0x7f) | 0x80);
+            iCount >>>= 7;
+        }
+        out.writeByte(iCount);
+    }
+
+    /**
+     * The parsed lines of a single CSV file.
+     */
+    public static class Entry {
+
+        private final String path;
+        private final String hash;
+        private final String entityType;
+        private final int columns;
+        private int offset;
+        private boolean replayed = false;
+        private List<String> header;
+        private final List<List<List<String>>> lines = new ArrayList<>();
+
+        private Entry(String sPath, String sHash, String sEntityType, int iColumns) {
+            this.path = sPath;
+            this.hash = sHash;
+            this.entityType = sEntityType;
+            this.columns = iColumns;
+        }
+
+        /**
+         * Indicates whether the lines of the file were read from the snapshot (rather than still needing to be parsed).
+         * @return boolean
+         */
+        public boolean isReplayed() {
+            return replayed;
+        }
+
+        /**
+         * Retrieve the header line of the file.
+         * @return {@code List<String>} - or null if the file is empty
+         */
+        public List<String> getHeader() {
+            return header;
+        }
+
+        /**
+         * Set the header line of the file, as parsed.
+         * @param aHeader the header line (or null if the file is empty)
+         */
+        public void setHeader(List<String> aHeader) {
+            this.header = aHeader;
+        }
+
+        /**
+         * Retrieve the lines of the file, each with the template parameters already applied.
+         * @return {@code List<List<List<String>>>}
+         */
+        public List<List<List<String>>> getLines() {
+            return lines;
+        }
+
+        /**
+         * Add a line of the file, as parsed and with the template parameters already applied.
+         * @param alReplacedTokens the line
+         */
+        public void addLine(List<List<String>> alReplacedTokens) {
+            lines.add(alReplacedTokens);
+        }
+
+    }
+
+    /**
+     * Reads values from an absolute position of the (shared) snapshot, so that several threads can read from it at
+     * once.
+     */
+    private static class Cursor {
+
+        private final ByteBuffer buffer;
+        private int position;
+
+        private Cursor(ByteBuffer buffer, int iPosition) {
+            this.buffer = buffer;
+            this.position = iPosition;
+        }
+
+        private int readInt() {
+            int i = buffer.getInt(position);
+            position += 4;
+            return i;
+        }
+
+        private int readCount() {
+            int iCount = 0;
+            int iShift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                iCount |= (b & 0x7f) << iShift;
+                iShift += 7;
+            } while ((b & 0x80) != 0);
+            return iCount;
+        }
+
+        private String readString() {
+            byte[] aBytes = new byte[readCount()];
+            for (int i = 0; i < aBytes.length; i++) {
+                aBytes[i] = buffer.get(position++);
+            }
+            return new String(aBytes, StandardCharsets.UTF_8);
+        }
+
+    }
+
+}
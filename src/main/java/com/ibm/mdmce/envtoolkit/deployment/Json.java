@@ -0,0 +1,256 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.util.*;
+
+/**
+ * Minimal reading and writing of JSON, for the requests and responses of the {@link BuildServer}. Objects are read
+ * into (ordered) maps, arrays into lists, numbers into doubles, and the literals into booleans (or null).
+ */
+public class Json {
+
+    private final String text;
+    private int pos = 0;
+
+    private Json(String sText) {
+        this.text = sText;
+    }
+
+    /**
+     * Parse the provided JSON text, which must contain a single object.
+     * @param sText the JSON text
+     * @return {@code Map<String, Object>}
+     * @throws IllegalArgumentException if the text is not a valid JSON object
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> parseObject(String sText) {
+        Json json = new Json(sText);
+        json.skipWhitespace();
+        if (json.peek() != '{')
+            throw json.error("Expected an object");
+        Object oValue = json.readValue();
+        json.skipWhitespace();
+        if (json.pos < json.text.length())
+            throw json.error("Unexpected content after the object");
+        return (Map<String, Object>) oValue;
+    }
+
+    /**
+     * Quote the provided value as a JSON string (or the literal null).
+     * @param sValue the value to quote
+     * @return String
+     */
+    public static String quote(String sValue) {
+        if (sValue == null)
+            return "null";
+        StringBuilder sb = new StringBuilder(sValue.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < sValue.length(); i++) {
+            char c = sValue.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Write the provided list of values as a JSON array of strings.
+     * @param alValues the values to write
+     * @return String
+     */
+    public static String quoteAll(Collection<String> alValues) {
+        StringJoiner sj = new StringJoiner(",", "[", "]");
+        for (String sValue : alValues) {
+            sj.add(quote(sValue));
+        }
+        return sj.toString();
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        char c = peek();
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (c == '-' || (c >= '0' && c <= '9'))
+                    return readNumber();
+                throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        Map<String, Object> hmObject = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return hmObject;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"')
+                throw error("Expected a member name");
+            String sName = readString();
+            skipWhitespace();
+            expect(':');
+            hmObject.put(sName, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect('}');
+                return hmObject;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        List<Object> alArray = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return alArray;
+        }
+        while (true) {
+            alArray.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                pos++;
+            } else {
+                expect(']');
+                return alArray;
+            }
+        }
+    }
+
+    private String readString() {
+        StringBuilder sb = new StringBuilder();
+        pos++;
+        while (true) {
+            char c = next();
+            if (c == '"')
+                return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char cEscaped = next();
+            switch (cEscaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    sb.append(cEscaped);
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length())
+                        throw error("Incomplete escape");
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException errNumber) {
+                        throw error("Invalid escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("Invalid escape '\\" + cEscaped + "'");
+            }
+        }
+    }
+
+    private Double readNumber() {
+        int iStart = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        try {
+            return Double.valueOf(text.substring(iStart, pos));
+        } catch (NumberFormatException errNumber) {
+            throw error("Invalid number");
+        }
+    }
+
+    private Object readLiteral(String sLiteral, Object oValue) {
+        if (!text.startsWith(sLiteral, pos))
+            throw error("Unexpected literal");
+        pos += sLiteral.length();
+        return oValue;
+    }
+
+    private void skipWhitespace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= text.length())
+            throw error("Unexpected end of input");
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c)
+            throw error("Expected '" + c + "'");
+    }
+
+    private IllegalArgumentException error(String sMessage) {
+        return new IllegalArgumentException(sMessage + " at position " + pos);
+    }
+
+}
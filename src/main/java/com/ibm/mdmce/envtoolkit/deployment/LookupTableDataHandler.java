@@ -20,9 +20,12 @@ import java.util.*;
  */
 public class LookupTableDataHandler extends BasicEntityHandler {
 
+	private final String outputPath;
+
 	public LookupTableDataHandler(String sInputFilePath, String sVersion, TemplateParameters tp, String sOutputPath, String sEncoding) {
 
 		super(LookupTableContent.getInstance());
+		this.outputPath = sOutputPath;
 
 		this.csvFilePath = "LookupTableContent" + File.separator;
 		this.xmlFilePath = "LOOKUP_TABLE_CONTENT" + File.separator + "LOOKUP_TABLE_CONTENT_DATA.xml";
@@ -33,15 +36,16 @@ public class LookupTableDataHandler extends BasicEntityHandler {
 		EnvironmentHandler.logger.info("Reading input from: " + sInputFilePath);
 
 		File dirLkpData = new File(sInputFilePath);
+		addInputDirectory(dirLkpData);
 		File[] aLkpDataFiles = dirLkpData.listFiles();
 		
 		if (aLkpDataFiles != null) {
 			for (File fInputFile : aLkpDataFiles) {
 				if (fInputFile.isFile()) {
 					EnvironmentHandler.logger.info(" - File from: " + fInputFile.getName());
-					try {
-						// Read in the entities first...
-						CSVParser readerCSV = new CSVParser(fInputFile, sEncoding);
+					addInputFile(fInputFile);
+					// Read in the entities first...
+					try (CSVParser readerCSV = new CSVParser(fInputFile, sEncoding)) {
 						List<String> aTokens = readerCSV.splitLine();
 
 						// Build the entity (attribute paths, table name, etc) from the first line only...
@@ -50,18 +54,18 @@ public class LookupTableDataHandler extends BasicEntityHandler {
 						addToCache(lkpData.getUniqueId(), lkpData);
 
 						// Then start transforming all the lines into another file
-						Writer outTransformedFile = BasicEntityHandler.getNewWriter(sOutputPath + lkpData.getTransformedFileName());
-						aTokens = readerCSV.splitLine();
-
-						// Issue doesn't work for multiple lookup
-						if (aTokens != null && !aTokens.isEmpty())
-							federated = true;
-						while (aTokens != null && !aTokens.isEmpty()) {
-							transformDataLine(lkpData, outTransformedFile, aTokens);
+						try (Writer outTransformedFile = BasicEntityHandler.getNewWriter(sOutputPath + lkpData.getTransformedFileName())) {
+							List<String> alCellPrefixes = getCellPrefixes(lkpData);
 							aTokens = readerCSV.splitLine();
+
+							// Issue doesn't work for multiple lookup
+							if (aTokens != null && !aTokens.isEmpty())
+								federated = true;
+							while (aTokens != null && !aTokens.isEmpty()) {
+								transformDataLine(alCellPrefixes, outTransformedFile, aTokens);
+								aTokens = readerCSV.splitLine();
+							}
 						}
-						outTransformedFile.flush();
-						outTransformedFile.close();
 
 					} catch (FileNotFoundException errNoFile) {
 						EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
@@ -86,16 +90,44 @@ public class LookupTableDataHandler extends BasicEntityHandler {
 		return bValid;
 	}
 
-	private void transformDataLine(LookupTableContent lkpData, Writer outFile, List<String> aDataValues) throws IOException {
-		List<String> alOrderedAttributes = lkpData.getAttributePaths();
-		for (int iOAs = 1; iOAs < alOrderedAttributes.size() + 1; iOAs++) {
+	/**
+	 * {@inheritDoc}
+	 * The transformed data file written into the output directory.
+	 */
+	@Override
+	protected List<File> getContentFiles(BasicEntity oEntity) {
+		return Collections.singletonList(new File(outputPath + ((LookupTableContent) oEntity).getTransformedFileName()));
+	}
+
+	/**
+	 * Retrieve the prefix ({@literal AttributePath|}) to write before each data value of the provided lookup table.
+	 * @param lkpData the lookup table content whose data is being transformed
+	 * @return {@code List<String>} - one prefix per data column
+	 */
+	private List<String> getCellPrefixes(LookupTableContent lkpData) {
+		List<String> alPrefixes = new ArrayList<>();
+		for (String sAttrPath : lkpData.getAttributePaths()) {
+			alPrefixes.add(sAttrPath + "|");
+		}
+		return alPrefixes;
+	}
+
+	private void transformDataLine(List<String> alCellPrefixes, Writer outFile, List<String> aDataValues) throws IOException {
+		for (int iOAs = 1; iOAs < alCellPrefixes.size() + 1; iOAs++) {
 			// We start at 1 and then reduce by 1 because the first column is the lookup table's name, not data
-			String sAttrPath = alOrderedAttributes.get(iOAs - 1);
+			String sPrefix = alCellPrefixes.get(iOAs - 1);
 			String sDataValue = aDataValues.get(iOAs);
-			if (!sDataValue.equals(""))
-				outFile.write("," + BasicEntity.escapeForCSV(sAttrPath + "|" + sDataValue));
+			if (!sDataValue.equals("")) {
+				outFile.write(',');
+				if (BasicEntity.requiresEscapeForCSV(sPrefix) || BasicEntity.requiresEscapeForCSV(sDataValue)) {
+					outFile.write(BasicEntity.escapeForCSV(sPrefix + sDataValue));
+				} else {
+					outFile.write(sPrefix);
+					outFile.write(sDataValue);
+				}
+			}
 		}
-		outFile.write("\n");
+		outFile.write('\n');
 	}
 
 }
@@ -0,0 +1,129 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader that decodes a file directly from memory-mapped windows of its content, rather than copying it through
+ * stream buffers. Used by the CSVParser for very large input files (such as lookup table content).
+ * Malformed or unmappable input is replaced, as it would be by an {@link java.io.InputStreamReader}.
+ *
+ * @see CSVParser
+ */
+public class MappedFileReader extends Reader {
+
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private final CharsetDecoder decoder;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private boolean finished;
+
+    /**
+     * Construct a new reader for the provided file.
+     * @param inputFile the file to read
+     * @param charset the encoding of the file
+     * @throws IOException if the file cannot be accessed or mapped
+     */
+    public MappedFileReader(File inputFile, Charset charset) throws IOException {
+        this(new RandomAccessFile(inputFile, "r").getChannel(), true, 0, -1, charset);
+    }
+
+    /**
+     * Construct a new reader for a range of bytes of an already-opened file. The channel is left open when the reader
+     * finishes or is closed.
+     * @param channel the (open) channel of the file to read
+     * @param start the offset within the file from which to start reading
+     * @param end the offset within the file at which to stop reading
+     * @param charset the encoding of the file
+     * @throws IOException if the file cannot be accessed or mapped
+     */
+    public MappedFileReader(FileChannel channel, long start, long end, Charset charset) throws IOException {
+        this(channel, false, start, end, charset);
+    }
+
+    private MappedFileReader(FileChannel channel, boolean ownsChannel, long start, long end, Charset charset) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.end = (end < 0) ? channel.size() : end;
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        mapWindow(start);
+    }
+
+    /**
+     * Map the window of the file starting at the provided position (any bytes of a partially-decoded character at the
+     * end of the previous window are therefore mapped again at the start of this one).
+     * @param position the offset within the file at which the window should start
+     * @throws IOException if the window cannot be mapped
+     */
+    private void mapWindow(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, end - position));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+
+        if (len == 0)
+            return 0;
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off && !finished) {
+            boolean bLastWindow = (windowStart + window.limit() >= end);
+            CoderResult cr = decoder.decode(window, out, bLastWindow);
+            if (cr.isOverflow())
+                break;
+            if (cr.isError())
+                cr.throwException();
+            if (bLastWindow) {
+                if (decoder.flush(out).isOverflow())
+                    break;
+                finish();
+            } else {
+                mapWindow(windowStart + window.position());
+            }
+        }
+
+        int iRead = out.position() - off;
+        return (iRead == 0 && finished) ? -1 : iRead;
+
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+        window = null;
+    }
+
+    private void finish() throws IOException {
+        finished = true;
+        if (ownsChannel)
+            channel.close();
+    }
+
+}
@@ -25,6 +25,5 @@ public class OrganizationContentHandler extends ContainerContentHandler {
 				tp,
 				sOutputPath + File.separator + "ORG_HIERARCHY_CONTENT",
 				sEncoding);
-		initialize(sInputFilePath, sEncoding, tp);
 	}
 }
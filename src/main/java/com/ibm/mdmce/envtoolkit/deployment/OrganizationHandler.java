@@ -54,25 +54,25 @@ public class OrganizationHandler extends BasicEntityHandler {
 		if (!org.getUserDefinedCoreAttrGroup().equals(""))
 			bValid = validateExists(org.getUserDefinedCoreAttrGroup(), AttrCollection.class.getName(), org.getName()) && bValid;
 				
-		Spec spec = (Spec) getFromCache(org.getSpecName(), Spec.class.getName(), false, false);
+		Spec spec = getFromCache(org.getSpecName(), Spec.class, false, false);
 		if (spec != null) {
 			
 			String sDisplayAttr = org.getDisplayAttribute().replace(org.getSpecName() + "/", "");
 			Spec.Attribute attr = spec.getAttributes().get(sDisplayAttr);
 			bValid = (attr != null) && bValid;
 			if (attr == null) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + org.getName() + "): Unable to find attribute - " + org.getSpecName() + "/" + sDisplayAttr);
+				reportWarning(". . . WARNING (" + org.getName() + "): Unable to find attribute - " + org.getSpecName() + "/" + sDisplayAttr);
 			} else if (!attr.isIndexed()) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + org.getName() + "): Display attribute (" + org.getSpecName() + "/" + sDisplayAttr + ") is not indexed.");
+				reportWarning(". . . WARNING (" + org.getName() + "): Display attribute (" + org.getSpecName() + "/" + sDisplayAttr + ") is not indexed.");
 			}
 			
 			String sPathAttr = org.getPathAttribute().replace(org.getSpecName() + "/", "");
 			attr = spec.getAttributes().get(sPathAttr);
 			bValid = (attr != null) && bValid;
 			if (attr == null) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + org.getName() + "): Unable to find attribute - " + org.getSpecName() + "/" + sPathAttr);
+				reportWarning(". . . WARNING (" + org.getName() + "): Unable to find attribute - " + org.getSpecName() + "/" + sPathAttr);
 			} else if (!attr.isIndexed() || attr.getMin() != 1) {
-				EnvironmentHandler.logger.warning(". . . WARNING (" + org.getName() + "): Path attribute (" + org.getSpecName() + "/" + sDisplayAttr + ") is not indexed or not set as mandatory (minimum occurrence of 1).");
+				reportWarning(". . . WARNING (" + org.getName() + "): Path attribute (" + org.getSpecName() + "/" + sDisplayAttr + ") is not indexed or not set as mandatory (minimum occurrence of 1).");
 			}
 			
 		}
@@ -0,0 +1,342 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a very large CSV file by splitting it into chunks of records that are each parsed on a separate thread of a
+ * ForkJoinPool, while still returning the rows in the order they appear in the file. Used by the CSVParser for files of
+ * at least {@link CSVParser#PARALLEL_PARSE_THRESHOLD} bytes.
+ * <br>
+ * Records may span several lines (newlines within quoted cells), so the file cannot simply be split at any newline.
+ * Instead, the file is first cut into ranges of bytes that are scanned in parallel: each range is run through the same
+ * quote / comment handling as the CSVParser, starting from every state the parser could be in at the start of the range,
+ * which gives (for each such state) the first record boundary in the range and the state at the end of the range. These
+ * are then chained together from the start of the file to find the actual record boundaries, and each chunk of records
+ * between two boundaries is parsed by its own CSVParser. As the scan works on bytes, this is only used for encodings in
+ * which the quote, comma, hash and newline characters are always single (ASCII) bytes.
+ *
+ * @see CSVParser
+ */
+public class ParallelCSVReader {
+
+    /**
+     * Size (in bytes) of the ranges into which the file is cut to be scanned for record boundaries.
+     */
+    static final long CHUNK_SIZE = 4L * 1024 * 1024;
+
+    // States of the parser between two bytes of the file
+    private static final int LINE_START = 0;
+    private static final int COMMENT = 1;
+    private static final int CELL_START = 2;
+    private static final int UNQUOTED = 3;
+    private static final int QUOTED = 4;
+    private static final int QUOTE_SEEN = 5;
+    private static final int STATE_COUNT = 6;
+
+    private final FileChannel channel;
+    private final Charset charset;
+    private final int expectedColumnCount;
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final int maxChunksInFlight;
+    private StringPool stringPool;
+
+    private final long[] chunkBoundaries;
+    private int nextChunkToSubmit;
+    private final Deque<ForkJoinTask<ParsedChunk>> chunksInFlight = new ArrayDeque<>();
+
+    private Iterator<List<String>> currentRows = Collections.emptyIterator();
+    private IOException currentError;
+
+    /**
+     * Indicates whether the provided encoding can be split into chunks by scanning its bytes: that is, the quote, comma,
+     * hash and newline characters are always encoded as their single ASCII byte and those bytes never occur as part of
+     * any other character.
+     * @param charset the encoding to check
+     * @return boolean
+     */
+    public static boolean supportsEncoding(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8))
+            return true;
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f)
+            return false;
+        String sDelimiters = "\",#\r\n";
+        ByteBuffer bb = charset.encode(sDelimiters);
+        return bb.equals(StandardCharsets.US_ASCII.encode(sDelimiters))
+                && charset.decode(StandardCharsets.US_ASCII.encode(sDelimiters)).toString().equals(sDelimiters);
+    }
+
+    /**
+     * Open a new parallel reader for the provided file, locating all of its chunks of records.
+     * @param inputFile the file to read
+     * @param charset the encoding of the file (which must be supported, see {@link #supportsEncoding(Charset)})
+     * @param expectedColumnCount the expected number of columns per row of data
+     * @param pool the pool on which to parse the chunks
+     * @throws IOException if the file cannot be accessed or read
+     */
+    public ParallelCSVReader(File inputFile, Charset charset, int expectedColumnCount, ForkJoinPool pool) throws IOException {
+        this(inputFile, charset, expectedColumnCount, pool, CHUNK_SIZE);
+    }
+
+    /**
+     * Open a new parallel reader for the provided file, locating all of its chunks of records by scanning ranges of the
+     * specified size.
+     * @param inputFile the file to read
+     * @param charset the encoding of the file (which must be supported, see {@link #supportsEncoding(Charset)})
+     * @param expectedColumnCount the expected number of columns per row of data
+     * @param pool the pool on which to parse the chunks
+     * @param chunkSize the size (in bytes) of the ranges into which to cut the file (see {@link #CHUNK_SIZE})
+     * @throws IOException if the file cannot be accessed or read
+     */
+    ParallelCSVReader(File inputFile, Charset charset, int expectedColumnCount, ForkJoinPool pool, long chunkSize) throws IOException {
+        this.channel = new RandomAccessFile(inputFile, "r").getChannel();
+        this.charset = charset;
+        this.expectedColumnCount = expectedColumnCount;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = pool.getParallelism() * 2;
+        try {
+            this.chunkBoundaries = findChunkBoundaries();
+        } catch (IOException | RuntimeException err) {
+            channel.close();
+            throw err;
+        }
+    }
+
+    /**
+     * Retrieve the next row of the file, in the order the rows appear in the file.
+     * @return {@code List<String>} of values, or null if the end of the file has been reached
+     * @throws IOException on any error reading (at the same row at which a sequential parse would have failed)
+     */
+    public List<String> nextRow() throws IOException {
+        while (!currentRows.hasNext()) {
+            if (currentError != null) {
+                IOException err = currentError;
+                currentError = null;
+                close();
+                throw err;
+            }
+            fillChunksInFlight();
+            ForkJoinTask<ParsedChunk> task = chunksInFlight.poll();
+            if (task == null) {
+                close();
+                return null;
+            }
+            ParsedChunk chunk = task.join();
+            currentRows = chunk.rows.iterator();
+            currentError = chunk.error;
+            fillChunksInFlight();
+        }
+        return currentRows.next();
+    }
+
+    /**
+     * Stop reading: cancel any chunks still being parsed and release the file.
+     * @throws IOException on any error closing the file
+     */
+    public void close() throws IOException {
+        for (ForkJoinTask<ParsedChunk> task : chunksInFlight) {
+            task.cancel(false);
+        }
+        chunksInFlight.clear();
+        nextChunkToSubmit = chunkBoundaries.length - 1;
+        currentRows = Collections.emptyIterator();
+        channel.close();
+    }
+
+    /**
+     * Canonicalize the values parsed from each chunk through the provided pool.
+     * @param stringPool the pool through which to canonicalize values (or null to not pool values)
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    /**
+     * Retrieve the number of chunks into which the file has been split.
+     * @return int
+     */
+    public int getChunkCount() {
+        return chunkBoundaries.length - 1;
+    }
+
+    private void fillChunksInFlight() {
+        while (chunksInFlight.size() < maxChunksInFlight && nextChunkToSubmit < chunkBoundaries.length - 1) {
+            final long start = chunkBoundaries[nextChunkToSubmit];
+            final long end = chunkBoundaries[nextChunkToSubmit + 1];
+            chunksInFlight.add(pool.submit(ForkJoinTask.adapt(() -> parseChunk(start, end))));
+            nextChunkToSubmit++;
+        }
+    }
+
+    private ParsedChunk parseChunk(long start, long end) {
+        ParsedChunk chunk = new ParsedChunk();
+        try {
+            CSVParser readerCSV = new CSVParser(new MappedFileReader(channel, start, end, charset), expectedColumnCount);
+            readerCSV.setStringPool(stringPool);
+            List<String> aTokens = readerCSV.splitLine();
+            while (aTokens != null) {
+                chunk.rows.add(aTokens);
+                aTokens = readerCSV.splitLine();
+            }
+        } catch (IOException errIO) {
+            chunk.error = errIO;
+        }
+        return chunk;
+    }
+
+    /**
+     * Scan the file (in parallel) for the offsets at which each chunk of records starts.
+     * @return long[] - the offset of the start of each chunk, followed by the size of the file
+     * @throws IOException on any error reading
+     */
+    private long[] findChunkBoundaries() throws IOException {
+
+        long fileSize = channel.size();
+        int iRanges = (int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize);
+        List<ForkJoinTask<RangeScan>> alScans = new ArrayList<>(iRanges);
+        for (int i = 0; i < iRanges; i++) {
+            final long start = i * chunkSize;
+            final long end = Math.min(fileSize, start + chunkSize);
+            alScans.add(pool.submit(ForkJoinTask.adapt(() -> scanRange(start, end))));
+        }
+
+        List<Long> alBoundaries = new ArrayList<>();
+        alBoundaries.add(0L);
+        int state = LINE_START;
+        for (ForkJoinTask<RangeScan> scanTask : alScans) {
+            RangeScan scan = scanTask.join();
+            if (scan.error != null)
+                throw scan.error;
+            long boundary = scan.firstBoundary[state];
+            if (boundary > alBoundaries.get(alBoundaries.size() - 1) && boundary < fileSize)
+                alBoundaries.add(boundary);
+            state = scan.exitState[state];
+        }
+        alBoundaries.add(fileSize);
+
+        long[] aBoundaries = new long[alBoundaries.size()];
+        for (int i = 0; i < aBoundaries.length; i++) {
+            aBoundaries[i] = alBoundaries.get(i);
+        }
+        return aBoundaries;
+
+    }
+
+    /**
+     * Run the provided range of the file through the parser's states, starting from every possible state.
+     * @param start the offset of the start of the range
+     * @param end the offset of the end of the range
+     * @return RangeScan
+     */
+    private RangeScan scanRange(long start, long end) {
+
+        RangeScan scan = new RangeScan();
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            int[] states = new int[STATE_COUNT];
+            for (int s = 0; s < STATE_COUNT; s++) {
+                states[s] = s;
+                scan.firstBoundary[s] = (s == LINE_START) ? start : -1;
+            }
+            int iLength = buffer.limit();
+            int i = 0;
+            boolean bConverged = false;
+            // Follow every starting state until they all arrive at the same state (usually by the end of the first line)
+            while (i < iLength && !bConverged) {
+                byte b = buffer.get(i++);
+                bConverged = true;
+                for (int s = 0; s < STATE_COUNT; s++) {
+                    states[s] = nextState(states[s], b);
+                    if (states[s] == LINE_START && scan.firstBoundary[s] < 0)
+                        scan.firstBoundary[s] = start + i;
+                    bConverged = bConverged && states[s] == states[0];
+                }
+            }
+            // ... from which point there is only a single state left to follow
+            int state = states[0];
+            while (i < iLength) {
+                state = nextState(state, buffer.get(i++));
+                if (state == LINE_START) {
+                    for (int s = 0; s < STATE_COUNT; s++) {
+                        if (scan.firstBoundary[s] < 0)
+                            scan.firstBoundary[s] = start + i;
+                    }
+                    break;
+                }
+            }
+            while (i < iLength) {
+                state = nextState(state, buffer.get(i++));
+            }
+            for (int s = 0; s < STATE_COUNT; s++) {
+                scan.exitState[s] = bConverged ? state : states[s];
+            }
+        } catch (IOException errIO) {
+            scan.error = errIO;
+        }
+        return scan;
+
+    }
+
+    /**
+     * Retrieve the state of the parser after the provided byte, mirroring how the CSVParser tokenizes a line.
+     * @param state the state before the byte
+     * @param b the byte
+     * @return int
+     */
+    private static int nextState(int state, byte b) {
+        boolean bEndOfLine = (b == '\n' || b == '\r');
+        switch (state) {
+            case LINE_START:
+                if (b == '#')
+                    return COMMENT;
+                // otherwise the start of a line is the start of its first cell
+                return nextState(CELL_START, b);
+            case CELL_START:
+                if (bEndOfLine)
+                    return LINE_START;
+                if (b == '"')
+                    return QUOTED;
+                return (b == ',') ? CELL_START : UNQUOTED;
+            case UNQUOTED:
+                if (bEndOfLine)
+                    return LINE_START;
+                return (b == ',') ? CELL_START : UNQUOTED;
+            case QUOTED:
+                return (b == '"') ? QUOTE_SEEN : QUOTED;
+            case QUOTE_SEEN:
+                if (bEndOfLine)
+                    return LINE_START;
+                // "" is an escaped quote, and anything else (other than a comma) is dropped within the quoted cell
+                return (b == ',') ? CELL_START : QUOTED;
+            default:
+                return bEndOfLine ? LINE_START : COMMENT;
+        }
+    }
+
+    private static class RangeScan {
+        private final long[] firstBoundary = new long[STATE_COUNT];
+        private final int[] exitState = new int[STATE_COUNT];
+        private IOException error;
+    }
+
+    private static class ParsedChunk {
+        private final List<List<String>> rows = new ArrayList<>();
+        private IOException error;
+    }
+
+}
@@ -0,0 +1,539 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a standard ZIP file whose entries are compressed on a separate thread for each block of every entry, while
+ * still writing the entries out in the order they are added. Used by the {@link DeploymentPackage}.
+ * <br>
+ * Each file is split into blocks of {@link #BLOCK_SIZE} bytes that are each deflated by their own Deflater, on a
+ * ForkJoinPool, in the same way as pigz: every block but the last of a file ends with a sync flush (so that the blocks
+ * simply follow each other as a single deflate stream), and every block but the first is primed with the last 32 KB of
+ * the block before it (so that the compression is almost as good as deflating the whole file in one go). As in pigz,
+ * each file is read just once, in order, through a single channel on the thread adding it (while the blocks before are
+ * being compressed), and each block is handed the block before it as its dictionary rather than reading it again. The
+ * CRC of each block is also calculated on its own thread, and combined into the CRC of the file as the blocks are
+ * written. Only a limited number of blocks are compressed (and so held in memory) ahead of being written out.
+ * <br>
+ * A file with the same content as one already added can be added as a copy of it (see
+ * {@link #addCopy(String, long, String)}): the copy is still an entry of its own, with its own local header (so that
+ * the ZIP can also be read as a stream), but its compressed data and CRC are simply copied from the earlier entry, in
+ * the ZIP itself, rather than the file being read and compressed again.
+ * <br>
+ * As the size of each compressed entry is only known once it has been written, every entry is followed by a data
+ * descriptor, laid out just as by a ZipOutputStream (so that a ZipInputStream can read it): the data descriptor only
+ * holds ZIP64 sizes when the entry is too large for the original format, and the central directory then holds them as
+ * well, along with any ZIP64 offsets and number of entries.
+ */
+public class ParallelZipWriter implements Closeable {
+
+    /**
+     * The number of bytes of each file that are compressed (and read) together.
+     */
+    public static final int BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    // Number of blocks (per thread of the pool) that may be compressed ahead of being written out
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+    private static final int FLAG_UTF8 = 0x0800;
+
+    private final FileChannel channel;
+    private final CountingOutputStream out;
+    private final ForkJoinPool pool;
+    private final int level;
+    private final int maxBlocksInFlight;
+    private final Deque<Block> blocksInFlight = new ArrayDeque<>();
+    private final List<Entry> alEntries = new ArrayList<>();
+    private final Map<String, Entry> hmFiles = new HashMap<>();
+    private boolean bFinished = false;
+
+    /**
+     * Open a new writer into the provided file.
+     * @param fZip the ZIP file to write (replacing any existing file)
+     * @param iThreads the number of threads on which to compress
+     * @param iLevel the compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION})
+     * @throws IOException if the file cannot be opened
+     */
+    public ParallelZipWriter(File fZip, int iThreads, int iLevel) throws IOException {
+        this.channel = FileChannel.open(fZip.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.out = new CountingOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 256 * 1024));
+        this.pool = new ForkJoinPool(Math.max(1, iThreads));
+        this.level = iLevel;
+        this.maxBlocksInFlight = BLOCKS_IN_FLIGHT_PER_THREAD * pool.getParallelism();
+    }
+
+    /**
+     * Check that the provided compression level is valid.
+     * @param iLevel the compression level
+     * @return int - the compression level
+     * @throws IllegalArgumentException if the level is not 0-9 (or {@link Deflater#DEFAULT_COMPRESSION})
+     */
+    public static int checkLevel(int iLevel) {
+        if (iLevel != Deflater.DEFAULT_COMPRESSION && (iLevel < Deflater.NO_COMPRESSION || iLevel > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("the compression level must be from 0 to 9");
+        return iLevel;
+    }
+
+    /**
+     * Add a directory entry.
+     * @param sName the name of the directory within the ZIP (ending with {@literal /})
+     * @param lModified the time at which the directory was last modified
+     * @throws IOException on any error writing
+     */
+    public void addDirectory(String sName, long lModified) throws IOException {
+        Entry entry = new Entry(sName, lModified, true);
+        queue(new Block(entry, true, true, null, null));
+    }
+
+    /**
+     * Add an entry with the content of the provided file, which is read here (block by block) and compressed on the
+     * pool.
+     * @param sName the name of the file within the ZIP
+     * @param file the file to add
+     * @throws IOException on any error reading or writing
+     */
+    public void addFile(String sName, File file) throws IOException {
+        Entry entry = new Entry(sName, file.lastModified(), false);
+        hmFiles.put(sName, entry);
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long lLength = source.size();
+            long lOffset = 0;
+            byte[] aPrevious = null;
+            do {
+                byte[] aInput = readBlock(source, file, lOffset, (int) Math.min(BLOCK_SIZE, lLength - lOffset));
+                lOffset += aInput.length;
+                boolean bLast = lOffset >= lLength;
+                byte[] aDictionary = aPrevious;
+                ForkJoinTask<CompressedBlock> task = pool.submit(ForkJoinTask.adapt(() -> compress(aDictionary, aInput, bLast)));
+                queue(new Block(entry, aPrevious == null, bLast, task, null));
+                aPrevious = aInput;
+            } while (lOffset < lLength);
+        }
+    }
+
+    /**
+     * Add an entry with the same content as a file added earlier, whose compressed data is copied from that earlier
+     * entry (rather than the content being read and compressed again).
+     * @param sName the name of the file within the ZIP
+     * @param lModified the time at which the file was last modified
+     * @param sOriginal the name (within the ZIP) of the earlier file with the same content
+     * @throws IOException on any error writing
+     * @throws IllegalArgumentException if no file has been added with the name of the original
+     */
+    public void addCopy(String sName, long lModified, String sOriginal) throws IOException {
+        Entry original = hmFiles.get(sOriginal);
+        if (original == null)
+            throw new IllegalArgumentException("No file has been added to the ZIP as: " + sOriginal);
+        Entry entry = new Entry(sName, lModified, false);
+        hmFiles.put(sName, entry);
+        queue(new Block(entry, true, true, null, original));
+    }
+
+    /**
+     * Complete the ZIP: write out all of the entries still being compressed, followed by the central directory.
+     * @throws IOException on any error compressing or writing
+     */
+    public void finish() throws IOException {
+        while (!blocksInFlight.isEmpty()) {
+            writeBlock(blocksInFlight.poll());
+        }
+        writeCentralDirectory();
+        out.flush();
+        bFinished = true;
+    }
+
+    /**
+     * Close the file, abandoning any entries still being compressed if the ZIP was not finished (see
+     * {@link #finish()}).
+     * @throws IOException on any error closing the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (!bFinished) {
+            for (Block block : blocksInFlight) {
+                if (block.task != null)
+                    block.task.cancel(true);
+            }
+            blocksInFlight.clear();
+        }
+        pool.shutdown();
+        out.close();
+        channel.close();
+    }
+
+    private void queue(Block block) throws IOException {
+        blocksInFlight.add(block);
+        while (blocksInFlight.size() > maxBlocksInFlight) {
+            writeBlock(blocksInFlight.poll());
+        }
+    }
+
+    private void writeBlock(Block block) throws IOException {
+
+        Entry entry = block.entry;
+        if (block.first) {
+            entry.offset = out.getCount();
+            writeLocalHeader(entry);
+            entry.dataOffset = out.getCount();
+        }
+        if (block.original != null) {
+            copyData(block.original, entry);
+        } else if (block.task != null) {
+            CompressedBlock compressed = block.task.join();
+            out.write(compressed.data);
+            entry.crc = crc32Combine(entry.crc, compressed.crc, compressed.length);
+            entry.size += compressed.length;
+            entry.compressedSize += compressed.data.length;
+        }
+        if (block.last) {
+            if (!entry.directory)
+                writeDataDescriptor(entry);
+            alEntries.add(entry);
+        }
+
+    }
+
+    /**
+     * Copy the compressed data of an entry that has already been written out as the data of another entry: reading it
+     * back from the ZIP itself, which is flushed first.
+     */
+    private void copyData(Entry original, Entry entry) throws IOException {
+        out.flush();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, Math.max(1, original.compressedSize)));
+        long lPosition = original.dataOffset;
+        long lEnd = original.dataOffset + original.compressedSize;
+        while (lPosition < lEnd) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), lEnd - lPosition));
+            int iRead = channel.read(buffer, lPosition);
+            if (iRead < 0)
+                throw new EOFException("Unable to read back the entry being copied: " + new String(original.name, StandardCharsets.UTF_8));
+            out.write(buffer.array(), 0, iRead);
+            lPosition += iRead;
+        }
+        entry.crc = original.crc;
+        entry.size = original.size;
+        entry.compressedSize = original.compressedSize;
+    }
+
+    /**
+     * Read a single block of a file, from the provided offset.
+     */
+    private static byte[] readBlock(FileChannel source, File file, long lOffset, int iLength) throws IOException {
+        byte[] aInput = new byte[iLength];
+        ByteBuffer buffer = ByteBuffer.wrap(aInput);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, lOffset + buffer.position()) < 0)
+                throw new EOFException("File changed while being packaged: " + file.getPath());
+        }
+        return aInput;
+    }
+
+    /**
+     * Deflate a single block of a file: priming the Deflater with the last (up to) 32 KB of the block before it, and
+     * ending the block with a sync flush unless it is the last block of the file.
+     */
+    private CompressedBlock compress(byte[] aPrevious, byte[] aInput, boolean bLast) {
+
+        int iLength = aInput.length;
+        int iDictionary = (aPrevious == null) ? 0 : Math.min(DICTIONARY_SIZE, aPrevious.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(aInput, 0, iLength);
+
+        Deflater deflater = new Deflater(level, true);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(iLength / 2 + 64);
+        byte[] aBuffer = new byte[16 * 1024];
+        try {
+            if (iDictionary > 0)
+                deflater.setDictionary(aPrevious, aPrevious.length - iDictionary, iDictionary);
+            deflater.setInput(aInput, 0, iLength);
+            if (bLast) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    baos.write(aBuffer, 0, deflater.deflate(aBuffer));
+                }
+            } else {
+                int iCount;
+                do {
+                    iCount = deflater.deflate(aBuffer, 0, aBuffer.length, Deflater.SYNC_FLUSH);
+                    baos.write(aBuffer, 0, iCount);
+                } while (iCount == aBuffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new CompressedBlock(baos.toByteArray(), crc.getValue(), iLength);
+
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        writeInt(0x04034b50L);
+        writeShort(20);
+        writeShort(entry.directory ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DATA_DESCRIPTOR);
+        writeShort(entry.directory ? 0 : 8);
+        writeInt(entry.dosTime);
+        writeInt(0);
+        writeInt(0);
+        writeInt(0);
+        writeShort(entry.name.length);
+        writeShort(0);
+        out.write(entry.name);
+    }
+
+    private void writeDataDescriptor(Entry entry) throws IOException {
+        writeInt(0x08074b50L);
+        writeInt(entry.crc);
+        if (entry.isZip64()) {
+            writeLong(entry.compressedSize);
+            writeLong(entry.size);
+        } else {
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+        }
+    }
+
+    private void writeCentralDirectory() throws IOException {
+
+        long lStart = out.getCount();
+        for (Entry entry : alEntries) {
+            boolean bSizes64 = entry.isZip64();
+            boolean bOffset64 = entry.offset >= ZIP64_MAGIC;
+            int iExtra = (bSizes64 ? 16 : 0) + (bOffset64 ? 8 : 0);
+            writeInt(0x02014b50L);
+            writeShort(bSizes64 || bOffset64 ? 45 : 20);
+            writeShort(bSizes64 || bOffset64 ? 45 : 20);
+            writeShort(entry.directory ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DATA_DESCRIPTOR);
+            writeShort(entry.directory ? 0 : 8);
+            writeInt(entry.dosTime);
+            writeInt(entry.crc);
+            writeInt(bSizes64 ? ZIP64_MAGIC : entry.compressedSize);
+            writeInt(bSizes64 ? ZIP64_MAGIC : entry.size);
+            writeShort(entry.name.length);
+            writeShort(iExtra == 0 ? 0 : iExtra + 4);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(entry.directory ? 0x10 : 0);
+            writeInt(bOffset64 ? ZIP64_MAGIC : entry.offset);
+            out.write(entry.name);
+            if (iExtra > 0) {
+                writeShort(0x0001);
+                writeShort(iExtra);
+                if (bSizes64) {
+                    writeLong(entry.size);
+                    writeLong(entry.compressedSize);
+                }
+                if (bOffset64)
+                    writeLong(entry.offset);
+            }
+        }
+        long lEnd = out.getCount();
+        long lSize = lEnd - lStart;
+        long lCount = alEntries.size();
+
+        if (lCount >= 0xFFFF || lStart >= ZIP64_MAGIC || lSize >= ZIP64_MAGIC) {
+            // ZIP64 end of central directory record, and its locator
+            writeInt(0x06064b50L);
+            writeLong(44);
+            writeShort(45);
+            writeShort(45);
+            writeInt(0);
+            writeInt(0);
+            writeLong(lCount);
+            writeLong(lCount);
+            writeLong(lSize);
+            writeLong(lStart);
+            writeInt(0x07064b50L);
+            writeInt(0);
+            writeLong(lEnd);
+            writeInt(1);
+        }
+        writeInt(0x06054b50L);
+        writeShort(0);
+        writeShort(0);
+        writeShort((int) Math.min(lCount, 0xFFFF));
+        writeShort((int) Math.min(lCount, 0xFFFF));
+        writeInt(Math.min(lSize, ZIP64_MAGIC));
+        writeInt(Math.min(lStart, ZIP64_MAGIC));
+        writeShort(0);
+
+    }
+
+    private void writeShort(int i) throws IOException {
+        out.write(i & 0xFF);
+        out.write((i >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long l) throws IOException {
+        writeShort((int) (l & 0xFFFF));
+        writeShort((int) ((l >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long l) throws IOException {
+        writeInt(l & ZIP64_MAGIC);
+        writeInt(l >>> 32);
+    }
+
+    /**
+     * Combine the CRC of two consecutive blocks of data into the CRC of both blocks (as by zlib's crc32_combine).
+     * @param lCrc1 the CRC of the first block
+     * @param lCrc2 the CRC of the second block
+     * @param lLength2 the length of the second block
+     * @return long
+     */
+    private static long crc32Combine(long lCrc1, long lCrc2, long lLength2) {
+        if (lLength2 <= 0)
+            return lCrc1;
+        long[] aEven = new long[32];
+        long[] aOdd = new long[32];
+        // The operator for a single zero bit
+        aOdd[0] = 0xEDB88320L;
+        long lRow = 1;
+        for (int n = 1; n < 32; n++) {
+            aOdd[n] = lRow;
+            lRow <<= 1;
+        }
+        gf2MatrixSquare(aEven, aOdd);
+        gf2MatrixSquare(aOdd, aEven);
+        // Apply the operator for each set bit of the length of the second block (as a number of zero bytes)
+        do {
+            gf2MatrixSquare(aEven, aOdd);
+            if ((lLength2 & 1) != 0)
+                lCrc1 = gf2MatrixTimes(aEven, lCrc1);
+            lLength2 >>= 1;
+            if (lLength2 == 0)
+                break;
+            gf2MatrixSquare(aOdd, aEven);
+            if ((lLength2 & 1) != 0)
+                lCrc1 = gf2MatrixTimes(aOdd, lCrc1);
+            lLength2 >>= 1;
+        } while (lLength2 != 0);
+        return lCrc1 ^ lCrc2;
+    }
+
+    private static long gf2MatrixTimes(long[] aMatrix, long lVector) {
+        long lSum = 0;
+        for (int i = 0; lVector != 0; i++, lVector >>>= 1) {
+            if ((lVector & 1) != 0)
+                lSum ^= aMatrix[i];
+        }
+        return lSum;
+    }
+
+    private static void gf2MatrixSquare(long[] aSquare, long[] aMatrix) {
+        for (int n = 0; n < 32; n++) {
+            aSquare[n] = gf2MatrixTimes(aMatrix, aMatrix[n]);
+        }
+    }
+
+    private static long toDosTime(long lModified) {
+        LocalDateTime ldt = LocalDateTime.ofInstant(Instant.ofEpochMilli(lModified), ZoneId.systemDefault());
+        if (ldt.getYear() < 1980)
+            return (1 << 21) | (1 << 16);
+        return ((long) (ldt.getYear() - 1980) << 25) | ((long) ldt.getMonthValue() << 21) | ((long) ldt.getDayOfMonth() << 16)
+                | ((long) ldt.getHour() << 11) | ((long) ldt.getMinute() << 5) | (ldt.getSecond() >> 1);
+    }
+
+    /**
+     * An entry of the ZIP, and what has been written of it so far.
+     */
+    private static class Entry {
+        private final byte[] name;
+        private final long dosTime;
+        private final boolean directory;
+        private long offset;
+        private long dataOffset;
+        private long crc = 0;
+        private long size = 0;
+        private long compressedSize = 0;
+        private Entry(String sName, long lModified, boolean bDirectory) {
+            this.name = sName.getBytes(StandardCharsets.UTF_8);
+            this.dosTime = toDosTime(lModified);
+            this.directory = bDirectory;
+        }
+        private boolean isZip64() {
+            return size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC;
+        }
+    }
+
+    /**
+     * A block of an entry, in the order it is to be written, along with its compression (if it has any content) or the
+     * earlier entry whose data it copies.
+     */
+    private static class Block {
+        private final Entry entry;
+        private final boolean first;
+        private final boolean last;
+        private final ForkJoinTask<CompressedBlock> task;
+        private final Entry original;
+        private Block(Entry entry, boolean bFirst, boolean bLast, ForkJoinTask<CompressedBlock> task, Entry original) {
+            this.entry = entry;
+            this.first = bFirst;
+            this.last = bLast;
+            this.task = task;
+            this.original = original;
+        }
+    }
+
+    /**
+     * The compressed data of a block, along with the CRC and length of its uncompressed data.
+     */
+    private static class CompressedBlock {
+        private final byte[] data;
+        private final long crc;
+        private final int length;
+        private CompressedBlock(byte[] data, long lCrc, int iLength) {
+            this.data = data;
+            this.crc = lCrc;
+            this.length = iLength;
+        }
+    }
+
+    /**
+     * Keeps track of the offset into the file as it is written.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+        private long getCount() {
+            return count;
+        }
+    }
+
+}
@@ -10,6 +10,7 @@ import com.ibm.mdmce.envtoolkit.deployment.model.TemplateParameters;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -31,10 +32,11 @@ public class RoleMappingHandler extends BasicEntityHandler {
 		sInputFilePath = sInputFilePath + File.separator + csvFilePath;
 
 		EnvironmentHandler.logger.info("Reading input from: " + sInputFilePath);
+		addInputFile(new File(sInputFilePath));
 		
-		try {
-			// Read in the entities first...
-			CSVParser readerCSV = new CSVParser(sInputFilePath, sEncoding);
+		// Read in the entities first...
+		try (CSVParser readerCSV = new CSVParser(sInputFilePath, sEncoding)) {
+			readerCSV.setStringPool(context.getStringPool());
 			List<String> aTokens = readerCSV.splitLine();
 			// First line (header) will give us all the information about roles + ACGs
 			List<List<String>> headerColumnsToPrivs = new ArrayList<>();
@@ -53,7 +55,7 @@ public class RoleMappingHandler extends BasicEntityHandler {
 						alPossibilitiesForCol.add(aReplacedTokens.get(j));
 						String[] aRoleAndACG = aReplacedTokens.get(j).split(",");
 						String sRoleName = aRoleAndACG[0];
-						RoleToACG rm = (RoleToACG) getFromCache(sRoleName, RoleToACG.class.getName(), false, false);
+						RoleToACG rm = getFromCache(sRoleName, RoleToACG.class, false, false);
 						if (rm == null) {
 							// If there is not yet any role mapping, create one and add it to the cache
 							rm = new RoleToACG(sRoleName);
@@ -63,31 +65,29 @@ public class RoleMappingHandler extends BasicEntityHandler {
 				}
 			}
 			
-			aTokens = readerCSV.splitLine();
-			while (aTokens != null && aTokens.size() > 0) {
-				String sPrivName = aTokens.get(0);
-				for (int i = 1; i < aTokens.size(); i++) {
-					boolean bTicked = CSVParser.checkBoolean(aTokens.get(i));
+			readerCSV.rows().forEachOrdered(aPrivTokens -> {
+				String sPrivName = aPrivTokens.get(0);
+				for (int i = 1; i < aPrivTokens.size(); i++) {
+					boolean bTicked = CSVParser.checkBoolean(aPrivTokens.get(i));
 					if (bTicked) {
 						List<String> alRoleToACGPossibilities = headerColumnsToPrivs.get(i);
 						for (String sRoleToACG : alRoleToACGPossibilities) {
 							String[] aRoleAndACG = sRoleToACG.split(",");
 							String sRoleName = aRoleAndACG[0];
 							String sACGName = aRoleAndACG[1];
-							RoleToACG rm = (RoleToACG) getFromCache(sRoleName, RoleToACG.class.getName(), true, false);
+							RoleToACG rm = getFromCache(sRoleName, RoleToACG.class, true, false);
 							if (!rm.getAcgMappings().containsKey(sACGName))
 								rm.getAcgMappings().put(sACGName, new ArrayList<>());
 							rm.getAcgMappings().get(sACGName).add(sPrivName);
 						}
 					}
 				}
-				aTokens = readerCSV.splitLine();
-			}
+			});
 
 		} catch (FileNotFoundException errNoFile) {
 			EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
 			federated = false;
-		} catch (IOException errIO) {
+		} catch (IOException | UncheckedIOException errIO) {
 			EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
 		}
 		
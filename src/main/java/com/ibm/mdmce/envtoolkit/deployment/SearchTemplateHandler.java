@@ -47,18 +47,18 @@ public class SearchTemplateHandler extends BasicEntityHandler {
 		
 		ColArea colArea = null;
 		if (!bCatalogExists && !bHierarchyExists) {
-			colArea = (ColArea) BasicEntityHandler.getFromCache(sContainerName, ColArea.class.getName(), false, true, sSearchTemplateName);
+			colArea = BasicEntityHandler.getFromCache(sContainerName, ColArea.class, false, true, sSearchTemplateName);
 			if (colArea == null) {
 				bValid = false;
-				EnvironmentHandler.logger.warning(". . . WARNING (" + sSearchTemplateName + "): No container found with the name '" + sContainerName + "'.");
+				reportWarning(". . . WARNING (" + sSearchTemplateName + "): No container found with the name '" + sContainerName + "'.");
 			}
 		}
 		
 		if (!sStepName.equals("") && colArea != null) {
-			Workflow wfl = (Workflow) BasicEntityHandler.getFromCache(colArea.getWorkflow(), Workflow.class.getName(), false, true, sContainerName);
+			Workflow wfl = BasicEntityHandler.getFromCache(colArea.getWorkflow(), Workflow.class, false, true, sContainerName);
 			if (!wfl.getSteps().containsKey(sStepName)) {
 				bValid = false;
-				EnvironmentHandler.logger.warning(". . . WARNING (" + sSearchTemplateName + "): No workflow step with the name '" + sStepName + "' was found in workflow '" + wfl.getName() + "' for collaboration area '" + sContainerName + "'.");
+				reportWarning(". . . WARNING (" + sSearchTemplateName + "): No workflow step with the name '" + sStepName + "' was found in workflow '" + wfl.getName() + "' for collaboration area '" + sContainerName + "'.");
 			}
 		}
 		
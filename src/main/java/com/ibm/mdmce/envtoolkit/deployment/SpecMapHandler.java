@@ -41,13 +41,13 @@ public class SpecMapHandler extends BasicEntityHandler {
 		String sSpecName = sFullAttrPath.substring(0, iFirstSlash);
 		String sAttrPath = sFullAttrPath.substring(iFirstSlash + 1);
 		
-		Spec spec = (Spec) getFromCache(sSpecName, Spec.class.getName(), false, true, specMap.getName());
+		Spec spec = getFromCache(sSpecName, Spec.class, false, true, specMap.getName());
 		
 		if (spec != null) {
 			Set<String> attributes = spec.getAttributes().keySet();
 			if (!attributes.contains(sAttrPath)) {
 				bAttrExists = false;
-				EnvironmentHandler.logger.warning(". . . WARNING (" + specMap.getName() + "): Attribute \"" + sAttrPath + "\" does not exist in the spec indicated ['" + spec.getName() + "'].");
+				reportWarning(". . . WARNING (" + specMap.getName() + "): Attribute \"" + sAttrPath + "\" does not exist in the spec indicated ['" + spec.getName() + "'].");
 			}
 		}
 		
@@ -74,6 +74,28 @@ public class SpecMapHandler extends BasicEntityHandler {
 		return bValid;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * Also lists each of the spec map files that were output (in order) in MAPS.xml, which is itself recorded as a
+	 * generated file (replacing any MAPS.xml left by a previous build into the same directory).
+	 */
+	@Override
+	public void outputEntities(String sCompanyCode, String sClassName, Writer outFile, String sOutputFilePath, String sOutputType) throws IOException {
+		super.outputEntities(sCompanyCode, sClassName, outFile, sOutputFilePath, sOutputType);
+		if (sOutputType.equals("XML")) {
+			String sOutputDir = sOutputFilePath.substring(0, sOutputFilePath.lastIndexOf(File.separator));
+			String sMapsFilePath = sOutputDir + File.separator + "MAPS.xml";
+			try (Writer osw = new XMLWriter(new FileOutputStream(sMapsFilePath, false))) {
+				for (String sSpecMapFilePath : getGeneratedFilesXML()) {
+					String sCorrectedPath = sSpecMapFilePath.replace(File.separator, "/");
+					sCorrectedPath = sCorrectedPath.substring(sCorrectedPath.indexOf("/"));
+					osw.write(sCorrectedPath + "\n");
+				}
+			}
+			addGeneratedFileXML(sMapsFilePath);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,218 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of canonical string values, used while loading the CSV files so that values that repeat many times across the
+ * files (spec names, ACG names, locale codes, attribute types, etc) are held in memory only once. Values are looked up
+ * directly from the characters being parsed, so a repeated value does not allocate a new string at all.
+ * <br>
+ * Only short values (up to {@link #MAX_POOLED_LENGTH} characters) are pooled, as longer values (descriptions, scripts)
+ * rarely repeat. The pool is safe to share between parsers running on separate threads: it is split into segments (by
+ * the hash of each value), each locked separately, so that parsers only wait on each other when they happen to look up
+ * values in the same segment at the same time.
+ *
+ * @see CSVParser
+ */
+public class StringPool {
+
+    /**
+     * Maximum length of a value that will be pooled.
+     */
+    public static final int MAX_POOLED_LENGTH = 128;
+
+    // Approximate size of a string beyond its characters (the string object and the header of its character array)
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    // Number of separately-locked segments (a power of two), chosen by the top bits of the hash of a value
+    private static final int SEGMENT_BITS = 6;
+
+    private volatile Segment[] segments = new Segment[1 << SEGMENT_BITS];
+    private final LongAdder repeats = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Construct a new (empty) pool.
+     */
+    public StringPool() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Retrieve the canonical string for the provided range of characters.
+     * @param chars the characters of the value
+     * @param offset the position of the first character of the value
+     * @param length the number of characters in the value
+     * @return String
+     */
+    public String canonicalize(char[] chars, int offset, int length) {
+
+        if (length == 0)
+            return "";
+        Segment[] aSegments = segments;
+        if (length > MAX_POOLED_LENGTH || aSegments == null)
+            return new String(chars, offset, length);
+
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return canonicalize(aSegments, hash, chars, offset, null, length);
+
+    }
+
+    /**
+     * Retrieve the canonical string for the provided characters.
+     * @param cs the characters of the value
+     * @return String
+     */
+    public String canonicalize(CharSequence cs) {
+
+        int length = cs.length();
+        if (length == 0)
+            return "";
+        Segment[] aSegments = segments;
+        if (length > MAX_POOLED_LENGTH || aSegments == null)
+            return cs.toString();
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + cs.charAt(i);
+        }
+        return canonicalize(aSegments, hash, null, 0, cs, length);
+
+    }
+
+    /**
+     * Look up (or add) the value, held either as a range of characters or as a character sequence, in its segment.
+     */
+    private String canonicalize(Segment[] aSegments, int hash, char[] chars, int offset, CharSequence cs, int length) {
+        Segment segment = aSegments[spread(hash) >>> (32 - SEGMENT_BITS)];
+        String s;
+        synchronized (segment) {
+            s = segment.find(hash, chars, offset, cs, length);
+            if (s == null)
+                return segment.add(hash, (chars != null) ? new String(chars, offset, length) : cs.toString());
+        }
+        repeats.increment();
+        bytesSaved.add(STRING_OVERHEAD_BYTES + 2L * length);
+        return s;
+    }
+
+    /**
+     * Release the pooled values (any values already handed out remain canonical). Values canonicalized after the pool
+     * is cleared are no longer pooled; the statistics are retained.
+     */
+    public void clear() {
+        segments = null;
+    }
+
+    /**
+     * Retrieve the number of distinct values that have been pooled.
+     * @return int
+     */
+    public int getSize() {
+        Segment[] aSegments = segments;
+        if (aSegments == null)
+            return 0;
+        int iSize = 0;
+        for (Segment segment : aSegments) {
+            synchronized (segment) {
+                iSize += segment.size;
+            }
+        }
+        return iSize;
+    }
+
+    /**
+     * Retrieve the number of values that were repeats of an already-pooled value.
+     * @return long
+     */
+    public long getRepeats() {
+        return repeats.sum();
+    }
+
+    /**
+     * Retrieve the (approximate) number of bytes of memory saved by re-using pooled values rather than allocating a new
+     * string for every repeat.
+     * @return long
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    /**
+     * One segment of the pool: an open-addressed table of values, guarded by its own monitor.
+     */
+    private static class Segment {
+
+        private String[] table = new String[64];
+        private int size;
+
+        private String find(int hash, char[] chars, int offset, CharSequence cs, int length) {
+            int mask = table.length - 1;
+            int slot = spread(hash) & mask;
+            String s = table[slot];
+            while (s != null) {
+                if (s.hashCode() == hash && s.length() == length && ((chars != null) ? matches(s, chars, offset) : matches(s, cs)))
+                    return s;
+                slot = (slot + 1) & mask;
+                s = table[slot];
+            }
+            return null;
+        }
+
+        private String add(int hash, String s) {
+            if (++size * 2 > table.length)
+                resize();
+            int mask = table.length - 1;
+            int slot = spread(hash) & mask;
+            while (table[slot] != null)
+                slot = (slot + 1) & mask;
+            table[slot] = s;
+            return s;
+        }
+
+        private void resize() {
+            String[] old = table;
+            table = new String[old.length * 2];
+            int mask = table.length - 1;
+            for (String s : old) {
+                if (s != null) {
+                    int slot = spread(s.hashCode()) & mask;
+                    while (table[slot] != null)
+                        slot = (slot + 1) & mask;
+                    table[slot] = s;
+                }
+            }
+        }
+
+        private static boolean matches(String s, char[] chars, int offset) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) != chars[offset + i])
+                    return false;
+            }
+            return true;
+        }
+
+        private static boolean matches(String s, CharSequence cs) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) != cs.charAt(i))
+                    return false;
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -8,6 +8,7 @@ import com.ibm.mdmce.envtoolkit.deployment.model.TemplateParameters;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
 /**
@@ -28,9 +29,9 @@ public class TemplateParameterMarshaller {
 
         EnvironmentHandler.logger.info("Reading input from: " + sInputFilePath);
 
-        try {
-            // Read in the entities first...
-            CSVParser readerCSV = new CSVParser(sInputFilePath, sEncoding);
+        // Read in the entities first...
+        try (CSVParser readerCSV = new CSVParser(sInputFilePath, sEncoding)) {
+            readerCSV.setStringPool(EnvironmentHandler.getStringPool());
             // Get the variable identifiers from the first line...
             List<String> aTokens = readerCSV.splitLine();
             tm = new TemplateParameters();
@@ -39,21 +40,19 @@ public class TemplateParameterMarshaller {
                 tm.addTopLevelVar(aTokens.get(i));
             }
             List<String> aTemplateVars = tm.getTopLevelVars();
-            aTokens = readerCSV.splitLine();
-            while (aTokens != null && !aTokens.isEmpty()) {
+            readerCSV.rows().forEachOrdered(aValues -> {
                 if (tm.getSecondLevelVarname().equals(""))
-                    tm.setSecondLevelVarname(aTokens.get(0));
-                for (int j = 1; j < aTokens.size(); j++) {
+                    tm.setSecondLevelVarname(aValues.get(0));
+                for (int j = 1; j < aValues.size(); j++) {
                     String sTempVar = aTemplateVars.get(j-1);
-                    tm.addSecondLevelToTopLevel(sTempVar, aTokens.get(j));
+                    tm.addSecondLevelToTopLevel(sTempVar, aValues.get(j));
                 }
-                aTokens = readerCSV.splitLine();
-            }
+            });
         }
         catch (FileNotFoundException errNoFile) {
             EnvironmentHandler.logger.severe("Error: File not found! " + errNoFile.getMessage());
         }
-        catch (IOException errIO) {
+        catch (IOException | UncheckedIOException errIO) {
             EnvironmentHandler.logger.severe("Error: IO problem! " + errIO.getMessage());
         }
 
@@ -0,0 +1,178 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.util.*;
+
+/**
+ * The outcome of validating an environment: every failure found while validating its entities (in the order the
+ * entities are validated by a sequential validation), and the entities that were found not to be
+ * referentially-integral.
+ * <br>
+ * Errors are failures to find an entity that is required (which previously ended the build as soon as the first was
+ * found), while warnings are failures to find an optional entity or other problems with an entity's definition.
+ *
+ * @see EnvironmentValidator
+ */
+public class ValidationResult {
+
+    /**
+     * The severity of a validation failure.
+     */
+    public enum Severity {
+        ERROR,
+        WARNING
+    }
+
+    /**
+     * A single problem found while validating an entity.
+     */
+    public static class Failure {
+
+        private final Severity severity;
+        private final String entityType;
+        private final String entityName;
+        private final String message;
+
+        /**
+         * Construct a new failure for the provided entity.
+         * @param severity the severity of the failure
+         * @param sEntityType the type of entity being validated
+         * @param sEntityName the name of the entity being validated
+         * @param sMessage the description of the failure
+         */
+        public Failure(Severity severity, String sEntityType, String sEntityName, String sMessage) {
+            this.severity = severity;
+            this.entityType = sEntityType;
+            this.entityName = sEntityName;
+            this.message = sMessage;
+        }
+
+        /**
+         * Retrieve the severity of the failure.
+         * @return Severity
+         */
+        public Severity getSeverity() {
+            return severity;
+        }
+
+        /**
+         * Retrieve the type of the entity being validated when the failure was found.
+         * @return String
+         */
+        public String getEntityType() {
+            return entityType;
+        }
+
+        /**
+         * Retrieve the name of the entity being validated when the failure was found.
+         * @return String
+         */
+        public String getEntityName() {
+            return entityName;
+        }
+
+        /**
+         * Retrieve the description of the failure.
+         * @return String
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return severity + " [" + entityType + "] " + entityName + ": " + message;
+        }
+
+    }
+
+    private final List<Failure> alFailures = new ArrayList<>();
+    private final Map<String, List<String>> hmInvalidEntities = new LinkedHashMap<>();
+    private int iEntityCount = 0;
+
+    /**
+     * Add a failure to the result.
+     * @param failure the failure to add
+     */
+    void addFailure(Failure failure) {
+        alFailures.add(failure);
+    }
+
+    /**
+     * Record the outcome of validating an entity.
+     * @param sEntityType the type of the entity
+     * @param sEntityName the name of the entity
+     * @param bValid whether the entity is referentially-integral
+     */
+    void addEntity(String sEntityType, String sEntityName, boolean bValid) {
+        iEntityCount++;
+        if (!bValid)
+            hmInvalidEntities.computeIfAbsent(sEntityType, k -> new ArrayList<>()).add(sEntityName);
+    }
+
+    /**
+     * Retrieve all of the failures, in the order they were found by a sequential validation.
+     * @return {@code List<Failure>}
+     */
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(alFailures);
+    }
+
+    /**
+     * Retrieve all of the failures of the specified severity.
+     * @param severity the severity of failures to retrieve
+     * @return {@code List<Failure>}
+     */
+    public List<Failure> getFailures(Severity severity) {
+        List<Failure> alMatching = new ArrayList<>();
+        for (Failure failure : alFailures) {
+            if (failure.getSeverity() == severity)
+                alMatching.add(failure);
+        }
+        return alMatching;
+    }
+
+    /**
+     * Retrieve the names of the entities that were found not to be referentially-integral, by type of entity.
+     * @return {@code Map<String, List<String>>}
+     */
+    public Map<String, List<String>> getInvalidEntities() {
+        return Collections.unmodifiableMap(hmInvalidEntities);
+    }
+
+    /**
+     * Retrieve the number of entities that were validated.
+     * @return int
+     */
+    public int getEntityCount() {
+        return iEntityCount;
+    }
+
+    /**
+     * Indicates whether any required entities could not be found.
+     * @return boolean
+     */
+    public boolean hasErrors() {
+        for (Failure failure : alFailures) {
+            if (failure.getSeverity() == Severity.ERROR)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether the environment is referentially-integral: all of its entities are valid, and no required
+     * entities are missing.
+     * @return boolean
+     */
+    public boolean isValid() {
+        return hmInvalidEntities.isEmpty() && !hasErrors();
+    }
+
+}
@@ -0,0 +1,467 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Buffered writer of the generated XML, with primitives for the elements that make up the XML files (so that each
+ * element is written piece by piece, rather than first being concatenated into a string).
+ * <br>
+ * A writer either writes into a file, encoding its buffer as UTF-8 straight into a large byte buffer that is only
+ * written out once full (or when the writer is flushed or closed), or (with no file) holds everything written in
+ * memory, for example the XML of a single entity that is generated ahead of being written into its file (see
+ * {@link #writeTo(Writer)}). Unlike the writers of java.io, it is not synchronized: each writer is only ever used by
+ * one thread at a time. A writer into a file must be closed (ideally with try-with-resources), which flushes it.
+ */
+public class XMLWriter extends Writer {
+
+    private static final int CHAR_BUFFER_SIZE = 32 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 128 * 1024;
+
+    private final OutputStream out;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer bytes;
+    private char[] chars;
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * Construct a new writer that holds the XML written in memory.
+     */
+    public XMLWriter() {
+        this.out = null;
+        this.encoder = null;
+        this.bytes = null;
+        this.chars = new char[1024];
+    }
+
+    /**
+     * Construct a new writer that writes the XML as UTF-8 into the provided stream (which is closed along with the
+     * writer).
+     * @param out the stream into which to write
+     */
+    public XMLWriter(OutputStream out) {
+        this.out = out;
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+        this.chars = new char[CHAR_BUFFER_SIZE];
+    }
+
+    /**
+     * Write an element with a text value, escaping the value (see {@link BasicEntityHandler#escapeForXML(String)}):
+     * {@code <sName>sValue</sName>} on a line of its own.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @param sValue the value of the element
+     * @throws IOException on any error writing
+     */
+    public void element(String sIndent, String sName, String sValue) throws IOException {
+        startTag(sIndent, sName);
+        escaped(sValue);
+        endTag(sName);
+    }
+
+    /**
+     * Write an element with a value that is already valid XML (for example a number or a fixed value), as-is (and as
+     * {@literal null} if there is no value): {@code <sName>sValue</sName>} on a line of its own.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @param sValue the value of the element
+     * @throws IOException on any error writing
+     */
+    public void rawElement(String sIndent, String sName, String sValue) throws IOException {
+        startTag(sIndent, sName);
+        write(String.valueOf(sValue));
+        endTag(sName);
+    }
+
+    /**
+     * Write an element with its value in a CDATA section, or an empty element if there is no value:
+     * {@code <sName><![CDATA[sData]]></sName>} or {@code <sName />} on a line of its own.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @param sData the value of the element (empty or null for an empty element)
+     * @throws IOException on any error writing
+     */
+    public void cdataElement(String sIndent, String sName, String sData) throws IOException {
+        if (sData == null || sData.isEmpty()) {
+            write(sIndent);
+            write('<');
+            write(sName);
+            write(" />\n");
+        } else {
+            startTag(sIndent, sName);
+            cdata(sData);
+            endTag(sName);
+        }
+    }
+
+    /**
+     * Write the opening tag of an element whose content follows on separate lines: {@code <sName>} on a line of its own.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @throws IOException on any error writing
+     */
+    public void startElement(String sIndent, String sName) throws IOException {
+        startTag(sIndent, sName);
+        write('\n');
+    }
+
+    /**
+     * Write the opening tag of an element with a single attribute, whose content follows on separate lines: {@code
+     * <sName sAttribute="sValue">} on a line of its own (escaping the value of the attribute, including any quotes).
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @param sAttribute the name of the attribute
+     * @param sValue the value of the attribute
+     * @throws IOException on any error writing
+     */
+    public void startElement(String sIndent, String sName, String sAttribute, String sValue) throws IOException {
+        startTag(sIndent, sName, sAttribute, sValue);
+        write('\n');
+    }
+
+    /**
+     * Write an element with no content: {@code <sName />} on a line of its own.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @throws IOException on any error writing
+     */
+    public void emptyElement(String sIndent, String sName) throws IOException {
+        write(sIndent);
+        write('<');
+        write(sName);
+        write(" />\n");
+    }
+
+    /**
+     * Write an element with a single attribute and no content: {@code <sName sAttribute="sValue"/>} on a line of its
+     * own (escaping the value of the attribute).
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @param sAttribute the name of the attribute
+     * @param sValue the value of the attribute
+     * @throws IOException on any error writing
+     */
+    public void emptyElement(String sIndent, String sName, String sAttribute, String sValue) throws IOException {
+        write(sIndent);
+        write('<');
+        write(sName);
+        attribute(sAttribute, sValue);
+        write("/>\n");
+    }
+
+    /**
+     * Write the opening tag of an element with a single attribute, whose content follows on the same line: {@code
+     * <sName sAttribute="sValue">} (escaping the value of the attribute). The element is closed by
+     * {@link #endTag(String)}.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @param sAttribute the name of the attribute
+     * @param sValue the value of the attribute
+     * @throws IOException on any error writing
+     */
+    public void startTag(String sIndent, String sName, String sAttribute, String sValue) throws IOException {
+        write(sIndent);
+        write('<');
+        write(sName);
+        attribute(sAttribute, sValue);
+        write('>');
+    }
+
+    /**
+     * Write the closing tag of an element whose content is on the same line as its opening tag: {@code </sName>}, ending
+     * the line.
+     * @param sName the name of the element
+     * @throws IOException on any error writing
+     */
+    public void endTag(String sName) throws IOException {
+        write("</");
+        write(sName);
+        write(">\n");
+    }
+
+    /**
+     * Write the XML declaration that starts each XML file written for a single entity, on a line of its own.
+     * @throws IOException on any error writing
+     */
+    public void declaration() throws IOException {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+    }
+
+    /**
+     * Write the closing tag of an element started by {@link #startElement(String, String)}: {@code </sName>} on a line
+     * of its own.
+     * @param sIndent the indentation of the element
+     * @param sName the name of the element
+     * @throws IOException on any error writing
+     */
+    public void endElement(String sIndent, String sName) throws IOException {
+        write(sIndent);
+        endTag(sName);
+    }
+
+    /**
+     * Write a named attribute, as used in the headers and nodes of the XML files: an {@code <Attrib>} element holding
+     * the {@code <Name>} and (as-is) {@code <Value>} of the attribute, each on a line of its own.
+     * @param sIndent the indentation of the {@code <Attrib>} element
+     * @param sName the name of the attribute
+     * @param sValue the value of the attribute
+     * @throws IOException on any error writing
+     */
+    public void attrib(String sIndent, String sName, String sValue) throws IOException {
+        startElement(sIndent, "Attrib");
+        rawElement(sIndent + "   ", "Name", sName);
+        rawElement(sIndent + "   ", "Value", sValue);
+        endElement(sIndent, "Attrib");
+    }
+
+    /**
+     * Write a named attribute whose value is held in a CDATA section (see {@link #attrib(String, String, String)}).
+     * @param sIndent the indentation of the {@code <Attrib>} element
+     * @param sName the name of the attribute
+     * @param sData the value of the attribute
+     * @throws IOException on any error writing
+     */
+    public void cdataAttrib(String sIndent, String sName, String sData) throws IOException {
+        startElement(sIndent, "Attrib");
+        rawElement(sIndent + "   ", "Name", sName);
+        startTag(sIndent + "   ", "Value");
+        cdata(sData);
+        endTag("Value");
+        endElement(sIndent, "Attrib");
+    }
+
+    /**
+     * Write a named attribute in the form used by the nodes of documents: an empty {@code <Attrib>} element with the
+     * {@code name} and {@code value} of the attribute as its own attributes, on a line of its own (escaping both).
+     * @param sIndent the indentation of the {@code <Attrib>} element
+     * @param sName the name of the attribute
+     * @param sValue the value of the attribute
+     * @throws IOException on any error writing
+     */
+    public void valueAttrib(String sIndent, String sName, String sValue) throws IOException {
+        write(sIndent);
+        write("<Attrib");
+        attribute("name", sName);
+        attribute("value", sValue);
+        write("/>\n");
+    }
+
+    /**
+     * Write the provided text, escaping it (see {@link BasicEntityHandler#escapeForXML(String)}).
+     * @param sText the text to write
+     * @throws IOException on any error writing
+     */
+    public void escaped(String sText) throws IOException {
+        escaped(sText, false);
+    }
+
+    private void escaped(String sText, boolean bAttribute) throws IOException {
+        int iStart = 0;
+        for (int i = 0; i < sText.length(); i++) {
+            String sEntity;
+            switch (sText.charAt(i)) {
+                case '&':
+                    sEntity = "&amp;";
+                    break;
+                case '<':
+                    sEntity = "&lt;";
+                    break;
+                case '>':
+                    sEntity = "&gt;";
+                    break;
+                case '"':
+                    if (!bAttribute)
+                        continue;
+                    sEntity = "&quot;";
+                    break;
+                default:
+                    continue;
+            }
+            write(sText, iStart, i - iStart);
+            write(sEntity);
+            iStart = i + 1;
+        }
+        write(sText, iStart, sText.length() - iStart);
+    }
+
+    /**
+     * Write the provided text in a CDATA section.
+     * @param sData the text to write
+     * @throws IOException on any error writing
+     */
+    public void cdata(String sData) throws IOException {
+        write("<![CDATA[");
+        write(String.valueOf(sData));
+        write("]]>");
+    }
+
+    private void startTag(String sIndent, String sName) throws IOException {
+        write(sIndent);
+        write('<');
+        write(sName);
+        write('>');
+    }
+
+    private void attribute(String sAttribute, String sValue) throws IOException {
+        write(' ');
+        write(sAttribute);
+        write("=\"");
+        escaped(sValue, true);
+        write('"');
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (count == chars.length)
+            drain(1);
+        chars[count++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == chars.length)
+                drain(len);
+            int iChunk = Math.min(len, chars.length - count);
+            System.arraycopy(cbuf, off, chars, count, iChunk);
+            count += iChunk;
+            off += iChunk;
+            len -= iChunk;
+        }
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == chars.length)
+                drain(len);
+            int iChunk = Math.min(len, chars.length - count);
+            str.getChars(off, off + iChunk, chars, count);
+            count += iChunk;
+            off += iChunk;
+            len -= iChunk;
+        }
+    }
+
+    /**
+     * Write everything held by this (in-memory) writer into the provided writer.
+     * @param writer the writer into which to write
+     * @throws IOException on any error writing
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(chars, 0, count);
+    }
+
+    /**
+     * Add everything held by this (in-memory) writer, encoded as UTF-8, to the provided digest (without first copying
+     * it into a string).
+     * @param digest the digest to update
+     */
+    public void digestTo(MessageDigest digest) {
+        CharsetEncoder utf8 = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer cb = CharBuffer.wrap(chars, 0, count);
+        ByteBuffer bb = ByteBuffer.allocate(Math.min(BYTE_BUFFER_SIZE, Math.max(64, count * 3)));
+        while (utf8.encode(cb, bb, true).isOverflow()) {
+            digest.update(bb.array(), 0, bb.position());
+            bb.clear();
+        }
+        while (utf8.flush(bb).isOverflow()) {
+            digest.update(bb.array(), 0, bb.position());
+            bb.clear();
+        }
+        digest.update(bb.array(), 0, bb.position());
+    }
+
+    /**
+     * Retrieve everything held by this (in-memory) writer.
+     * @return String
+     */
+    @Override
+    public String toString() {
+        return (out == null) ? new String(chars, 0, count) : super.toString();
+    }
+
+    /**
+     * Make room in the buffer for more characters: growing it for an in-memory writer, or otherwise encoding it into
+     * the byte buffer (and writing the byte buffer out once it is full).
+     */
+    private void drain(int iNeeded) throws IOException {
+        if (closed)
+            throw new IOException("Writer already closed");
+        if (out == null) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, count + iNeeded));
+            return;
+        }
+        // Hold back a trailing high surrogate until its low surrogate has been written
+        int iEncode = (count > 0 && Character.isHighSurrogate(chars[count - 1])) ? count - 1 : count;
+        CharBuffer cb = CharBuffer.wrap(chars, 0, iEncode);
+        while (true) {
+            CoderResult result = encoder.encode(cb, bytes, false);
+            if (result.isOverflow())
+                writeBytes();
+            else
+                break;
+        }
+        int iRemaining = count - cb.position();
+        System.arraycopy(chars, cb.position(), chars, 0, iRemaining);
+        count = iRemaining;
+    }
+
+    private void writeBytes() throws IOException {
+        out.write(bytes.array(), 0, bytes.position());
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out == null || closed)
+            return;
+        drain(0);
+        writeBytes();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null || closed)
+            return;
+        try {
+            drain(0);
+            CharBuffer cb = CharBuffer.wrap(chars, 0, count);
+            while (encoder.encode(cb, bytes, true).isOverflow()) {
+                writeBytes();
+            }
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            count = 0;
+            writeBytes();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+}
@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -27,16 +29,12 @@ public class ACG extends BasicEntity {
     private String name;
     private String description;
 
-    private static class Singleton {
-        private static final ACG INSTANCE = new ACG();
-    }
-
     /**
-     * Retrieve the static definition of an AccessControlGroup (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an AccessControlGroup (ie. its columns and type information).
      * @return AccessControlGroup
      */
     public static ACG getInstance() {
-        return Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(ACG.class, ACG::new);
     }
 
     private ACG() {
@@ -72,12 +70,12 @@ public class ACG extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <ACG>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Description", getDescription()));
-        outFile.write("   </ACG>\n");
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "ACG");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Description", getDescription());
+        outFile.endElement("   ", "ACG");
     }
 
     /**
@@ -5,8 +5,10 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
 import com.ibm.mdmce.envtoolkit.deployment.EnvironmentHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -30,16 +32,12 @@ public class AccessPriv extends BasicEntity {
     private List<String> roles = new ArrayList<>();
     private Map<String, Boolean> attributeCollectionToReadOnly = new TreeMap<>();
 
-    private static class Singleton {
-        private static final AccessPriv INSTANCE = new AccessPriv();
-    }
-
     /**
-     * Retrieve the static definition of an AccessPrivilege (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an AccessPrivilege (ie. its columns and type information).
      * @return AccessPrivilege
      */
     public static AccessPriv getInstance() {
-        return AccessPriv.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(AccessPriv.class, AccessPriv::new);
     }
 
     private AccessPriv() {
@@ -73,7 +71,7 @@ public class AccessPriv extends BasicEntity {
         // try to retrieve from cache
         // (with one of the roles since they point to the same object if configured for several roles)
         String sRole = ap.roles.get(0); // just one role needed to retrieve the object
-        AccessPriv known = (AccessPriv) EnvironmentHandler.getEntityFromCache(getUniqueIdFromRole(sRole), AccessPriv.class.getName(), false, false);
+        AccessPriv known = EnvironmentHandler.getEntityFromCache(getUniqueIdFromRole(sRole), AccessPriv.class, false, false, null);
         if (known != null) {
             ap = known;
         }
@@ -83,6 +81,16 @@ public class AccessPriv extends BasicEntity {
         return (T) ap;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.CONTAINER)
+            return toReferences(getContainerName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -104,24 +112,24 @@ public class AccessPriv extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         for (String role : getRoles()) {
-            outFile.write("   <CONTAINER_ACCESSPRV>\n");
-            outFile.write(getNodeXML("Name", getContainerName()));
-            outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-            outFile.write(getNodeXML("Type", getContainerType()));
-            outFile.write(getNodeXML("Role", role));
-            outFile.write(getNodeXML("CompanyCode", sCompanyCode));
+            outFile.startElement("   ", "CONTAINER_ACCESSPRV");
+            outputNodeXML(outFile, "Name", getContainerName());
+            outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+            outputNodeXML(outFile, "Type", getContainerType());
+            outputNodeXML(outFile, "Role", role);
+            outputNodeXML(outFile, "CompanyCode", sCompanyCode);
             for (Map.Entry<String, Boolean> entry : getAttributeCollectionToReadOnly().entrySet()) {
                 String sAttrCollectionName = entry.getKey();
                 boolean isReadOnly = entry.getValue();
-                outFile.write("      <AttrCollection name=\"" + sAttrCollectionName + "\">\n");
-                outFile.write("         <View>" + (isReadOnly ? "true" : "false") + "</View>\n");
-                outFile.write("         <Edit>" + (isReadOnly ? "false" : "true") + "</Edit>\n");
-                outFile.write("      </AttrCollection>\n");
+                outFile.startElement("      ", "AttrCollection", "name", sAttrCollectionName);
+                outFile.rawElement("         ", "View", isReadOnly ? "true" : "false");
+                outFile.rawElement("         ", "Edit", isReadOnly ? "false" : "true");
+                outFile.endElement("      ", "AttrCollection");
             }
-            outFile.write("   </CONTAINER_ACCESSPRV>\n");
+            outFile.endElement("   ", "CONTAINER_ACCESSPRV");
         }
     }
 
@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -30,16 +32,12 @@ public class AttrCollection extends BasicEntity {
     private Map<String, List<String>> specsToAttributes = new TreeMap<>();
     private Set<String> dynamicSpecs = new HashSet<>();
 
-    private static class Singleton {
-        private static final AttrCollection INSTANCE = new AttrCollection();
-    }
-
     /**
-     * Retrieve the static definition of an AttributeCollection (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an AttributeCollection (ie. its columns and type information).
      * @return AttributeCollection
      */
     public static AttrCollection getInstance() {
-        return AttrCollection.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(AttrCollection.class, AttrCollection::new);
     }
 
     private AttrCollection() {
@@ -62,7 +60,7 @@ public class AttrCollection extends BasicEntity {
     public <T extends BasicEntity> T createInstance(List<String> aFields) {
 
         String sAttrColName = getFieldValue(NAME, aFields);
-        AttrCollection attrCol = (AttrCollection) BasicEntityHandler.getFromCache(sAttrColName, AttrCollection.class.getName(), false, false);
+        AttrCollection attrCol = BasicEntityHandler.getFromCache(sAttrColName, AttrCollection.class, false, false);
         if (attrCol == null) {
             attrCol = new AttrCollection();
             attrCol.name = sAttrColName;
@@ -83,7 +81,7 @@ public class AttrCollection extends BasicEntity {
             attrCol.dynamicSpecs.add(sSpecName);
         }
         boolean localized = false;
-        Spec spec = (Spec) BasicEntityHandler.getFromCache(sSpecName, Spec.class.getName(), false, false);
+        Spec spec = BasicEntityHandler.getFromCache(sSpecName, Spec.class, false, false);
         if (spec != null) {
             Spec.Attribute attr = spec.getAttributes().get(sAttrPath);
             if (attr != null) {
@@ -122,36 +120,36 @@ public class AttrCollection extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <ATTRIBUTE_COLS>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Type", getType()));
-        outFile.write(getNodeXML("Description", getDescription()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "ATTRIBUTE_COLS");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Type", getType());
+        outputNodeXML(outFile, "Description", getDescription());
 
         Map<String, List<String>> hmSpecsToAttrs = getSpecsToAttributes();
 
         if (!hmSpecsToAttrs.isEmpty()) {
-            outFile.write("      <SpecList>\n");
+            outFile.startElement("      ", "SpecList");
             for (Map.Entry<String, List<String>> entry : hmSpecsToAttrs.entrySet()) {
                 String sSpecName = entry.getKey();
                 List<String> aAttrPaths = entry.getValue();
-                outFile.write("         <Spec name=\"" + BasicEntityHandler.escapeForXML(sSpecName) + "\">\n");
+                outFile.startElement("         ", "Spec", "name", sSpecName);
                 if (getDynamicSpecs().contains(sSpecName)) {
-                    outFile.write("            <Dynamic>true</Dynamic>\n");
+                    outFile.rawElement("            ", "Dynamic", "true");
                 } else {
                     for (String sAttrPath : aAttrPaths) {
                         boolean bLocalized = localizedAttributePaths.contains(sSpecName + "/" + sAttrPath);
-                        outFile.write("            <Attr name=\"" + sAttrPath + "\">\n");
-                        outFile.write("               <Dynamic>" + bLocalized + "</Dynamic>\n");
-                        outFile.write("            </Attr>\n");
+                        outFile.startElement("            ", "Attr", "name", sAttrPath);
+                        outFile.rawElement("               ", "Dynamic", String.valueOf(bLocalized));
+                        outFile.endElement("            ", "Attr");
                     }
                 }
-                outFile.write("         </Spec>\n");
+                outFile.endElement("         ", "Spec");
             }
-            outFile.write("      </SpecList>\n");
+            outFile.endElement("      ", "SpecList");
         }
-        outFile.write("   </ATTRIBUTE_COLS>\n");
+        outFile.endElement("   ", "ATTRIBUTE_COLS");
     }
 
     /**
@@ -5,11 +5,16 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Base class for any entities that will be represented.
@@ -25,6 +30,7 @@ public abstract class BasicEntity {
     private String rootElement;
 
     private List<String> columns;
+    private Map<String, Integer> columnSlots;
 
     protected BasicEntity() {
         columns = new ArrayList<>();
@@ -66,12 +72,13 @@ public abstract class BasicEntity {
     }
 
     /**
-     * Retrieve the index of the column with the specified name.
+     * Retrieve the index (within a row of CSV data) of the column with the specified name.
      * @param name of the column for which to retrieve its index
-     * @return int
+     * @return int - or -1 if there is no such column
      */
     public int getIndexOfColumn(String name) {
-        return columns.indexOf(name);
+        Integer slot = getColumnSlots().get(name);
+        return slot == null ? -1 : slot;
     }
 
     /**
@@ -80,6 +87,56 @@ public abstract class BasicEntity {
      */
     public void addColumn(String name) {
         columns.add(name);
+        columnSlots = null;
+    }
+
+    /**
+     * Bind the columns of this entity type to their positions in a CSV file, using the provided header line of that
+     * file. If every column can be found (by name, ignoring case and surrounding whitespace) in the header, the columns
+     * are read from wherever the header places them (so columns can be re-ordered and extra columns are ignored);
+     * otherwise every column continues to be read by its defined position.
+     * @param aHeader the header line of the CSV file
+     * @return {@code List<String>} - the columns that could not be found in the header (empty if all were bound by name)
+     */
+    public List<String> bindColumns(List<String> aHeader) {
+        Map<String, Integer> hmHeader = new HashMap<>();
+        for (int i = 0; i < aHeader.size(); i++) {
+            hmHeader.putIfAbsent(normalizeColumnName(aHeader.get(i)), i);
+        }
+        Map<String, Integer> hmSlots = new HashMap<>();
+        List<String> alUnbound = new ArrayList<>();
+        for (String column : columns) {
+            Integer slot = hmHeader.get(normalizeColumnName(column));
+            if (slot == null)
+                alUnbound.add(column);
+            else
+                hmSlots.putIfAbsent(column, slot);
+        }
+        columnSlots = alUnbound.isEmpty() ? hmSlots : getPositionalSlots();
+        return alUnbound;
+    }
+
+    /**
+     * Retrieve the binding of column names to their index within a row of CSV data, defaulting to the position in
+     * which each column is defined if no header has been bound.
+     * @return {@code Map<String, Integer>}
+     */
+    private Map<String, Integer> getColumnSlots() {
+        if (columnSlots == null)
+            columnSlots = getPositionalSlots();
+        return columnSlots;
+    }
+
+    private Map<String, Integer> getPositionalSlots() {
+        Map<String, Integer> hmSlots = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            hmSlots.putIfAbsent(columns.get(i), i);
+        }
+        return hmSlots;
+    }
+
+    private static String normalizeColumnName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
     }
 
     /**
@@ -104,6 +161,31 @@ public abstract class BasicEntity {
      */
     public abstract String getUniqueId();
 
+    /**
+     * Retrieve the names of the other entities of the specified kind that this instance references, by which it is
+     * indexed in the entity cache. By default an entity references nothing: this method must be overridden by any
+     * sub-class whose instances reference other entities.
+     * @param type the kind of reference
+     * @return {@code List<String>}
+     */
+    public List<String> getReferences(ReferenceType type) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Build a list of references from the provided names, ignoring any that are empty.
+     * @param aNames the names referenced
+     * @return {@code List<String>}
+     */
+    protected static List<String> toReferences(String... aNames) {
+        List<String> alReferences = new ArrayList<>(aNames.length);
+        for (String sName : aNames) {
+            if (containsData(sName))
+                alReferences.add(sName);
+        }
+        return alReferences;
+    }
+
     /**
      * Output the XML for an individual instance of this entity.
      * @param handler the handler for this entity type
@@ -112,7 +194,7 @@ public abstract class BasicEntity {
      * @param sCompanyCode the company code of the environment
      * @throws IOException on any error writing
      */
-    public abstract void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException;
+    public abstract void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException;
 
     /**
      * Output the CSV for an individual instance of this entity.
@@ -147,22 +229,29 @@ public abstract class BasicEntity {
      * @return String
      */
     protected String getFieldValue(String fieldName, List<String> aFields) {
-        return aFields.get(getIndexOfColumn(fieldName));
+        return getFieldValue(getIndexOfColumn(fieldName), aFields);
+    }
+
+    /**
+     * Retrieve the value of the field in the provided slot (see {@link #getIndexOfColumn(String)}) of a row of CSV data.
+     * @param slot the index of the field's column within the row
+     * @param aFields the row of CSV data
+     * @return String
+     */
+    protected static String getFieldValue(int slot, List<String> aFields) {
+        // Columns bound beyond the end of a (short) row are treated as empty, just like padded cells
+        return slot < aFields.size() ? aFields.get(slot) : "";
     }
 
     /**
-     * Build the XML to represent the provided element and its data.
+     * Output the XML to represent the provided element and its data.
+     * @param outFile the output into which to write
      * @param sElement name of the XML element
      * @param sData data for the XML element
-     * @return String
+     * @throws IOException on any error writing
      */
-    protected static String getNodeXML(String sElement, String sData) {
-        String sRetVal;
-        if (containsData(sData))
-            sRetVal = "      <" + sElement + "><![CDATA[" + sData + "]]></" + sElement + ">\n";
-        else
-            sRetVal = "      <" + sElement + " />\n";
-        return sRetVal;
+    protected static void outputNodeXML(XMLWriter outFile, String sElement, String sData) throws IOException {
+        outFile.cdataElement("      ", sElement, sData);
     }
 
     /**
@@ -188,10 +277,7 @@ public abstract class BasicEntity {
     public static String escapeForCSV(String sArg) {
         StringBuilder sb = new StringBuilder();
         if (sArg != null) {
-            if ((sArg.contains(","))
-                    || (sArg.contains("\n"))
-                    || (sArg.contains("\r"))
-                    || (sArg.contains("\""))) {
+            if (requiresEscapeForCSV(sArg)) {
                 sb.append("\"");
                 sb.append(sArg.replace("\"", "\"\""));
                 sb.append("\"");
@@ -202,4 +288,18 @@ public abstract class BasicEntity {
         return sb.toString();
     }
 
+    /**
+     * Indicates whether the provided string must be escaped (quoted) for use within a CSV file.
+     * @param sArg the string to check
+     * @return boolean - true if it contains a comma, newline or double quote, otherwise false
+     */
+    public static boolean requiresEscapeForCSV(String sArg) {
+        for (int i = 0; i < sArg.length(); i++) {
+            char c = sArg.charAt(i);
+            if (c == ',' || c == '\n' || c == '\r' || c == '"')
+                return true;
+        }
+        return false;
+    }
+
 }
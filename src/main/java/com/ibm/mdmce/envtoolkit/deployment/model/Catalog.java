@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -42,16 +44,12 @@ public class Catalog extends BasicEntity {
     private String userDefinedCoreAttrGroup = "";
     private Map<String, String> userDefinedAttributeNameToValue = new TreeMap<>();//RS20210217 added to support domain attributes
 
-    private static class Singleton {
-        private static final Catalog INSTANCE = new Catalog();
-    }
-
     /**
-     * Retrieve the static definition of a Catalog (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Catalog (ie. its columns and type information).
      * @return Catalog
      */
     public static Catalog getInstance() {
-        return Catalog.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Catalog.class, Catalog::new);
     }
 
     private Catalog() {
@@ -146,6 +144,25 @@ public class Catalog extends BasicEntity {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case SPEC:
+                return toReferences(getSpecName());
+            case ACG:
+                return toReferences(getAcg());
+            case HIERARCHY:
+                List<String> alHierarchies = toReferences(getPrimaryHierarchy());
+                alHierarchies.addAll(toReferences(getSecondaryHierarchies().toArray(new String[0])));
+                return alHierarchies;
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -158,77 +175,77 @@ public class Catalog extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
-        outFile.write("   <CATALOG>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("UsesInheritance", "" + isInheritance()));
-        outFile.write(getNodeXML("Spec", getSpecName()));
+        outFile.startElement("   ", "CATALOG");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "UsesInheritance", "" + isInheritance());
+        outputNodeXML(outFile, "Spec", getSpecName());
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG)) {
-            outFile.write("      <AccessControlGroup isDefault=\"true\"/>\n");
-            outFile.write("      <ACG isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "AccessControlGroup", "isDefault", "true");
+            outFile.emptyElement("      ", "ACG", "isDefault", "true");
         } else {
-            outFile.write(getNodeXML("AccessControlGroup", getAcg()));
-            outFile.write(getNodeXML("ACG", getAcg()));
+            outputNodeXML(outFile, "AccessControlGroup", getAcg());
+            outputNodeXML(outFile, "ACG", getAcg());
         }
-        outFile.write(getNodeXML("PrimaryCategoryTree", getPrimaryHierarchy()));
+        outputNodeXML(outFile, "PrimaryCategoryTree", getPrimaryHierarchy());
 
         if (getSecondaryHierarchies().isEmpty()) {
-            outFile.write(getNodeXML("SecondaryCategoryTrees", ""));
+            outputNodeXML(outFile, "SecondaryCategoryTrees", "");
         } else {
-            outFile.write("      <SecondaryCategoryTrees>\n");
+            outFile.startElement("      ", "SecondaryCategoryTrees");
             for (String secondaryHierarchy : getSecondaryHierarchies()) {
-                outFile.write("         <SecondaryCategoryTree>" + secondaryHierarchy + "</SecondaryCategoryTree>\n");
+                outFile.element("         ", "SecondaryCategoryTree", secondaryHierarchy);
             }
-            outFile.write("      </SecondaryCategoryTrees>\n");
+            outFile.endElement("      ", "SecondaryCategoryTrees");
         }
 
-        outFile.write(getNodeXML("DisplayAttribute", getDisplayAttribute()));
-        outFile.write(getNodeXML("AttributeGroup", getUserDefinedCoreAttrGroup()));
+        outputNodeXML(outFile, "DisplayAttribute", getDisplayAttribute());
+        outputNodeXML(outFile, "AttributeGroup", getUserDefinedCoreAttrGroup());
 
         Map<String, String> hmUserDefinedAttributeNameToValue = getuserDefinedAttributeNameToValue();
 		if (hmUserDefinedAttributeNameToValue.size() > 0) {//RS20210217 added to support domain attributes
-			outFile.write("      <UserDefinedAttributes>\n");			
+			outFile.startElement("      ", "UserDefinedAttributes");			
             for (Map.Entry<String, String> entry : hmUserDefinedAttributeNameToValue.entrySet()) {
                 String sAttributeName = entry.getKey();
                 String sAttributeValue = entry.getValue();
-				outFile.write("         <UserDefinedAttribute>\n");
-				outFile.write("            <UserDefinedAttributeName><![CDATA[" + sAttributeName + "]]></UserDefinedAttributeName>\n");
-				outFile.write("            <UserDefinedAttributeValue><![CDATA[" + sAttributeValue + "]]></UserDefinedAttributeValue>\n");
-				outFile.write("         </UserDefinedAttribute>\n");
+				outFile.startElement("         ", "UserDefinedAttribute");
+				outFile.cdataElement("            ", "UserDefinedAttributeName", sAttributeName);
+				outFile.cdataElement("            ", "UserDefinedAttributeValue", sAttributeValue);
+				outFile.endElement("         ", "UserDefinedAttribute");
 			}
-			outFile.write("      </UserDefinedAttributes>\n");
+			outFile.endElement("      ", "UserDefinedAttributes");
 		} else {
-			outFile.write(getNodeXML("UserDefinedAttributes", ""));
+			outputNodeXML(outFile, "UserDefinedAttributes", "");
 		}	
 
 
         Map<String, String> hmLinkAttrToCtgs = getLinkSpecPathToDestinationCatalog();
         Map<String, String> hmLinkAttrToAttrs = getLinkSpecPathToDestinationAttribute();
         if (hmLinkAttrToCtgs.size() > 0) {
-            outFile.write("      <LinkAttributes>\n");
+            outFile.startElement("      ", "LinkAttributes");
         } else {
-            outFile.write(getNodeXML("LinkAttributes", ""));
+            outputNodeXML(outFile, "LinkAttributes", "");
         }
         for (Map.Entry<String, String> entry : hmLinkAttrToCtgs.entrySet()) {
             String sLinkAttr = entry.getKey();
             String sDstCtgName = entry.getValue();
-            outFile.write("         <LinkAttribute>\n");
-            outFile.write("            <LinkSourceAttribute><![CDATA[" + sLinkAttr + "]]></LinkSourceAttribute>\n");
-            Catalog ctgLinked = (Catalog) BasicEntityHandler.getFromCache(sDstCtgName, Catalog.class.getName(), true, false);
-            Spec specCtgLinked = (Spec) BasicEntityHandler.getFromCache(ctgLinked.getSpecName(), Spec.class.getName(), true, false);    
+            outFile.startElement("         ", "LinkAttribute");
+            outFile.cdataElement("            ", "LinkSourceAttribute", sLinkAttr);
+            Catalog ctgLinked = BasicEntityHandler.getFromCache(sDstCtgName, Catalog.class, true, false);
+            Spec specCtgLinked = BasicEntityHandler.getFromCache(ctgLinked.getSpecName(), Spec.class, true, false);    
             String sDstAttrName = (String)hmLinkAttrToAttrs.get(sLinkAttr);//RS20210217 Support target attribute
 			if (sDstAttrName==null || sDstAttrName.equals("")){
-                outFile.write("            <LinkDestinationAttribute><![CDATA[" + specCtgLinked.getPrimaryKeyPath() + "]]></LinkDestinationAttribute>\n");
+                outFile.cdataElement("            ", "LinkDestinationAttribute", specCtgLinked.getPrimaryKeyPath());
             }else{
-				outFile.write("            <LinkDestinationAttribute><![CDATA[" + sDstAttrName + "]]></LinkDestinationAttribute>\n");
+				outFile.cdataElement("            ", "LinkDestinationAttribute", sDstAttrName);
 			}            
-            outFile.write("            <LinkDstCatalog><![CDATA[" + sDstCtgName + "]]></LinkDstCatalog>\n");
-            outFile.write("         </LinkAttribute>\n");
+            outFile.cdataElement("            ", "LinkDstCatalog", sDstCtgName);
+            outFile.endElement("         ", "LinkAttribute");
         }
         if (hmLinkAttrToCtgs.size() > 0)
-            outFile.write("      </LinkAttributes>\n");
+            outFile.endElement("      ", "LinkAttributes");
 
         Map<String, String> hmScripts = getScriptTypeToName();
         for (Map.Entry<String, String> entry : hmScripts.entrySet()) {
@@ -249,14 +266,14 @@ public class Catalog extends BasicEntity {
                     sTagXML = "PostProcessingScript";
                     break;
             }
-            outFile.write("      <" + sTagXML + "><![CDATA[" + sScriptName + "]]></" + sTagXML + ">\n");
+            outFile.cdataElement("      ", sTagXML, sScriptName);
         }
 
         Map<String, Map<String, List<String>>> hmLocations = getLocationHierarchyToAttributeCollections();
         if (hmLocations.size() > 0) {
-            outFile.write("      <LocationAttributes>\n");
+            outFile.startElement("      ", "LocationAttributes");
         } else {
-            outFile.write(getNodeXML("LocationAttributes", ""));
+            outputNodeXML(outFile, "LocationAttributes", "");
         }
         for (Map.Entry<String, Map<String, List<String>>> entry : hmLocations.entrySet()) {
             String sLocationKey = entry.getKey();
@@ -264,21 +281,21 @@ public class Catalog extends BasicEntity {
             for (Map.Entry<String, List<String>> specEntry : hmSpecToCollections.entrySet()) {
                 String locationSpecName = specEntry.getKey();
                 List<String> collections = specEntry.getValue();
-                outFile.write("         <LocationAttribute>\n");
-                outFile.write("            <LocationTree><![CDATA[" + sLocationKey + "]]></LocationTree>\n");
-                outFile.write("            <LocationAttrSpec><![CDATA[" + locationSpecName + "]]></LocationAttrSpec>\n");
-                outFile.write("            <LocationInhAttrGroups>\n");
+                outFile.startElement("         ", "LocationAttribute");
+                outFile.cdataElement("            ", "LocationTree", sLocationKey);
+                outFile.cdataElement("            ", "LocationAttrSpec", locationSpecName);
+                outFile.startElement("            ", "LocationInhAttrGroups");
                 for (String collection : collections) {
-                    outFile.write("               <LocationInhAttrGroup><![CDATA[" + collection + "]]></LocationInhAttrGroup>\n");
+                    outFile.cdataElement("               ", "LocationInhAttrGroup", collection);
                 }
-                outFile.write("            </LocationInhAttrGroups>\n");
-                outFile.write("         </LocationAttribute>\n");
+                outFile.endElement("            ", "LocationInhAttrGroups");
+                outFile.endElement("         ", "LocationAttribute");
             }
         }
         if (hmLocations.size() > 0)
-            outFile.write("      </LocationAttributes>\n");
+            outFile.endElement("      ", "LocationAttributes");
 
-        outFile.write("   </CATALOG>\n");
+        outFile.endElement("   ", "CATALOG");
 
     }
 
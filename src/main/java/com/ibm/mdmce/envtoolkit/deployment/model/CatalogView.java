@@ -5,10 +5,11 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.*;
 
 /**
@@ -19,16 +20,12 @@ import java.util.*;
  */
 public class CatalogView extends View {
 
-    private static class Singleton {
-        private static final CatalogView INSTANCE = new CatalogView();
-    }
-
     /**
-     * Retrieve the static definition of a CatalogView (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a CatalogView (ie. its columns and type information).
      * @return CatalogView
      */
     public static CatalogView getInstance() {
-        return CatalogView.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(CatalogView.class, CatalogView::new);
     }
 
     private CatalogView() {
@@ -49,7 +46,7 @@ public class CatalogView extends View {
 
             String sCtgViewName = getFieldValue(VIEW_NAME, aFields);
             String sContainerName = getFieldValue(CONTAINER_NAME, aFields);
-            CatalogView view = (CatalogView) BasicEntityHandler.getFromCache(sContainerName + "::" + sCtgViewName, CatalogView.class.getName(), false, false);
+            CatalogView view = findView(sContainerName, sCtgViewName, CatalogView.class);
             if (view == null) {
                 view = new CatalogView();
                 view.containerType = "CATALOG";
@@ -99,11 +96,11 @@ public class CatalogView extends View {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <ContainerView name=\"" + getViewName() + "\">\n");
-        outFile.write(getNodeXML("ContainerName", getContainerName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Default", "" + isDefaultView()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "ContainerView", "name", getViewName());
+        outputNodeXML(outFile, "ContainerName", getContainerName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Default", "" + isDefaultView());
         if (!singleEdit.isEmpty()) {
             outputViewComponent("EditItem", singleEdit, singleEditTabOrder, singleEditTabs, true, outFile);
         }
@@ -120,7 +117,7 @@ public class CatalogView extends View {
             outputViewComponent("ItemLocation", location, locationTabOrder, locationTabs, false, outFile);
         }
 
-        outFile.write("   </ContainerView>\n");
+        outFile.endElement("   ", "ContainerView");
     }
 
 }
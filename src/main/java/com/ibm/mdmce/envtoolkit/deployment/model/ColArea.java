@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -34,16 +36,12 @@ public class ColArea extends BasicEntity {
     private List<String> adminRoles = new ArrayList<>();
     private List<String> adminUsers = new ArrayList<>();
 
-    private static class Singleton {
-        private static final ColArea INSTANCE = new ColArea();
-    }
-
     /**
-     * Retrieve the static definition of a CollaborationArea (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a CollaborationArea (ie. its columns and type information).
      * @return CollaborationArea
      */
     public static ColArea getInstance() {
-        return ColArea.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(ColArea.class, ColArea::new);
     }
 
     private ColArea() {
@@ -77,6 +75,23 @@ public class ColArea extends BasicEntity {
         return (T) colArea;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case CONTAINER:
+                return toReferences(getSourceContainer());
+            case ACG:
+                return toReferences(getAcg());
+            case WORKFLOW:
+                return toReferences(getWorkflow());
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -89,33 +104,35 @@ public class ColArea extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
         // TODO: Support outputting deleteWhenEmpty colareas
-        outFile.write("   <COLLABORATION_AREA Deletewhenempty=\"false\">\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
+        outFile.startElement("   ", "COLLABORATION_AREA", "Deletewhenempty", "false");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
         // TODO: Support descriptions on colareas
-        outFile.write(getNodeXML("Description", ""));
-        outFile.write(getNodeXML("Workflow", getWorkflow()));
-        outFile.write(getNodeXML("ContainerType", getContainerType()));
-        outFile.write(getNodeXML("Container", getSourceContainer()));
+        outputNodeXML(outFile, "Description", "");
+        outputNodeXML(outFile, "Workflow", getWorkflow());
+        outputNodeXML(outFile, "ContainerType", getContainerType());
+        outputNodeXML(outFile, "Container", getSourceContainer());
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG))
-            outFile.write("      <AccessControlGroup isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "AccessControlGroup", "isDefault", "true");
         else
-            outFile.write(getNodeXML("AccessControlGroup", getAcg()));
-        outFile.write("      <Administrators>\n");
+            outputNodeXML(outFile, "AccessControlGroup", getAcg());
+        outFile.startElement("      ", "Administrators");
         for (String sRoleName : getAdminRoles()) {
-            outFile.write("         <Role>" + sRoleName + "</Role>\n");
+            outFile.element("         ", "Role", sRoleName);
         }
         for (String sUserName : getAdminUsers()) {
-            outFile.write("         <User>" + sUserName + "</User>\n");
+            outFile.element("         ", "User", sUserName);
         }
-        outFile.write("      </Administrators>\n");
+        outFile.endElement("      ", "Administrators");
         // TODO: Support timeouts on colareas (?)
-        outFile.write("      <Timeout>\n");
-        outFile.write("         <Duration Unit=\"Milliseconds\">0</Duration>\n");
-        outFile.write("      </Timeout>\n");
-        outFile.write("   </COLLABORATION_AREA>\n");
+        outFile.startElement("      ", "Timeout");
+        outFile.startTag("         ", "Duration", "Unit", "Milliseconds");
+        outFile.write("0");
+        outFile.endTag("Duration");
+        outFile.endElement("      ", "Timeout");
+        outFile.endElement("   ", "COLLABORATION_AREA");
     }
 
     /**
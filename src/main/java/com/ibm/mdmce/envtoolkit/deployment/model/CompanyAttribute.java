@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -26,16 +28,12 @@ public class CompanyAttribute extends BasicEntity {
     private String symbol;
     private String type;
 
-    private static class Singleton {
-        private static final CompanyAttribute INSTANCE = new CompanyAttribute();
-    }
-
     /**
-     * Retrieve the static definition of an CompanyAttribute (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an CompanyAttribute (ie. its columns and type information).
      * @return CompanyAttribute
      */
     public static CompanyAttribute getInstance() {
-        return CompanyAttribute.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(CompanyAttribute.class, CompanyAttribute::new);
     }
 
     private CompanyAttribute() {
@@ -78,19 +76,19 @@ public class CompanyAttribute extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
         String sType = getType();
         if (sType.equals("CURRENCY")) {
-            outFile.write("   <COMPANY_ATTRIBUTES type=\"Currency\">\n");
-            outFile.write(getNodeXML("Code", getCode()));
-            outFile.write(getNodeXML("Symbol", getSymbol()));
-            outFile.write("   </COMPANY_ATTRIBUTES>\n");
+            outFile.startElement("   ", "COMPANY_ATTRIBUTES", "type", "Currency");
+            outputNodeXML(outFile, "Code", getCode());
+            outputNodeXML(outFile, "Symbol", getSymbol());
+            outFile.endElement("   ", "COMPANY_ATTRIBUTES");
         } else if (sType.equals("LOCALE")) {
-            outFile.write("   <COMPANY_ATTRIBUTES>\n");
-            outFile.write(getNodeXML("Value", getCode()));
-            outFile.write(getNodeXML("Language", getLanguage()));
-            outFile.write(getNodeXML("Country", getCountry()));
-            outFile.write("   </COMPANY_ATTRIBUTES>\n");
+            outFile.startElement("   ", "COMPANY_ATTRIBUTES");
+            outputNodeXML(outFile, "Value", getCode());
+            outputNodeXML(outFile, "Language", getLanguage());
+            outputNodeXML(outFile, "Country", getCountry());
+            outFile.endElement("   ", "COMPANY_ATTRIBUTES");
         }
     }
 
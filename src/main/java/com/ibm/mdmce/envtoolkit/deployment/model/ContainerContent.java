@@ -5,6 +5,7 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -58,6 +59,16 @@ public abstract class ContainerContent extends BasicEntity {
         instance.charset = getFieldValue(CHARSET, aFields);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.CONTAINER)
+            return toReferences(getContainerName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -70,13 +81,13 @@ public abstract class ContainerContent extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <Container>\n");
-        outFile.write(getNodeXML("ContainerType", contentType));
-        outFile.write(getNodeXML("ContainerName", getContainerName()));
-        outFile.write(getNodeXML("EntryDataFilePath", outputPath + getFilename()));
-        outFile.write(getNodeXML("Encoding", getCharset()));
-        outFile.write("   </Container>\n");
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "Container");
+        outputNodeXML(outFile, "ContainerType", contentType);
+        outputNodeXML(outFile, "ContainerName", getContainerName());
+        outputNodeXML(outFile, "EntryDataFilePath", outputPath + getFilename());
+        outputNodeXML(outFile, "Encoding", getCharset());
+        outFile.endElement("   ", "Container");
     }
 
     /**
@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -36,16 +38,12 @@ public class DataSource extends BasicEntity {
     private String filename;
     private String docStorePath;
 
-    private static class Singleton {
-        private static final DataSource INSTANCE = new DataSource();
-    }
-
     /**
-     * Retrieve the static definition of a DataSource (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a DataSource (ie. its columns and type information).
      * @return DataSource
      */
     public static DataSource getInstance() {
-        return DataSource.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(DataSource.class, DataSource::new);
     }
 
     private DataSource() {
@@ -95,22 +93,22 @@ public class DataSource extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <DATASOURCE>\n");
-        outFile.write(getNodeXML("SourceType", getType()));
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "DATASOURCE");
+        outputNodeXML(outFile, "SourceType", getType());
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
         if (getType().equals("PULL_FTP")) {
-            outFile.write(getNodeXML("FtpAddress", getServerAddress()));
-            outFile.write(getNodeXML("FtpPort", getServerPort()));
-            outFile.write(getNodeXML("UserName", getLoginUsername()));
-            outFile.write(getNodeXML("PassWord", getLoginPassword()));
-            outFile.write(getNodeXML("fileName", getFilename()));
-            outFile.write(getNodeXML("Directory", getDirectory()));
+            outputNodeXML(outFile, "FtpAddress", getServerAddress());
+            outputNodeXML(outFile, "FtpPort", getServerPort());
+            outputNodeXML(outFile, "UserName", getLoginUsername());
+            outputNodeXML(outFile, "PassWord", getLoginPassword());
+            outputNodeXML(outFile, "fileName", getFilename());
+            outputNodeXML(outFile, "Directory", getDirectory());
         } else if (getType().equals("DOC_STORE")) {
-            outFile.write(getNodeXML("DocStorePath", getDocStorePath()));
+            outputNodeXML(outFile, "DocStorePath", getDocStorePath());
         }
-        outFile.write("   </DATASOURCE>\n");
+        outFile.endElement("   ", "DATASOURCE");
     }
 
     /**
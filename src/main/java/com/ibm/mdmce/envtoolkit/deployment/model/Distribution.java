@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -42,16 +44,12 @@ public class Distribution extends BasicEntity {
     private String subject;
     private String localPath;
 
-    private static class Singleton {
-        private static final Distribution INSTANCE = new Distribution();
-    }
-
     /**
-     * Retrieve the static definition of a Distribution (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Distribution (ie. its columns and type information).
      * @return Distribution
      */
     public static Distribution getInstance() {
-        return Distribution.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Distribution.class, Distribution::new);
     }
 
     private Distribution() {
@@ -105,23 +103,23 @@ public class Distribution extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <DISTRIBUTION>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("DistributionType", getType()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "DISTRIBUTION");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "DistributionType", getType());
         // TODO: Handle the other "DestinationType" property
-        outFile.write(getNodeXML("DestinationType", ""));
-        outFile.write(getNodeXML("Email", getEmail()));
-        outFile.write(getNodeXML("HostName", getHostname()));
-        outFile.write(getNodeXML("UserId", getUserId()));
-        outFile.write(getNodeXML("Password", getPassword()));
-        outFile.write(getNodeXML("Path", getPath()));
-        outFile.write(getNodeXML("From", getFrom()));
-        outFile.write(getNodeXML("To", getTo()));
-        outFile.write(getNodeXML("Subject", getSubject()));
-        outFile.write(getNodeXML("LocalPath", getLocalPath()));
-        outFile.write("   </DISTRIBUTION>\n");
+        outputNodeXML(outFile, "DestinationType", "");
+        outputNodeXML(outFile, "Email", getEmail());
+        outputNodeXML(outFile, "HostName", getHostname());
+        outputNodeXML(outFile, "UserId", getUserId());
+        outputNodeXML(outFile, "Password", getPassword());
+        outputNodeXML(outFile, "Path", getPath());
+        outputNodeXML(outFile, "From", getFrom());
+        outputNodeXML(outFile, "To", getTo());
+        outputNodeXML(outFile, "Subject", getSubject());
+        outputNodeXML(outFile, "LocalPath", getLocalPath());
+        outFile.endElement("   ", "DISTRIBUTION");
     }
 
     /**
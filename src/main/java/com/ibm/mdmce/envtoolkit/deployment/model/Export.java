@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -48,16 +50,12 @@ public class Export extends BasicEntity {
     private String hierarchyName;
     private String inputSpec;
 
-    private static class Singleton {
-        private static final Export INSTANCE = new Export();
-    }
-
     /**
-     * Retrieve the static definition of an Export (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an Export (ie. its columns and type information).
      * @return Export
      */
     public static Export getInstance() {
-        return Export.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Export.class, Export::new);
     }
 
     private Export() {
@@ -103,7 +101,7 @@ public class Export extends BasicEntity {
         export.paramsName = getFieldValue(PARAMS_NAME, aFields);
         String sScriptPath = "/scripts/export/ctg/";
         String sScriptName = sScriptPath + export.scriptName;
-        Script docScript = (Script) BasicEntityHandler.getFromCache(sScriptName, Script.class.getName(), false, false);
+        Script docScript = BasicEntityHandler.getFromCache(sScriptName, Script.class, false, false);
         if (docScript != null) {
             export.inputSpec = docScript.getInputSpec();
             if (!export.inputSpec.equals(""))
@@ -113,6 +111,21 @@ public class Export extends BasicEntity {
         return (T) export;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case CONTAINER:
+                return toReferences(getContainerName());
+            case HIERARCHY:
+                return toReferences(getHierarchyName());
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -125,26 +138,26 @@ public class Export extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <EXPORTS name=\"" + getName() + "\">\n");
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("DestinationSpec", getDestinationSpec()));
-        outFile.write(getNodeXML("CatalogName", getContainerName()));
-        outFile.write(getNodeXML("CatalogVersion", "Latest Version"));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "EXPORTS", "name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "DestinationSpec", getDestinationSpec());
+        outputNodeXML(outFile, "CatalogName", getContainerName());
+        outputNodeXML(outFile, "CatalogVersion", "Latest Version");
         // TODO: Support exports with other than entire catalog
-        outFile.write(getNodeXML("CatalogGroupItems", "Entire catalog"));
-        outFile.write(getNodeXML("CatalogGroupItemsType", "E"));
-        outFile.write(getNodeXML("HierarchyName", getHierarchyName()));
-        outFile.write(getNodeXML("SyndicationType", getType()));
-        outFile.write(getNodeXML("CharsetName", getCharset()));
-        outFile.write(getNodeXML("SpecMapping", getSpecMap()));
-        outFile.write(getNodeXML("CatalogExportScriptPath", "scripts/export/ctg/" + getScriptName()));
+        outputNodeXML(outFile, "CatalogGroupItems", "Entire catalog");
+        outputNodeXML(outFile, "CatalogGroupItemsType", "E");
+        outputNodeXML(outFile, "HierarchyName", getHierarchyName());
+        outputNodeXML(outFile, "SyndicationType", getType());
+        outputNodeXML(outFile, "CharsetName", getCharset());
+        outputNodeXML(outFile, "SpecMapping", getSpecMap());
+        outputNodeXML(outFile, "CatalogExportScriptPath", "scripts/export/ctg/" + getScriptName());
         // This should apparently be the name of the script rather than the spec -- at least in 5.3.2
-        outFile.write(getNodeXML("FileType", getScriptName()));
+        outputNodeXML(outFile, "FileType", getScriptName());
         if (!getParamsPath().equals("")) {
-            outFile.write(getNodeXML("ParamsDocPath", getParamsPath()));
+            outputNodeXML(outFile, "ParamsDocPath", getParamsPath());
         }
-        outFile.write("   </EXPORTS>\n");
+        outFile.endElement("   ", "EXPORTS");
     }
 
     /**
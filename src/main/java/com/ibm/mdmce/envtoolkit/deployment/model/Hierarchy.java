@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -36,16 +38,12 @@ public class Hierarchy extends BasicEntity {
     private Map<String, String> scriptTypeToName = new TreeMap<>();
     private boolean leavesOnly = false;
 
-    private static class Singleton {
-        private static final Hierarchy INSTANCE = new Hierarchy();
-    }
-
     /**
-     * Retrieve the static definition of a Hierarchy (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Hierarchy (ie. its columns and type information).
      * @return Hierarchy
      */
     public static Hierarchy getInstance() {
-        return Hierarchy.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Hierarchy.class, Hierarchy::new);
     }
 
     private Hierarchy() {
@@ -92,6 +90,21 @@ public class Hierarchy extends BasicEntity {
         return (T) hierarchy;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case SPEC:
+                return toReferences(getSpecName());
+            case ACG:
+                return toReferences(getAcg());
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -104,22 +117,22 @@ public class Hierarchy extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <HIERARCHY>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("UseInheritance", "" + isInheritance()));
-        outFile.write(getNodeXML("Spec", getSpecName()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "HIERARCHY");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "UseInheritance", "" + isInheritance());
+        outputNodeXML(outFile, "Spec", getSpecName());
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG)) {
-            outFile.write("      <AccessControlGroup isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "AccessControlGroup", "isDefault", "true");
         } else {
-            outFile.write(getNodeXML("AccessControlGroup", getAcg()));
+            outputNodeXML(outFile, "AccessControlGroup", getAcg());
         }
-        outFile.write(getNodeXML("PathAttribute", getPathAttribute()));
-        outFile.write(getNodeXML("DisplayAttribute", getDisplayAttribute()));
-        outFile.write(getNodeXML("UserDefinedAttributes", ""));
-        outFile.write(getNodeXML("AttributeGroup", getUserDefinedCoreAttrGroup()));
-        outFile.write(getNodeXML("ItemsOnlyOnLeaves", "" + isLeavesOnly()));
+        outputNodeXML(outFile, "PathAttribute", getPathAttribute());
+        outputNodeXML(outFile, "DisplayAttribute", getDisplayAttribute());
+        outputNodeXML(outFile, "UserDefinedAttributes", "");
+        outputNodeXML(outFile, "AttributeGroup", getUserDefinedCoreAttrGroup());
+        outputNodeXML(outFile, "ItemsOnlyOnLeaves", "" + isLeavesOnly());
 
         Map<String, String> hmScripts = getScriptTypeToName();
         for (Map.Entry<String, String> entry : hmScripts.entrySet()) {
@@ -140,9 +153,9 @@ public class Hierarchy extends BasicEntity {
                     sTagXML = "PostProcessingScript";
                     break;
             }
-            outFile.write("      <" + sTagXML + "><![CDATA[" + sScriptName + "]]></" + sTagXML + ">\n");
+            outFile.cdataElement("      ", sTagXML, sScriptName);
         }
-        outFile.write("   </HIERARCHY>\n");
+        outFile.endElement("   ", "HIERARCHY");
     }
 
     /**
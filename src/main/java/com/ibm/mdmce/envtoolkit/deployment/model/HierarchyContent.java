@@ -4,6 +4,8 @@ SPDX-License-Identifier: Apache-2.0
 */
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+
 import java.util.List;
 
 /**
@@ -11,16 +13,12 @@ import java.util.List;
  */
 public class HierarchyContent extends ContainerContent {
 
-    private static class Singleton {
-        private static final HierarchyContent INSTANCE = new HierarchyContent();
-    }
-
     /**
-     * Retrieve the static definition of HierarchyContent (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of HierarchyContent (ie. its columns and type information).
      * @return HierarchyContent
      */
     public static HierarchyContent getInstance() {
-        return HierarchyContent.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(HierarchyContent.class, HierarchyContent::new);
     }
 
     private HierarchyContent() {
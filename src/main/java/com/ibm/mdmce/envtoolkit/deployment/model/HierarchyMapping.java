@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -25,16 +27,12 @@ public class HierarchyMapping extends BasicEntity {
 
     public Map<String, List<String>> sourceToDestinationCategories = new HashMap<>();
 
-    private static class Singleton {
-        private static final HierarchyMapping INSTANCE = new HierarchyMapping();
-    }
-
     /**
-     * Retrieve the static definition of a HierarchyMapping (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a HierarchyMapping (ie. its columns and type information).
      * @return HierarchyMapping
      */
     public static HierarchyMapping getInstance() {
-        return HierarchyMapping.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(HierarchyMapping.class, HierarchyMapping::new);
     }
 
     private HierarchyMapping() {
@@ -57,7 +55,7 @@ public class HierarchyMapping extends BasicEntity {
         String src = getFieldValue(SRC_HIERARCHY, aFields);
         String dst = getFieldValue(DST_HIERARCHY, aFields);
         String sMappingKey = src + "::" + dst;
-        HierarchyMapping hierarchyMap = (HierarchyMapping) BasicEntityHandler.getFromCache(sMappingKey, HierarchyMapping.class.getName(), false, false);
+        HierarchyMapping hierarchyMap = BasicEntityHandler.getFromCache(sMappingKey, HierarchyMapping.class, false, false);
         if (hierarchyMap == null) {
             hierarchyMap = new HierarchyMapping();
             hierarchyMap.sourceHierarchy = src;
@@ -83,21 +81,21 @@ public class HierarchyMapping extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <HIERARCHY_MAPS>\n");
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("SourceHierarchyTree", getSourceHierarchy()));
-        outFile.write(getNodeXML("DestinationHierarchyTree", getDestinationHierarchy()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "HIERARCHY_MAPS");
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "SourceHierarchyTree", getSourceHierarchy());
+        outputNodeXML(outFile, "DestinationHierarchyTree", getDestinationHierarchy());
         for (Map.Entry<String, List<String>> entry : getSourceToDestinationCategories().entrySet()) {
             String sSrcCategoryPath = entry.getKey();
-            outFile.write("      <SourceHierarchy name=\"" + sSrcCategoryPath + "\">\n");
+            outFile.startElement("      ", "SourceHierarchy", "name", sSrcCategoryPath);
             List<String> alDestinations = entry.getValue();
             for (String sDstCategoryPath : alDestinations) {
-                outFile.write("        <DestinationHierarchy>" + sDstCategoryPath + "</DestinationHierarchy>\n");
+                outFile.element("        ", "DestinationHierarchy", sDstCategoryPath);
             }
-            outFile.write("      </SourceHierarchy>\n");
+            outFile.endElement("      ", "SourceHierarchy");
         }
-        outFile.write("   </HIERARCHY_MAPS>\n");
+        outFile.endElement("   ", "HIERARCHY_MAPS");
     }
 
     /**
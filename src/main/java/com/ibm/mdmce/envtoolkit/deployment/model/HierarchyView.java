@@ -5,10 +5,11 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.List;
 
 /**
@@ -19,16 +20,12 @@ import java.util.List;
  */
 public class HierarchyView extends View {
 
-    private static class Singleton {
-        private static final HierarchyView INSTANCE = new HierarchyView();
-    }
-
     /**
-     * Retrieve the static definition of a HierarchyView (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a HierarchyView (ie. its columns and type information).
      * @return HierarchyView
      */
     public static HierarchyView getInstance() {
-        return HierarchyView.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(HierarchyView.class, HierarchyView::new);
     }
 
     private HierarchyView() {
@@ -49,7 +46,7 @@ public class HierarchyView extends View {
 
             String sHierViewName = getFieldValue(VIEW_NAME, aFields);
             String sContainerName = getFieldValue(CONTAINER_NAME, aFields);
-            HierarchyView view = (HierarchyView) BasicEntityHandler.getFromCache(sContainerName + "::" + sHierViewName, HierarchyView.class.getName(), false, false);
+            HierarchyView view = findView(sContainerName, sHierViewName, HierarchyView.class);
             if (view == null) {
                 view = new HierarchyView();
                 view.containerType = "CATEGORY_TREE";
@@ -88,18 +85,18 @@ public class HierarchyView extends View {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <ContainerView name=\"" + getViewName() + "\">\n");
-        outFile.write(getNodeXML("ContainerName", getContainerName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Default", "" + isDefaultView()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "ContainerView", "name", getViewName());
+        outputNodeXML(outFile, "ContainerName", getContainerName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Default", "" + isDefaultView());
         if (!singleEdit.isEmpty()) {
             outputViewComponent("CategoryEdit", singleEdit, singleEditTabOrder, singleEditTabs, true, outFile);
         }
         if (!multiEdit.isEmpty()) {
             outputViewComponent("CategoryBulkEdit", multiEdit, multiEditTabOrder, multiEditTabs, true, outFile);
         }
-        outFile.write("   </ContainerView>\n");
+        outFile.endElement("   ", "ContainerView");
     }
 
 }
@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -52,16 +54,12 @@ public class Import extends BasicEntity {
     private String inputSpec;
     private String paramsPath = "params/None";
 
-    private static class Singleton {
-        private static final Import INSTANCE = new Import();
-    }
-
     /**
-     * Retrieve the static definition of an ImportFeed (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an ImportFeed (ie. its columns and type information).
      * @return ImportFeed
      */
     public static Import getInstance() {
-        return Import.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Import.class, Import::new);
     }
 
     private Import() {
@@ -113,7 +111,7 @@ public class Import extends BasicEntity {
         feed.approvalUser = getFieldValue(APPROVAL_USER, aFields);
         feed.paramsName = getFieldValue(PARAMS_NAME, aFields);
         String sScriptName = feed.scriptPathPrefix + feed.script;
-        Script docScript = (Script) BasicEntityHandler.getFromCache(sScriptName, Script.class.getName(), false, false);
+        Script docScript = BasicEntityHandler.getFromCache(sScriptName, Script.class, false, false);
         if (docScript != null) {
             feed.inputSpec = docScript.getInputSpec();
             if (!feed.inputSpec.equals(""))
@@ -124,6 +122,23 @@ public class Import extends BasicEntity {
         return (T) feed;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case CONTAINER:
+                return toReferences(getCatalog());
+            case HIERARCHY:
+                return toReferences(getHierarchy());
+            case ACG:
+                return toReferences(getAcg());
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -136,44 +151,44 @@ public class Import extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         String sFeedType = getType();
 
-        outFile.write("   <FEEDS>\n");
+        outFile.startElement("   ", "FEEDS");
         if (sFeedType.equals("IMG")) {
             // TODO: Support binary feed options
-            outFile.write(getNodeXML("ZIPKeepPathFeed", "false"));
-            outFile.write(getNodeXML("ZIPDocStorePath", "/tmp/"));
-            outFile.write(getNodeXML("ZIPFileAction", "N"));
+            outputNodeXML(outFile, "ZIPKeepPathFeed", "false");
+            outputNodeXML(outFile, "ZIPDocStorePath", "/tmp/");
+            outputNodeXML(outFile, "ZIPFileAction", "N");
         } else {
-            outFile.write(getNodeXML("DocStorePath", getParamsPath()));
+            outputNodeXML(outFile, "DocStorePath", getParamsPath());
         }
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
         if (isCollaborationArea()) {
-            outFile.write(getNodeXML("CollabArea", "true"));
-            outFile.write(getNodeXML("WorkFlowStepPath", getWorkflowStep()));
+            outputNodeXML(outFile, "CollabArea", "true");
+            outputNodeXML(outFile, "WorkFlowStepPath", getWorkflowStep());
         }
         if (sFeedType.equals("CTR")) {
-            outFile.write(getNodeXML("CatTreeName", getHierarchy()));
+            outputNodeXML(outFile, "CatTreeName", getHierarchy());
         } else if (sFeedType.equals("ITM")) {
-            outFile.write(getNodeXML("SpecName", getFileSpec()));
-            outFile.write(getNodeXML("CatalogName", getCatalog()));
-            outFile.write(getNodeXML("SpecMap", getSpecMap()));
+            outputNodeXML(outFile, "SpecName", getFileSpec());
+            outputNodeXML(outFile, "CatalogName", getCatalog());
+            outputNodeXML(outFile, "SpecMap", getSpecMap());
         }
-        outFile.write(getNodeXML("FeedType", sFeedType));
-        outFile.write(getNodeXML("Semantic", getSemantic()));
-        outFile.write(getNodeXML("CharSet", getCharset()));
+        outputNodeXML(outFile, "FeedType", sFeedType);
+        outputNodeXML(outFile, "Semantic", getSemantic());
+        outputNodeXML(outFile, "CharSet", getCharset());
         if (!sFeedType.equals("IMG")) {
-            outFile.write(getNodeXML("ScriptPath", getScriptPathPrefix() + getScript()));
+            outputNodeXML(outFile, "ScriptPath", getScriptPathPrefix() + getScript());
         }
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG))
-            outFile.write("      <AccessControl isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "AccessControl", "isDefault", "true");
         else
-            outFile.write(getNodeXML("AccessControl", getAcg()));
-        outFile.write(getNodeXML("DataSource", getDataSource()));
-        outFile.write("   </FEEDS>\n");
+            outputNodeXML(outFile, "AccessControl", getAcg());
+        outputNodeXML(outFile, "DataSource", getDataSource());
+        outFile.endElement("   ", "FEEDS");
     }
 
     /**
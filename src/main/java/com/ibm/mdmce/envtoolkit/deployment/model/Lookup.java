@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -23,16 +25,12 @@ public class Lookup extends BasicEntity {
     private String specName;
     private String displayAttribute;
 
-    private static class Singleton {
-        private static final Lookup INSTANCE = new Lookup();
-    }
-
     /**
-     * Retrieve the static definition of a LookupTable (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a LookupTable (ie. its columns and type information).
      * @return LookupTable
      */
     public static Lookup getInstance() {
-        return Lookup.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Lookup.class, Lookup::new);
     }
 
     private Lookup() {
@@ -53,11 +51,21 @@ public class Lookup extends BasicEntity {
         Lookup lt = new Lookup();
         lt.name = getFieldValue(NAME, aFields);
         lt.specName = getFieldValue(SPEC_NAME, aFields);
-        Spec spec = (Spec) BasicEntityHandler.getFromCache(lt.specName, Spec.class.getName());
+        Spec spec = BasicEntityHandler.getFromCache(lt.specName, Spec.class);
         lt.displayAttribute = spec.getPrimaryKeyPath();
         return (T) lt;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.SPEC)
+            return toReferences(getSpecName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -70,17 +78,17 @@ public class Lookup extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <LOOKUP_TABLE>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("UsesInheritance", "false"));
-        outFile.write(getNodeXML("Spec", getSpecName()));
-        outFile.write("      <ACG isDefault=\"true\" />\n");
-        outFile.write(getNodeXML("PrimaryCategoryTree", "-1"));
-        outFile.write(getNodeXML("SecondaryCategoryTrees", ""));
-        outFile.write(getNodeXML("DisplayAttribute", getDisplayAttribute()));
-        outFile.write("   </LOOKUP_TABLE>\n");
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "LOOKUP_TABLE");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "UsesInheritance", "false");
+        outputNodeXML(outFile, "Spec", getSpecName());
+        outFile.emptyElement("      ", "ACG", "isDefault", "true");
+        outputNodeXML(outFile, "PrimaryCategoryTree", "-1");
+        outputNodeXML(outFile, "SecondaryCategoryTrees", "");
+        outputNodeXML(outFile, "DisplayAttribute", getDisplayAttribute());
+        outFile.endElement("   ", "LOOKUP_TABLE");
     }
 
     /**
@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.File;
 import java.io.IOException;
@@ -23,16 +25,12 @@ public class LookupTableContent extends BasicEntity {
     private String fileName;
     private List<String> attributePaths = new ArrayList<>();
 
-    private static class Singleton {
-        private static final LookupTableContent INSTANCE = new LookupTableContent();
-    }
-
     /**
-     * Retrieve the static definition of LookupTableData (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of LookupTableData (ie. its columns and type information).
      * @return LookupTableData
      */
     public static LookupTableContent getInstance() {
-        return LookupTableContent.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(LookupTableContent.class, LookupTableContent::new);
     }
 
     private LookupTableContent() {
@@ -74,13 +72,13 @@ public class LookupTableContent extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <Container>\n");
-        outFile.write(getNodeXML("ContainerType", "CATALOG"));
-        outFile.write(getNodeXML("ContainerName", getTableName()));
-        outFile.write(getNodeXML("EntryDataFilePath", getTransformedFileName().replace(File.separator, "/")));
-        outFile.write(getNodeXML("Encoding", "UTF-8"));
-        outFile.write("   </Container>\n");
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "Container");
+        outputNodeXML(outFile, "ContainerType", "CATALOG");
+        outputNodeXML(outFile, "ContainerName", getTableName());
+        outputNodeXML(outFile, "EntryDataFilePath", getTransformedFileName().replace(File.separator, "/"));
+        outputNodeXML(outFile, "Encoding", "UTF-8");
+        outFile.endElement("   ", "Container");
     }
 
     /**
@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -34,16 +36,12 @@ public class Organization extends BasicEntity {
 
     private Map<String, String> scriptTypeToName = new HashMap<>();
 
-    private static class Singleton {
-        private static final Organization INSTANCE = new Organization();
-    }
-
     /**
-     * Retrieve the static definition of an Organization (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an Organization (ie. its columns and type information).
      * @return Organization
      */
     public static Organization getInstance() {
-        return Organization.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Organization.class, Organization::new);
     }
 
     private Organization() {
@@ -87,6 +85,21 @@ public class Organization extends BasicEntity {
         return (T) org;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case SPEC:
+                return toReferences(getSpecName());
+            case ACG:
+                return toReferences(getAcg());
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -99,22 +112,22 @@ public class Organization extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
-        outFile.write("   <ORG_HIERARCHY>\n");
+        outFile.startElement("   ", "ORG_HIERARCHY");
 
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Spec", getSpecName()));
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Spec", getSpecName());
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG))
-            outFile.write("      <AccessControlGroup isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "AccessControlGroup", "isDefault", "true");
         else
-            outFile.write(getNodeXML("AccessControlGroup", getAcg()));
-        outFile.write(getNodeXML("PathAttribute", getPathAttribute()));
-        outFile.write(getNodeXML("DisplayAttribute", getDisplayAttribute()));
-        outFile.write(getNodeXML("UserDefinedAttributes", ""));
-        outFile.write(getNodeXML("AttributeGroup", getUserDefinedCoreAttrGroup()));
-        outFile.write(getNodeXML("ItemsOnlyOnLeaves", "" + isLeavesOnly()));
+            outputNodeXML(outFile, "AccessControlGroup", getAcg());
+        outputNodeXML(outFile, "PathAttribute", getPathAttribute());
+        outputNodeXML(outFile, "DisplayAttribute", getDisplayAttribute());
+        outputNodeXML(outFile, "UserDefinedAttributes", "");
+        outputNodeXML(outFile, "AttributeGroup", getUserDefinedCoreAttrGroup());
+        outputNodeXML(outFile, "ItemsOnlyOnLeaves", "" + isLeavesOnly());
 
         Map<String, String> hmScripts = getScriptTypeToName();
         for (Map.Entry<String, String> entry : hmScripts.entrySet()) {
@@ -135,10 +148,10 @@ public class Organization extends BasicEntity {
                     sTagXML = "PostProcessingScript";
                     break;
             }
-            outFile.write("      <" + sTagXML + "><![CDATA[" + sScriptName + "]]></" + sTagXML + ">\n");
+            outFile.cdataElement("      ", sTagXML, sScriptName);
         }
 
-        outFile.write("   </ORG_HIERARCHY>\n");
+        outFile.endElement("   ", "ORG_HIERARCHY");
 
     }
 
@@ -4,6 +4,8 @@ SPDX-License-Identifier: Apache-2.0
 */
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+
 import java.util.List;
 
 /**
@@ -11,16 +13,12 @@ import java.util.List;
  */
 public class OrganizationContent extends ContainerContent {
 
-    private static class Singleton {
-        private static final OrganizationContent INSTANCE = new OrganizationContent();
-    }
-
     /**
-     * Retrieve the static definition of an AccessControlGroup (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an AccessControlGroup (ie. its columns and type information).
      * @return AccessControlGroup
      */
     public static OrganizationContent getInstance() {
-        return OrganizationContent.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(OrganizationContent.class, OrganizationContent::new);
     }
 
     private OrganizationContent() {
@@ -0,0 +1,39 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment.model;
+
+/**
+ * The kinds of reference from one entity to another by which entities are indexed in the entity cache.
+ *
+ * @see BasicEntity#getReferences(ReferenceType)
+ */
+public enum ReferenceType {
+
+    /**
+     * The catalog, hierarchy or other container the entity belongs to or operates on.
+     */
+    CONTAINER,
+
+    /**
+     * The spec the entity is defined by.
+     */
+    SPEC,
+
+    /**
+     * The access control group that secures the entity.
+     */
+    ACG,
+
+    /**
+     * The workflow the entity uses or belongs to.
+     */
+    WORKFLOW,
+
+    /**
+     * The hierarchies the entity uses.
+     */
+    HIERARCHY
+
+}
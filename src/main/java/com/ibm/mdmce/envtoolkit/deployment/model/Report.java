@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -24,16 +26,12 @@ public class Report extends BasicEntity {
     private String script;
     private String distribution;
 
-    private static class Singleton {
-        private static final Report INSTANCE = new Report();
-    }
-
     /**
-     * Retrieve the static definition of a Report (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Report (ie. its columns and type information).
      * @return Report
      */
     public static Report getInstance() {
-        return Report.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Report.class, Report::new);
     }
 
     private Report() {
@@ -71,16 +69,16 @@ public class Report extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <REPORTS>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Type", getScript()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "REPORTS");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Type", getScript());
         if (getDistribution().equals(Distribution.DEFAULT_DISTRIBUTION))
-            outFile.write(getNodeXML("DistributionName", "Default"));
+            outputNodeXML(outFile, "DistributionName", "Default");
         else
-            outFile.write(getNodeXML("DistributionName", getDistribution()));
-        outFile.write("   </REPORTS>\n");
+            outputNodeXML(outFile, "DistributionName", getDistribution());
+        outFile.endElement("   ", "REPORTS");
     }
 
     /**
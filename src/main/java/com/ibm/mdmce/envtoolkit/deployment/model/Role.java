@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.File;
 import java.io.IOException;
@@ -22,16 +24,12 @@ public class Role extends BasicEntity {
     private String name;
     private String description;
 
-    private static class Singleton {
-        private static final Role INSTANCE = new Role();
-    }
-
     /**
-     * Retrieve the static definition of a Role (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Role (ie. its columns and type information).
      * @return Role
      */
     public static Role getInstance() {
-        return Role.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Role.class, Role::new);
     }
 
     private Role() {
@@ -67,44 +65,44 @@ public class Role extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         String sRoleName = getName();
 
         String sEscapedRoleName = BasicEntityHandler.escapeForFilename(sRoleName);
         String sRoleFilePath = sOutputPath + File.separator + "ROLES" + File.separator + "ROLE_" + sEscapedRoleName + ".xml";
-        Writer outRole = BasicEntityHandler.getNewWriter(sRoleFilePath);
-
-        outRole.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
-        outRole.write("<Roles version=\"" + handler.getVersion() + "\">\n");
-        outRole.write("   <ROLES>\n");
-        outRole.write(getNodeXML("Name", sRoleName));
-        outRole.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outRole.write(getNodeXML("Description", getDescription()));
-
-        RoleToACG rm = (RoleToACG) BasicEntityHandler.getFromCache(sRoleName, RoleToACG.class.getName(), false, false);
-
-        if (rm != null) {
-            Map<String, List<String>> hmACGs = rm.getAcgMappings();
-            for (Map.Entry<String, List<String>> entry : hmACGs.entrySet()) {
-                String sACG = entry.getKey();
-                List<String> aPrivs = entry.getValue();
-                if (sACG.equals(ACG.DEFAULT_ACG))
-                    outRole.write("      <AccessControlGroup isDefault=\"true\">\n");
-                else
-                    outRole.write("      <AccessControlGroup name=\"" + BasicEntityHandler.escapeForXML(sACG)  + "\">\n");
-                for (String priv : aPrivs) {
-                    if (!priv.startsWith("PAGE_OBJ_") || sACG.equals(ACG.DEFAULT_ACG))
-                        outRole.write("         <Privilege><![CDATA[" + priv + "]]></Privilege>\n");
+        try (XMLWriter outRole = BasicEntityHandler.getNewWriter(sRoleFilePath)) {
+
+            outRole.declaration();
+            outRole.startElement("", "Roles", "version", handler.getVersion());
+            outRole.startElement("   ", "ROLES");
+            outputNodeXML(outRole, "Name", sRoleName);
+            outputNodeXML(outRole, "Action", "CREATE_OR_UPDATE");
+            outputNodeXML(outRole, "Description", getDescription());
+
+            RoleToACG rm = BasicEntityHandler.getFromCache(sRoleName, RoleToACG.class, false, false);
+
+            if (rm != null) {
+                Map<String, List<String>> hmACGs = rm.getAcgMappings();
+                for (Map.Entry<String, List<String>> entry : hmACGs.entrySet()) {
+                    String sACG = entry.getKey();
+                    List<String> aPrivs = entry.getValue();
+                    if (sACG.equals(ACG.DEFAULT_ACG))
+                        outRole.startElement("      ", "AccessControlGroup", "isDefault", "true");
+                    else
+                        outRole.startElement("      ", "AccessControlGroup", "name", sACG);
+                    for (String priv : aPrivs) {
+                        if (!priv.startsWith("PAGE_OBJ_") || sACG.equals(ACG.DEFAULT_ACG))
+                            outRole.cdataElement("         ", "Privilege", priv);
+                    }
+                    outRole.endElement("      ", "AccessControlGroup");
                 }
-                outRole.write("      </AccessControlGroup>\n");
             }
-        }
 
-        outRole.write("      <CompanyCode>" + sCompanyCode + "</CompanyCode>\n");
-        outRole.write("   </ROLES>\n");
-        outRole.write("</Roles>\n");
-        outRole.flush();
+            outRole.element("      ", "CompanyCode", sCompanyCode);
+            outRole.endElement("   ", "ROLES");
+            outRole.endElement("", "Roles");
+        }
 
         handler.addGeneratedFileXML(sRoleFilePath);
 
@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -18,16 +20,12 @@ public class RoleToACG extends BasicEntity {
     private String role = "";
     private HashMap<String, List<String>> acgMappings = new HashMap<>();
 
-    private static class Singleton {
-        private static final RoleToACG INSTANCE = new RoleToACG();
-    }
-
     /**
-     * Retrieve the static definition of a RoleMapping (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a RoleMapping (ie. its columns and type information).
      * @return RoleMapping
      */
     public static RoleToACG getInstance() {
-        return RoleToACG.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(RoleToACG.class, RoleToACG::new);
     }
 
     private RoleToACG() {
@@ -64,7 +62,7 @@ public class RoleToACG extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
         // do nothing...
     }
 
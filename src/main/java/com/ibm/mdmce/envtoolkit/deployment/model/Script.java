@@ -5,9 +5,11 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
 import com.ibm.mdmce.envtoolkit.deployment.DocumentHandler;
 import com.ibm.mdmce.envtoolkit.deployment.EnvironmentHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.*;
 import java.util.*;
@@ -85,16 +87,12 @@ public class Script extends BasicEntity {
     private boolean script = true;
     private boolean documentation = false;
 
-    private static class Singleton {
-        private static final Script INSTANCE = new Script();
-    }
-
     /**
-     * Retrieve the static definition of a Document (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Document (ie. its columns and type information).
      * @return Document
      */
     public static Script getInstance() {
-        return Script.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Script.class, Script::new);
     }
 
     private Script() {
@@ -174,6 +172,16 @@ public class Script extends BasicEntity {
         return (T) doc;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.CONTAINER)
+            return toReferences(getContainerName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -186,33 +194,35 @@ public class Script extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
         String inputDirectory = "";
         if (handler instanceof DocumentHandler) {
             DocumentHandler documentHandler = (DocumentHandler) handler;
             inputDirectory = documentHandler.getInputDirectory();
         }
+        if (getType().equals("INPUT_PARAM"))
+            handler.addInputFile(new File(inputDirectory + File.separator + getPathLocal()));
         if (isScript()) {
             outputDocNodeXML(inputDirectory, outFile, "script");
         }
         outputDocNodeXML(inputDirectory, outFile, "any");
     }
 
-    private void outputDocNodeXML(String inputDirectory, Writer outFile, String sDocType) throws IOException {
+    private void outputDocNodeXML(String inputDirectory, XMLWriter outFile, String sDocType) throws IOException {
 
-        outFile.write("   <Doc type=\"" + sDocType + "\">\n");
-        outFile.write("      <LocalPath>" + getPathLocal() + "</LocalPath>\n");
-        outFile.write("      <Action>CREATE_OR_UPDATE</Action>\n");
+        outFile.startElement("   ", "Doc", "type", sDocType);
+        outFile.element("      ", "LocalPath", getPathLocal());
+        outFile.rawElement("      ", "Action", "CREATE_OR_UPDATE");
         if (isDocumentation()) {
-            outFile.write("      <StorePath>/public_html/" + getPathRemote() + "</StorePath>\n");
+            outFile.element("      ", "StorePath", "/public_html/" + getPathRemote());
         } else {
-            outFile.write("      <StorePath>" + getPathRemote() + "</StorePath>\n");
+            outFile.element("      ", "StorePath", getPathRemote());
         }
 
-        StringBuilder sAttribs = new StringBuilder();
+        List<String[]> alAttribs = new ArrayList<>();
 
         if (getType().equals("INPUT_PARAM")) {
-            sAttribs.append("         <Attrib name=\"").append(SCRIPT_TYPE_TO_PATH.get("INPUT_PARAM")).append(getInputSpec()).append("/").append(getName()).append("\" value=\"\"/>\n");
+            alAttribs.add(new String[] { SCRIPT_TYPE_TO_PATH.get("INPUT_PARAM") + getInputSpec() + "/" + getName(), "" });
             EnvironmentHandler.logger.info(" . . . Attempting to read parameters from: " + inputDirectory + File.separator + getPathLocal());
             File fileParams = new File(inputDirectory + File.separator + getPathLocal());
             if (!fileParams.exists()) {
@@ -228,57 +238,60 @@ public class Script extends BasicEntity {
                     String[] aParamTokens = sLine.split("\\Q|\\E");
                     String sAttrPath = aParamTokens[0];
                     String sAttrValue = aParamTokens[1];
-                    sAttribs.append("         <Attrib name=\"").append(sAttrPath).append("\" value=\"").append(sAttrValue).append("\"/>\n");
+                    alAttribs.add(new String[] { sAttrPath, sAttrValue });
                 }
                 rdrParams.close();
             }
         } else if (isAspJspLike()) {
-            sAttribs.append("         <Attrib name=\"jsplike\" value=\"true\"/>\n" + "         <Attrib name=\"ATTR_JSPLIKE\" value=\"true\"/>\n");
+            alAttribs.add(new String[] { "jsplike", "true" });
+            alAttribs.add(new String[] { "ATTR_JSPLIKE", "true" });
         } else if (!getType().equals("DOCUMENT")){
-            sAttribs.append("         <Attrib name=\"ATTR_JSPLIKE\" value=\"false\"/>\n");
+            alAttribs.add(new String[] { "ATTR_JSPLIKE", "false" });
         }
         if (!getFileDestSpec().equals("")) {
-            sAttribs.append("         <Attrib name=\"ATTR_SPEC_NAME\" value=\"").append(getFileDestSpec()).append("\"/>\n");
+            alAttribs.add(new String[] { "ATTR_SPEC_NAME", getFileDestSpec() });
         }
         if (!getInputSpec().equals("")) {
-            sAttribs.append("         <Attrib name=\"ATTR_SCRIPT_INPUT_SPEC_NAME\" value=\"").append(getInputSpec()).append("\"/>\n");
+            alAttribs.add(new String[] { "ATTR_SCRIPT_INPUT_SPEC_NAME", getInputSpec() });
         }
         if (!getCharset().equals("")) {
-            sAttribs.append("         <Attrib name=\"CHARSET\" value=\"").append(getCharset()).append("\"/>\n");
+            alAttribs.add(new String[] { "CHARSET", getCharset() });
         }
         if (!getType().equals("DOCUMENT")) {
-            sAttribs.append("         <Attrib name=\"COMPRESSED\" value=\"true\"/>\n");
-            sAttribs.append("         <Attrib name=\"GENERATED\" value=\"\"/>\n");
+            alAttribs.add(new String[] { "COMPRESSED", "true" });
+            alAttribs.add(new String[] { "GENERATED", "" });
         }
 
         // Handle object-related scripts...
         if (getType().equals("CTG")) {
             if (getContainerName().equals("$ALL")) {
-                sAttribs.append("         <Attrib name=\"CATALOG_ID\" value=\"-2\"/>\n");
+                alAttribs.add(new String[] { "CATALOG_ID", "-2" });
             } else {
-                sAttribs.append("         <Attrib name=\"CATALOG_NAME\" value=\"").append(getContainerName()).append("\"/>\n");
+                alAttribs.add(new String[] { "CATALOG_NAME", getContainerName() });
             }
         } else if (getType().equals("CTR")) {
             if (getContainerName().equals("$ALL")) {
-                sAttribs.append("         <Attrib name=\"CATEGORY_TREE_ID\" value=\"-2\"/>\n");
+                alAttribs.add(new String[] { "CATEGORY_TREE_ID", "-2" });
             } else {
-                sAttribs.append("         <Attrib name=\"CATEGORY_TREE_NAME\" value=\"").append(getContainerName()).append("\"/>\n");
+                alAttribs.add(new String[] { "CATEGORY_TREE_NAME", getContainerName() });
             }
         } else if (getType().startsWith("ENTRY_")) {
-            sAttribs.append("         <Attrib name=\"CONTAINER_TYPE\" value=\"").append(getContainerType()).append("\"/>\n");
+            alAttribs.add(new String[] { "CONTAINER_TYPE", getContainerType() });
             if (getContainerName().equals("$ALL")) {
-                sAttribs.append("         <Attrib name=\"CONTAINER_ID\" value=\"-2\"/>\n");
+                alAttribs.add(new String[] { "CONTAINER_ID", "-2" });
             } else {
-                sAttribs.append("         <Attrib name=\"CONTAINER_NAME\" value=\"").append(getContainerName()).append("\"/>\n");
+                alAttribs.add(new String[] { "CONTAINER_NAME", getContainerName() });
             }
         }
 
-        if (!sAttribs.toString().equals("")) {
-            outFile.write("      <Attribs>\n");
-            outFile.write(sAttribs.toString());
-            outFile.write("      </Attribs>\n");
+        if (!alAttribs.isEmpty()) {
+            outFile.startElement("      ", "Attribs");
+            for (String[] aAttrib : alAttribs) {
+                outFile.valueAttrib("         ", aAttrib[0], aAttrib[1]);
+            }
+            outFile.endElement("      ", "Attribs");
         }
-        outFile.write("   </Doc>\n");
+        outFile.endElement("   ", "Doc");
 
     }
 
@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -27,16 +29,12 @@ public class SearchTemplate extends BasicEntity {
     private String stepName;
     private boolean newUI = false;
 
-    private static class Singleton {
-        private static final SearchTemplate INSTANCE = new SearchTemplate();
-    }
-
     /**
-     * Retrieve the static definition of a SearchTemplate (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a SearchTemplate (ie. its columns and type information).
      * @return SearchTemplate
      */
     public static SearchTemplate getInstance() {
-        return SearchTemplate.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(SearchTemplate.class, SearchTemplate::new);
     }
 
     private SearchTemplate() {
@@ -64,6 +62,16 @@ public class SearchTemplate extends BasicEntity {
         return (T) st;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.CONTAINER)
+            return toReferences(getContainerName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -76,20 +84,20 @@ public class SearchTemplate extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <SEARCH_TEMPLATES>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("ContainerName", getContainerName()));
-        outFile.write(getNodeXML("StepName", getStepName()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "SEARCH_TEMPLATES");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "ContainerName", getContainerName());
+        outputNodeXML(outFile, "StepName", getStepName());
         if (handler.getVersion().startsWith("9")) {
             String sNewUI = "NO";
             if (isNewUI()) {
                 sNewUI = "YES";
             }
-            outFile.write(getNodeXML("IsNewUI", sNewUI));
+            outputNodeXML(outFile, "IsNewUI", sNewUI);
         }
-        outFile.write("   </SEARCH_TEMPLATES>\n");
+        outFile.endElement("   ", "SEARCH_TEMPLATES");
     }
 
     /**
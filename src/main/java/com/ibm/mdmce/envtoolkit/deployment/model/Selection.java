@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -33,16 +35,12 @@ public class Selection extends BasicEntity {
     private List<String> categoryPaths = new ArrayList<>();
     private String rule;
 
-    private static class Singleton {
-        private static final Selection INSTANCE = new Selection();
-    }
-
     /**
-     * Retrieve the static definition of a Selection (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Selection (ie. its columns and type information).
      * @return Selection
      */
     public static Selection getInstance() {
-        return Selection.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Selection.class, Selection::new);
     }
 
     private Selection() {
@@ -76,6 +74,23 @@ public class Selection extends BasicEntity {
         return (T) sel;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        switch (type) {
+            case CONTAINER:
+                return toReferences(getCatalog());
+            case HIERARCHY:
+                return toReferences(getHierarchy());
+            case ACG:
+                return toReferences(getAcg());
+            default:
+                return super.getReferences(type);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -88,39 +103,39 @@ public class Selection extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         String sSelectionType = getType();
 
-        outFile.write("   <SELECTION>\n");
-        outFile.write(getNodeXML("SelectionType", sSelectionType));
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
+        outFile.startElement("   ", "SELECTION");
+        outputNodeXML(outFile, "SelectionType", sSelectionType);
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG))
-            outFile.write("      <Acg isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "Acg", "isDefault", "true");
         else
-            outFile.write(getNodeXML("Acg", getAcg()));
-        outFile.write(getNodeXML("Catalog", getCatalog()));
-        outFile.write(getNodeXML("CatalogVersion", "999999999"));
-        outFile.write(getNodeXML("Hierarchy", getHierarchy()));
+            outputNodeXML(outFile, "Acg", getAcg());
+        outputNodeXML(outFile, "Catalog", getCatalog());
+        outputNodeXML(outFile, "CatalogVersion", "999999999");
+        outputNodeXML(outFile, "Hierarchy", getHierarchy());
 
         if (sSelectionType.equals("S")) {
 
-            outFile.write("      <CategoryPaths>\n");
+            outFile.startElement("      ", "CategoryPaths");
             for (String path : getCategoryPaths()) {
-                outFile.write("         <CategoryPath><![CDATA[" + path + "]]></CategoryPath>\n");
+                outFile.cdataElement("         ", "CategoryPath", path);
             }
-            outFile.write("      </CategoryPaths>\n");
+            outFile.endElement("      ", "CategoryPaths");
 
             // TODO: Support static item selections
-            outFile.write("      <Items />\n");
+            outFile.emptyElement("      ", "Items");
             // TODO: Support including unassigned items
-            outFile.write("      <IncludeUnassigned>false</IncludeUnassigned>\n");
+            outFile.rawElement("      ", "IncludeUnassigned", "false");
         } else {
-            outFile.write(getNodeXML("RuleString", getRule()));
+            outputNodeXML(outFile, "RuleString", getRule());
         }
 
-        outFile.write("   </SELECTION>\n");
+        outFile.endElement("   ", "SELECTION");
 
     }
 
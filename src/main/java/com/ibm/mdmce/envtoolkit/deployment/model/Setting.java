@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -26,16 +28,12 @@ public class Setting extends BasicEntity {
     private String settingInstance;
     private String settingValue;
 
-    private static class Singleton {
-        private static final Setting INSTANCE = new Setting();
-    }
-
     /**
-     * Retrieve the static definition of an Setting (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an Setting (ie. its columns and type information).
      * @return Setting
      */
     public static Setting getInstance() {
-        return Setting.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Setting.class, Setting::new);
     }
 
     private Setting() {
@@ -79,20 +77,20 @@ public class Setting extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("<MY_SETTINGS>\n");
-		outFile.write("     <SETTING>\n");        
-        outFile.write(getNodeXML("Username", getUsername()));
-        outFile.write(getNodeXML("Setting", getSettingName()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("", "MY_SETTINGS");
+		outFile.startElement("     ", "SETTING");        
+        outputNodeXML(outFile, "Username", getUsername());
+        outputNodeXML(outFile, "Setting", getSettingName());
         if(getSettingInstance().equals("")){
-			outFile.write(getNodeXML("Instance", "DEFAULT_INSTANCE"));
+			outputNodeXML(outFile, "Instance", "DEFAULT_INSTANCE");
 		}else{
-			outFile.write(getNodeXML("Instance", getSettingInstance()));	
+			outputNodeXML(outFile, "Instance", getSettingInstance());	
 		}
-        outFile.write(getNodeXML("Value", getSettingValue()));
-        outFile.write(getNodeXML("UserSettable","-"));
-        outFile.write("     </SETTING>\n");
-		outFile.write("</MY_SETTINGS>\n");
+        outputNodeXML(outFile, "Value", getSettingValue());
+        outputNodeXML(outFile, "UserSettable","-");
+        outFile.endElement("     ", "SETTING");
+		outFile.endElement("", "MY_SETTINGS");
     }
 
     /**
@@ -5,8 +5,10 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
 import com.ibm.mdmce.envtoolkit.deployment.EnvironmentHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.File;
 import java.io.IOException;
@@ -35,6 +37,8 @@ public class Spec extends BasicEntity {
     public static final String HIDDEN = "Hidden?";
     public static final String RULE = "RULE";
 
+    private static final String DISPLAY_NAME_SUFFIX = " DisplayName";
+
     private String name;
     private String type;
     private String primaryKeyPath;
@@ -42,16 +46,15 @@ public class Spec extends BasicEntity {
     private Map<String, Attribute> hmAttributes = new TreeMap<>();
     private List<String> attributes = new ArrayList<>();
 
-    private static class Singleton {
-        private static final Spec INSTANCE = new Spec();
-    }
+    private String[] displayNameLocales;
+    private int[] displayNameSlots;
 
     /**
-     * Retrieve the static definition of a Catalog (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Catalog (ie. its columns and type information).
      * @return Catalog
      */
     public static Spec getInstance() {
-        return Spec.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Spec.class, Spec::new);
     }
 
     private Spec() {
@@ -74,7 +77,7 @@ public class Spec extends BasicEntity {
         addColumn(HIDDEN);
         addColumn(RULE);
         for (String locale : EnvironmentHandler.getAllLocales()) {
-            addColumn(locale + " DisplayName");
+            addColumn(locale + DISPLAY_NAME_SUFFIX);
         }
     }
 
@@ -88,7 +91,7 @@ public class Spec extends BasicEntity {
     public <T extends BasicEntity> T createInstance(List<String> aFields) {
 
         String sSpecName = getFieldValue(NAME, aFields);
-        Spec spec = (Spec) BasicEntityHandler.getFromCache(sSpecName, Spec.class.getName(), false, false);
+        Spec spec = BasicEntityHandler.getFromCache(sSpecName, Spec.class, false, false);
         if (spec == null) {
             spec = new Spec();
             spec.name = sSpecName;
@@ -123,12 +126,10 @@ public class Spec extends BasicEntity {
             attr.rule = "";
         }
 
-        int iStart = getColumns().indexOf(RULE) + 1;
-        List<String> allLocales = EnvironmentHandler.getAllLocales();
-        int iEnd = iStart + allLocales.size();
-        for (int i = iStart, j = 0; i < iEnd; i++, j++) {
-            String sDisplayName = aFields.get(i);
-            attr.localeToDisplayName.put(allLocales.get(j), sDisplayName);
+        if (displayNameSlots == null)
+            bindDisplayNames();
+        for (int i = 0; i < displayNameSlots.length; i++) {
+            attr.localeToDisplayName.put(displayNameLocales[i], getFieldValue(displayNameSlots[i], aFields));
         }
 
         Attribute oAlreadySetBefore = spec.hmAttributes.put(attr.path, attr);
@@ -142,6 +143,31 @@ public class Spec extends BasicEntity {
 
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> bindColumns(List<String> aHeader) {
+        List<String> alUnbound = super.bindColumns(aHeader);
+        bindDisplayNames();
+        return alUnbound;
+    }
+
+    /**
+     * Look up the slots of the display name columns of every locale once (whenever the columns are bound), rather than
+     * by name for every locale of every row.
+     */
+    private void bindDisplayNames() {
+        List<String> alLocales = EnvironmentHandler.getAllLocales();
+        String[] aLocales = alLocales.toArray(new String[0]);
+        int[] aSlots = new int[aLocales.length];
+        for (int i = 0; i < aLocales.length; i++) {
+            aSlots[i] = getIndexOfColumn(aLocales[i] + DISPLAY_NAME_SUFFIX);
+        }
+        displayNameLocales = aLocales;
+        displayNameSlots = aSlots;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -154,7 +180,7 @@ public class Spec extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         String sSpecName = getName();
         String sSpecType = getType();
@@ -168,134 +194,113 @@ public class Spec extends BasicEntity {
 
         String sEscapedFilename = BasicEntityHandler.escapeForFilename(sSpecName);
         String sSpecFilePath = sOutputPath + File.separator + "SPECS" + File.separator + sSpecTypeForOutput + File.separator + sSpecTypeForOutput + "_" + sEscapedFilename + "_SPEC.xml";
-        Writer outSpec = BasicEntityHandler.getNewWriter(sSpecFilePath);
-
-        outSpec.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
-        outSpec.write("<TrigoXML version=\"" + handler.getVersion() + "\">\n");
-        outSpec.write("   <Header>\n");
-        outSpec.write("      <Type>Spec</Type>\n");
-        // in order to enable updates of specs the action mode must be 'Create_or_Update' for version 5.3.2 or higher
-        if (handler.versionUsesNextGenXML()) {
-            outSpec.write("      <Action>Create_or_Update</Action>\n");
-        } else {
-            outSpec.write("      <Action>Create</Action>\n");
-        }
-        outSpec.write("      <CompanyName>" + sCompanyCode + "</CompanyName>\n");
-        outSpec.write("      <SpecName>" + BasicEntityHandler.escapeForXML(sSpecName) + "</SpecName>\n");
-        outSpec.write("      <Attribs>\n");
-        outSpec.write("         <Attrib>\n");
-        outSpec.write("            <Name>TYPE</Name>\n");
-        outSpec.write("            <Value>" + sSpecTypeForOutput + "</Value>\n");
-        outSpec.write("         </Attrib>\n");
-
-        if (sSpecType.startsWith("FILE_SPEC")) {
-
-            String[] aTypeDetailTokens = sSpecType.split("\\Q|\\E");
-            String sFileType = "C";
-            if (aTypeDetailTokens.length > 1) {
-                sFileType = aTypeDetailTokens[1];
+        try (XMLWriter outSpec = BasicEntityHandler.getNewWriter(sSpecFilePath)) {
+
+            outSpec.declaration();
+            outSpec.startElement("", "TrigoXML", "version", handler.getVersion());
+            outSpec.startElement("   ", "Header");
+            outSpec.rawElement("      ", "Type", "Spec");
+            // in order to enable updates of specs the action mode must be 'Create_or_Update' for version 5.3.2 or higher
+            if (handler.versionUsesNextGenXML()) {
+                outSpec.rawElement("      ", "Action", "Create_or_Update");
             } else {
-                EnvironmentHandler.logger.warning(". . . WARNING (" + sSpecName + "): No file spec information provided - assuming CSV with no header.");
-            }
-            String sIgnoreHeader = "0";
-            if (aTypeDetailTokens.length > 2) {
-                sIgnoreHeader = aTypeDetailTokens[2];
+                outSpec.rawElement("      ", "Action", "Create");
             }
-            String sCharacter = "";
-            if (aTypeDetailTokens.length > 3) {
-                if (aTypeDetailTokens.length > 4) {
-                    sCharacter = "|";
+            outSpec.rawElement("      ", "CompanyName", sCompanyCode);
+            outSpec.element("      ", "SpecName", sSpecName);
+            outSpec.startElement("      ", "Attribs");
+            outSpec.attrib("         ", "TYPE", sSpecTypeForOutput);
+
+            if (sSpecType.startsWith("FILE_SPEC")) {
+
+                String[] aTypeDetailTokens = sSpecType.split("\\Q|\\E");
+                String sFileType = "C";
+                if (aTypeDetailTokens.length > 1) {
+                    sFileType = aTypeDetailTokens[1];
                 } else {
-                    sCharacter = aTypeDetailTokens[3];
+                    EnvironmentHandler.logger.warning(". . . WARNING (" + sSpecName + "): No file spec information provided - assuming CSV with no header.");
+                }
+                String sIgnoreHeader = "0";
+                if (aTypeDetailTokens.length > 2) {
+                    sIgnoreHeader = aTypeDetailTokens[2];
+                }
+                String sCharacter = "";
+                if (aTypeDetailTokens.length > 3) {
+                    if (aTypeDetailTokens.length > 4) {
+                        sCharacter = "|";
+                    } else {
+                        sCharacter = aTypeDetailTokens[3];
+                    }
                 }
-            }
 
-            outSpec.write("         <Attrib>\n");
-            outSpec.write("            <Name>IGNORE_HEADER</Name>\n");
-            outSpec.write("            <Value>" + sIgnoreHeader + "</Value>\n");
-            outSpec.write("         </Attrib>\n");
-            outSpec.write("         <Attrib>\n");
-            outSpec.write("            <Name>FILE_TYPE</Name>\n");
-            outSpec.write("            <Value>" + sFileType + "</Value>\n");
-            outSpec.write("         </Attrib>\n");
-            if (!sCharacter.equals("")) {
-                outSpec.write("         <Attrib>\n");
-                outSpec.write("            <Name>DELIMITER</Name>\n");
-                outSpec.write("            <Value>" + sCharacter + "</Value>\n");
-                outSpec.write("         </Attrib>\n");
-            }
+                outSpec.attrib("         ", "IGNORE_HEADER", sIgnoreHeader);
+                outSpec.attrib("         ", "FILE_TYPE", sFileType);
+                if (!sCharacter.equals("")) {
+                    outSpec.attrib("         ", "DELIMITER", sCharacter);
+                }
 
-        } else if (sSpecType.startsWith("MKT_SPEC")) {
+            } else if (sSpecType.startsWith("MKT_SPEC")) {
 
-        } else {
-            outSpec.write("         <Attrib>\n");
-            outSpec.write("            <Name>LOCALIZED</Name>\n");
-            outSpec.write("            <Value>yes</Value>\n");
-            outSpec.write("         </Attrib>\n");
+            } else {
+                outSpec.attrib("         ", "LOCALIZED", "yes");
 
-            for (String locale : EnvironmentHandler.getAllLocales()) {
-                outSpec.write("         <Attrib>\n");
-                outSpec.write("             <Name>LOCALE_IDENTIFIER</Name>\n");
-                outSpec.write("             <Value>" + locale + "</Value>\n");
-                outSpec.write("          </Attrib>\n");
+                for (String locale : EnvironmentHandler.getAllLocales()) {
+                    outSpec.startElement("         ", "Attrib");
+                    outSpec.rawElement("             ", "Name", "LOCALE_IDENTIFIER");
+                    outSpec.rawElement("             ", "Value", locale);
+                    outSpec.endElement("          ", "Attrib");
+                }
+
+                if (sSpecType.equals("PRIMARY_SPEC") || sSpecType.equals("LKP_SPEC")) {
+                    outSpec.attrib("         ", "LINK_TYPE", "MASTER");
+                    outSpec.attrib("         ", "PRIMARY_KEY", getPrimaryKeyPath());
+                }
             }
+            outSpec.endElement("      ", "Attribs");
+            outSpec.endElement("   ", "Header");
+            outSpec.startElement("   ", "Nodes");
 
-            if (sSpecType.equals("PRIMARY_SPEC") || sSpecType.equals("LKP_SPEC")) {
-                outSpec.write("         <Attrib>\n");
-                outSpec.write("            <Name>LINK_TYPE</Name>\n");
-                outSpec.write("            <Value>MASTER</Value>\n");
-                outSpec.write("         </Attrib>\n");
-                outSpec.write("         <Attrib>\n");
-                outSpec.write("            <Name>PRIMARY_KEY</Name>\n");
-                outSpec.write("            <Value>" + getPrimaryKeyPath() + "</Value>\n");
-                outSpec.write("         </Attrib>\n");
+            for (String sAttrPath : attributes) {
+                Attribute attr = hmAttributes.get(sAttrPath);
+                outputAttributeXML(handler, attr, outSpec);
             }
-        }
-        outSpec.write("      </Attribs>\n");
-        outSpec.write("   </Header>\n");
-        outSpec.write("   <Nodes>\n");
 
-        for (String sAttrPath : attributes) {
-            Attribute attr = hmAttributes.get(sAttrPath);
-            outputAttributeXML(handler, attr, outSpec);
+            outSpec.endElement("   ", "Nodes");
+            outSpec.endElement("", "TrigoXML");
         }
 
-        outSpec.write("   </Nodes>\n");
-        outSpec.write("</TrigoXML>\n");
-        outSpec.flush();
-
         handler.addGeneratedFileXML(sSpecFilePath);
 
     }
 
-    private void outputSubSpecAttributeXML(String sSubSpecName, Writer outSpec) throws IOException {
+    private void outputSubSpecAttributeXML(String sSubSpecName, XMLWriter outSpec) throws IOException {
 
-        Spec specSubSpec = (Spec) BasicEntityHandler.getFromCache(sSubSpecName, Spec.class.getName(), false, false);
+        Spec specSubSpec = BasicEntityHandler.getFromCache(sSubSpecName, Spec.class, false, false);
 
         for (String sAttrPath : specSubSpec.attributes) {
 
             Attribute attr = specSubSpec.hmAttributes.get(sAttrPath);
             boolean bGrouping = (containsData(attr.type) && (attr.type.equals("GROUPING")));
 
-            outSpec.write("      <Node>\n");
-            outSpec.write("         <Name>" + sAttrPath + "</Name>\n");
+            outSpec.startElement("      ", "Node");
+            outSpec.rawElement("         ", "Name", sAttrPath);
             if (bGrouping) {
-                outSpec.write("         <Type>TYPE</Type>\n");
+                outSpec.rawElement("         ", "Type", "TYPE");
             } else {
-                outSpec.write("         <Type>ATTRIBUTE</Type>\n");
+                outSpec.rawElement("         ", "Type", "ATTRIBUTE");
             }
-            outSpec.write("         <SharedNodeSpec>" + specSubSpec.getName() + "</SharedNodeSpec>\n");
-            outSpec.write("      </Node>\n");
+            outSpec.rawElement("         ", "SharedNodeSpec", specSubSpec.getName());
+            outSpec.endElement("      ", "Node");
 
         }
 
     }
 
-    private void outputAttributeXML(BasicEntityHandler handler, Attribute attr, Writer outSpec) throws IOException {
+    private void outputAttributeXML(BasicEntityHandler handler, Attribute attr, XMLWriter outSpec) throws IOException {
         outputAttributeXML(handler, attr, null, outSpec);
     }
 
-    private void outputAttributeXML(BasicEntityHandler handler, Attribute attr, String sLocaleString, Writer outSpec) throws IOException {
+    private void outputAttributeXML(BasicEntityHandler handler, Attribute attr, String sLocaleString, XMLWriter outSpec) throws IOException {
 
         boolean bLocalized = attr.localized;
         boolean bGrouping = containsData(attr.type) && (attr.type.equals("GROUPING"));
@@ -305,110 +310,56 @@ public class Spec extends BasicEntity {
             outputSubSpecAttributeXML(attr.path, outSpec);
         } else {
 
-            outSpec.write("      <Node>\n");
-            outSpec.write("         <Name>" + sAttrPath + "</Name>\n");
+            outSpec.startElement("      ", "Node");
+            outSpec.rawElement("         ", "Name", sAttrPath);
             if (bLocalized || bGrouping) {
-                outSpec.write("         <Type>TYPE</Type>\n");
+                outSpec.rawElement("         ", "Type", "TYPE");
             } else {
-                outSpec.write("         <Type>ATTRIBUTE</Type>\n");
+                outSpec.rawElement("         ", "Type", "ATTRIBUTE");
             }
-            outSpec.write("         <Attribs>\n");
+            outSpec.startElement("         ", "Attribs");
             if (containsData(attr.type)) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>TYPE</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.type + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "TYPE", attr.type);
             }
             if (containsData(attr.languageCode)) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>LANGUAGE_CODE</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.languageCode + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "LANGUAGE_CODE", attr.languageCode);
             }
             if (containsData(attr.countryCode)) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>COUNTRY_CODE</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.countryCode + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "COUNTRY_CODE", attr.countryCode);
             }
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>MAX_OCCURRENCE</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + attr.max + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
+            outSpec.cdataAttrib("            ", "MAX_OCCURRENCE", String.valueOf(attr.max));
             if (attr.length != null) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>MAXLENGTH</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.length + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "MAXLENGTH", String.valueOf(attr.length));
             }
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>MIN_OCCURRENCE</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + attr.min + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>LOCALIZED</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + (attr.localized ? "yes" : "no") + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
+            outSpec.cdataAttrib("            ", "MIN_OCCURRENCE", String.valueOf(attr.min));
+            outSpec.cdataAttrib("            ", "LOCALIZED", (attr.localized ? "yes" : "no"));
             if (bLocalized) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>CASCADE</Name>\n");
-                outSpec.write("               <Value><![CDATA[yes]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "CASCADE", "yes");
             }
             if (containsData(attr.lookupTable)) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>LOOKUP_TABLE</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.lookupTable + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "LOOKUP_TABLE", attr.lookupTable);
             }
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>LINK_TO_CATALOG</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + (attr.link ? "yes" : "no") + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
+            outSpec.cdataAttrib("            ", "LINK_TO_CATALOG", (attr.link ? "yes" : "no"));
             if (!handler.getVersion().startsWith("5.2")) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>INDEXED</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + (attr.indexed ? "yes" : "no") + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "INDEXED", (attr.indexed ? "yes" : "no"));
             }
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>EDITABLE</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + (attr.editable ? "yes" : "no") + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>NON_PERSISTED</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + (attr.nonPersisted ? "yes" : "no") + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
+            outSpec.cdataAttrib("            ", "EDITABLE", (attr.editable ? "yes" : "no"));
+            outSpec.cdataAttrib("            ", "NON_PERSISTED", (attr.nonPersisted ? "yes" : "no"));
             if (attr.nonPersisted && !(attr.rule.contains("~=~"))) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>NON_PERSISTED_ATTRIBUTE_RULE</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.rule + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "NON_PERSISTED_ATTRIBUTE_RULE", attr.rule);
                 attr.rule = "";
             }
             if (containsData(attr.defaultValue)) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>DEFAULT_VALUE</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + attr.defaultValue + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", "DEFAULT_VALUE", attr.defaultValue);
             }
-            outSpec.write("            <Attrib>\n");
-            outSpec.write("               <Name>HIDDEN</Name>\n");
-            outSpec.write("               <Value><![CDATA[" + (attr.hidden ? "yes" : "no") + "]]></Value>\n");
-            outSpec.write("            </Attrib>\n");
+            outSpec.cdataAttrib("            ", "HIDDEN", (attr.hidden ? "yes" : "no"));
             for (String enumValue : attr.enumValues) {
-                outSpec.write("            <Attrib>\n");
-                outSpec.write("               <Name>" + attr.type + "</Name>\n");
-                outSpec.write("               <Value><![CDATA[" + enumValue + "]]></Value>\n");
-                outSpec.write("            </Attrib>\n");
+                outSpec.cdataAttrib("            ", attr.type, enumValue);
             }
             for (String locale : EnvironmentHandler.getAllLocales()) {
                 String sDisplayName = attr.localeToDisplayName.get(locale);
                 if (containsData(sDisplayName)) {
-                    outSpec.write("            <Attrib>\n");
-                    outSpec.write("               <Name>" + locale + "_display_name</Name>\n");
-                    outSpec.write("               <Value><![CDATA[" + sDisplayName + "]]></Value>\n");
-                    outSpec.write("            </Attrib>\n");
+                    outSpec.cdataAttrib("            ", locale + "_display_name", sDisplayName);
                 }
             }
             if (containsData(attr.rule) && attr.rule.contains("|")) {
@@ -418,15 +369,12 @@ public class Spec extends BasicEntity {
                     // Then we can look at each rule and output it individually...
                     String sRuleType = aRules[i].substring(0, aRules[i].indexOf("|"));
                     String sRule = aRules[i].substring(aRules[i].indexOf("|") + 1);
-                    outSpec.write("            <Attrib>\n");
-                    outSpec.write("               <Name>" + sRuleType + "</Name>\n");
-                    outSpec.write("               <Value><![CDATA[" + sRule + "]]></Value>\n");
-                    outSpec.write("            </Attrib>\n");
+                    outSpec.cdataAttrib("            ", sRuleType, sRule);
                 }
             }
 
-            outSpec.write("         </Attribs>\n");
-            outSpec.write("      </Node>\n");
+            outSpec.endElement("         ", "Attribs");
+            outSpec.endElement("      ", "Node");
             if (bLocalized) {
                 Attribute attrLocalized = new Attribute(attr);
                 attrLocalized.localized = false;
@@ -5,6 +5,8 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.*;
 import java.util.*;
@@ -30,16 +32,12 @@ public class SpecMap extends BasicEntity {
 
     private Map<String, List<String>> sourceToDestinationPaths = new HashMap<>();
 
-    private static class Singleton {
-        private static final SpecMap INSTANCE = new SpecMap();
-    }
-
     /**
-     * Retrieve the static definition of a SpecMap (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a SpecMap (ie. its columns and type information).
      * @return SpecMap
      */
     public static SpecMap getInstance() {
-        return SpecMap.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(SpecMap.class, SpecMap::new);
     }
 
     private SpecMap() {
@@ -79,7 +77,7 @@ public class SpecMap extends BasicEntity {
     @SuppressWarnings("unchecked")
     public <T extends BasicEntity> T createInstance(List<String> aFields) {
         String sSpecMapName = getFieldValue(NAME, aFields);
-        SpecMap specMap = (SpecMap) BasicEntityHandler.getFromCache(sSpecMapName, SpecMap.class.getName(), false, false);
+        SpecMap specMap = BasicEntityHandler.getFromCache(sSpecMapName, SpecMap.class, false, false);
         if (specMap == null) {
             specMap = new SpecMap();
             specMap.name = sSpecMapName;
@@ -109,60 +107,56 @@ public class SpecMap extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         String sSpecMapName = getName();
 
         String sEscapedFilename = BasicEntityHandler.escapeForFilename(sSpecMapName);
         String sSpecMapFilePath = sOutputPath + File.separator + sEscapedFilename + ".xml";
-        Writer outSpecMap = BasicEntityHandler.getNewWriter(sSpecMapFilePath);
-
-        outSpecMap.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
-        outSpecMap.write("<TrigoXML version=\"" + handler.getVersion() + "\">\n");
-        outSpecMap.write("   <Header>\n");
-        outSpecMap.write(getNodeXML("Name", getName()));
-        outSpecMap.write(getNodeXML("Type", getType()));
-
-        // use 'Create_or_Update' option for releases >= 5.3.2
-        if (handler.versionUsesNextGenXML()) {
-            outSpecMap.write("      <Action>Create_or_Update</Action>\n");
-        } else {
-            outSpecMap.write("      <Action>Create</Action>\n");
-        }
-        outSpecMap.write(getNodeXML("CompanyName", sCompanyCode));
-        outSpecMap.write(getNodeXML("SrcSpecName", getSourceObject()));
-        outSpecMap.write(getNodeXML("DstSpecName", getDestinationObject()));
-        outSpecMap.write("   </Header>\n");
-
-        Map<String, List<String>> hmSrcToDsts = getSourceToDestinationPaths();
-        if (hmSrcToDsts.size() > 0) {
-
-            outSpecMap.write("   <Maps>\n");
-
-            for (Map.Entry<String, List<String>> entry : hmSrcToDsts.entrySet()) {
-                String sSrcPath = entry.getKey();
-                List<String> alDstPaths = entry.getValue();
-                for (String sDstPath : alDstPaths) {
-                    outSpecMap.write("      <Map>\n");
-                    outSpecMap.write("         <SrcPath><![CDATA[" + sSrcPath + "]]></SrcPath>\n");
-                    outSpecMap.write("         <DstPath><![CDATA[" + sDstPath + "]]></DstPath>\n");
-                    outSpecMap.write("      </Map>\n");
-                }
+        try (XMLWriter outSpecMap = BasicEntityHandler.getNewWriter(sSpecMapFilePath)) {
+
+            outSpecMap.declaration();
+            outSpecMap.startElement("", "TrigoXML", "version", handler.getVersion());
+            outSpecMap.startElement("   ", "Header");
+            outputNodeXML(outSpecMap, "Name", getName());
+            outputNodeXML(outSpecMap, "Type", getType());
+
+            // use 'Create_or_Update' option for releases >= 5.3.2
+            if (handler.versionUsesNextGenXML()) {
+                outSpecMap.rawElement("      ", "Action", "Create_or_Update");
+            } else {
+                outSpecMap.rawElement("      ", "Action", "Create");
             }
+            outputNodeXML(outSpecMap, "CompanyName", sCompanyCode);
+            outputNodeXML(outSpecMap, "SrcSpecName", getSourceObject());
+            outputNodeXML(outSpecMap, "DstSpecName", getDestinationObject());
+            outSpecMap.endElement("   ", "Header");
+
+            Map<String, List<String>> hmSrcToDsts = getSourceToDestinationPaths();
+            if (hmSrcToDsts.size() > 0) {
+
+                outSpecMap.startElement("   ", "Maps");
+
+                for (Map.Entry<String, List<String>> entry : hmSrcToDsts.entrySet()) {
+                    String sSrcPath = entry.getKey();
+                    List<String> alDstPaths = entry.getValue();
+                    for (String sDstPath : alDstPaths) {
+                        outSpecMap.startElement("      ", "Map");
+                        outSpecMap.cdataElement("         ", "SrcPath", sSrcPath);
+                        outSpecMap.cdataElement("         ", "DstPath", sDstPath);
+                        outSpecMap.endElement("      ", "Map");
+                    }
+                }
 
-            outSpecMap.write("   </Maps>\n");
+                outSpecMap.endElement("   ", "Maps");
 
-        }
+            }
 
-        outSpecMap.write("</TrigoXML>\n");
-        outSpecMap.flush();
+            outSpecMap.endElement("", "TrigoXML");
+        }
 
-        Writer osw = new OutputStreamWriter(new FileOutputStream(sOutputPath + File.separator + "MAPS.xml", true), "UTF-8");
-        String sCorrectedPath = sSpecMapFilePath.replace(File.separator, "/");
-        sCorrectedPath = sCorrectedPath.substring(sCorrectedPath.indexOf("/"));
-        osw.write(sCorrectedPath + "\n");
-        osw.flush();
-        osw.close();
+        // Listed in MAPS.xml by the handler, once all of the spec maps have been output
+        handler.addGeneratedFileXML(sSpecMapFilePath);
     }
 
     /**
@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -29,16 +31,12 @@ public class UDL extends BasicEntity {
     public String containerType;
     public boolean runningLog = false;
 
-    private static class Singleton {
-        private static final UDL INSTANCE = new UDL();
-    }
-
     /**
-     * Retrieve the static definition of an UserDefinedLog (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an UserDefinedLog (ie. its columns and type information).
      * @return UserDefinedLog
      */
     public static UDL getInstance() {
-        return UDL.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(UDL.class, UDL::new);
     }
 
     private UDL() {
@@ -68,6 +66,16 @@ public class UDL extends BasicEntity {
         return (T) udl;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.CONTAINER)
+            return toReferences(getContainerName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -80,15 +88,15 @@ public class UDL extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-        outFile.write("   <UDL>\n");
-        outFile.write(getNodeXML("Name", getName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Description", getDescription()));
-        outFile.write(getNodeXML("ContainerType", getContainerType()));
-        outFile.write(getNodeXML("ContainerName", getContainerName()));
-        outFile.write(getNodeXML("RunningLog", "" + isRunningLog()));
-        outFile.write("   </UDL>\n");
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+        outFile.startElement("   ", "UDL");
+        outputNodeXML(outFile, "Name", getName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Description", getDescription());
+        outputNodeXML(outFile, "ContainerType", getContainerType());
+        outputNodeXML(outFile, "ContainerName", getContainerName());
+        outputNodeXML(outFile, "RunningLog", "" + isRunningLog());
+        outFile.endElement("   ", "UDL");
     }
 
     /**
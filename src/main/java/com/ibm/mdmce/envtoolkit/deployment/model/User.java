@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -48,16 +50,12 @@ public class User extends BasicEntity {
     private List<String> roles = new ArrayList<>();
     private List<String> organizations = new ArrayList<>();
 
-    private static class Singleton {
-        private static final User INSTANCE = new User();
-    }
-
     /**
-     * Retrieve the static definition of an User (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of an User (ie. its columns and type information).
      * @return User
      */
     public static User getInstance() {
-        return User.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(User.class, User::new);
     }
 
     private User() {
@@ -125,42 +123,42 @@ public class User extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
-
-        outFile.write("   <USERS>\n");
-        outFile.write(getNodeXML("Username", getUsername()));
-        outFile.write(getNodeXML("FirstName", getFirstName()));
-        outFile.write(getNodeXML("LastName", getLastName()));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Email", getEmailAddress()));
-        outFile.write(getNodeXML("Fax", getFaxNumber()));
-        outFile.write(getNodeXML("Phone", getPhoneNumber()));
-        outFile.write(getNodeXML("Address", getAddress()));
-        outFile.write(getNodeXML("Active", "" + isEnabled()));
-        outFile.write(getNodeXML("LdapEnabled", "" + isLdapEnabled()));
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
+
+        outFile.startElement("   ", "USERS");
+        outputNodeXML(outFile, "Username", getUsername());
+        outputNodeXML(outFile, "FirstName", getFirstName());
+        outputNodeXML(outFile, "LastName", getLastName());
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Email", getEmailAddress());
+        outputNodeXML(outFile, "Fax", getFaxNumber());
+        outputNodeXML(outFile, "Phone", getPhoneNumber());
+        outputNodeXML(outFile, "Address", getAddress());
+        outputNodeXML(outFile, "Active", "" + isEnabled());
+        outputNodeXML(outFile, "LdapEnabled", "" + isLdapEnabled());
         // NOTE: This password is hard-coded to "trinitron" in encrypted form
-        outFile.write(getNodeXML("Password", "447e4ec3f5804e78d7f952eb359a71e5"));
-        outFile.write(getNodeXML("LdapEntryDn", getLdapEntryDN()));
-        outFile.write(getNodeXML("LdapServerUrl", getLdapServerURL()));
+        outputNodeXML(outFile, "Password", "447e4ec3f5804e78d7f952eb359a71e5");
+        outputNodeXML(outFile, "LdapEntryDn", getLdapEntryDN());
+        outputNodeXML(outFile, "LdapServerUrl", getLdapServerURL());
 
         if (getRoles().isEmpty()) {
-            outFile.write(getNodeXML("Role", ""));
+            outputNodeXML(outFile, "Role", "");
         } else {
             for (String role : getRoles()) {
-                outFile.write(getNodeXML("Role", role.replace("$CMP", sCompanyCode)));
+                outputNodeXML(outFile, "Role", role.replace("$CMP", sCompanyCode));
             }
         }
 
         if (getOrganizations().isEmpty()) {
-            outFile.write(getNodeXML("OrganizationHierarchy", "##DefaultOrganizationHierarchy##/##DefaultOrganization##"));
+            outputNodeXML(outFile, "OrganizationHierarchy", "##DefaultOrganizationHierarchy##/##DefaultOrganization##");
         } else {
             for (String org : getOrganizations()) {
-                outFile.write(getNodeXML("OrganizationHierarchy", org));
+                outputNodeXML(outFile, "OrganizationHierarchy", org);
             }
         }
 
-        outFile.write(getNodeXML("CompanyCode", sCompanyCode));
-        outFile.write("   </USERS>\n");
+        outputNodeXML(outFile, "CompanyCode", sCompanyCode);
+        outFile.endElement("   ", "USERS");
 
     }
 
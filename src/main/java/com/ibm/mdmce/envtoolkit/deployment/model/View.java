@@ -4,6 +4,9 @@ SPDX-License-Identifier: Apache-2.0
 */
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
+import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
+
 import java.io.IOException;
 import java.io.Writer;
 import java.util.*;
@@ -89,6 +92,18 @@ public abstract class View extends BasicEntity {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * The container of a workflow step view is its workflow.
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        boolean bWorkflow = "WORKFLOW".equals(getContainerType());
+        if ((type == ReferenceType.WORKFLOW && bWorkflow) || (type == ReferenceType.CONTAINER && !bWorkflow))
+            return toReferences(getContainerName());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -97,6 +112,19 @@ public abstract class View extends BasicEntity {
         return getContainerName() + "::" + getViewName();
     }
 
+    /**
+     * Retrieve the named view of the named container from the cache, by its unique identity (see
+     * {@link #getUniqueId()}).
+     * @param sContainerName the name of the container (or workflow)
+     * @param sViewName the name of the view (or step path)
+     * @param type the class of the view
+     * @param <T> the type of the view
+     * @return T - or null if there is no such view (yet)
+     */
+    protected static <T extends View> T findView(String sContainerName, String sViewName, Class<T> type) {
+        return BasicEntityHandler.getFromCache(sContainerName + "::" + sViewName, type, false, false);
+    }
+
     /**
      * Output the XML for a component of the view using the specified parameters.
      * @param sComponentName the name of the component
@@ -107,42 +135,42 @@ public abstract class View extends BasicEntity {
      * @param outFile into which to write
      * @throws IOException on any error writing
      */
-    protected void outputViewComponent(String sComponentName, Set<String> attrCols, List<String> alOrderedTabNames, Map<String, List<String>> hmTabs, boolean bEditableComponent, Writer outFile) throws IOException {
+    protected void outputViewComponent(String sComponentName, Set<String> attrCols, List<String> alOrderedTabNames, Map<String, List<String>> hmTabs, boolean bEditableComponent, XMLWriter outFile) throws IOException {
 
-        outFile.write("      <" + sComponentName + ">\n");
+        outFile.startElement("      ", sComponentName);
 
         for (String sAttrCol : attrCols) {
             if (bEditableComponent) {
-                outFile.write("         <AttributeCollection name=\"" + sAttrCol + "\">\n");
+                outFile.startElement("         ", "AttributeCollection", "name", sAttrCol);
                 if (viewOnly.contains(sAttrCol)) {
-                    outFile.write("            <View>true</View>\n");
-                    outFile.write("            <Edit>false</Edit>\n");
+                    outFile.rawElement("            ", "View", "true");
+                    outFile.rawElement("            ", "Edit", "false");
                 } else {
-                    outFile.write("            <View>false</View>\n");
-                    outFile.write("            <Edit>true</Edit>\n");
+                    outFile.rawElement("            ", "View", "false");
+                    outFile.rawElement("            ", "Edit", "true");
                 }
-                outFile.write("         </AttributeCollection>\n");
+                outFile.endElement("         ", "AttributeCollection");
             } else {
-                outFile.write("         <AttributeCollection><![CDATA[" + sAttrCol + "]]></AttributeCollection>\n");
+                outFile.cdataElement("         ", "AttributeCollection", sAttrCol);
             }
         }
 
         if (hmTabs != null && !hmTabs.isEmpty()
                 && (sComponentName.equals("EditItem") || sComponentName.equals("BulkEdit") || sComponentName.equals("ItemLocation") || sComponentName.equals("CategoryEdit") || sComponentName.equals("CategoryBulkEdit"))
                 && alOrderedTabNames.size() > 0) {
-            outFile.write("         <TabGroup>\n");
+            outFile.startElement("         ", "TabGroup");
             for (String sTabName : alOrderedTabNames) {
-                outFile.write("            <Tab name=\"" + sTabName + "\">\n");
+                outFile.startElement("            ", "Tab", "name", sTabName);
                 List<String> aAttrCols = hmTabs.get(sTabName);
                 for (String sAttrCol : aAttrCols) {
-                    outFile.write("               <AttributeCollection><![CDATA[" + sAttrCol + "]]></AttributeCollection>\n");
+                    outFile.cdataElement("               ", "AttributeCollection", sAttrCol);
                 }
-                outFile.write("            </Tab>\n");
+                outFile.endElement("            ", "Tab");
             }
-            outFile.write("         </TabGroup>\n");
+            outFile.endElement("         ", "TabGroup");
         }
 
-        outFile.write("      </" + sComponentName + ">\n");
+        outFile.endElement("      ", sComponentName);
 
     }
 
@@ -5,9 +5,11 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
 import com.ibm.mdmce.envtoolkit.deployment.EnvironmentHandler;
 import com.ibm.mdmce.envtoolkit.deployment.WebServiceHandler;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -38,16 +40,12 @@ public class WebService extends BasicEntity {
     private boolean storeResponse = false;
     private boolean deploy = true;
 
-    private static class Singleton {
-        private static final WebService INSTANCE = new WebService();
-    }
-
     /**
-     * Retrieve the static definition of a WebService (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a WebService (ie. its columns and type information).
      * @return WebService
      */
     public static WebService getInstance() {
-        return WebService.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(WebService.class, WebService::new);
     }
 
     private WebService() {
@@ -97,7 +95,7 @@ public class WebService extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
 
         String sInputPath = "";
         if (handler instanceof WebServiceHandler) {
@@ -109,8 +107,8 @@ public class WebService extends BasicEntity {
 
         String sPathScriptRemote = "/scripts/wbs/" + getScript();
         String sPathWSDLRemote = "/archives/wsdl/" + getWsdl();
-        Script docScript = (Script) BasicEntityHandler.getFromCache(sPathScriptRemote, Script.class.getName(), false, false);
-        Script docWSDL = (Script) BasicEntityHandler.getFromCache(sPathWSDLRemote, Script.class.getName(), false, false);
+        Script docScript = BasicEntityHandler.getFromCache(sPathScriptRemote, Script.class, false, false);
+        Script docWSDL = BasicEntityHandler.getFromCache(sPathWSDLRemote, Script.class, false, false);
 
         if (docScript == null || docWSDL == null) {
             EnvironmentHandler.logger.warning(". . . WARNING: Could not find specified WebService script or WSDL file.");
@@ -118,6 +116,8 @@ public class WebService extends BasicEntity {
 
             String sPathScriptLocal = sFilePath + docScript.getPathLocal().replace("/", File.separator);
             String sPathWSDLLocal = sFilePath + docWSDL.getPathLocal().replace("/", File.separator);
+            handler.addInputFile(new File(sPathScriptLocal));
+            handler.addInputFile(new File(sPathWSDLLocal));
 
             BufferedReader readerScript = new BufferedReader(new FileReader(sPathScriptLocal));
             BufferedReader readerWSDL = new BufferedReader(new FileReader(sPathWSDLLocal));
@@ -140,20 +140,20 @@ public class WebService extends BasicEntity {
             readerScript.close();
             readerWSDL.close();
 
-            outFile.write("   <WEBSERVICE>\n");
-            outFile.write(getNodeXML("Name", getName()));
-            outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-            outFile.write(getNodeXML("Description", getDescription()));
-            outFile.write(getNodeXML("Protocol", getProtocol()));
-            outFile.write(getNodeXML("Style", getStyle()));
-            outFile.write(getNodeXML("WSDLPath", "archives/wsdl/" + getWsdl()));
-            outFile.write(getNodeXML("WSDL", sbWSDL.toString()));
-            outFile.write(getNodeXML("ImplementationScriptPath", "scripts/wbs/" + getScript()));
-            outFile.write(getNodeXML("ImplementationScript", sbScript.toString()));
-            outFile.write(getNodeXML("StoreRequests", "" + storesRequests()));
-            outFile.write(getNodeXML("StoreResponses", "" + storesResponses()));
-            outFile.write(getNodeXML("Deployed", "" + isDeployed()));
-            outFile.write("   </WEBSERVICE>\n");
+            outFile.startElement("   ", "WEBSERVICE");
+            outputNodeXML(outFile, "Name", getName());
+            outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+            outputNodeXML(outFile, "Description", getDescription());
+            outputNodeXML(outFile, "Protocol", getProtocol());
+            outputNodeXML(outFile, "Style", getStyle());
+            outputNodeXML(outFile, "WSDLPath", "archives/wsdl/" + getWsdl());
+            outputNodeXML(outFile, "WSDL", sbWSDL.toString());
+            outputNodeXML(outFile, "ImplementationScriptPath", "scripts/wbs/" + getScript());
+            outputNodeXML(outFile, "ImplementationScript", sbScript.toString());
+            outputNodeXML(outFile, "StoreRequests", "" + storesRequests());
+            outputNodeXML(outFile, "StoreResponses", "" + storesResponses());
+            outputNodeXML(outFile, "Deployed", "" + isDeployed());
+            outFile.endElement("   ", "WEBSERVICE");
 
         }
     }
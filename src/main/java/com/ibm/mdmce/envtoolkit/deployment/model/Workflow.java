@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -45,16 +47,12 @@ public class Workflow extends BasicEntity {
 
     public Map<String, WorkflowStep> steps = new HashMap<>();
 
-    private static class Singleton {
-        private static final Workflow INSTANCE = new Workflow();
-    }
-
     /**
-     * Retrieve the static definition of a Workflow (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a Workflow (ie. its columns and type information).
      * @return Workflow
      */
     public static Workflow getInstance() {
-        return Workflow.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(Workflow.class, Workflow::new);
     }
 
     private Workflow() {
@@ -90,7 +88,7 @@ public class Workflow extends BasicEntity {
     public <T extends BasicEntity> T createInstance(List<String> aFields) {
 
         String sWflName = getFieldValue(NAME, aFields);
-        Workflow wfl = (Workflow) BasicEntityHandler.getFromCache(sWflName, Workflow.class.getName(), false, false);
+        Workflow wfl = BasicEntityHandler.getFromCache(sWflName, Workflow.class, false, false);
         if (wfl == null) {
             wfl = new Workflow();
             wfl.name = sWflName;
@@ -147,6 +145,16 @@ public class Workflow extends BasicEntity {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> getReferences(ReferenceType type) {
+        if (type == ReferenceType.ACG)
+            return toReferences(getAcg());
+        return super.getReferences(type);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -159,95 +167,99 @@ public class Workflow extends BasicEntity {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
         String sWflName = getName();
-        outFile.write("   <WORKFLOW>\n");
-        outFile.write(getNodeXML("Name", sWflName));
-        outFile.write(getNodeXML("Action", "CREATE_OR_UPDATE"));
-        outFile.write(getNodeXML("Desc", getDescription()));
+        outFile.startElement("   ", "WORKFLOW");
+        outputNodeXML(outFile, "Name", sWflName);
+        outputNodeXML(outFile, "Action", "CREATE_OR_UPDATE");
+        outputNodeXML(outFile, "Desc", getDescription());
         if (getAcg().equals(com.ibm.mdmce.envtoolkit.deployment.model.ACG.DEFAULT_ACG))
-            outFile.write("      <ACG isDefault=\"true\"/>\n");
+            outFile.emptyElement("      ", "ACG", "isDefault", "true");
         else
-            outFile.write(getNodeXML("ACG", getAcg()));
-        outFile.write(getNodeXML("ContainerType", getContainerType()));
-        Script doc = (Script) BasicEntityHandler.getFromCache("/workflow/gui/" + sWflName + ".html", Script.class.getName(), false, false);
+            outputNodeXML(outFile, "ACG", getAcg());
+        outputNodeXML(outFile, "ContainerType", getContainerType());
+        Script doc = BasicEntityHandler.getFromCache("/workflow/gui/" + sWflName + ".html", Script.class, false, false);
         if (doc != null)
-            outFile.write(getNodeXML("GUIDocStorePath", "/workflow/gui/" + sWflName + ".html"));
+            outputNodeXML(outFile, "GUIDocStorePath", "/workflow/gui/" + sWflName + ".html");
         else
-            outFile.write(getNodeXML("GUIDocStorePath", ""));
+            outputNodeXML(outFile, "GUIDocStorePath", "");
+        Map<String, WorkflowStepView> hmStepViews = new HashMap<>();
+        for (WorkflowStepView wflView : BasicEntityHandler.findReferencingInCache(ReferenceType.WORKFLOW, sWflName, WorkflowStepView.class)) {
+            hmStepViews.put(wflView.getViewName(), wflView);
+        }
         for (WorkflowStep step : getSteps().values()) {
-            outputStepXML(step, sWflName, outFile);
+            outputStepXML(step, sWflName, hmStepViews.get(step.getName()), outFile);
         }
-        outFile.write("   </WORKFLOW>\n");
+        outFile.endElement("   ", "WORKFLOW");
     }
 
-    private void outputStepXML(WorkflowStep wflStep, String sWflName, Writer outWfl) throws IOException {
+    private void outputStepXML(WorkflowStep wflStep, String sWflName, WorkflowStepView wflView, XMLWriter outWfl) throws IOException {
 
         String sWflStepName = wflStep.getName();
 
-        WorkflowStepView wflView = (WorkflowStepView) BasicEntityHandler.getFromCache(sWflName + "::" + sWflStepName, WorkflowStepView.class.getName(), false, false);
-
-        outWfl.write("      <Step>\n");
-        outWfl.write(getNodeXML("StepName", sWflStepName));
-        outWfl.write(getNodeXML("StepType", wflStep.getType()));
-        outWfl.write(getNodeXML("StepDesc", wflStep.getDescription()));
-        outWfl.write(getNodeXML("AllowEntries", (wflStep.allowsImport() ? "true" : "false") ));
-        outWfl.write(getNodeXML("AllowRe-categorization", (wflStep.allowsRecategorization() ? "true" : "false") ));
-        outWfl.write(getNodeXML("ReserveToEdit", (wflStep.isReserveToEdit() ? "true" : "false") ));
-        outWfl.write(getNodeXML("TimeoutType", "DURATION"));
-        outWfl.write(getNodeXML("Timeout", "" + (wflStep.getTimeout() * 1000)));
+        outWfl.startElement("      ", "Step");
+        outputNodeXML(outWfl, "StepName", sWflStepName);
+        outputNodeXML(outWfl, "StepType", wflStep.getType());
+        outputNodeXML(outWfl, "StepDesc", wflStep.getDescription());
+        outputNodeXML(outWfl, "AllowEntries", (wflStep.allowsImport() ? "true" : "false") );
+        outputNodeXML(outWfl, "AllowRe-categorization", (wflStep.allowsRecategorization() ? "true" : "false") );
+        outputNodeXML(outWfl, "ReserveToEdit", (wflStep.isReserveToEdit() ? "true" : "false") );
+        outputNodeXML(outWfl, "TimeoutType", "DURATION");
+        outputNodeXML(outWfl, "Timeout", "" + (wflStep.getTimeout() * 1000));
         // TODO: EntryNotifications
-        outWfl.write(getNodeXML("EntryNotifications", ""));
+        outputNodeXML(outWfl, "EntryNotifications", "");
         // TODO: TimeoutNotifications
-        outWfl.write(getNodeXML("TimeoutNotifications", ""));
+        outputNodeXML(outWfl, "TimeoutNotifications", "");
 
-        outWfl.write("         <RequiredAttributesCollections>\n");
+        outWfl.startElement("         ", "RequiredAttributesCollections");
         for (String sSubViewType : SUBVIEW_TYPES) {
-            outWfl.write("            <"+sSubViewType+">\n");
+            outWfl.startElement("            ", sSubViewType);
             for (String sAttrColName : wflStep.getRequiredAttributeCollections()) {
-                outWfl.write("               <AttributeCollection><![CDATA[" + sAttrColName + "]]></AttributeCollection>\n");
+                outWfl.cdataElement("               ", "AttributeCollection", sAttrColName);
             }
-            outWfl.write("            </"+sSubViewType+">\n");
+            outWfl.endElement("            ", sSubViewType);
         }
-        outWfl.write("         </RequiredAttributesCollections>\n");
+        outWfl.endElement("         ", "RequiredAttributesCollections");
 
         if (wflView != null)
             wflView.outputAttrColXML(outWfl);
 
-        outWfl.write("         <ContainerViews>\n");
+        outWfl.startElement("         ", "ContainerViews");
         if (wflView != null)
             wflView.outputViewComponent(outWfl);
-        outWfl.write("         </ContainerViews>\n");
+        outWfl.endElement("         ", "ContainerViews");
 
-        outWfl.write("         <Performers>\n");
+        outWfl.startElement("         ", "Performers");
         for (String role : wflStep.getPerformerRoles()) {
-            outWfl.write("             <Roles><![CDATA[" + role + "]]></Roles>\n");
+            outWfl.cdataElement("             ", "Roles", role);
         }
         for (String user : wflStep.getPerformerUsers()) {
-            outWfl.write("             <Users><![CDATA[" + user + "]]></Users>\n");
+            outWfl.cdataElement("             ", "Users", user);
         }
-        outWfl.write("         </Performers>\n");
+        outWfl.endElement("         ", "Performers");
         if (wflStep.includesScript())
-            outWfl.write("        <ScriptPath>scripts/workflow/" + sWflName + "/" + wflStep.getName() + "</ScriptPath>\n");
+            outWfl.element("        ", "ScriptPath", "scripts/workflow/" + sWflName + "/" + wflStep.getName());
 
-        outWfl.write("         <ExitValues>\n");
+        outWfl.startElement("         ", "ExitValues");
         for (String sExitValue : wflStep.getExitValueToNextSteps().keySet()) {
-            outWfl.write("            <ExitValue><![CDATA[" + sExitValue + "]]></ExitValue>\n");
+            outWfl.cdataElement("            ", "ExitValue", sExitValue);
         }
-        outWfl.write("         </ExitValues>\n");
+        outWfl.endElement("         ", "ExitValues");
         if (!wflStep.getName().equals("SUCCESS") && !wflStep.getName().equals("FAILURE")) {
-            outWfl.write("         <StepMaps>\n");
+            outWfl.startElement("         ", "StepMaps");
             for (Map.Entry<String, List<String>> entry : wflStep.getExitValueToNextSteps().entrySet()) {
                 String sExitValue = entry.getKey();
                 List<String> alNextSteps = entry.getValue();
                 for (String next : alNextSteps) {
-                    outWfl.write("            <NextStep ExitValue=\"" + sExitValue + "\"><![CDATA[" + next + "]]></NextStep>\n");
+                    outWfl.startTag("            ", "NextStep", "ExitValue", sExitValue);
+                    outWfl.cdata(next);
+                    outWfl.endTag("NextStep");
                 }
             }
-            outWfl.write("         </StepMaps>\n");
+            outWfl.endElement("         ", "StepMaps");
         }
 
-        outWfl.write("      </Step>\n");
+        outWfl.endElement("      ", "Step");
 
     }
 
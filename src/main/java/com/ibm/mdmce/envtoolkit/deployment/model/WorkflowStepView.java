@@ -5,7 +5,9 @@ SPDX-License-Identifier: Apache-2.0
 package com.ibm.mdmce.envtoolkit.deployment.model;
 
 import com.ibm.mdmce.envtoolkit.deployment.BasicEntityHandler;
+import com.ibm.mdmce.envtoolkit.deployment.BuildContext;
 import com.ibm.mdmce.envtoolkit.deployment.CSVParser;
+import com.ibm.mdmce.envtoolkit.deployment.XMLWriter;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -23,16 +25,12 @@ public class WorkflowStepView extends View {
     private Map<String, List<String>> tabToAttributeCollections = new HashMap<>();
     private List<String> tabOrder = new ArrayList<>();
 
-    private static class Singleton {
-        private static final WorkflowStepView INSTANCE = new WorkflowStepView();
-    }
-
     /**
-     * Retrieve the static definition of a WorkflowStepView (ie. its columns and type information).
+     * Retrieve the definition (for the current build) of a WorkflowStepView (ie. its columns and type information).
      * @return WorkflowStepView
      */
     public static WorkflowStepView getInstance() {
-        return WorkflowStepView.Singleton.INSTANCE;
+        return BuildContext.current().getDefinition(WorkflowStepView.class, WorkflowStepView::new);
     }
 
     private WorkflowStepView() {
@@ -53,7 +51,7 @@ public class WorkflowStepView extends View {
 
             String sStepPath = getFieldValue(VIEW_NAME, aFields);
             String sContainerName = getFieldValue(CONTAINER_NAME, aFields);
-            WorkflowStepView view = (WorkflowStepView) BasicEntityHandler.getFromCache(sContainerName + "::" + sStepPath, WorkflowStepView.class.getName(), false, false);
+            WorkflowStepView view = findView(sContainerName, sStepPath, WorkflowStepView.class);
             if (view == null) {
                 view = new WorkflowStepView();
                 view.containerType = "WORKFLOW";
@@ -101,7 +99,7 @@ public class WorkflowStepView extends View {
      * {@inheritDoc}
      */
     @Override
-    public void outputEntityXML(BasicEntityHandler handler, Writer outFile, String sOutputPath, String sCompanyCode) throws IOException {
+    public void outputEntityXML(BasicEntityHandler handler, XMLWriter outFile, String sOutputPath, String sCompanyCode) throws IOException {
         // Stub function
     }
 
@@ -114,10 +112,10 @@ public class WorkflowStepView extends View {
         return bValid;
     }
 
-    private void outputTabsForView(Writer outFile, String sViewComponent) throws IOException {
+    private void outputTabsForView(XMLWriter outFile, String sViewComponent) throws IOException {
 
         if (!tabToAttributeCollections.isEmpty()) {
-            outFile.write("               <TabGroup>\n");
+            outFile.startElement("               ", "TabGroup");
             int iNumSkipped = 0;
             for (int j = 0; j < tabOrder.size(); j++) {
 
@@ -133,18 +131,18 @@ public class WorkflowStepView extends View {
                         alAttrsForTab.add(sAttrCol);
                 }
                 if (alAttrsForTab.size() > 0) {
-                    outFile.write("                  <Tab name=\"" + sTabName + "\">\n");
-                    outFile.write("                  <TabOrder>" + iIndex + "</TabOrder>\n");
+                    outFile.startElement("                  ", "Tab", "name", sTabName);
+                    outFile.rawElement("                  ", "TabOrder", String.valueOf(iIndex));
                     for (String sAttrCol : alAttrsForTab) {
-                        outFile.write("                     <AttributeCollection><![CDATA[" + sAttrCol + "]]></AttributeCollection>\n");
+                        outFile.cdataElement("                     ", "AttributeCollection", sAttrCol);
                     }
-                    outFile.write("                  </Tab>\n");
+                    outFile.endElement("                  ", "Tab");
                 } else {
                     iNumSkipped++;
                 }
 
             }
-            outFile.write("               </TabGroup>\n");
+            outFile.endElement("               ", "TabGroup");
         }
 
     }
@@ -154,40 +152,40 @@ public class WorkflowStepView extends View {
      * @param outFile into which to write
      * @throws IOException on any error writing
      */
-    public void outputViewComponent(Writer outFile) throws IOException {
+    public void outputViewComponent(XMLWriter outFile) throws IOException {
 
         if (!tabToAttributeCollections.isEmpty() && !tabOrder.isEmpty()) {
 
             if (!singleEdit.isEmpty()) {
-                outFile.write("            <ContainerView>\n");
-                outFile.write("               <ContainerViewType>ITEM_EDIT:" + 0 + "</ContainerViewType>\n"); // ??? where does this number come from?
+                outFile.startElement("            ", "ContainerView");
+                outFile.rawElement("               ", "ContainerViewType", "ITEM_EDIT:" + 0); // ??? where does this number come from?
                 outputTabsForView(outFile, "SINGLE_EDIT");
-                outFile.write("            </ContainerView>\n");
+                outFile.endElement("            ", "ContainerView");
             }
 
             if (!multiEdit.isEmpty()) {
-                outFile.write("            <ContainerView>\n");
-                outFile.write("               <ContainerViewType>BULK_EDIT:" + 0 + "</ContainerViewType>\n"); // ??? where does this number come from?
+                outFile.startElement("            ", "ContainerView");
+                outFile.rawElement("               ", "ContainerViewType", "BULK_EDIT:" + 0); // ??? where does this number come from?
                 outputTabsForView(outFile, "MULTI_EDIT");
-                outFile.write("            </ContainerView>\n");
+                outFile.endElement("            ", "ContainerView");
             }
 
         }
 
     }
 
-    private void outputEditableAttrCols(List<String> alAttrCollections, Set<String> includeAttrCols, Writer outFile) throws IOException {
+    private void outputEditableAttrCols(List<String> alAttrCollections, Set<String> includeAttrCols, XMLWriter outFile) throws IOException {
         for (String sAttrCol : alAttrCollections) {
             if (includeAttrCols.contains(sAttrCol) && !viewOnly.contains(sAttrCol)) {
-                outFile.write("               <AttributeCollection><![CDATA[" + sAttrCol + "]]></AttributeCollection>\n");
+                outFile.cdataElement("               ", "AttributeCollection", sAttrCol);
             }
         }
     }
 
-    private void outputViewableAttrCols(List<String> alAttrCollections, Set<String> includeAttrCols, Writer outFile) throws IOException {
+    private void outputViewableAttrCols(List<String> alAttrCollections, Set<String> includeAttrCols, XMLWriter outFile) throws IOException {
         for (String sAttrCol : alAttrCollections) {
             if (includeAttrCols.contains(sAttrCol) && viewOnly.contains(sAttrCol)) {
-                outFile.write("               <AttributeCollection><![CDATA[" + sAttrCol + "]]></AttributeCollection>\n");
+                outFile.cdataElement("               ", "AttributeCollection", sAttrCol);
             }
         }
     }
@@ -197,31 +195,31 @@ public class WorkflowStepView extends View {
      * @param outFile into which to write
      * @throws IOException on any error writing
      */
-    public void outputAttrColXML(Writer outFile) throws IOException {
+    public void outputAttrColXML(XMLWriter outFile) throws IOException {
 
-        outFile.write("         <EditableAttributesCollections>\n");
-        outFile.write("            <ItemEdit>\n");
+        outFile.startElement("         ", "EditableAttributesCollections");
+        outFile.startElement("            ", "ItemEdit");
         outputEditableAttrCols(getAttributeCollections(), singleEdit, outFile);
-        outFile.write("            </ItemEdit>\n");
-        outFile.write("            <BulkEdit>\n");
+        outFile.endElement("            ", "ItemEdit");
+        outFile.startElement("            ", "BulkEdit");
         outputEditableAttrCols(getAttributeCollections(), multiEdit, outFile);
-        outFile.write("            </BulkEdit>\n");
-        outFile.write("            <ItemPopup>\n");
+        outFile.endElement("            ", "BulkEdit");
+        outFile.startElement("            ", "ItemPopup");
         outputEditableAttrCols(getAttributeCollections(), itemPopup, outFile);
-        outFile.write("            </ItemPopup>\n");
-        outFile.write("         </EditableAttributesCollections>\n");
+        outFile.endElement("            ", "ItemPopup");
+        outFile.endElement("         ", "EditableAttributesCollections");
 
-        outFile.write("         <ViewableAttributesCollections>\n");
-        outFile.write("            <ItemEdit>\n");
+        outFile.startElement("         ", "ViewableAttributesCollections");
+        outFile.startElement("            ", "ItemEdit");
         outputViewableAttrCols(getAttributeCollections(), singleEdit, outFile);
-        outFile.write("            </ItemEdit>\n");
-        outFile.write("            <BulkEdit>\n");
+        outFile.endElement("            ", "ItemEdit");
+        outFile.startElement("            ", "BulkEdit");
         outputViewableAttrCols(getAttributeCollections(), multiEdit, outFile);
-        outFile.write("            </BulkEdit>\n");
-        outFile.write("            <ItemPopup>\n");
+        outFile.endElement("            ", "BulkEdit");
+        outFile.startElement("            ", "ItemPopup");
         outputViewableAttrCols(getAttributeCollections(), itemPopup, outFile);
-        outFile.write("            </ItemPopup>\n");
-        outFile.write("         </ViewableAttributesCollections>\n");
+        outFile.endElement("            ", "ItemPopup");
+        outFile.endElement("         ", "ViewableAttributesCollections");
 
     }
 
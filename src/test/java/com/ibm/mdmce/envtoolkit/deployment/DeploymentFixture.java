@@ -0,0 +1,88 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A small environment of CSV files for the tests that build it: specs that need the locales of the company
+ * attributes, lookups and attribute collections that need the specs, a catalog (and its view) over a hierarchy, and
+ * roles mapped to ACGs. The CSV files of the other types of entity are left out.
+ */
+class DeploymentFixture {
+
+    static final String COMPANY_CODE = "TST";
+    static final String VERSION = "11.0.0";
+
+    static final String SPECS = "CS?,Spec Name,Spec Type,Attribute Path,Attribute Type,PK?,Idx?,Lcl?,Lnk?,Min,Max,Edit?,NP?,Default,Length,Hidden?,RULE,fr_FR DisplayName,en_US DisplayName\n"
+            + ",Item Spec,PRIMARY_SPEC,Item Spec,GROUPING,,,,,,,,,,,,,Article,Item\n"
+            + ",Item Spec,PRIMARY_SPEC,Item Spec/SKU,STRING,x,x,,,1,1,,,,50,,,UGS,SKU\n"
+            + ",Item Spec,PRIMARY_SPEC,Item Spec/Colour,LOOKUP_TABLE,,,,Colours,0,1,,,,,,,Couleur,Colour\n"
+            + ",Item Spec,PRIMARY_SPEC,Item Spec/Desc,STRING,,,,,0,1,,,,200,,,Desc FR,Desc EN\n"
+            + ",Cat Spec,PRIMARY_SPEC,Cat Spec,GROUPING,,,,,,,,,,,,,Cat,Cat\n"
+            + ",Cat Spec,PRIMARY_SPEC,Cat Spec/Code,STRING,x,,,,1,1,,,,,,,Code,Code\n"
+            + ",Colour Spec,LKP_SPEC,Colour Spec,GROUPING,,,,,,,,,,,,,,\n"
+            + ",Colour Spec,LKP_SPEC,Colour Spec/Code,STRING,x,,,,1,1,,,,,,,,\n"
+            + ",Colour Spec,LKP_SPEC,Colour Spec/Name,STRING,,,x,,0,1,,,,,,,,\n"
+            + "x,Spec $[PRIMARY_VAR],SECONDARY_SPEC,Spec $[PRIMARY_VAR]/Field $[DEPENDENT_VAR],STRING,,,,,0,1,,,,,,,,\n";
+
+    private DeploymentFixture() {
+    }
+
+    /**
+     * Write the CSV files of the environment into the provided directory.
+     * @param fInput the directory into which to write the files
+     * @throws IOException on any error writing
+     */
+    static void write(File fInput) throws IOException {
+        write(fInput, "TemplateParameters.csv", "$[PRIMARY_VAR],One,Two\n$[DEPENDENT_VAR],One.1,Two.1\n");
+        write(fInput, "CompanyAttributes.csv", "Type,Language / Code,Country / Symbol\nLOCALE,fr,FR\nLOCALE,en,US\nCURRENCY,USD,$\n");
+        write(fInput, "ACGs.csv", "CS?,ACG Name,ACG Description\n,ACG_Main,Main ACG\nx,ACG_$[PRIMARY_VAR],Templated ACG\n");
+        write(fInput, "Specs.csv", SPECS);
+        write(fInput, "Lookups.csv", "CS?,Lookup Table Name,Spec\n,Colours,Colour Spec\n");
+        write(fInput, "AttrCollections.csv", "CS?,Attribute Collection Name,Type,Description,Spec Name,Attribute Path\n"
+                + ",AC Core,STATIC,Core,Item Spec,SKU\n"
+                + ",AC Core,STATIC,Core,Item Spec,Desc\n"
+                + ",AC Cat,STATIC,,Cat Spec,Code\n");
+        write(fInput, "Hierarchies.csv", "CS?,Hierarchy Name,Spec,Inherit?,Display Attribute,Path Attribute,ACG,Org?,Scripts,Items on Leaves Only?\n"
+                + ",Cat Tree,Cat Spec,,Cat Spec/Code,Cat Spec/Code,ACG_Main,,,\n");
+        write(fInput, "Catalogs.csv", "CS?,Catalog Name,Spec,Primary Hierarchy,Secondary Hierarchies,Inherit?,Display Attribute,ACG,Links,Locations,Scripts\n"
+                + ",Items,Item Spec,Cat Tree,,,Item Spec/SKU,ACG_Main,,,\n");
+        write(fInput, "Views.csv", "CS?,Container Name,Container Type,View name / Step Path,Attribute Collection,Tab name,View-only,Single Edit,Multi-Edit,Item List,Item-Popup,Location,Default?\n"
+                + ",Items,CATALOG,Main View,AC Core,Main,,x,x,x,x,,x\n"
+                + ",Items,CATALOG,Main View,AC Cat,Category,x,x,,,,,\n");
+        write(fInput, "Roles.csv", "CS?,Role Name,Role Description\n,Editor,Editor role\n,Viewer,\"Viewer, read-only\"\n");
+        write(fInput, "RoleToACGs.csv", "\"Access Controls (Role,ACG)\",\"Editor,ACG_Main\",\"Viewer,ACG_Main\"\n"
+                + "Catalog__list,x,x\n"
+                + "Catalog__view_items,x,x\n"
+                + "Catalog__modify_items,x,\n");
+    }
+
+    /**
+     * Write (or replace) a single CSV file of the environment.
+     * @param fInput the directory containing the files
+     * @param sName the name of the file
+     * @param sContent the content of the file
+     * @throws IOException on any error writing
+     */
+    static void write(File fInput, String sName, String sContent) throws IOException {
+        Files.write(new File(fInput, sName).toPath(), sContent.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read in the environment from the provided directory.
+     * @param fInput the directory containing the CSV files
+     * @param fOutput the directory into which to output
+     * @param context the build
+     * @return EnvironmentHandler
+     */
+    static EnvironmentHandler build(File fInput, File fOutput, BuildContext context) {
+        return new EnvironmentHandler(COMPANY_CODE, VERSION, fInput.getPath(), fOutput.getPath(), "", context);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import com.ibm.mdmce.envtoolkit.deployment.model.BasicEntity;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Comparisons of the entity handlers loaded concurrently against those loaded one at a time, in the order of the
+ * types of entity.
+ */
+public class HandlerLoadSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File fInput;
+
+    @Before
+    public void setUp() throws IOException {
+        EnvironmentHandler.logger = Logger.getLogger(HandlerLoadSchedulerTest.class.getName());
+        EnvironmentHandler.logger.setLevel(Level.OFF);
+        fInput = folder.newFolder("Deployment");
+        DeploymentFixture.write(fInput);
+    }
+
+    @Test
+    public void loadsSequentiallyInEntityOrder() throws IOException {
+        EnvironmentHandler env = DeploymentFixture.build(fInput, folder.newFolder(), new BuildContext("UTF-8"));
+        assertEquals(EnvironmentHandler.getEntityTypes(), env.getHandlerLoads().getLoadOrder());
+        assertEquals(EnvironmentHandler.getEntityTypes(), env.getHandlerNames());
+    }
+
+    @Test
+    public void loadsSameCacheConcurrently() throws IOException {
+
+        BuildContext sequential = new BuildContext("UTF-8");
+        sequential.setThreads(1);
+        File fExpected = folder.newFolder();
+        EnvironmentHandler expected = DeploymentFixture.build(fInput, fExpected, sequential);
+        Map<String, List<String>> hmExpected = describeCache(sequential);
+        assertTrue(hmExpected.get(BasicEntity.class.getPackage().getName() + ".Spec").contains("Spec Two"));
+        assertTrue(expected.outputEnvironmentFiles());
+
+        // Repeated, as the handlers could be loaded in a different order each time
+        for (int i = 0; i < 5; i++) {
+            BuildContext concurrent = new BuildContext("UTF-8");
+            concurrent.setThreads(4);
+            File fActual = folder.newFolder();
+            EnvironmentHandler actual = DeploymentFixture.build(fInput, fActual, concurrent);
+            assertEquals(hmExpected, describeCache(concurrent));
+            assertEquals(sequential.getAllLocales(), concurrent.getAllLocales());
+            assertEquals(expected.getHandlerNames(), actual.getHandlerNames());
+            assertTrue(actual.outputEnvironmentFiles());
+            assertEquals(readOutputs(fExpected), readOutputs(fActual));
+        }
+
+    }
+
+    @Test
+    public void loadsClosureOfSelectedTypes() throws IOException {
+
+        BuildContext context = new BuildContext("UTF-8");
+        context.setThreads(4);
+        context.setSelectedTypes(Collections.singleton("AttrCollection"));
+        EnvironmentHandler env = DeploymentFixture.build(fInput, folder.newFolder(), context);
+
+        List<String> alLoaded = env.getHandlerNames();
+        assertEquals(Arrays.asList("CompanyAttribute", "Spec", "Lookup", "AttrCollection"), alLoaded);
+        for (String sHandlerName : alLoaded) {
+            assertNotNull(sHandlerName, context.getHandler(sHandlerName));
+        }
+        assertNull(context.getHandler("Role"));
+
+    }
+
+    /**
+     * Describe the cache of the provided build: the names of the entities cached under each type, in the order they
+     * were added.
+     */
+    private static Map<String, List<String>> describeCache(BuildContext context) {
+        EntityCache cache = context.getEntityCache();
+        Map<String, List<String>> hmCache = new TreeMap<>();
+        for (String sEntityType : cache.getTypes()) {
+            List<String> alNames = new ArrayList<>();
+            for (BasicEntity oEntity : cache.getAll(sEntityType)) {
+                alNames.add(oEntity.getUniqueId());
+            }
+            hmCache.put(sEntityType, alNames);
+        }
+        return hmCache;
+    }
+
+    /**
+     * Read the XML files output into the provided directory (other than the ImportEnvControl.xml, which is dated), by
+     * their path within the directory.
+     */
+    private static Map<String, String> readOutputs(File fOutput) throws IOException {
+        Path pathOutput = fOutput.toPath();
+        Map<String, String> hmOutputs = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(pathOutput)) {
+            for (Path path : paths.filter(p -> p.toString().endsWith(".xml")).collect(Collectors.toList())) {
+                String sRelative = pathOutput.relativize(path).toString();
+                if (!sRelative.equals("ImportEnvControl.xml"))
+                    hmOutputs.put(sRelative, new String(Files.readAllBytes(path), "UTF-8"));
+            }
+        }
+        assertFalse(hmOutputs.isEmpty());
+        return hmOutputs;
+    }
+
+}
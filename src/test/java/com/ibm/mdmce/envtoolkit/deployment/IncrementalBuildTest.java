@@ -0,0 +1,118 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Selection of the outputs an incremental build regenerates after changes to the inputs or outputs of a previous
+ * (complete) incremental build into the same output directory.
+ */
+public class IncrementalBuildTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File fInput;
+    private File fOutput;
+
+    @Before
+    public void setUp() throws IOException {
+        EnvironmentHandler.logger = Logger.getLogger(IncrementalBuildTest.class.getName());
+        EnvironmentHandler.logger.setLevel(Level.OFF);
+        fInput = folder.newFolder("Deployment");
+        fOutput = folder.newFolder("output");
+        DeploymentFixture.write(fInput);
+        BuildContext context = new BuildContext("UTF-8");
+        context.setIncremental(true);
+        assertTrue(DeploymentFixture.build(fInput, fOutput, context).outputEnvironmentFiles());
+    }
+
+    @Test
+    public void selectsNothingWhenUnchanged() throws IOException {
+        assertEquals(Collections.<String>emptyList(), selectOutputs());
+    }
+
+    @Test
+    public void selectsDependentsOfChangedInput() throws IOException {
+
+        // Specs depend on the locales of the company attributes, and lookups and attribute collections on the specs
+        DeploymentFixture.write(fInput, "CompanyAttributes.csv", "Type,Language / Code,Country / Symbol\nLOCALE,fr,FR\nLOCALE,en,US\nLOCALE,de,DE\nCURRENCY,USD,$\n");
+        List<String> alSelected = selectOutputs();
+        assertTrue(alSelected.toString(), alSelected.containsAll(Arrays.asList("CompanyAttribute", "Spec", "Lookup", "AttrCollection")));
+        assertFalse(alSelected.contains("ACG"));
+        assertFalse(alSelected.contains("Role"));
+        assertFalse(alSelected.contains("RoleToACG"));
+
+    }
+
+    @Test
+    public void selectsReadersOfChangedTypes() throws IOException {
+
+        // Roles read the mappings of roles to ACGs while they are output, though they do not depend on them to load
+        DeploymentFixture.write(fInput, "RoleToACGs.csv", "\"Access Controls (Role,ACG)\",\"Editor,ACG_Main\",\"Viewer,ACG_Main\"\n"
+                + "Catalog__list,x,x\n"
+                + "Catalog__view_items,x,x\n"
+                + "Catalog__modify_items,x,x\n");
+        assertEquals(Arrays.asList("Role", "RoleToACG"), selectOutputs());
+
+    }
+
+    @Test
+    public void selectsTypeOfDeletedOutput() throws IOException {
+
+        File fSpec = new File(fOutput, "SPECS" + File.separator + "PRIMARY_SPEC" + File.separator + "PRIMARY_SPEC_Item_Spec_SPEC.xml");
+        assertTrue(fSpec.delete());
+        assertEquals(Collections.singletonList("Spec"), selectOutputs());
+
+        assertTrue(new File(fOutput, "ROLES.xml").delete());
+        assertEquals(Arrays.asList("Spec", "Role"), selectOutputs());
+
+    }
+
+    @Test
+    public void selectsTypeOfModifiedOutput() throws IOException {
+        File fRoles = new File(fOutput, "ROLES.xml");
+        DeploymentFixture.write(fOutput, "ROLES.xml", "<!-- edited by hand -->\n");
+        assertTrue(fRoles.setLastModified(fRoles.lastModified() + 2000));
+        assertEquals(Collections.singletonList("Role"), selectOutputs());
+    }
+
+    /**
+     * Load the environment again, into the same output directory, and select the outputs it would regenerate.
+     */
+    private List<String> selectOutputs() throws IOException {
+        BuildContext context = new BuildContext("UTF-8");
+        context.setIncremental(true);
+        EnvironmentHandler env = DeploymentFixture.build(fInput, fOutput, context);
+        BuildContext previous = BuildContext.attach(context);
+        try {
+            List<String> alEntityNames = new ArrayList<>();
+            for (String sEntityName : env.getHandlerNames()) {
+                if (context.getHandler(sEntityName).hasFederatedInfo())
+                    alEntityNames.add(sEntityName);
+            }
+            IncrementalBuild incremental = new IncrementalBuild(context, env.getHandlerLoads(), fOutput.getPath(), env.getBuildFingerprint());
+            return incremental.selectOutputs(alEntityNames);
+        } finally {
+            BuildContext.attach(previous);
+        }
+    }
+
+}
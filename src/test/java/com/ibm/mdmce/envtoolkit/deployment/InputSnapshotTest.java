@@ -0,0 +1,189 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the parsed input snapshot through its file format.
+ */
+public class InputSnapshotTest {
+
+    private static final String KEY = "key";
+    private static final String ENTITY_TYPE = "com.ibm.mdmce.envtoolkit.deployment.model.Role";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File fOutput;
+    private File fRoles;
+    private File fSpecs;
+
+    @Before
+    public void setUp() throws IOException {
+        EnvironmentHandler.logger = Logger.getLogger(InputSnapshotTest.class.getName());
+        fOutput = folder.newFolder("output");
+        fRoles = writeFile("Role.csv", "Name,Description\nAdmin,Administrators\n");
+        fSpecs = writeFile("Spec.csv", "Name,Type\nProduct,PRIMARY_SPEC\n");
+    }
+
+    @Test
+    public void replaysUnchangedFiles() throws IOException {
+
+        InputSnapshot snapshot = open();
+        InputSnapshot.Entry entry = snapshot.lookup(fRoles, ENTITY_TYPE, 2);
+        assertFalse(entry.isReplayed());
+        entry.setHeader(Arrays.asList("Name", "Description"));
+        entry.addLine(Arrays.asList(Arrays.asList("Admin", "Administrators"), Arrays.asList("Admin", null)));
+        entry.addLine(Collections.singletonList(null));
+        entry.addLine(Collections.emptyList());
+        snapshot.record(entry);
+        assertTrue(snapshot.isChanged());
+        snapshot.write(fOutput.getPath());
+
+        InputSnapshot reopened = open();
+        InputSnapshot.Entry replayed = reopened.lookup(fRoles, ENTITY_TYPE, 2);
+        assertTrue(replayed.isReplayed());
+        assertEquals(entry.getHeader(), replayed.getHeader());
+        assertEquals(entry.getLines(), replayed.getLines());
+        assertEquals(1, reopened.getReplayedCount());
+        assertFalse(reopened.isChanged());
+
+    }
+
+    @Test
+    public void replaysEmptyFiles() throws IOException {
+
+        InputSnapshot snapshot = open();
+        snapshot.record(snapshot.lookup(fRoles, ENTITY_TYPE, 2));
+        snapshot.write(fOutput.getPath());
+
+        InputSnapshot.Entry replayed = open().lookup(fRoles, ENTITY_TYPE, 2);
+        assertTrue(replayed.isReplayed());
+        assertNull(replayed.getHeader());
+        assertTrue(replayed.getLines().isEmpty());
+
+    }
+
+    @Test
+    public void parsesChangedFilesAgain() throws IOException {
+
+        writeSnapshot(fRoles, "Admin");
+        writeFile("Role.csv", "Name,Description\nAdmin,Administrators\nViewer,Read-only\n");
+
+        InputSnapshot snapshot = open();
+        assertFalse(snapshot.lookup(fRoles, ENTITY_TYPE, 2).isReplayed());
+        assertFalse(snapshot.lookup(fRoles, ENTITY_TYPE, 3).isReplayed());
+
+    }
+
+    @Test
+    public void ignoresSnapshotOfOtherSettings() throws IOException {
+
+        writeSnapshot(fRoles, "Admin");
+
+        InputSnapshot snapshot = InputSnapshot.open(fOutput.getPath(), "other", new StringPool());
+        assertFalse(snapshot.lookup(fRoles, ENTITY_TYPE, 2).isReplayed());
+        assertTrue(snapshot.isChanged());
+
+    }
+
+    @Test
+    public void keepsFilesThatWereNotRead() throws IOException {
+
+        InputSnapshot snapshot = open();
+        InputSnapshot.Entry roles = snapshot.lookup(fRoles, ENTITY_TYPE, 2);
+        roles.setHeader(Arrays.asList("Name", "Description"));
+        roles.addLine(Collections.singletonList(Arrays.asList("Admin", "Administrators")));
+        snapshot.record(roles);
+        InputSnapshot.Entry specs = snapshot.lookup(fSpecs, ENTITY_TYPE, 2);
+        specs.setHeader(Arrays.asList("Name", "Type"));
+        specs.addLine(Collections.singletonList(Arrays.asList("Product", "PRIMARY_SPEC")));
+        snapshot.record(specs);
+        snapshot.write(fOutput.getPath());
+
+        // Only the specs are read (and changed) this time
+        writeFile("Spec.csv", "Name,Type\nItem,LOOKUP_SPEC\n");
+        InputSnapshot partial = open();
+        InputSnapshot.Entry changed = partial.lookup(fSpecs, ENTITY_TYPE, 2);
+        assertFalse(changed.isReplayed());
+        changed.setHeader(Arrays.asList("Name", "Type"));
+        changed.addLine(Collections.singletonList(Arrays.asList("Item", "LOOKUP_SPEC")));
+        partial.record(changed);
+        partial.write(fOutput.getPath());
+
+        InputSnapshot reopened = open();
+        InputSnapshot.Entry keptRoles = reopened.lookup(fRoles, ENTITY_TYPE, 2);
+        assertTrue(keptRoles.isReplayed());
+        assertEquals(roles.getLines(), keptRoles.getLines());
+        InputSnapshot.Entry keptSpecs = reopened.lookup(fSpecs, ENTITY_TYPE, 2);
+        assertTrue(keptSpecs.isReplayed());
+        assertEquals(changed.getLines(), keptSpecs.getLines());
+
+    }
+
+    @Test
+    public void replacesSnapshotItWasReadFrom() throws IOException {
+
+        writeSnapshot(fRoles, "Admin");
+        InputSnapshot snapshot = open();
+        assertTrue(snapshot.lookup(fRoles, ENTITY_TYPE, 2).isReplayed());
+        InputSnapshot.Entry specs = snapshot.lookup(fSpecs, ENTITY_TYPE, 2);
+        specs.setHeader(Arrays.asList("Name", "Type"));
+        snapshot.record(specs);
+        snapshot.write(fOutput.getPath());
+
+        InputSnapshot reopened = open();
+        assertTrue(reopened.lookup(fRoles, ENTITY_TYPE, 2).isReplayed());
+        assertTrue(reopened.lookup(fSpecs, ENTITY_TYPE, 2).isReplayed());
+        assertFalse(new File(fOutput, InputSnapshot.FILENAME + ".tmp").exists());
+
+    }
+
+    @Test
+    public void ignoresUnreadableSnapshot() throws IOException {
+
+        Files.write(new File(fOutput, InputSnapshot.FILENAME).toPath(), new byte[] { 0x45, 0x54, 0x4b });
+        InputSnapshot snapshot = open();
+        assertFalse(snapshot.lookup(fRoles, ENTITY_TYPE, 2).isReplayed());
+        assertTrue(snapshot.isChanged());
+
+    }
+
+    private InputSnapshot open() {
+        return InputSnapshot.open(fOutput.getPath(), KEY, new StringPool());
+    }
+
+    private void writeSnapshot(File fInput, String sName) throws IOException {
+        InputSnapshot snapshot = open();
+        InputSnapshot.Entry entry = snapshot.lookup(fInput, ENTITY_TYPE, 2);
+        entry.setHeader(Arrays.asList("Name", "Description"));
+        List<List<String>> alReplacedTokens = Collections.singletonList(Arrays.asList(sName, null));
+        entry.addLine(alReplacedTokens);
+        snapshot.record(entry);
+        snapshot.write(fOutput.getPath());
+    }
+
+    private File writeFile(String sName, String sContent) throws IOException {
+        File fInput = new File(folder.getRoot(), sName);
+        Files.write(fInput.toPath(), sContent.getBytes(StandardCharsets.UTF_8));
+        return fInput;
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Comparisons of the rows parsed in parallel chunks against those parsed sequentially, cutting small files into ranges
+ * of every size so that the ranges start at every byte of the file: within quoted cells, at escaped quotes, between
+ * the carriage return and line feed of a line and at blank lines.
+ */
+public class ParallelCSVReaderTest {
+
+    private static final int COLUMNS = 3;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void splitsWithinQuotedCells() throws IOException {
+        assertSameRows("Name,Description,Path\n"
+                + "Product,\"A long, quoted description\",/a/b\n"
+                + "Item,\"Spread over\nseveral\nlines, with commas\",/c\n"
+                + "\"Quoted name\",plain,\"\"\n"
+                + "Last,\"#not a comment\n# nor this\",/d\n");
+    }
+
+    @Test
+    public void splitsAtEscapedQuotes() throws IOException {
+        assertSameRows("Name,Value,Note\n"
+                + "One,\"He said \"\"hello\"\"\",x\n"
+                + "Two,\"\"\"\"\"\",\"\"\"\n\"\"\"\n"
+                + "Three,\"ends with a quote\"\"\",\"\"\"starts with one\"\n"
+                + "Four,\"dropped\"after\",y\n");
+    }
+
+    @Test
+    public void splitsBetweenCarriageReturnAndLineFeed() throws IOException {
+        assertSameRows("Name,Value,Note\r\n"
+                + "One,\"across\r\nlines\",x\r\n"
+                + "Two,plain,y\r"
+                + "Three,\"only a\rcarriage return\",z\r\n"
+                + "\r\n"
+                + "Four,last,\"\"\r\n");
+    }
+
+    @Test
+    public void splitsAtBlankLines() throws IOException {
+        assertSameRows("\n\nName,Value,Note\n"
+                + "\n"
+                + "   \n"
+                + ",,\n"
+                + "\"\",\"\",\n"
+                + "# a comment, with \"an odd quote\n"
+                + "One,\"\n\n\",x\n"
+                + "\n"
+                + "Two,y,\n"
+                + "\n\n");
+    }
+
+    @Test
+    public void splitsGeneratedFiles() throws IOException {
+        for (int iSeed = 0; iSeed < 20; iSeed++) {
+            assertSameRows(generate(new Random(iSeed), 20));
+        }
+    }
+
+    @Test
+    public void parsesInParallelFromThreshold() throws IOException {
+
+        String sContent = generate(new Random(42), 200);
+        File fInput = writeFile(sContent);
+        List<List<String>> alExpected = readSequentially(fInput);
+
+        try (CSVParser parser = new CSVParser(fInput, "UTF-8", COLUMNS, fInput.length(), 64, pool)) {
+            assertEquals(alExpected, parser.rows().collect(Collectors.toList()));
+        }
+        // ... but not below the threshold, nor without more than one thread
+        try (CSVParser parser = new CSVParser(fInput, "UTF-8", COLUMNS, fInput.length() + 1, 64, pool)) {
+            assertEquals(alExpected, parser.rows().collect(Collectors.toList()));
+        }
+        ForkJoinPool single = new ForkJoinPool(1);
+        try (CSVParser parser = new CSVParser(fInput, "UTF-8", COLUMNS, 0, 64, single)) {
+            assertEquals(alExpected, parser.rows().collect(Collectors.toList()));
+        } finally {
+            single.shutdownNow();
+        }
+
+    }
+
+    /**
+     * Check that the provided content is parsed into the same rows in parallel, whatever the size of the ranges into
+     * which it is cut, as it is sequentially.
+     */
+    private void assertSameRows(String sContent) throws IOException {
+
+        File fInput = writeFile(sContent);
+        List<List<String>> alExpected = readSequentially(fInput);
+        assertFalse(alExpected.isEmpty());
+
+        for (long chunkSize = 1; chunkSize <= fInput.length(); chunkSize++) {
+            ParallelCSVReader reader = new ParallelCSVReader(fInput, StandardCharsets.UTF_8, COLUMNS, pool, chunkSize);
+            if (chunkSize == 1 && alExpected.size() > 1)
+                assertTrue(reader.getChunkCount() > 1);
+            List<List<String>> alActual = new ArrayList<>();
+            try {
+                List<String> aTokens = reader.nextRow();
+                while (aTokens != null) {
+                    alActual.add(aTokens);
+                    aTokens = reader.nextRow();
+                }
+            } finally {
+                reader.close();
+            }
+            assertEquals("Chunks of " + chunkSize + " bytes of: " + sContent, alExpected, alActual);
+        }
+
+    }
+
+    private List<List<String>> readSequentially(File fInput) throws IOException {
+        try (CSVParser parser = new CSVParser(fInput, "UTF-8", COLUMNS)) {
+            try (Stream<List<String>> rows = parser.rows()) {
+                return rows.collect(Collectors.toList());
+            }
+        }
+    }
+
+    private File writeFile(String sContent) throws IOException {
+        File fInput = folder.newFile();
+        Files.write(fInput.toPath(), sContent.getBytes(StandardCharsets.UTF_8));
+        return fInput;
+    }
+
+    /**
+     * Generate CSV content from a mix of plain and quoted cells, escaped quotes, embedded newlines, comments and blank
+     * lines, with any of the line terminators.
+     */
+    private static String generate(Random random, int iLines) {
+        String[] aNewlines = { "\n", "\r\n", "\r" };
+        String[] aPlain = { "", "plain", "a b", "#hash", "Prodüct" };
+        String[] aQuoted = { "", "x,y", "\"\"", "say \"\"hi\"\"", "multi\nline", "cr\r\nlf", "\"\"\"\"", ",\n," };
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < iLines; i++) {
+            String sNewline = aNewlines[random.nextInt(aNewlines.length)];
+            int iKind = random.nextInt(10);
+            if (iKind == 0) {
+                sb.append(sNewline);
+            } else if (iKind == 1) {
+                sb.append("# comment, \"with a quote").append(sNewline);
+            } else {
+                for (int c = 0; c < COLUMNS; c++) {
+                    if (c > 0)
+                        sb.append(',');
+                    if (random.nextBoolean())
+                        sb.append(aPlain[random.nextInt(aPlain.length)]);
+                    else
+                        sb.append('"').append(aQuoted[random.nextInt(aQuoted.length)]).append('"');
+                }
+                sb.append(sNewline);
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+Copyright IBM Corp. 2007-2020 All Rights Reserved.
+SPDX-License-Identifier: Apache-2.0
+*/
+package com.ibm.mdmce.envtoolkit.deployment;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of the ZIP files written by the parallel writer, read back through both ZipFile (central directory)
+ * and ZipInputStream (local headers and data descriptors).
+ */
+public class ParallelZipWriterTest {
+
+    private static final long MODIFIED = 1262347200000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesEmptyFile() throws IOException {
+        Map<String, byte[]> hmExpected = new LinkedHashMap<>();
+        hmExpected.put("empty.txt", new byte[0]);
+        File fZip = writeZip(hmExpected, 2, Deflater.DEFAULT_COMPRESSION);
+        assertContent(fZip, hmExpected);
+    }
+
+    @Test
+    public void writesFilesOfSeveralBlocks() throws IOException {
+        Map<String, byte[]> hmExpected = new LinkedHashMap<>();
+        hmExpected.put("one.xml", content(ParallelZipWriter.BLOCK_SIZE, 1));
+        hmExpected.put("several/blocks.xml", content(3 * ParallelZipWriter.BLOCK_SIZE + 12345, 2));
+        hmExpected.put("random.bin", random(2 * ParallelZipWriter.BLOCK_SIZE + 1, 3));
+        File fZip = writeZip(hmExpected, 4, Deflater.DEFAULT_COMPRESSION);
+        assertContent(fZip, hmExpected);
+    }
+
+    @Test
+    public void writesStoredLevel() throws IOException {
+        Map<String, byte[]> hmExpected = new LinkedHashMap<>();
+        hmExpected.put("stored.xml", content(2 * ParallelZipWriter.BLOCK_SIZE + 7, 4));
+        File fZip = writeZip(hmExpected, 2, Deflater.NO_COMPRESSION);
+        assertContent(fZip, hmExpected);
+    }
+
+    @Test
+    public void writesCopies() throws IOException {
+
+        byte[] aContent = content(2 * ParallelZipWriter.BLOCK_SIZE + 99, 5);
+        File fOriginal = writeFile("original.xml", aContent);
+        File fEmpty = writeFile("empty.xml", new byte[0]);
+        File fZip = new File(folder.getRoot(), "copies.zip");
+        try (ParallelZipWriter zip = new ParallelZipWriter(fZip, 3, Deflater.DEFAULT_COMPRESSION)) {
+            zip.addDirectory("dir/", MODIFIED);
+            zip.addFile("dir/original.xml", fOriginal);
+            zip.addFile("dir/empty.xml", fEmpty);
+            zip.addCopy("dir/copy.xml", MODIFIED, "dir/original.xml");
+            zip.addCopy("dir/empty-copy.xml", MODIFIED, "dir/empty.xml");
+            zip.addCopy("copy-of-copy.xml", MODIFIED, "dir/copy.xml");
+            zip.finish();
+        }
+
+        Map<String, byte[]> hmExpected = new LinkedHashMap<>();
+        hmExpected.put("dir/", null);
+        hmExpected.put("dir/original.xml", aContent);
+        hmExpected.put("dir/empty.xml", new byte[0]);
+        hmExpected.put("dir/copy.xml", aContent);
+        hmExpected.put("dir/empty-copy.xml", new byte[0]);
+        hmExpected.put("copy-of-copy.xml", aContent);
+        assertContent(fZip, hmExpected);
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCopyOfUnknownFile() throws IOException {
+        try (ParallelZipWriter zip = new ParallelZipWriter(new File(folder.getRoot(), "unknown.zip"), 1, Deflater.DEFAULT_COMPRESSION)) {
+            zip.addCopy("copy.xml", MODIFIED, "missing.xml");
+        }
+    }
+
+    @Test
+    public void writesZip64EntryCount() throws IOException {
+
+        // The end of central directory record can only count up to 0xFFFE entries, beyond which the ZIP64 record is used
+        File fContent = writeFile("content.xml", content(1000, 6));
+        File fZip = new File(folder.getRoot(), "many.zip");
+        int iEntries = 0xFFFF + 1;
+        try (ParallelZipWriter zip = new ParallelZipWriter(fZip, 2, Deflater.BEST_SPEED)) {
+            zip.addFile("content.xml", fContent);
+            for (int i = 1; i < iEntries; i++) {
+                zip.addDirectory("dir" + i + "/", MODIFIED);
+            }
+            zip.finish();
+        }
+
+        try (ZipFile zipFile = new ZipFile(fZip)) {
+            assertEquals(iEntries, zipFile.size());
+            assertArrayEquals(Files.readAllBytes(fContent.toPath()), read(zipFile.getInputStream(zipFile.getEntry("content.xml"))));
+            assertNotNull(zipFile.getEntry("dir" + (iEntries - 1) + "/"));
+        }
+        int iRead = 0;
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(fZip))) {
+            while (zis.getNextEntry() != null) {
+                iRead++;
+            }
+        }
+        assertEquals(iEntries, iRead);
+
+    }
+
+    private File writeZip(Map<String, byte[]> hmContent, int iThreads, int iLevel) throws IOException {
+        File fZip = new File(folder.getRoot(), "test.zip");
+        try (ParallelZipWriter zip = new ParallelZipWriter(fZip, iThreads, iLevel)) {
+            for (Map.Entry<String, byte[]> entry : hmContent.entrySet()) {
+                zip.addFile(entry.getKey(), writeFile(entry.getKey().replace('/', '_'), entry.getValue()));
+            }
+            zip.finish();
+        }
+        return fZip;
+    }
+
+    /**
+     * Check that the ZIP holds exactly the expected entries (a null content being a directory), in order, through both
+     * its central directory and its local headers.
+     */
+    private static void assertContent(File fZip, Map<String, byte[]> hmExpected) throws IOException {
+
+        try (ZipFile zipFile = new ZipFile(fZip)) {
+            List<String> alNames = new ArrayList<>();
+            for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                alNames.add(entry.getName());
+                byte[] aExpected = hmExpected.get(entry.getName());
+                if (aExpected == null) {
+                    assertTrue(entry.isDirectory());
+                    continue;
+                }
+                byte[] aActual = read(zipFile.getInputStream(entry));
+                assertArrayEquals(entry.getName(), aExpected, aActual);
+                assertEquals(entry.getName(), aExpected.length, entry.getSize());
+                assertEquals(entry.getName(), crc(aExpected), entry.getCrc());
+            }
+            assertEquals(new ArrayList<>(hmExpected.keySet()), alNames);
+        }
+
+        List<String> alNames = new ArrayList<>();
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(fZip))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                alNames.add(entry.getName());
+                byte[] aExpected = hmExpected.get(entry.getName());
+                byte[] aActual = read(zis);
+                if (aExpected == null) {
+                    assertTrue(entry.isDirectory());
+                    assertEquals(0, aActual.length);
+                } else {
+                    // ZipInputStream checks the CRC and sizes of the data descriptor as the entry is read
+                    assertArrayEquals(entry.getName(), aExpected, aActual);
+                }
+            }
+        }
+        assertEquals(new ArrayList<>(hmExpected.keySet()), alNames);
+
+    }
+
+    private File writeFile(String sName, byte[] aContent) throws IOException {
+        File file = new File(folder.getRoot(), sName);
+        Files.write(file.toPath(), aContent);
+        assertTrue(file.setLastModified(MODIFIED));
+        return file;
+    }
+
+    private static byte[] content(int iLength, int iSeed) {
+        Random random = new Random(iSeed);
+        StringBuilder sb = new StringBuilder(iLength + 64);
+        while (sb.length() < iLength) {
+            sb.append("<Attrib><Name>ATTR_").append(random.nextInt(500)).append("</Name><Value>")
+                    .append(Long.toHexString(random.nextLong() & 0xFFFFF)).append("</Value></Attrib>\n");
+        }
+        return Arrays.copyOf(sb.toString().getBytes(StandardCharsets.US_ASCII), iLength);
+    }
+
+    private static byte[] random(int iLength, int iSeed) {
+        byte[] aContent = new byte[iLength];
+        new Random(iSeed).nextBytes(aContent);
+        return aContent;
+    }
+
+    private static long crc(byte[] aContent) {
+        CRC32 crc = new CRC32();
+        crc.update(aContent, 0, aContent.length);
+        return crc.getValue();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] aBuffer = new byte[8192];
+        int iRead;
+        while ((iRead = in.read(aBuffer)) != -1) {
+            baos.write(aBuffer, 0, iRead);
+        }
+        return baos.toByteArray();
+    }
+
+}